@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestFairCallQueue {
+  private FairCallQueue<Schedulable> fcq;
+
+  private static class FakeSchedulable implements Schedulable {
+    private final UserGroupInformation ugi;
+
+    FakeSchedulable(String user) {
+      this.ugi = UserGroupInformation.createRemoteUser(user);
+    }
+
+    @Override
+    public UserGroupInformation getUserGroupInformation() {
+      return ugi;
+    }
+  }
+
+  /**
+   * Places every call in the given priority level.
+   */
+  private static class FixedScheduler implements RpcScheduler {
+    private int priorityLevel;
+
+    @Override
+    public int getPriorityLevel(Schedulable obj) {
+      return priorityLevel;
+    }
+  }
+
+  private FixedScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    Configuration conf = new Configuration();
+    conf.setInt("ns." + FairCallQueue.IPC_CALLQUEUE_PRIORITY_LEVELS_KEY, 2);
+    fcq = new FairCallQueue<Schedulable>(5, "ns", conf);
+    scheduler = new FixedScheduler();
+    fcq.setScheduler(scheduler);
+  }
+
+  @Test
+  public void testPollReturnsNullWhenEmpty() throws Exception {
+    assertEquals(0, fcq.size());
+    assertNull(fcq.poll());
+    assertNull(fcq.poll(10, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testOverflowToLowerPriority() throws Exception {
+    for (int i = 0; i < 7; i++) {
+      fcq.put(new FakeSchedulable("user"));
+    }
+    assertEquals(7, fcq.size());
+    int[] sizes = fcq.getQueueSizes();
+    assertEquals(5, sizes[0]);
+    assertEquals(2, sizes[1]);
+    assertEquals(2, fcq.getOverflowedCalls()[0]);
+  }
+
+  @Test
+  public void testHighPriorityIsTakenFirst() throws Exception {
+    Schedulable low = new FakeSchedulable("low");
+    Schedulable high = new FakeSchedulable("high");
+    scheduler.priorityLevel = 1;
+    fcq.put(low);
+    scheduler.priorityLevel = 0;
+    fcq.put(high);
+
+    fcq.setMultiplexer(new RpcMultiplexer() {
+      @Override
+      public int getAndAdvanceCurrentIndex() {
+        return 0;
+      }
+    });
+    assertSame(high, fcq.take());
+    assertSame(low, fcq.take());
+  }
+
+  @Test
+  public void testDecaySchedulerDemotesHeavyUsers() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong("ns." +
+        DecayRpcScheduler.IPC_CALLQUEUE_DECAYSCHEDULER_PERIOD_KEY, 60000);
+    DecayRpcScheduler decay = new DecayRpcScheduler(2, "ns", conf);
+    Schedulable heavy = new FakeSchedulable("heavy");
+    for (int i = 0; i < 100; i++) {
+      decay.getPriorityLevel(heavy);
+    }
+    assertEquals(1, decay.getPriorityLevel(heavy));
+    assertEquals(0, decay.getPriorityLevel(new FakeSchedulable("light")));
+
+    // a single call decays to zero and is forgotten
+    decay.forceDecay();
+    assertFalse(decay.getCallCountSnapshot().containsKey("light"));
+    assertEquals(decay.getTotalCallSnapshot(),
+        (long) decay.getCallCountSnapshot().get("heavy"));
+  }
+
+  @Test
+  public void testWeightedRoundRobin() {
+    Configuration conf = new Configuration();
+    conf.set("ns." +
+        WeightedRoundRobinMultiplexer.IPC_CALLQUEUE_WRRMUX_WEIGHTS_KEY, "2,1");
+    WeightedRoundRobinMultiplexer mux =
+        new WeightedRoundRobinMultiplexer(2, "ns", conf);
+    int[] expected = {0, 0, 1, 0, 0, 1};
+    for (int index : expected) {
+      assertEquals(index, mux.getAndAdvanceCurrentIndex());
+    }
+  }
+}
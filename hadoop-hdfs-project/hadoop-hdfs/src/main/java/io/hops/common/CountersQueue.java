@@ -49,6 +49,7 @@ public class EmptyCountersQueueException extends RuntimeException {
   }
   
   private int available;
+  private long consumed;
   private Queue<Counter> queue;
 
   public CountersQueue() {
@@ -63,6 +64,7 @@ public synchronized void addCounter(long start, long end) {
   public synchronized void addCounter(Counter counter) {
     queue.offer(counter);
     available += counter.end - counter.start;
+    notifyAll();
   }
   
   
@@ -71,6 +73,7 @@ public synchronized long next() {
     while (c != null) {
       if (c.hasNext()) {
         available--;
+        consumed++;
         return c.next();
       } else {
         queue.remove();
@@ -80,10 +83,37 @@ public synchronized long next() {
     throw new EmptyCountersQueueException();
   }
   
+  /**
+   * Like {@link #next()} but waits up to timeout milliseconds for a counter
+   * to be added if the queue is empty.
+   */
+  public synchronized long next(long timeout) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeout;
+    while (available <= 0) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        throw new EmptyCountersQueueException();
+      }
+      wait(remaining);
+    }
+    return next();
+  }
+
   public synchronized boolean has(int expectedNumOfIds) {
     return available >= expectedNumOfIds;
   }
 
+  public synchronized int available() {
+    return available;
+  }
+
+  /**
+   * @return the number of ids handed out since the queue was created
+   */
+  public synchronized long consumed() {
+    return consumed;
+  }
+
   @Override
   public String toString() {
     return "CountersQueue{" + "available=" + available + ", queue=" + queue +
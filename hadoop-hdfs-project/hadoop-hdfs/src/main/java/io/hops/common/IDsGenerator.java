@@ -15,36 +15,152 @@
  */
 package io.hops.common;
 
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.util.Time;
+
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Hands out unique ids from batches reserved in the database. The
+ * {@link IDsMonitor} reserves the next batch while the current one is still
+ * in use. The low watermark that triggers a refill and the size of the
+ * batches follow the rate at which ids are consumed, so that a burst of
+ * operations does not drain the queue while a refill is in flight.
+ */
 public abstract class IDsGenerator{
 
-  private int batchSize;
-  private int threshold;
+  private static final double RATE_WEIGHT = 0.5;
+
+  private final int minBatchSize;
+  private final int maxBatchSize;
+  private final int threshold;
+  private final long checkInterval;
+  private final long stallTimeout;
   private CountersQueue cQ;
 
-  IDsGenerator(int batchSize, float threshold){
-    this.batchSize = batchSize;
+  private int batchSize;
+  private volatile int lowWatermark;
+  private volatile boolean refillRequested;
+
+  private long lastCheck;
+  private long lastConsumed;
+  private double consumptionRate;
+  private double refillLatency;
+
+  private final AtomicLong stalls = new AtomicLong();
+  private long refills;
+  private long totalRefillTime;
+
+  IDsGenerator(int batchSize, float threshold, int maxBatchSizeMultiplier,
+      long checkInterval, long stallTimeout){
+    this.minBatchSize = batchSize;
+    this.maxBatchSize = (int) Math.min(Integer.MAX_VALUE,
+        (long) batchSize * Math.max(1, maxBatchSizeMultiplier));
     this.threshold = (int)(threshold * batchSize);
+    this.checkInterval = checkInterval;
+    this.stallTimeout = stallTimeout;
+    this.batchSize = batchSize;
+    this.lowWatermark = this.threshold;
+    this.lastCheck = Time.monotonicNow();
     cQ = new CountersQueue();
   }
 
   public long getUniqueID() {
-    return cQ.next();
+    long id;
+    try {
+      id = cQ.next();
+    } catch (CountersQueue.EmptyCountersQueueException e) {
+      id = waitForIds(e);
+    }
+    if (!refillRequested && !cQ.has(lowWatermark)) {
+      refillRequested = true;
+      IDsMonitor.getInstance().requestRefill();
+    }
+    return id;
   }
 
-  protected synchronized  boolean getMoreIdsIfNeeded()
-      throws IOException {
-    if (!cQ.has(threshold)) {
+  private long waitForIds(CountersQueue.EmptyCountersQueueException e) {
+    stalls.incrementAndGet();
+    refillRequested = true;
+    IDsMonitor.getInstance().requestRefill();
+    try {
+      return cQ.next(stallTimeout);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw e;
+    }
+  }
+
+  protected boolean getMoreIdsIfNeeded() throws IOException {
+    return getMoreIdsIfNeeded(Time.monotonicNow());
+  }
+
+  @VisibleForTesting
+  synchronized boolean getMoreIdsIfNeeded(long now) throws IOException {
+    adapt(now);
+    refillRequested = false;
+    if (!cQ.has(lowWatermark)) {
+      long start = Time.monotonicNow();
       cQ.addCounter(incrementCounter(batchSize));
+      long latency = Time.monotonicNow() - start;
+      refills++;
+      totalRefillTime += latency;
+      refillLatency = refills == 1 ? latency :
+          RATE_WEIGHT * latency + (1 - RATE_WEIGHT) * refillLatency;
       return true;
     }
     return false;
   }
 
+  /**
+   * Update the consumption rate and derive the low watermark and the size of
+   * the next batch from it. The low watermark covers the ids consumed until
+   * the next check and two refills have completed, the batch holds twice
+   * that amount.
+   */
+  private void adapt(long now) {
+    long elapsed = now - lastCheck;
+    if (elapsed <= 0 || maxBatchSize == minBatchSize) {
+      return;
+    }
+    long consumed = cQ.consumed();
+    double rate = (consumed - lastConsumed) / (double) elapsed;
+    consumptionRate =
+        RATE_WEIGHT * rate + (1 - RATE_WEIGHT) * consumptionRate;
+    lastCheck = now;
+    lastConsumed = consumed;
+
+    long needed = (long) Math.ceil(consumptionRate *
+        (checkInterval + 2 * refillLatency));
+    lowWatermark = (int) Math.min(maxBatchSize, Math.max(threshold, needed));
+    batchSize = (int) Math.min(maxBatchSize,
+        Math.max(minBatchSize, 2 * needed));
+  }
+
   protected CountersQueue getCQ() {
     return cQ;
   }
 
+  String getName() {
+    return getClass().getSimpleName();
+  }
+
+  synchronized int getBatchSize() {
+    return batchSize;
+  }
+
+  synchronized long getRefills() {
+    return refills;
+  }
+
+  synchronized long getTotalRefillTime() {
+    return totalRefillTime;
+  }
+
+  long getStalls() {
+    return stalls.get();
+  }
+
   abstract CountersQueue.Counter incrementCounter(int inc) throws IOException ;
 }
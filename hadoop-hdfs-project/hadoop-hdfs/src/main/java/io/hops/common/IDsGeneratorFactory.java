@@ -19,17 +19,23 @@
 import io.hops.metadata.HdfsVariables;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
 
 import java.io.IOException;
 import java.util.List;
 
-public class IDsGeneratorFactory {
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+
+public class IDsGeneratorFactory implements MetricsSource {
 
   private static final Log LOG = LogFactory.getLog(IDsGeneratorFactory.class);
 
   private class INodeIDGen extends IDsGenerator{
     INodeIDGen(int batchSize, float threshold) {
-      super(batchSize, threshold);
+      super(batchSize, threshold, maxBatchSizeMultiplier, checkInterval,
+          stallTimeout);
     }
 
     @Override
@@ -40,7 +46,8 @@ CountersQueue.Counter incrementCounter(int inc) throws IOException {
 
   private class BlockIDGen extends IDsGenerator{
     BlockIDGen(int batchSize, float threshold) {
-      super(batchSize, threshold);
+      super(batchSize, threshold, maxBatchSizeMultiplier, checkInterval,
+          stallTimeout);
     }
 
     @Override
@@ -51,7 +58,8 @@ CountersQueue.Counter incrementCounter(int inc) throws IOException {
 
   private class QuotaUpdateIDGen extends IDsGenerator{
     QuotaUpdateIDGen(int batchSize, float threshold) {
-      super(batchSize, threshold);
+      super(batchSize, threshold, maxBatchSizeMultiplier, checkInterval,
+          stallTimeout);
     }
 
     @Override
@@ -72,9 +80,17 @@ public static IDsGeneratorFactory getInstance(){
   }
 
   private List<IDsGenerator> iDsGenerators = Lists.newArrayList();
+  private int maxBatchSizeMultiplier = 1;
+  private long checkInterval;
+  private long stallTimeout;
+
   void setConfiguration(int inodeIdsBatchSize, int blockIdsBatchSize,
       int quotaUpdateIdsBatchSize, float inodeIdsThreshold,
-      float blockIdsThreshold, float quotaUpdateIdsThreshold) {
+      float blockIdsThreshold, float quotaUpdateIdsThreshold,
+      int maxBatchSizeMultiplier, long checkInterval, long stallTimeout) {
+    this.maxBatchSizeMultiplier = maxBatchSizeMultiplier;
+    this.checkInterval = checkInterval;
+    this.stallTimeout = stallTimeout;
     iDsGenerators.add(new INodeIDGen(inodeIdsBatchSize, inodeIdsThreshold));
     iDsGenerators.add(new BlockIDGen(blockIdsBatchSize, blockIdsThreshold));
     iDsGenerators.add(new QuotaUpdateIDGen(quotaUpdateIdsBatchSize,
@@ -102,4 +118,26 @@ void getNewIDs() throws IOException {
       }
     }
   }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    MetricsRecordBuilder rb =
+        collector.addRecord("IDsGenerators").setContext("dfs");
+    for (IDsGenerator iDsGenerator : iDsGenerators) {
+      String name = iDsGenerator.getName();
+      long refills = iDsGenerator.getRefills();
+      rb.addGauge(info(name + "Available", "Ids left in the queue"),
+          iDsGenerator.getCQ().available())
+          .addGauge(info(name + "BatchSize", "Size of the next batch"),
+              iDsGenerator.getBatchSize())
+          .addCounter(info(name + "Stalls",
+              "Requests that found the queue empty"),
+              iDsGenerator.getStalls())
+          .addCounter(info(name + "Refills", "Batches fetched"), refills)
+          .addGauge(info(name + "RefillAvgTime",
+              "Average time to fetch a batch in ms"),
+              refills == 0 ? 0 :
+                  iDsGenerator.getTotalRefillTime() / (double) refills);
+    }
+  }
 }
@@ -15,13 +15,21 @@
  */
 package io.hops.common;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.util.Time;
 
 import java.io.IOException;
 
+/**
+ * Refills the id generators every checkInterval milliseconds, or as soon as
+ * one of them drops below its low watermark.
+ */
 public class IDsMonitor implements Runnable {
 
   private static final Log LOG = LogFactory.getLog(IDsMonitor.class);
@@ -29,6 +37,9 @@ public class IDsMonitor implements Runnable {
   private Thread th = null;
 
   private int checkInterval;
+  private final Object refillLock = new Object();
+  private boolean refillRequested = false;
+
   private IDsMonitor() {
   }
 
@@ -40,6 +51,9 @@ public static IDsMonitor getInstance() {
   }
 
   public void setConfiguration(Configuration conf) {
+    checkInterval = conf.getInt(DFSConfigKeys.DFS_NAMENODE_IDSMONITOR_CHECK_INTERVAL_IN_MS,
+        DFSConfigKeys.DFS_NAMENODE_IDSMONITOR_CHECK_INTERVAL_IN_MS_DEFAULT);
+
     IDsGeneratorFactory.getInstance().setConfiguration(conf.getInt
             (DFSConfigKeys.DFS_NAMENODE_INODEID_BATCH_SIZE,
                 DFSConfigKeys.DFS_NAMENODE_INODEID_BATCH_SIZE_DEFAULT),
@@ -53,11 +67,13 @@ public void setConfiguration(Configuration conf) {
             DFSConfigKeys.DFS_NAMENODE_BLOCKID_UPDATE_THRESHOLD_DEFAULT),
         conf.getFloat(
             DFSConfigKeys.DFS_NAMENODE_QUOTA_UPDATE_ID_UPDATE_THRESHOLD,
-            DFSConfigKeys.DFS_NAMENODE_QUOTA_UPDATE_ID_UPDATE_THRESHOLD_DEFAULT)
+            DFSConfigKeys.DFS_NAMENODE_QUOTA_UPDATE_ID_UPDATE_THRESHOLD_DEFAULT),
+        conf.getInt(DFSConfigKeys.DFS_NAMENODE_IDS_MAX_BATCH_SIZE_MULTIPLIER,
+            DFSConfigKeys.DFS_NAMENODE_IDS_MAX_BATCH_SIZE_MULTIPLIER_DEFAULT),
+        checkInterval,
+        conf.getLong(DFSConfigKeys.DFS_NAMENODE_IDS_STALL_TIMEOUT_IN_MS,
+            DFSConfigKeys.DFS_NAMENODE_IDS_STALL_TIMEOUT_IN_MS_DEFAULT)
         );
-
-    checkInterval = conf.getInt(DFSConfigKeys.DFS_NAMENODE_IDSMONITOR_CHECK_INTERVAL_IN_MS,
-        DFSConfigKeys.DFS_NAMENODE_IDSMONITOR_CHECK_INTERVAL_IN_MS_DEFAULT);
   }
 
 
@@ -67,23 +83,59 @@ public void start() {
     th = new Thread(this, "IDsMonitor");
     th.setDaemon(true);
     th.start();
+    try {
+      DefaultMetricsSystem.instance().register("IDsGenerators",
+          "Id generators of the namenode", IDsGeneratorFactory.getInstance());
+    } catch (MetricsException ex) {
+      LOG.debug("IDsGenerators metrics are already registered: " + ex);
+    }
+  }
+
+  /**
+   * Wake up the monitor to refill the generators before the next check.
+   */
+  void requestRefill() {
+    synchronized (refillLock) {
+      refillRequested = true;
+      refillLock.notify();
+    }
   }
 
   @Override
   public void run() {
     while (true) {
       getNewIds();
+      try {
+        awaitRefillRequest(checkInterval);
+      } catch (InterruptedException ex) {
+        LOG.warn("IDsMonitor interrupted: " + ex);
+      }
+    }
+  }
+
+  /**
+   * Wait up to timeout milliseconds for a refill request and clear it.
+   *
+   * @return true if a refill was requested
+   */
+  @VisibleForTesting
+  boolean awaitRefillRequest(long timeout) throws InterruptedException {
+    synchronized (refillLock) {
+      long deadline = Time.monotonicNow() + timeout;
+      long remaining = timeout;
+      while (!refillRequested && remaining > 0) {
+        refillLock.wait(remaining);
+        remaining = deadline - Time.monotonicNow();
+      }
+      boolean requested = refillRequested;
+      refillRequested = false;
+      return requested;
     }
   }
 
   private void getNewIds() {
     try {
-
       IDsGeneratorFactory.getInstance().getNewIDs();
-
-      Thread.sleep(checkInterval);
-    } catch (InterruptedException ex) {
-      LOG.warn("IDsMonitor interrupted: " + ex);
     } catch (IOException ex) {
       LOG.warn("IDsMonitor got exception: " + ex);
     }
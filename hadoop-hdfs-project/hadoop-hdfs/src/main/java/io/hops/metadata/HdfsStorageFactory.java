@@ -23,6 +23,7 @@
 import io.hops.exception.StorageInitializtionException;
 import io.hops.log.NDCWrapper;
 import io.hops.resolvingcache.Cache;
+import io.hops.resolvingcache.HotINodeCache;
 import io.hops.metadata.adaptor.BlockInfoDALAdaptor;
 import io.hops.metadata.adaptor.INodeAttributeDALAdaptor;
 import io.hops.metadata.adaptor.INodeDALAdaptor;
@@ -133,6 +134,7 @@ public static StorageConnector getConnector() {
   public static void setConfiguration(Configuration conf) throws IOException {
     IDsMonitor.getInstance().setConfiguration(conf);
     Cache.getInstance(conf);
+    HotINodeCache.setConfiguration(conf);
     LockFactory.getInstance().setConfiguration(conf);
     NDCWrapper.enableNDC(conf.getBoolean(DFSConfigKeys.DFS_NDC_ENABLED_KEY,
         DFSConfigKeys.DFS_NDC_ENABLED_DEFAULT));
@@ -51,6 +51,8 @@ public static Cache getInstance(Configuration conf) throws IOException {
         instance = new PathMemcache();
       }else if(memType.equals("inmemory")){
         instance = new InMemoryCache();
+      }else if(memType.equals("offheap")){
+        instance = new OffHeapCache();
       }else if(memType.equals("optimal")){
         instance = new OptimalMemcache();
       }else {
@@ -161,6 +163,12 @@ public final void delete(final INode inode){
     }
   }
 
+  public final void delete(final int parentId, final String name){
+    if(isStarted){
+      deleteInternal(parentId, name);
+    }
+  }
+
   public final void flush(){
     if(isStarted){
      flushInternal();
@@ -179,6 +187,14 @@ protected abstract void setInternal(final String path, final List<INode>
   protected abstract int[] getInternal(final String path) throws IOException;
   protected abstract void deleteInternal(final String path);
   protected abstract void deleteInternal(final INode inode);
+
+  /**
+   * Remove the entry of a (parent id, name) key. Only the caches local to a
+   * NameNode need to drop the entries invalidated by the other NameNodes.
+   */
+  protected void deleteInternal(final int parentId, final String name){
+  }
+
   protected abstract void flushInternal();
 
   protected abstract int getRoundTrips(String path);
@@ -0,0 +1,299 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.resolvingcache;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.hops.exception.StorageException;
+import io.hops.metadata.HdfsStorageFactory;
+import io.hops.metadata.adaptor.INodeDALAdaptor;
+import io.hops.metadata.hdfs.dal.INodeDataAccess;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.util.Time;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps copies of the root and of configured top level directories so that
+ * INodeLock does not read them from the database when they are only read
+ * committed. The copies are kept by inode id, a copy is served for at most
+ * the lease time after it was read.
+ * <p/>
+ * Only the changes that affect the resolution of paths through a hot inode
+ * invalidate it: its deletion or rename, and changes of its permission,
+ * owner, group or subtree lock. These are found by comparing the changed
+ * inode with the version of the cached copy, the modification time updated
+ * by every create or delete in a hot directory keeps the copy. An
+ * invalidation drops the local copy when the transaction is prepared and
+ * again after it finished, and is sent to the other NameNodes through the
+ * {@link ResolvingCacheInvalidator} once the transaction committed.
+ * <p/>
+ * Every invalidation records the generation at which the inode changed, a
+ * copy read before that generation is not cached. A lost invalidation leaves
+ * a stale copy on another NameNode until its lease ends.
+ */
+public class HotINodeCache {
+  private static final Log LOG = LogFactory.getLog(HotINodeCache.class);
+
+  private static volatile HotINodeCache instance =
+      new HotINodeCache(false, 0, Collections.<String>emptySet());
+
+  private final boolean enabled;
+  private final long lease;
+  private final Set<String> hotPaths;
+
+  // the inode ids of the hot paths as last resolved
+  private final ConcurrentHashMap<String, Integer> pathIds =
+      new ConcurrentHashMap<String, Integer>();
+  private final ConcurrentHashMap<Integer, Entry> entries =
+      new ConcurrentHashMap<Integer, Entry>();
+  // the generation of the last invalidation of each hot inode
+  private final ConcurrentHashMap<Integer, Long> invalidatedAt =
+      new ConcurrentHashMap<Integer, Long>();
+  private final AtomicLong generation = new AtomicLong();
+
+  private final ThreadLocal<List<Integer>> invalidatedInTx =
+      new ThreadLocal<List<Integer>>() {
+        @Override
+        protected List<Integer> initialValue() {
+          return new ArrayList<Integer>();
+        }
+      };
+
+  private static class Entry {
+    private final io.hops.metadata.hdfs.entity.INode row;
+    private final long expiry;
+    // the version of the inode for resolving paths
+    private final int parentId;
+    private final String name;
+    private final String user;
+    private final String group;
+    private final short permission;
+    private final boolean subtreeLocked;
+    private final long subtreeLockOwner;
+
+    private Entry(io.hops.metadata.hdfs.entity.INode row, long expiry,
+        INode inode) {
+      this.row = row;
+      this.expiry = expiry;
+      this.parentId = inode.getParentId();
+      this.name = inode.getLocalName();
+      this.user = inode.getUserName();
+      this.group = inode.getGroupName();
+      this.permission = inode.getFsPermission().toShort();
+      this.subtreeLocked = inode.isSubtreeLocked();
+      this.subtreeLockOwner = inode.getSubtreeLockOwner();
+    }
+
+    private boolean resolvesLike(INode inode) {
+      return parentId == inode.getParentId() &&
+          name.equals(inode.getLocalName()) &&
+          user.equals(inode.getUserName()) &&
+          group.equals(inode.getGroupName()) &&
+          permission == inode.getFsPermission().toShort() &&
+          subtreeLocked == inode.isSubtreeLocked() &&
+          subtreeLockOwner == inode.getSubtreeLockOwner();
+    }
+  }
+
+  HotINodeCache(boolean enabled, long lease, Set<String> hotPaths) {
+    this.enabled = enabled;
+    this.lease = lease;
+    this.hotPaths = hotPaths;
+  }
+  public static void setConfiguration(Configuration conf) {
+    boolean enabled = conf.getBoolean(DFSConfigKeys.DFS_HOT_INODES_ENABLED,
+        DFSConfigKeys.DFS_HOT_INODES_ENABLED_DEFAULT);
+    long lease = conf.getLong(DFSConfigKeys.DFS_HOT_INODES_LEASE,
+        DFSConfigKeys.DFS_HOT_INODES_LEASE_DEFAULT);
+    Set<String> hotPaths = new HashSet<String>();
+    hotPaths.add(Path.SEPARATOR);
+    for (String path : conf.getTrimmedStringCollection(
+        DFSConfigKeys.DFS_HOT_INODES_PATHS)) {
+      // the ancestors are needed to find the ids of the hot directories
+      for (Path p = new Path(path); p != null && !p.isRoot();
+           p = p.getParent()) {
+        hotPaths.add(p.toUri().getPath());
+      }
+    }
+    instance = new HotINodeCache(enabled && lease > 0, lease, hotPaths);
+    if (enabled) {
+      LOG.info("Hot inodes " + hotPaths + " are cached for " + lease + " ms");
+    }
+  }
+
+  public static HotINodeCache getInstance() {
+    return instance;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public boolean isHot(String path) {
+    return enabled && hotPaths.contains(path);
+  }
+
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * @return a copy of the cached inode of the hot path or null if it is not
+   * cached, its lease ended or it is no longer the child of the given parent
+   */
+  public INode get(String path, int parentId, String name)
+      throws StorageException {
+    if (!enabled) {
+      return null;
+    }
+    Integer id = pathIds.get(path);
+    if (id == null) {
+      return null;
+    }
+    Entry entry = entries.get(id);
+    if (entry == null || entry.parentId != parentId ||
+        !entry.name.equals(name) || Time.monotonicNow() >= entry.expiry) {
+      // an expired entry is kept as the version to compare changes with
+      return null;
+    }
+    return getAdaptor().convertDALtoHDFS(entry.row);
+  }
+
+  /**
+   * Cache the inode of the hot path read after the given generation.
+   */
+  public void put(String path, INode inode, long readGeneration)
+      throws StorageException {
+    if (!isHot(path) || inode == null) {
+      return;
+    }
+    int id = inode.getId();
+    pathIds.put(path, id);
+    Entry entry = new Entry(getAdaptor().convertHDFStoDAL(inode),
+        Time.monotonicNow() + lease, inode);
+    entries.put(id, entry);
+    Long changed = invalidatedAt.get(id);
+    if (changed != null && changed > readGeneration) {
+      // the inode changed while it was read
+      entries.remove(id, entry);
+    }
+  }
+
+  /**
+   * Remember the inode of a hot path resolved with a lock that does not allow
+   * caching it, so that its changes are still invalidated.
+   */
+  public void resolved(String path, INode inode) {
+    if (isHot(path) && inode != null) {
+      pathIds.put(path, inode.getId());
+    }
+  }
+
+  /**
+   * @return true if the inode is the inode of a hot path
+   */
+  public boolean isHotINode(int id) {
+    return enabled && pathIds.containsValue(id);
+  }
+
+  /**
+   * @return true if the inode is hot and the change may affect the paths
+   * resolved through it, a hot inode without a cached version is assumed to
+   * be changed
+   */
+  public boolean changesResolution(INode inode) {
+    if (!isHotINode(inode.getId())) {
+      return false;
+    }
+    Entry entry = entries.get(inode.getId());
+    return entry == null || !entry.resolvesLike(inode);
+  }
+
+  /**
+   * Drop the copy of the inode if it is hot, it is dropped again when the
+   * transaction of the calling thread finished.
+   */
+  public void invalidate(int id) {
+    if (!isHotINode(id)) {
+      return;
+    }
+    invalidatedInTx.get().add(id);
+    invalidateId(id);
+  }
+
+  /**
+   * Drop the copies of the inodes invalidated by the transaction of the
+   * calling thread, they might have been read again before it finished.
+   */
+  public void invalidateAfterTransaction() {
+    if (!enabled) {
+      return;
+    }
+    List<Integer> ids = invalidatedInTx.get();
+    if (ids.isEmpty()) {
+      return;
+    }
+    for (int id : ids) {
+      invalidateId(id);
+    }
+    ids.clear();
+  }
+
+  /**
+   * Drop a copy invalidated by another NameNode, which only sends the key of
+   * the changed inode.
+   */
+  void invalidateRemote(int parentId, String name) {
+    if (!enabled) {
+      return;
+    }
+    for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+      if (e.getValue().parentId == parentId &&
+          e.getValue().name.equals(name)) {
+        invalidateId(e.getKey());
+      }
+    }
+  }
+
+  @VisibleForTesting
+  boolean isCached(int id) {
+    return entries.containsKey(id);
+  }
+
+  private void invalidateId(int id) {
+    invalidatedAt.put(id, generation.incrementAndGet());
+    entries.remove(id);
+  }
+
+  private static INodeDALAdaptor getAdaptor() {
+    return (INodeDALAdaptor) HdfsStorageFactory
+        .getDataAccess(INodeDataAccess.class);
+  }
+}
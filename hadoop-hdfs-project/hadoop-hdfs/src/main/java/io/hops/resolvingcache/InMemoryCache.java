@@ -96,6 +96,11 @@ protected void deleteInternal(INode inode) {
     cache.remove(inode.nameParentKey());
   }
 
+  @Override
+  protected void deleteInternal(int parentId, String name) {
+    cache.remove(INode.nameParentKey(parentId, name));
+  }
+
   @Override
   protected void flushInternal() {
     cache.clear();
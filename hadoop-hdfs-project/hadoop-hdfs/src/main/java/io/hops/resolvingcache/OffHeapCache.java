@@ -0,0 +1,385 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.resolvingcache;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An in-memory resolving cache that maps (parent id, name) to inode ids like
+ * {@link InMemoryCache}, but keeps the entries in fixed size open addressing
+ * tables allocated outside of the java heap. Names are stored as 64 bit
+ * hashes, a colliding name is detected by INodeLock when it verifies the
+ * inodes read with the cached ids. Entries are evicted with the CLOCK
+ * algorithm once a table is full, and lookups do not allocate per path
+ * component.
+ */
+public class OffHeapCache extends Cache {
+
+  private static final int SEGMENTS = 64;
+  private static final int SEGMENT_SHIFT = 64 - 6;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private int maxSize;
+  private Segment[] segments;
+
+  private final ThreadLocal<int[]> idsBuffer = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[32];
+    }
+  };
+
+  @Override
+  protected void setConfiguration(Configuration conf) throws IOException {
+    maxSize = conf.getInt(DFSConfigKeys.DFS_OFFHEAP_CACHE_MAX_SIZE,
+        DFSConfigKeys.DFS_OFFHEAP_CACHE_MAX_SIZE_DEFAULT);
+    super.setConfiguration(conf);
+  }
+
+  @Override
+  protected void startInternal() throws IOException {
+    if (segments != null) {
+      return;
+    }
+    int entriesPerSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+    Segment[] newSegments = new Segment[SEGMENTS];
+    for (int i = 0; i < SEGMENTS; i++) {
+      newSegments[i] = new Segment(entriesPerSegment);
+    }
+    segments = newSegments;
+    LOG.info("OffHeapCache allocated " + SEGMENTS + " segments of " +
+        segments[0].capacity + " slots for " + maxSize + " entries (" +
+        (SEGMENTS * (long) segments[0].capacity * Segment.BYTES_PER_SLOT) +
+        " bytes)");
+  }
+
+  @Override
+  protected void stopInternal() {
+  }
+
+  @Override
+  protected void setInternal(String path, List<INode> inodes) {
+    for (INode iNode : inodes) {
+      setInternal(iNode);
+    }
+  }
+
+  @Override
+  protected void setInternal(INode inode) {
+    put(inode.getParentId(), inode.getLocalName(), inode.getId());
+  }
+
+  @Override
+  protected int[] getInternal(String path) throws IOException {
+    if (path == null || !path.startsWith(Path.SEPARATOR)) {
+      throw new AssertionError("Absolute path required");
+    }
+    // trailing separators do not add components, see INode#getPathNames
+    int end = path.length();
+    while (end > 0 && path.charAt(end - 1) == Path.SEPARATOR_CHAR) {
+      end--;
+    }
+    if (end == 0) {
+      return null;
+    }
+
+    int[] inodeIds = idsBuffer.get();
+    if (inodeIds.length < end + 1) {
+      inodeIds = new int[end + 1];
+      idsBuffer.set(inodeIds);
+    }
+
+    int parentId = INodeDirectory.ROOT_PARENT_ID;
+    int index = 0;
+    int start = 0;
+    while (true) {
+      int sep = path.indexOf(Path.SEPARATOR_CHAR, start);
+      if (sep == -1 || sep > end) {
+        sep = end;
+      }
+      int inodeId = get(parentId, path, start, sep);
+      if (inodeId == INode.NON_EXISTING_ID) {
+        break;
+      }
+      inodeIds[index++] = inodeId;
+      parentId = inodeId;
+      if (sep == end) {
+        break;
+      }
+      start = sep + 1;
+    }
+
+    //only the root was found
+    if (index <= 1) {
+      return null;
+    }
+
+    return Arrays.copyOf(inodeIds, index);
+  }
+
+  @Override
+  protected void deleteInternal(String path) {
+    String[] names = INode.getPathNames(path);
+    int parentId = INodeDirectory.ROOT_PARENT_ID;
+    for (int i = 0; i < names.length - 1; i++) {
+      parentId = get(parentId, names[i], 0, names[i].length());
+      if (parentId == INode.NON_EXISTING_ID) {
+        return;
+      }
+    }
+    if (names.length > 0) {
+      remove(parentId, names[names.length - 1]);
+    }
+  }
+
+  @Override
+  protected void deleteInternal(INode inode) {
+    remove(inode.getParentId(), inode.getLocalName());
+  }
+
+  @Override
+  protected void deleteInternal(int parentId, String name) {
+    remove(parentId, name);
+  }
+
+  @Override
+  protected void flushInternal() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  protected int getRoundTrips(String path) {
+    return INode.getPathNames(path).length;
+  }
+
+  @Override
+  protected int getRoundTrips(List<INode> inodes) {
+    return inodes.size();
+  }
+
+  @VisibleForTesting
+  void put(int parentId, String name, int inodeId) {
+    long nameHash = hashName(name, 0, name.length());
+    long hash = hash(parentId, nameHash);
+    segmentFor(hash).put(parentId, nameHash, hash, inodeId);
+  }
+
+  @VisibleForTesting
+  int get(int parentId, CharSequence path, int start, int end) {
+    long nameHash = hashName(path, start, end);
+    long hash = hash(parentId, nameHash);
+    return segmentFor(hash).get(parentId, nameHash, hash);
+  }
+
+  @VisibleForTesting
+  void remove(int parentId, String name) {
+    long nameHash = hashName(name, 0, name.length());
+    long hash = hash(parentId, nameHash);
+    segmentFor(hash).remove(parentId, nameHash, hash);
+  }
+
+  @VisibleForTesting
+  long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  private Segment segmentFor(long hash) {
+    return segments[(int) (hash >>> SEGMENT_SHIFT)];
+  }
+
+  /**
+   * 64 bit FNV-1a hash of the characters in [start, end).
+   */
+  private static long hashName(CharSequence chars, int start, int end) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = start; i < end; i++) {
+      hash ^= chars.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  private static long hash(int parentId, long nameHash) {
+    long h = nameHash ^ (parentId * 0x9e3779b97f4a7c15L);
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * A linear probing table. Every slot holds the name hash and the parent
+   * and inode ids packed in a long, plus a state byte that carries the
+   * reference bit used by the CLOCK eviction.
+   */
+  private static final class Segment {
+    private static final int BYTES_PER_SLOT = 2 * 8 + 1;
+
+    private static final byte EMPTY = 0;
+    private static final byte PRESENT = 1;
+    private static final byte REFERENCED = 2;
+
+    private final int capacity;
+    private final int mask;
+    private final int maxEntries;
+    private final LongBuffer keys;
+    private final ByteBuffer states;
+    private int size;
+    private int clockHand;
+
+    private Segment(int maxEntries) {
+      long minCapacity = Math.max(16, (long) (maxEntries / LOAD_FACTOR) + 1);
+      long capacity = Long.highestOneBit(minCapacity - 1) << 1;
+      if (capacity * 2 * 8 > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException(
+            "OffHeapCache segment too large for " + maxEntries + " entries");
+      }
+      this.capacity = (int) capacity;
+      this.mask = this.capacity - 1;
+      this.maxEntries = maxEntries;
+      this.keys = ByteBuffer.allocateDirect(this.capacity * 2 * 8)
+          .asLongBuffer();
+      this.states = ByteBuffer.allocateDirect(this.capacity);
+    }
+
+    synchronized int get(int parentId, long nameHash, long hash) {
+      int slot = findSlot(parentId, nameHash, hash);
+      if (states.get(slot) == EMPTY) {
+        return INode.NON_EXISTING_ID;
+      }
+      states.put(slot, REFERENCED);
+      return inodeId(keys.get(2 * slot + 1));
+    }
+
+    synchronized void put(int parentId, long nameHash, long hash,
+        int inodeId) {
+      int slot = findSlot(parentId, nameHash, hash);
+      if (states.get(slot) == EMPTY) {
+        if (size >= maxEntries) {
+          evict();
+          // the eviction might have shifted entries
+          slot = findSlot(parentId, nameHash, hash);
+        }
+        states.put(slot, PRESENT);
+        size++;
+      }
+      keys.put(2 * slot, nameHash);
+      keys.put(2 * slot + 1,
+          ((long) parentId << 32) | (inodeId & 0xffffffffL));
+    }
+
+    synchronized void remove(int parentId, long nameHash, long hash) {
+      int slot = findSlot(parentId, nameHash, hash);
+      if (states.get(slot) != EMPTY) {
+        removeAt(slot);
+      }
+    }
+
+    synchronized void clear() {
+      for (int i = 0; i < capacity; i++) {
+        states.put(i, EMPTY);
+      }
+      size = 0;
+      clockHand = 0;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    /**
+     * @return the slot holding the key or the empty slot ending its probe
+     * sequence. The table always has empty slots as maxEntries < capacity.
+     */
+    private int findSlot(int parentId, long nameHash, long hash) {
+      int slot = (int) hash & mask;
+      while (states.get(slot) != EMPTY) {
+        if (keys.get(2 * slot) == nameHash &&
+            parentId(keys.get(2 * slot + 1)) == parentId) {
+          return slot;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private void evict() {
+      while (true) {
+        int slot = clockHand;
+        clockHand = (clockHand + 1) & mask;
+        byte state = states.get(slot);
+        if (state == REFERENCED) {
+          states.put(slot, PRESENT);
+        } else if (state == PRESENT) {
+          removeAt(slot);
+          return;
+        }
+      }
+    }
+
+    /**
+     * Backward shift deletion, moves the following entries of the probe
+     * sequence into the hole so that no tombstones are needed.
+     */
+    private void removeAt(int slot) {
+      int hole = slot;
+      int next = (hole + 1) & mask;
+      while (states.get(next) != EMPTY) {
+        long nameHash = keys.get(2 * next);
+        long ids = keys.get(2 * next + 1);
+        int home = (int) hash(parentId(ids), nameHash) & mask;
+        if (((next - home) & mask) >= ((next - hole) & mask)) {
+          keys.put(2 * hole, nameHash);
+          keys.put(2 * hole + 1, ids);
+          states.put(hole, states.get(next));
+          hole = next;
+        }
+        next = (next + 1) & mask;
+      }
+      states.put(hole, EMPTY);
+      size--;
+    }
+
+    private static int parentId(long ids) {
+      return (int) (ids >>> 32);
+    }
+
+    private static int inodeId(long ids) {
+      return (int) ids;
+    }
+  }
+}
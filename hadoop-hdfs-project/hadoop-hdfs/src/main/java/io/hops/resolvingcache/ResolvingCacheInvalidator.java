@@ -0,0 +1,318 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.resolvingcache;
+
+import io.hops.leader_election.node.ActiveNode;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcasts the (parent id, name) keys of removed and renamed inodes to the
+ * other active NameNodes so that their local resolving caches drop the stale
+ * entries. The keys of a transaction are dropped locally when it is prepared
+ * and again after it finished, and are only sent once it committed, so that
+ * the other NameNodes do not read the old rows again after dropping them.
+ * <p/>
+ * A NameNode receives the keys as UDP datagrams on the port number of its
+ * RPC server, which the active namenode list advertises to its peers, and
+ * only accepts datagrams sent from the address and port of an active
+ * NameNode. A lost datagram only leaves a stale entry behind, which
+ * INodeLock detects when it verifies the inodes read with the cached ids.
+ */
+public class ResolvingCacheInvalidator {
+  private static final Log LOG =
+      LogFactory.getLog(ResolvingCacheInvalidator.class);
+
+  private static final List<ResolvingCacheInvalidator> invalidators =
+      new CopyOnWriteArrayList<ResolvingCacheInvalidator>();
+
+  private static final byte VERSION = 1;
+  private static final int MAX_PAYLOAD = 1400;
+  private static final int MAX_DATAGRAM = 64 * 1024;
+
+  private static final ThreadLocal<List<Invalidation>> invalidatedInTx =
+      new ThreadLocal<List<Invalidation>>() {
+        @Override
+        protected List<Invalidation> initialValue() {
+          return new ArrayList<Invalidation>();
+        }
+      };
+
+  private final NameNode nameNode;
+  private final long namenodeId;
+  private int port;
+  private final BlockingQueue<Invalidation> pending =
+      new LinkedBlockingQueue<Invalidation>();
+  private DatagramSocket socket;
+  private Thread sender;
+  private Thread receiver;
+  private volatile boolean running;
+
+  private static class Invalidation {
+    private final int parentId;
+    private final byte[] name;
+
+    private Invalidation(int parentId, byte[] name) {
+      this.parentId = parentId;
+      this.name = name;
+    }
+
+    private int size() {
+      return 4 + 2 + name.length;
+    }
+  }
+
+  /**
+   * Must be created once the RPC server of the NameNode is bound.
+   */
+  public ResolvingCacheInvalidator(NameNode nameNode) {
+    this(nameNode, nameNode.getId(), nameNode.getNameNodeAddress().getPort());
+  }
+
+  @VisibleForTesting
+  ResolvingCacheInvalidator(NameNode nameNode, long namenodeId, int port) {
+    this.nameNode = nameNode;
+    this.namenodeId = namenodeId;
+    this.port = port;
+  }
+
+  /**
+   * Drop the entry of the given key from the local resolving cache. The key is dropped again and sent to the other NameNodes by
+   * {@link #afterTransaction} once the transaction of the calling thread
+   * committed.
+   */
+  public static void invalidate(int parentId, String name) {
+    Cache.getInstance().delete(parentId, name);
+    invalidatedInTx.get()
+        .add(new Invalidation(parentId, DFSUtil.string2Bytes(name)));
+  }
+
+  /**
+   * Drop the keys invalidated by the transaction of the calling thread from
+   * the local resolving cache, they might have been read again before the
+   * transaction finished, and send them to the other NameNodes if it
+   * committed.
+   */
+  public static void afterTransaction(boolean committed) {
+    List<Invalidation> invalidations = invalidatedInTx.get();
+    if (invalidations.isEmpty()) {
+      return;
+    }
+    try {
+      Cache cache = Cache.getInstance();
+      for (Invalidation invalidation : invalidations) {
+        cache.delete(invalidation.parentId,
+            DFSUtil.bytes2String(invalidation.name));
+      }
+      if (committed) {
+        for (ResolvingCacheInvalidator invalidator : invalidators) {
+          invalidator.pending.addAll(invalidations);
+        }
+      }
+    } finally {
+      invalidations.clear();
+    }
+  }
+
+  public void start() throws SocketException {
+    socket = new DatagramSocket(port);
+    port = socket.getLocalPort();
+    running = true;
+
+    sender = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        sendInvalidations();
+      }
+    }, "ResolvingCacheInvalidator sender");
+    sender.setDaemon(true);
+    sender.start();
+
+    receiver = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        receiveInvalidations();
+      }
+    }, "ResolvingCacheInvalidator receiver");
+    receiver.setDaemon(true);
+    receiver.start();
+
+    invalidators.add(this);
+    LOG.info("Resolving cache invalidations are exchanged on port " + port);
+  }
+
+  public void stop() {
+    invalidators.remove(this);
+    running = false;
+    if (socket != null) {
+      socket.close();
+    }
+    if (sender != null) {
+      sender.interrupt();
+    }
+  }
+
+  private void sendInvalidations() {
+    List<Invalidation> batch = new ArrayList<Invalidation>();
+    while (running) {
+      try {
+        Invalidation first = pending.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        pending.drainTo(batch);
+
+        List<InetSocketAddress> peers = getPeers();
+        if (!peers.isEmpty()) {
+          for (byte[] payload : encode(batch)) {
+            for (InetSocketAddress peer : peers) {
+              socket.send(new DatagramPacket(payload, payload.length, peer));
+            }
+          }
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Sent " + batch.size() + " invalidations to " +
+                peers.size() + " namenodes");
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (IOException e) {
+        if (running) {
+          LOG.warn("Failed to send resolving cache invalidations", e);
+        }
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void receiveInvalidations() {
+    byte[] buffer = new byte[MAX_DATAGRAM];
+    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+    while (running) {
+      try {
+        packet.setLength(buffer.length);
+        socket.receive(packet);
+        if (!isActiveNameNode(packet.getAddress(), packet.getPort())) {
+          LOG.debug("Ignoring invalidations from " +
+              packet.getSocketAddress());
+          continue;
+        }
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(buffer, 0, packet.getLength()));
+        if (in.readByte() != VERSION) {
+          continue;
+        }
+        while (in.available() > 0) {
+          int parentId = in.readInt();
+          byte[] name = new byte[in.readUnsignedShort()];
+          in.readFully(name);
+          received(parentId, DFSUtil.bytes2String(name));
+        }
+      } catch (IOException e) {
+        if (running) {
+          LOG.warn("Failed to receive resolving cache invalidations", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Drop a key invalidated by another NameNode.
+   */
+  @VisibleForTesting
+  void received(int parentId, String name) {
+    Cache.getInstance().delete(parentId, name);
+    HotINodeCache.getInstance().invalidateRemote(parentId, name);
+  }
+
+  @VisibleForTesting
+  int getPort() {
+    return port;
+  }
+
+  @VisibleForTesting
+  List<ActiveNode> getActiveNameNodes() {
+    return nameNode.getActiveNameNodes().getActiveNodes();
+  }
+
+  private List<byte[]> encode(List<Invalidation> batch) throws IOException {
+    List<byte[]> payloads = new ArrayList<byte[]>();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_PAYLOAD);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(VERSION);
+    for (Invalidation invalidation : batch) {
+      if (out.size() > 1 && out.size() + invalidation.size() > MAX_PAYLOAD) {
+        out.flush();
+        payloads.add(bytes.toByteArray());
+        bytes.reset();
+        out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+      }
+      out.writeInt(invalidation.parentId);
+      out.writeShort(invalidation.name.length);
+      out.write(invalidation.name);
+    }
+    out.flush();
+    payloads.add(bytes.toByteArray());
+    return payloads;
+  }
+
+  private List<InetSocketAddress> getPeers() {
+    List<InetSocketAddress> peers = new ArrayList<InetSocketAddress>();
+    for (ActiveNode namenode : getActiveNameNodes()) {
+      if (namenode.getId() != namenodeId) {
+        peers.add(new InetSocketAddress(namenode.getIpAddress(),
+            namenode.getPort()));
+      }
+    }
+    return peers;
+  }
+
+  private boolean isActiveNameNode(InetAddress address, int senderPort) {
+    for (ActiveNode namenode : getActiveNameNodes()) {
+      if (senderPort == namenode.getPort() &&
+          address.getHostAddress().equals(namenode.getIpAddress())) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -23,6 +23,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.BlockChecksumDataAccess;
 import io.hops.metadata.hdfs.entity.BlockChecksum;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 
 import java.util.Collection;
@@ -80,6 +81,7 @@ public Collection<BlockChecksum> findList(FinderType<BlockChecksum> finder,
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     for (BlockChecksum blockChecksum : getAdded()) {
       dataAccess.add(blockChecksum);
     }
@@ -25,6 +25,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.BlockInfoDataAccess;
 import io.hops.metadata.hdfs.entity.INodeCandidatePrimaryKey;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
 import org.apache.hadoop.hdfs.server.namenode.INode;
@@ -87,6 +88,7 @@ public void remove(BlockInfo blockInfo) throws TransactionContextException {
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     Collection<BlockInfo> removed = new ArrayList<BlockInfo>(getRemoved());
     removed.addAll(concatRemovedBlks);
     dataAccess.prepare(removed, getAdded(), getModified());
@@ -24,6 +24,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.CorruptReplicaDataAccess;
 import io.hops.metadata.hdfs.entity.CorruptReplica;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 
 import java.util.Arrays;
@@ -59,6 +60,7 @@ public void remove(CorruptReplica hopCorruptReplica)
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     dataAccess.prepare(getRemoved(), getAdded(), getModified());
   }
 
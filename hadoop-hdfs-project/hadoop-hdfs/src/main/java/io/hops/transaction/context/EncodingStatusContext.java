@@ -24,6 +24,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.EncodingStatusDataAccess;
 import io.hops.metadata.hdfs.entity.EncodingStatus;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 
 import java.util.HashMap;
@@ -105,6 +106,7 @@ public int count(CounterType<EncodingStatus> counter, Object... params)
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     for (EncodingStatus status : getAdded()) {
       dataAccess.add(status);
     }
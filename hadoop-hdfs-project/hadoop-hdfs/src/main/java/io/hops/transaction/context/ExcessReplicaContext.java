@@ -23,6 +23,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.ExcessReplicaDataAccess;
 import io.hops.metadata.hdfs.entity.ExcessReplica;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 
 import java.util.Arrays;
@@ -84,6 +85,7 @@ public Collection<ExcessReplica> findList(FinderType<ExcessReplica> finder,
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     dataAccess.prepare(getRemoved(), getAdded(), getModified());
   }
 
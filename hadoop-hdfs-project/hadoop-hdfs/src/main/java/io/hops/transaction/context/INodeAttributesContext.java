@@ -23,6 +23,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.INodeAttributesDataAccess;
 import io.hops.metadata.hdfs.entity.INodeCandidatePrimaryKey;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
 import org.apache.hadoop.hdfs.server.namenode.INode;
@@ -86,6 +87,7 @@ public Collection<INodeAttributes> findList(
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     Collection<INodeAttributes> modified =
         new ArrayList<INodeAttributes>(getModified());
     modified.addAll(getAdded());
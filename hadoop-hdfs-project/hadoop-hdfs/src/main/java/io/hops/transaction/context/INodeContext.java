@@ -25,6 +25,9 @@
 import io.hops.exception.TransactionContextException;
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.INodeDataAccess;
+import io.hops.resolvingcache.HotINodeCache;
+import io.hops.resolvingcache.ResolvingCacheInvalidator;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.BaseINodeLock;
 import io.hops.transaction.lock.Lock;
 import io.hops.transaction.lock.TransactionLockTypes;
@@ -37,7 +40,6 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -72,6 +74,8 @@ public INode find(FinderType<INode> finder, Object... params)
         return findByInodeId(iFinder, params);
       case ByNameAndParentId:
         return findByNameAndParentId(iFinder, params);
+      case ByCachedCopy:
+        return findByCachedCopy(iFinder, params);
     }
     throw new RuntimeException(UNSUPPORTED_FINDER);
   }
@@ -108,6 +112,7 @@ public void update(INode iNode) throws TransactionContextException {
   @Override
   public void prepare(TransactionLocks lks)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
 
     // if the list is not empty then check for the lock types
     // lock type is checked after when list length is checked
@@ -152,6 +157,22 @@ public void prepare(TransactionLocks lks)
 
 
     dataAccess.prepare(removed, added, modified);
+
+    // removed and renamed inodes leave stale keys in the resolving caches,
+    // the other NameNodes are told once the transaction committed
+    HotINodeCache hotINodes = HotINodeCache.getInstance();
+    for (INode inode : removed) {
+      ResolvingCacheInvalidator.invalidate(inode.getParentId(),
+          inode.getLocalName());
+      hotINodes.invalidate(inode.getId());
+    }
+    for (INode inode : modified) {
+      if (hotINodes.changesResolution(inode)) {
+        ResolvingCacheInvalidator.invalidate(inode.getParentId(),
+            inode.getLocalName());
+        hotINodes.invalidate(inode.getId());
+      }
+    }
   }
 
   @Override
@@ -247,6 +268,30 @@ private INode findByNameAndParentId(INode.Finder inodeFinder, Object[] params)
     return result;
   }
 
+  /**
+   * Use the given copy of an inode that was read by an earlier transaction
+   * unless this transaction already has the inode.
+   */
+  private INode findByCachedCopy(INode.Finder inodeFinder, Object[] params)
+      throws TransactionContextException {
+    final INode copy = (INode) params[0];
+    final String nameParentKey = copy.nameParentKey();
+    INode result;
+    if (inodesNameParentIndex.containsKey(nameParentKey)) {
+      result = inodesNameParentIndex.get(nameParentKey);
+    } else if (contains(copy.getId())) {
+      result = get(copy.getId());
+      inodesNameParentIndex.put(nameParentKey, result);
+    } else {
+      result = copy;
+      gotFromDB(copy.getId(), copy);
+      inodesNameParentIndex.put(nameParentKey, copy);
+    }
+    hit(inodeFinder, result, "name", copy.getLocalName(), "pid",
+        copy.getParentId());
+    return result;
+  }
+
   private List<INode> findByParentId(INode.Finder inodeFinder, Object[] params)
       throws TransactionContextException, StorageException {
     final Integer parentId = (Integer) params[0];
@@ -306,9 +351,14 @@ private List<INode> findBatchWithLocalCacheCheck(INode.Finder inodeFinder,
     }else{
       List<INode> batch = findBatch(inodeFinder, namesRest.toArray(new
           String[namesRest.size()]), Ints.toArray(parentIdsRest));
-      Iterator<INode> batchIterator = batch.listIterator();
+      // the batch does not contain the inodes that do not exist
+      Map<String, INode> batchIndex = new HashMap<String, INode>();
+      for (INode node : batch) {
+        batchIndex.put(node.nameParentKey(), node);
+      }
       for(Integer i : unpopulatedIndeces){
-        result.set(i, batchIterator.next());
+        result.set(i, batchIndex.get(
+            INode.nameParentKey(parentIds[i], names[i])));
       }
       return result;
     }
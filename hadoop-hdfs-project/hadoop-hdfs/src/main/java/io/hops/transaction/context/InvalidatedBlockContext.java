@@ -23,6 +23,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.InvalidateBlockDataAccess;
 import io.hops.metadata.hdfs.entity.InvalidatedBlock;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 
 import java.util.ArrayList;
@@ -91,6 +92,7 @@ public Collection<InvalidatedBlock> findList(
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     dataAccess.prepare(getRemoved(), getAdded(), getModified());
   }
 
@@ -23,6 +23,7 @@
 import io.hops.metadata.common.CounterType;
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.LeaseDataAccess;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 import org.apache.hadoop.hdfs.server.namenode.Lease;
 
@@ -80,6 +81,7 @@ public void remove(Lease lease) throws TransactionContextException {
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     dataAccess.prepare(getRemoved(), getAdded(), getModified());
   }
 
@@ -24,6 +24,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.LeasePathDataAccess;
 import io.hops.metadata.hdfs.entity.LeasePath;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 
 import java.util.ArrayList;
@@ -91,6 +92,7 @@ public Collection<LeasePath> findList(FinderType<LeasePath> finder,
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     dataAccess.prepare(getRemoved(), getAdded(), getModified());
   }
 
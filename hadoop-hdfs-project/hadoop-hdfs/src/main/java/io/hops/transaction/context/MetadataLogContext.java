@@ -20,6 +20,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.MetadataLogDataAccess;
 import io.hops.metadata.hdfs.entity.MetadataLogEntry;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 
 import java.util.ArrayList;
@@ -96,6 +97,7 @@ Key getKey(MetadataLogEntry metadataLogEntry) {
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     for (MetadataLogEntry existingEntry : existing) {
       MetadataLogEntry cached = get(getKey(existingEntry));
       cached.incrementLogicalTime();
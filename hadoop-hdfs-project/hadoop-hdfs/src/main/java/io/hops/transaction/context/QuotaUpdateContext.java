@@ -23,6 +23,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.QuotaUpdateDataAccess;
 import io.hops.metadata.hdfs.entity.QuotaUpdate;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 
 import java.util.ArrayList;
@@ -37,6 +38,8 @@
   private final QuotaUpdateDataAccess<QuotaUpdate> dataAccess;
   private final Map<Integer, List<QuotaUpdate>> inodeIdToQuotaUpdates =
       new HashMap<Integer, List<QuotaUpdate>>();
+  private final Map<Integer, QuotaUpdate> addedByInodeId =
+      new HashMap<Integer, QuotaUpdate>();
 
   public QuotaUpdateContext(QuotaUpdateDataAccess<QuotaUpdate> dataAccess) {
     this.dataAccess = dataAccess;
@@ -45,7 +48,17 @@ public QuotaUpdateContext(QuotaUpdateDataAccess<QuotaUpdate> dataAccess) {
   @Override
   public void update(QuotaUpdate quotaUpdate)
       throws TransactionContextException {
+    // Coalesce the updates of an inode added by the same transaction into a
+    // single row, e.g. one per parent when many files are created at once
+    QuotaUpdate added = addedByInodeId.get(quotaUpdate.getInodeId());
+    if (added != null && added.getId() != quotaUpdate.getId() &&
+        contains(added.getId())) {
+      quotaUpdate = new QuotaUpdate(added.getId(), added.getInodeId(),
+          added.getNamespaceDelta() + quotaUpdate.getNamespaceDelta(),
+          added.getDiskspaceDelta() + quotaUpdate.getDiskspaceDelta());
+    }
     super.update(quotaUpdate);
+    addedByInodeId.put(quotaUpdate.getInodeId(), quotaUpdate);
     log("added-quotaUpdate", "id", quotaUpdate.getId(), "inodeId", quotaUpdate.getInodeId(), "dsDeltea",quotaUpdate.getDiskspaceDelta(),"nsDelta",quotaUpdate.getNamespaceDelta());
   }
 
@@ -58,6 +71,10 @@ public void remove(QuotaUpdate quotaUpdate)
       }
     }
     super.remove(quotaUpdate);
+    if (quotaUpdate != null &&
+        addedByInodeId.get(quotaUpdate.getInodeId()) == quotaUpdate) {
+      addedByInodeId.remove(quotaUpdate.getInodeId());
+    }
     log("removed-quotaUpdate", "id", quotaUpdate.getId());
   }
 
@@ -75,6 +92,7 @@ public Collection<QuotaUpdate> findList(FinderType<QuotaUpdate> finder,
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     Collection<QuotaUpdate> modified =
         new ArrayList<QuotaUpdate>(getModified());
     modified.addAll(getAdded());
@@ -85,6 +103,7 @@ public void prepare(TransactionLocks tlm)
   public void clear() throws TransactionContextException {
     super.clear();
     inodeIdToQuotaUpdates.clear();
+    addedByInodeId.clear();
   }
 
   @Override
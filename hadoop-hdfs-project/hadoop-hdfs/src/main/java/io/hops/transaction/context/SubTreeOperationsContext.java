@@ -24,6 +24,7 @@
 import io.hops.metadata.common.FinderType;
 import io.hops.metadata.hdfs.dal.OngoingSubTreeOpsDataAccess;
 import io.hops.metadata.hdfs.entity.SubTreeOperation;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.lock.TransactionLocks;
 import java.util.ArrayList;
 
@@ -81,6 +82,7 @@ public Collection<SubTreeOperation> findList(FinderType<SubTreeOperation> finder
   @Override
   public void prepare(TransactionLocks tlm)
       throws TransactionContextException, StorageException {
+    HopsTransactionalRequestHandler.beforeCommit();
     dataAccess.prepare(getRemoved(), getAdded(), getModified());
   }
 
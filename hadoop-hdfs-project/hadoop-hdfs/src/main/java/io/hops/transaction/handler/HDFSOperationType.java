@@ -27,6 +27,7 @@ public enum HDFSOperationType implements OperationType {
   SET_OWNER,
   SET_OWNER_SUBTREE,
   GET_BLOCK_LOCATIONS,
+  GET_BATCHED_BLOCK_LOCATIONS,
   GET_STATS,
   CONCAT,
   SET_TIMES,
@@ -45,12 +46,14 @@ public enum HDFSOperationType implements OperationType {
   RENAME,
   DELETE,
   GET_FILE_INFO,
+  GET_FILE_INFOS,
   MKDIRS,
   GET_CONTENT_SUMMARY,
   SET_QUOTA,
   FSYNC,
   COMMIT_BLOCK_SYNCHRONIZATION,
   RENEW_LEASE,
+  FLUSH_LEASE_RENEWALS,
   GET_LISTING,
   REGISTER_DATANODE,
   HANDLE_HEARTBEAT,
@@ -268,6 +271,7 @@ public enum HDFSOperationType implements OperationType {
   SUBTREE_PERMISSION_CHECK,
   SUBTREE_RENAME,
   SUBTREE_DELETE,
+  SUBTREE_DELETE_BATCH,
   SUBTREE_DEPRICATED_RENAME,
   SUBTREE_SETPERMISSION,
   GET_SUBTREE_ATTRIBUTES,
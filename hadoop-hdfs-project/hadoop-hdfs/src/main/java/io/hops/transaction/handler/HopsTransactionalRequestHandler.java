@@ -15,18 +15,55 @@
  */
 package io.hops.transaction.handler;
 
+import io.hops.resolvingcache.HotINodeCache;
+import io.hops.resolvingcache.ResolvingCacheInvalidator;
 import io.hops.transaction.TransactionInfo;
 import io.hops.transaction.lock.HdfsTransactionalLockAcquirer;
 import io.hops.transaction.lock.TransactionLockAcquirer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.protocol.RecoveryInProgressException;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.util.Time;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class HopsTransactionalRequestHandler
     extends TransactionalRequestHandler {
 
+  private static final Log LOG =
+      LogFactory.getLog(HopsTransactionalRequestHandler.class);
+
+  private static volatile long slowTransactionThreshold =
+      DFSConfigKeys.DFS_NAMENODE_SLOW_TRANSACTION_THRESHOLD_DEFAULT;
+  private static volatile long slowTransactionLogInterval =
+      DFSConfigKeys.DFS_NAMENODE_SLOW_TRANSACTION_LOG_INTERVAL_DEFAULT;
+  private static final AtomicLong lastSlowTransactionLog = new AtomicLong();
+  private static final AtomicInteger unloggedSlowTransactions =
+      new AtomicInteger();
+  // the handler running a transaction in the thread, for beforeCommit
+  private static final ThreadLocal<HopsTransactionalRequestHandler> running =
+      new ThreadLocal<HopsTransactionalRequestHandler>();
+
+  private final HDFSOperationType opType;
   private final String path;
+
+  // times in microseconds, summed over all attempts of an execution
+  private int attempts;
+  private long setUpTime;
+  private long lockTime;
+  private long taskTime;
+  private long commitTime;
+  private HdfsTransactionalLockAcquirer lockAcquirer;
+  // System.nanoTime() at the start of the commit of the current attempt
+  private long commitStart;
+  private boolean committing;
   
   public HopsTransactionalRequestHandler(HDFSOperationType opType) {
     this(opType, null);
@@ -35,18 +72,95 @@ public HopsTransactionalRequestHandler(HDFSOperationType opType) {
   public HopsTransactionalRequestHandler(HDFSOperationType opType,
       String path) {
     super(opType);
+    this.opType = opType;
     this.path = path;
   }
 
+  public static void setConfiguration(Configuration conf) {
+    slowTransactionThreshold =
+        conf.getLong(DFSConfigKeys.DFS_NAMENODE_SLOW_TRANSACTION_THRESHOLD_KEY,
+            DFSConfigKeys.DFS_NAMENODE_SLOW_TRANSACTION_THRESHOLD_DEFAULT);
+    slowTransactionLogInterval = conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_SLOW_TRANSACTION_LOG_INTERVAL_KEY,
+        DFSConfigKeys.DFS_NAMENODE_SLOW_TRANSACTION_LOG_INTERVAL_DEFAULT);
+    HdfsTransactionalLockAcquirer.setSamplingRate(
+        conf.getInt(DFSConfigKeys.DFS_NAMENODE_LOCK_METRICS_SAMPLING_KEY,
+            DFSConfigKeys.DFS_NAMENODE_LOCK_METRICS_SAMPLING_DEFAULT));
+  }
+
   @Override
   protected TransactionLockAcquirer newLockAcquirer() {
-    return new HdfsTransactionalLockAcquirer();
+    lockAcquirer = new HdfsTransactionalLockAcquirer();
+    return lockAcquirer;
+  }
+
+  /**
+   * Called by the entity contexts of HopsFS when the commit of the transaction
+   * running in the calling thread prepares them. The first call ends the
+   * task of the current attempt and starts its commit.
+   */
+  public static void beforeCommit() {
+    HopsTransactionalRequestHandler handler = running.get();
+    if (handler != null) {
+      handler.startCommit();
+    }
+  }
+
+  private void startCommit() {
+    // contexts prepared by a transaction nested in setUp are not ours
+    if (committing || lockAcquirer == null || !lockAcquirer.isAcquired()) {
+      return;
+    }
+    commitStart = System.nanoTime();
+    committing = true;
+    taskTime += (commitStart - lockAcquirer.getAcquisitionEnd()) / 1000;
+  }
+
+  private void endCommit() {
+    if (committing) {
+      commitTime += (System.nanoTime() - commitStart) / 1000;
+      committing = false;
+    }
+  }
+
+  /**
+   * Adds the lock acquisition of the last attempt to the lock time.
+   */
+  private void endAttempt() {
+    if (lockAcquirer != null) {
+      lockTime += lockAcquirer.getAcquisitionTime();
+    }
+    committing = false;
   }
 
   
   @Override
   protected Object execute(final Object namesystem) throws IOException {
+    attempts = 0;
+    setUpTime = 0;
+    lockTime = 0;
+    taskTime = 0;
+    commitTime = 0;
+    lockAcquirer = null;
+    committing = false;
+    HopsTransactionalRequestHandler outer = running.get();
+    running.set(this);
+    long start = System.nanoTime();
+    boolean committed = false;
+    try {
+      Object result = executeTransaction(namesystem);
+      committed = true;
+      return result;
+    } finally {
+      running.set(outer);
+      ResolvingCacheInvalidator.afterTransaction(committed);
+      HotINodeCache.getInstance().invalidateAfterTransaction();
+      recordTransaction((System.nanoTime() - start) / 1000);
+    }
+  }
 
+  private Object executeTransaction(final Object namesystem)
+      throws IOException {
     return super.execute(new TransactionInfo() {
       @Override
       public String getContextName(OperationType opType) {
@@ -60,6 +174,7 @@ public String getContextName(OperationType opType) {
 
       @Override
       public void performPostTransactionAction() throws IOException {
+        endCommit();
         if (namesystem != null && namesystem instanceof FSNamesystem) {
           ((FSNamesystem) namesystem).performPendingSafeModeOperation();
         }
@@ -69,7 +184,61 @@ public void performPostTransactionAction() throws IOException {
 
   @Override
   protected final void preTransactionSetup() throws IOException {
-    setUp();
+    endAttempt();
+    lockAcquirer = null;
+    attempts++;
+    long start = System.nanoTime();
+    try {
+      setUp();
+    } finally {
+      setUpTime += (System.nanoTime() - start) / 1000;
+    }
+  }
+
+  private void recordTransaction(long latency) {
+    String lockDescription = null;
+    NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    endAttempt();
+    if (lockAcquirer != null) {
+      lockDescription = lockAcquirer.describeAcquisition();
+      if (metrics != null) {
+        lockAcquirer.recordAcquisitionTimes(metrics);
+      }
+      lockAcquirer = null;
+    }
+    if (metrics != null) {
+      metrics.addTransaction(opType.toString(), latency, setUpTime, lockTime,
+          taskTime, commitTime, attempts);
+    }
+    if (slowTransactionThreshold > 0 &&
+        latency >= slowTransactionThreshold * 1000) {
+      logSlowTransaction(latency, lockDescription);
+    }
+  }
+
+  /**
+   * Log the breakdown of a slow transaction. At most one transaction is
+   * logged per slow transaction log interval, the others are counted. The
+   * time not in any phase was spent in failed commits, rollbacks and
+   * between retries.
+   */
+  private void logSlowTransaction(long latency, String lockDescription) {
+    long now = Time.monotonicNow();
+    long last = lastSlowTransactionLog.get();
+    if ((last != 0 && now - last < slowTransactionLogInterval) ||
+        !lastSlowTransactionLog.compareAndSet(last, now)) {
+      unloggedSlowTransactions.incrementAndGet();
+      return;
+    }
+    int unlogged = unloggedSlowTransactions.getAndSet(0);
+    LOG.warn("Slow transaction " + opType +
+        (path != null ? " on " + path : "") + " took " + latency / 1000 +
+        " ms in " + attempts + " attempt(s): setUp " + setUpTime +
+        " us, locks and reads " + lockTime + " us [" + lockDescription +
+        "], task " + taskTime + " us, commit " + commitTime + " us, other " +
+        (latency - setUpTime - lockTime - taskTime - commitTime) + " us" +
+        (unlogged > 0 ? ". " + unlogged + " slow transactions were not " +
+            "logged since the previous one" : ""));
   }
 
   public void setUp() throws IOException {
@@ -27,10 +27,17 @@
 
 public class BatchedINodeLock extends BaseINodeLock {
 
+  private final TransactionLockTypes.INodeLockType lockType;
   private final List<INodeIdentifier> inodeIdentifiers;
   private int[] inodeIds;
 
   public BatchedINodeLock(List<INodeIdentifier> inodeIdentifiers) {
+    this(DEFAULT_INODE_LOCK_TYPE, inodeIdentifiers);
+  }
+
+  public BatchedINodeLock(TransactionLockTypes.INodeLockType lockType,
+      List<INodeIdentifier> inodeIdentifiers) {
+    this.lockType = lockType;
     this.inodeIdentifiers = inodeIdentifiers;
     inodeIds = new int[inodeIdentifiers.size()];
   }
@@ -47,7 +54,16 @@ protected void acquire(TransactionLocks locks) throws IOException {
         inodeIds[i] = inodeIdentifier.getInodeId();
       }
 
-      find(DEFAULT_INODE_LOCK_TYPE, names, parentIds, false);
+      List<INode> inodes = find(lockType, names, parentIds, false);
+      if (inodes != null) {
+        // expose the batch to the locks that work on the resolved inodes,
+        // e.g. the lease lock of files under construction
+        for (INode inode : inodes) {
+          if (inode != null) {
+            addIndividualINode(inode);
+          }
+        }
+      }
     } else {
       throw new StorageException(
           "INodeIdentifier object is not properly initialized ");
@@ -15,22 +15,137 @@
  */
 package io.hops.transaction.lock;
 
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 public final class HdfsTransactionalLockAcquirer
     extends TransactionLockAcquirer {
 
+  // every how many transactions of a thread the lock classes are recorded
+  private static volatile int samplingRate =
+      DFSConfigKeys.DFS_NAMENODE_LOCK_METRICS_SAMPLING_DEFAULT;
+  private static final ThreadLocal<int[]> transactionsSinceSample =
+      new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+          return new int[1];
+        }
+      };
+
   private final HdfsTransactionLocks locks;
+  private List<Lock> acquiredLocks;
+  private long[] acquisitionTimes;
+  private int attemptedLocks = 0;
+  // the acquirer is created when the transaction begins, in nanoseconds
+  private final long creationTime;
+  private long acquisitionEnd;
+  private boolean acquired = false;
 
   public HdfsTransactionalLockAcquirer() {
     locks = new HdfsTransactionLocks();
+    creationTime = System.nanoTime();
+    acquisitionEnd = creationTime;
+  }
+
+  public static void setSamplingRate(int rate) {
+    samplingRate = rate;
   }
 
   @Override
   public void acquire() throws IOException {
-    for (Lock lock : locks.getSortedLocks()) {
-      lock.acquire(locks);
+    try {
+      acquiredLocks = locks.getSortedLocks();
+      acquisitionTimes = new long[acquiredLocks.size()];
+      for (int i = 0; i < acquiredLocks.size(); i++) {
+        Lock lock = acquiredLocks.get(i);
+        attemptedLocks++;
+        long start = System.nanoTime();
+        try {
+          lock.acquire(locks);
+        } finally {
+          acquisitionTimes[i] = (System.nanoTime() - start) / 1000;
+        }
+      }
+      acquired = true;
+    } finally {
+      acquisitionEnd = System.nanoTime();
+    }
+  }
+
+  /**
+   * Record the acquisition time of each lock class in the metrics for one
+   * in sampling rate transactions of the calling thread. The total time is
+   * recorded for every transaction together with the transaction, so that
+   * the per class rates are not updated for every lock.
+   *
+   * @return true if the lock classes of this transaction were recorded
+   */
+  public boolean recordAcquisitionTimes(NameNodeMetrics metrics) {
+    int rate = samplingRate;
+    if (rate <= 0 || acquiredLocks == null) {
+      return false;
+    }
+    int[] since = transactionsSinceSample.get();
+    if (++since[0] < rate) {
+      return false;
+    }
+    since[0] = 0;
+    for (int i = 0; i < attemptedLocks; i++) {
+      metrics.addLockAcquisition(
+          acquiredLocks.get(i).getClass().getSimpleName(),
+          acquisitionTimes[i]);
+    }
+    return true;
+  }
+
+  /**
+   * @return the time from the beginning of the transaction to the end of the
+   * lock acquisition in microseconds, including the reads done by the locks
+   */
+  public long getAcquisitionTime() {
+    return (acquisitionEnd - creationTime) / 1000;
+  }
+
+  /**
+   * @return true if all the locks were acquired
+   */
+  public boolean isAcquired() {
+    return acquired;
+  }
+
+  /**
+   * @return the {@link System#nanoTime()} at which the lock acquisition
+   * ended
+   */
+  public long getAcquisitionEnd() {
+    return acquisitionEnd;
+  }
+
+  /**
+   * @return the acquisition time of each lock and the paths of the inode
+   * locks
+   */
+  public String describeAcquisition() {
+    if (acquiredLocks == null) {
+      return "no locks acquired";
+    }
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < attemptedLocks; i++) {
+      Lock lock = acquiredLocks.get(i);
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(lock.getClass().getSimpleName());
+      if (lock instanceof INodeLock) {
+        builder.append(Arrays.toString(((INodeLock) lock).paths));
+      }
+      builder.append("=").append(acquisitionTimes[i]).append("us");
     }
+    return builder.toString();
   }
 
   @Override
@@ -15,12 +15,16 @@
  */
 package io.hops.transaction.lock;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.primitives.Ints;
 import io.hops.common.INodeResolver;
 import io.hops.exception.StorageException;
 import io.hops.exception.TransactionContextException;
 import io.hops.leader_election.node.ActiveNode;
+import io.hops.transaction.EntityManager;
 import io.hops.resolvingcache.Cache;
+import io.hops.resolvingcache.HotINodeCache;
 import io.hops.resolvingcache.OptimalMemcache;
 import io.hops.resolvingcache.PathMemcache;
 import org.apache.commons.math3.stat.StatUtils;
@@ -34,8 +38,12 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 class INodeLock extends BaseINodeLock {
   
@@ -47,7 +55,9 @@ class INodeLock extends BaseINodeLock {
   private final boolean ignoreLocalSubtreeLocks;
   private final long namenodeId;
   private final boolean skipReadingQuotaAttr;
-
+  private final HotINodeCache hotINodes = HotINodeCache.getInstance();
+  private long hotINodesGeneration;
+  private int prefetchReads = 0;
 
   INodeLock(TransactionLockTypes.INodeLockType lockType,
       TransactionLockTypes.INodeResolveType resolveType, boolean resolveLink,
@@ -60,7 +70,8 @@ class INodeLock extends BaseINodeLock {
     this.activeNamenodes = activeNamenodes;
     this.ignoreLocalSubtreeLocks = ignoreLocalSubtreeLocks;
     this.namenodeId = namenodeId;
-    this.paths = paths;
+    //acquire() sorts the paths, the caller may depend on their order
+    this.paths = paths.clone();
     this.skipReadingQuotaAttr = skipReadingQuotaAttr;
   }
 
@@ -341,6 +352,7 @@ protected void acquire(TransactionLocks locks) throws IOException {
      * a dealock situation.
      */
     Arrays.sort(paths);
+    hotINodesGeneration = hotINodes.getGeneration();
     acquireINodeLocks();
     if(!skipReadingQuotaAttr){
       acquireINodeAttributes();
@@ -358,14 +370,27 @@ protected void acquireINodeLocks() throws IOException {
 
     boolean tryToSetParitionKey = true;
 
+    byte[][][] pathsComponents = new byte[paths.length][][];
+    int[] cachedHotINodes = new int[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      pathsComponents[i] = INode.getPathComponents(paths[i]);
+      cachedHotINodes[i] = useCachedHotINodes(pathsComponents[i]);
+    }
+    if (paths.length > 1) {
+      prefetchPathComponents(pathsComponents);
+      tryToSetParitionKey = false;
+    }
+
     for (int i = 0; i < paths.length; i++) {
       String path = paths[i];
+      byte[][] components = pathsComponents[i];
       List<INode> resolvedINodes =
           resolveUsingMemcache(path, tryToSetParitionKey);
       if (resolvedINodes == null) {
         resolvedINodes = acquireINodeLockByPath(path);
         addPathINodesAndUpdateResolvingCache(path, resolvedINodes);
       }
+      cacheHotINodes(components, resolvedINodes, cachedHotINodes[i]);
       if (resolvedINodes.size() > 0) {
         INode lastINode = resolvedINodes.get(resolvedINodes.size() - 1);
         if (resolveType ==
@@ -383,6 +408,209 @@ protected void acquireINodeLocks() throws IOException {
     }
   }
 
+  /**
+   * Read the read committed components of all paths that the resolving cache
+   * misses with one batched read per depth. The components of a path that
+   * the resolving cache holds are read by primary key when it is resolved,
+   * a path whose leading components are cached is only prefetched from the
+   * first component missing in the cache. Resolving the paths one by one
+   * then finds the prefetched components in the transaction and only reads
+   * the locked ones, in the sorted order of the paths. A path is followed as
+   * long as its components exist and are directories.
+   */
+  private void prefetchPathComponents(byte[][][] pathsComponents)
+      throws IOException {
+    prefetchReads = 0;
+    if (DEFAULT_INODE_LOCK_TYPE !=
+        TransactionLockTypes.INodeLockType.READ_COMMITTED) {
+      return;
+    }
+    // the first read of the transaction starts it on the hinted partition
+    setPartitionKeyOfFirstPath(pathsComponents[0]);
+
+    int[] parentIds = new int[pathsComponents.length];
+    int[] startDepths = new int[pathsComponents.length];
+    boolean[] resolving = new boolean[pathsComponents.length];
+    Arrays.fill(parentIds, INodeDirectory.ROOT_PARENT_ID);
+    Arrays.fill(resolving, true);
+    for (int i = 0; i < pathsComponents.length; i++) {
+      int[] inodeIds = Cache.getInstance().get(paths[i]);
+      if (inodeIds == null || inodeIds.length == 0) {
+        continue;
+      }
+      if (inodeIds.length >= pathsComponents[i].length) {
+        resolving[i] = false;
+      } else {
+        startDepths[i] = inodeIds.length;
+        parentIds[i] = inodeIds[inodeIds.length - 1];
+      }
+    }
+
+    for (int depth = 0; ; depth++) {
+      List<String> names = new ArrayList<String>();
+      List<Integer> batchParentIds = new ArrayList<Integer>();
+      Set<String> keys = new HashSet<String>();
+      boolean deeper = false;
+      for (int i = 0; i < pathsComponents.length; i++) {
+        byte[][] components = pathsComponents[i];
+        if (!resolving[i]) {
+          continue;
+        }
+        if (depth < startDepths[i]) {
+          deeper = true;
+          continue;
+        }
+        if (depth >= components.length ||
+            identifyLockType(depth, components) != DEFAULT_INODE_LOCK_TYPE) {
+          resolving[i] = false;
+          continue;
+        }
+        String name = DFSUtil.bytes2String(components[depth]);
+        if (keys.add(INode.nameParentKey(parentIds[i], name))) {
+          names.add(name);
+          batchParentIds.add(parentIds[i]);
+        }
+      }
+      if (names.isEmpty()) {
+        if (deeper) {
+          continue;
+        }
+        break;
+      }
+
+      List<INode> inodes = find(DEFAULT_INODE_LOCK_TYPE,
+          names.toArray(new String[names.size()]),
+          Ints.toArray(batchParentIds), true);
+      prefetchReads++;
+      Map<String, INode> inodesByKey = new HashMap<String, INode>();
+      if (inodes != null) {
+        for (INode inode : inodes) {
+          if (inode != null) {
+            inodesByKey.put(inode.nameParentKey(), inode);
+          }
+        }
+      }
+      for (int i = 0; i < pathsComponents.length; i++) {
+        if (!resolving[i] || depth < startDepths[i]) {
+          continue;
+        }
+        INode inode = inodesByKey.get(INode.nameParentKey(parentIds[i],
+            DFSUtil.bytes2String(pathsComponents[i][depth])));
+        if (inode == null || !inode.isDirectory()) {
+          resolving[i] = false;
+        } else {
+          parentIds[i] = inode.getId();
+        }
+      }
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Prefetched the components of " + pathsComponents.length +
+          " paths in " + prefetchReads + " batched reads");
+    }
+  }
+
+  /**
+   * @return the number of batched reads of the last prefetch of the path
+   * components
+   */
+  @VisibleForTesting
+  int getPrefetchReads() {
+    return prefetchReads;
+  }
+
+  private void setPartitionKeyOfFirstPath(byte[][] components)
+      throws IOException {
+    int[] inodeIds = Cache.getInstance().get(paths[0]);
+    if (inodeIds != null && inodeIds.length == components.length) {
+      setPartitioningKey(inodeIds[inodeIds.length - 1]);
+    } else {
+      setPartitioningKey(null);
+    }
+  }
+
+  /**
+   * Add the cached copies of the hot ancestors of the path that are read
+   * committed to the transaction, resolving the path then finds them without
+   * reading the database.
+   *
+   * @return the number of path components taken from the cache
+   */
+  private int useCachedHotINodes(byte[][] components)
+      throws StorageException, TransactionContextException {
+    if (!canUseHotINodes()) {
+      return 0;
+    }
+    int parentId = INodeDirectory.ROOT_PARENT_ID;
+    String hotPath = Path.SEPARATOR;
+    int count = 0;
+    while (count < components.length &&
+        isHotAncestor(count, components, hotPath)) {
+      INode copy = hotINodes.get(hotPath, parentId,
+          DFSUtil.bytes2String(components[count]));
+      if (copy == null) {
+        break;
+      }
+      INode inode = EntityManager.find(INode.Finder.ByCachedCopy, copy);
+      if (inode == null || !inode.isDirectory()) {
+        break;
+      }
+      addLockedINodes(inode, DEFAULT_INODE_LOCK_TYPE);
+      parentId = inode.getId();
+      count++;
+      if (count < components.length) {
+        hotPath = childPath(hotPath, components[count]);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Cache the hot ancestors of the path that were read from the database.
+   */
+  private void cacheHotINodes(byte[][] components, List<INode> resolvedINodes,
+      int cachedHotINodes) throws StorageException {
+    if (!canUseHotINodes()) {
+      return;
+    }
+    String hotPath = Path.SEPARATOR;
+    int count = Math.min(resolvedINodes.size(), components.length);
+    boolean cacheable = true;
+    for (int i = 0; i < count && hotINodes.isHot(hotPath); i++) {
+      INode inode = resolvedINodes.get(i);
+      if (inode == null || !inode.isDirectory() || !inode.getLocalName()
+          .equals(DFSUtil.bytes2String(components[i]))) {
+        break;
+      }
+      // the hot inodes locked for writing are not cached but their ids are
+      // needed to invalidate their changes
+      cacheable = cacheable && isHotAncestor(i, components, hotPath);
+      if (!cacheable) {
+        hotINodes.resolved(hotPath, inode);
+      } else if (i >= cachedHotINodes) {
+        hotINodes.put(hotPath, inode, hotINodesGeneration);
+      }
+      if (i + 1 < components.length) {
+        hotPath = childPath(hotPath, components[i + 1]);
+      }
+    }
+  }
+
+  private boolean canUseHotINodes() {
+    return hotINodes.isEnabled() && DEFAULT_INODE_LOCK_TYPE ==
+        TransactionLockTypes.INodeLockType.READ_COMMITTED;
+  }
+
+  private boolean isHotAncestor(int count, byte[][] components,
+      String path) throws StorageException {
+    return identifyLockType(count, components) == DEFAULT_INODE_LOCK_TYPE &&
+        hotINodes.isHot(path);
+  }
+
+  private static String childPath(String parent, byte[] name) {
+    return (parent.equals(Path.SEPARATOR) ? parent : parent + Path.SEPARATOR) +
+        DFSUtil.bytes2String(name);
+  }
+
   private List<INode> resolveUsingMemcache(String path,
       boolean tryToSetParitionKey) throws IOException {
     CacheResolver memcacheResolver = getCacheResolver();
@@ -20,6 +20,7 @@
 import io.hops.metadata.hdfs.entity.INodeIdentifier;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.DirectoryNamesCache;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
 
 import java.util.ArrayList;
@@ -149,6 +150,11 @@ public Lock getBatchedINodesLock(List<INodeIdentifier> inodeIdentifiers) {
     return new BatchedINodeLock(inodeIdentifiers);
   }
 
+  public Lock getBatchedINodesLock(TransactionLockTypes.INodeLockType lockType,
+      List<INodeIdentifier> inodeIdentifiers) {
+    return new BatchedINodeLock(lockType, inodeIdentifiers);
+  }
+
   public Lock getIndividualINodeLock(
       TransactionLockTypes.INodeLockType lockType,
       INodeIdentifier inodeIdentifier, boolean readUpPathInodes) {
@@ -203,6 +209,14 @@ public Lock getINodeLock(boolean skipReadingQuotaAttr, NameNode nameNode,
         nameNode.getActiveNameNodes().getActiveNodes(), paths);
   }
 
+  public PagedListingINodeLock getPagedListingINodeLock(NameNode nameNode,
+      String path, byte[] startAfter, int limit,
+      DirectoryNamesCache namesCache) {
+    return new PagedListingINodeLock(nameNode.getId(),
+        nameNode.getActiveNameNodes().getActiveNodes(), path, startAfter,
+        limit, namesCache);
+  }
+
   public Lock getRenameINodeLock(NameNode nameNode,
       TransactionLockTypes.INodeLockType lockType,
       TransactionLockTypes.INodeResolveType resolveType,
@@ -356,7 +370,7 @@ public Collection<Lock> getSqlBatchedBlocksRelated(BLK... relatedBlks) {
           list.add(getSqlBatchedInvalidatedBlocksLock());
           break;
         case PE:
-          list.add(getSqlBatchedInvalidatedBlocksLock());
+          list.add(getSqlBatchedPendingBlocksLock());
           break;
         case UC:
           list.add(getSqlBatchedReplicasUnderConstructionLock());
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.lock;
+
+import com.google.common.primitives.SignedBytes;
+import io.hops.leader_election.node.ActiveNode;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.server.namenode.DirectoryNamesCache;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read locks the path of a directory and reads only the children of one
+ * page of its listing, i.e. at most limit children following startAfter.
+ * The read lock on the directory keeps its children from changing, so the
+ * children themselves are read without locks. The child names of large
+ * directories are kept in a {@link DirectoryNamesCache} so that the
+ * following pages are read by primary key.
+ */
+public final class PagedListingINodeLock extends INodeLock {
+
+  private final String path;
+  private final byte[] startAfter;
+  private final int limit;
+  private final DirectoryNamesCache namesCache;
+
+  private List<INode> page = Collections.emptyList();
+  private int remaining = 0;
+
+  PagedListingINodeLock(long namenodeId,
+      Collection<ActiveNode> activeNamenodes, String path, byte[] startAfter,
+      int limit, DirectoryNamesCache namesCache) {
+    super(TransactionLockTypes.INodeLockType.READ,
+        TransactionLockTypes.INodeResolveType.PATH, true, false, true,
+        namenodeId, activeNamenodes, path);
+    this.path = path;
+    this.startAfter = startAfter;
+    this.limit = limit;
+    this.namesCache = namesCache;
+  }
+
+  @Override
+  protected void acquire(TransactionLocks locks) throws IOException {
+    super.acquire(locks);
+    List<INode> pathINodes = getPathINodes(path);
+    if (pathINodes == null ||
+        pathINodes.size() != INode.getPathComponents(path).length) {
+      return;
+    }
+    INode target = pathINodes.get(pathINodes.size() - 1);
+    if (!(target instanceof INodeDirectory)) {
+      return;
+    }
+
+    setINodeLockType(TransactionLockTypes.INodeLockType.READ_COMMITTED);
+    INodeDirectory dir = (INodeDirectory) target;
+    byte[][] names = namesCache.get(dir.getId(), dir.getModificationTime());
+    if (names == null) {
+      // the children come sorted by name
+      List<INode> children = dir.getChildrenList();
+      names = new byte[children.size()][];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = DFSUtil.string2Bytes(children.get(i).getLocalName());
+      }
+      if (names.length > limit) {
+        namesCache.put(dir.getId(), dir.getModificationTime(), names);
+      }
+    }
+
+    int start = 0;
+    if (startAfter.length != 0) {
+      start = Arrays.binarySearch(names, startAfter,
+          SignedBytes.lexicographicalComparator());
+      start = start >= 0 ? start + 1 : -(start + 1);
+    }
+    int end = Math.min(names.length, start + limit);
+    remaining = names.length - end;
+    if (end <= start) {
+      return;
+    }
+
+    String[] pageNames = new String[end - start];
+    int[] parentIds = new int[end - start];
+    for (int i = start; i < end; i++) {
+      pageNames[i - start] = DFSUtil.bytes2String(names[i]);
+      parentIds[i - start] = dir.getId();
+    }
+    List<INode> inodes = find(
+        TransactionLockTypes.INodeLockType.READ_COMMITTED, pageNames,
+        parentIds, true);
+    page = new ArrayList<INode>(pageNames.length);
+    if (inodes != null) {
+      for (INode inode : inodes) {
+        if (inode != null) {
+          page.add(inode);
+        }
+      }
+    }
+    addChildINodes(path, page);
+  }
+
+  /**
+   * @return the children of the listed page sorted by name
+   */
+  public List<INode> getPage() {
+    return page;
+  }
+
+  /**
+   * @return the number of children following the listed page
+   */
+  public int getRemaining() {
+    return remaining;
+  }
+}
@@ -40,7 +40,15 @@ final class QuotaUpdateLock extends Lock {
 
   @Override
   protected void acquire(TransactionLocks locks) throws IOException {
-    INodeLock inodeLock = (INodeLock) locks.getLock(Type.INode);
+    Lock lock = locks.getLock(Type.INode);
+    if (lock instanceof BatchedINodeLock) {
+      // batched operations work on inode ids rather than paths
+      for (int inodeId : ((BatchedINodeLock) lock).getINodeIds()) {
+        acquireQuotaUpdate(inodeId);
+      }
+      return;
+    }
+    INodeLock inodeLock = (INodeLock) lock;
     for (String target : targets) {
       acquireQuotaUpdate(inodeLock.getTargetINode(target));
       if (includeChildren) {
@@ -60,8 +68,12 @@ private void acquireQuotaUpdate(List<INode> iNodes)
 
   private void acquireQuotaUpdate(INode iNode)
       throws StorageException, TransactionContextException {
-    acquireLockList(DEFAULT_LOCK_TYPE, QuotaUpdate.Finder.ByINodeId,
-        iNode.getId());
+    acquireQuotaUpdate(iNode.getId());
+  }
+
+  private void acquireQuotaUpdate(int inodeId)
+      throws StorageException, TransactionContextException {
+    acquireLockList(DEFAULT_LOCK_TYPE, QuotaUpdate.Finder.ByINodeId, inodeId);
   }
 
   @Override
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.util.Time;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Caches the file statuses and the block locations of closed files read by
+ * a DFSClient. An entry is served for at most the ttl after it was fetched,
+ * so a change made through another client is seen after at most the ttl.
+ * Changes made through the owning client drop the entries of the path, its
+ * descendants and its parent right away.
+ */
+class ClientMetadataCache {
+
+  private static class Entry<T> {
+    private final T value;
+    private final long expiry;
+
+    private Entry(T value, long expiry) {
+      this.value = value;
+      this.expiry = expiry;
+    }
+  }
+
+  private static class CachedBlocks {
+    private final LocatedBlocks located;
+    // range the locations were fetched for
+    private final long start;
+    private final long length;
+
+    private CachedBlocks(LocatedBlocks located, long start, long length) {
+      this.located = located;
+      this.start = start;
+      this.length = length;
+    }
+  }
+
+  private final long ttl;
+  private final int maxEntries;
+
+  private final ConcurrentSkipListMap<String, Entry<HdfsFileStatus>>
+      statuses = new ConcurrentSkipListMap<String, Entry<HdfsFileStatus>>();
+  private final ConcurrentSkipListMap<String, Entry<CachedBlocks>>
+      blocks = new ConcurrentSkipListMap<String, Entry<CachedBlocks>>();
+
+  ClientMetadataCache(Configuration conf) {
+    ttl = conf.getLong(DFSConfigKeys.DFS_CLIENT_METADATA_CACHE_TTL_KEY,
+        DFSConfigKeys.DFS_CLIENT_METADATA_CACHE_TTL_DEFAULT);
+    maxEntries = conf.getInt(
+        DFSConfigKeys.DFS_CLIENT_METADATA_CACHE_MAX_ENTRIES_KEY,
+        DFSConfigKeys.DFS_CLIENT_METADATA_CACHE_MAX_ENTRIES_DEFAULT);
+  }
+
+  HdfsFileStatus getFileStatus(String src) {
+    return get(statuses, src);
+  }
+
+  void putFileStatus(String src, HdfsFileStatus status) {
+    if (status != null) {
+      put(statuses, src, status);
+    }
+  }
+
+  /**
+   * @return the cached locations of the blocks in the range or null if the
+   * cached locations do not cover it
+   */
+  LocatedBlocks getLocatedBlocks(String src, long start, long length) {
+    CachedBlocks cachedBlocks = get(blocks, src);
+    if (cachedBlocks == null) {
+      return null;
+    }
+    LocatedBlocks cached = cachedBlocks.located;
+    if (cachedBlocks.start == start && cachedBlocks.length == length) {
+      return copy(cached, cached.getLocatedBlocks());
+    }
+    if (!coversFile(cached)) {
+      return null;
+    }
+    List<LocatedBlock> inRange = new ArrayList<LocatedBlock>();
+    for (LocatedBlock block : cached.getLocatedBlocks()) {
+      if (block.getStartOffset() + block.getBlockSize() > start &&
+          block.getStartOffset() < start + length) {
+        inRange.add(block);
+      }
+    }
+    return copy(cached, inRange);
+  }
+
+  /**
+   * Cache the block locations of a closed file.
+   */
+  void putLocatedBlocks(String src, long start, long length,
+      LocatedBlocks located) {
+    if (located == null || located.isUnderConstruction()) {
+      return;
+    }
+    put(blocks, src, new CachedBlocks(located, start, length));
+  }
+
+  /**
+   * Drop the entries of the path, of its descendants and of its parent.
+   */
+  void invalidate(String src) {
+    invalidate(statuses, src);
+    invalidate(blocks, src);
+    Path parent = new Path(src).getParent();
+    if (parent != null) {
+      statuses.remove(parent.toUri().getPath());
+    }
+  }
+
+  /**
+   * Drop the block locations of the path, they turned out to be stale.
+   */
+  void invalidateLocatedBlocks(String src) {
+    blocks.remove(src);
+  }
+
+  void clear() {
+    statuses.clear();
+    blocks.clear();
+  }
+
+  private <T> T get(ConcurrentSkipListMap<String, Entry<T>> map,
+      String src) {
+    Entry<T> entry = map.get(src);
+    if (entry == null) {
+      return null;
+    }
+    if (Time.monotonicNow() >= entry.expiry) {
+      map.remove(src, entry);
+      return null;
+    }
+    return entry.value;
+  }
+
+  private <T> void put(ConcurrentSkipListMap<String, Entry<T>> map,
+      String src, T value) {
+    if (map.size() >= maxEntries) {
+      evictExpired(map);
+      if (map.size() >= maxEntries) {
+        map.clear();
+      }
+    }
+    map.put(src, new Entry<T>(value, Time.monotonicNow() + ttl));
+  }
+
+  private <T> void evictExpired(ConcurrentSkipListMap<String, Entry<T>> map) {
+    long now = Time.monotonicNow();
+    for (Map.Entry<String, Entry<T>> e : map.entrySet()) {
+      if (now >= e.getValue().expiry) {
+        map.remove(e.getKey(), e.getValue());
+      }
+    }
+  }
+
+  private static void invalidate(ConcurrentSkipListMap<String, ?> map,
+      String src) {
+    map.remove(src);
+    String prefix = src.endsWith(Path.SEPARATOR) ? src : src + Path.SEPARATOR;
+    // all paths starting with the prefix, '0' follows '/'
+    ConcurrentNavigableMap<String, ?> descendants = map.subMap(prefix,
+        prefix.substring(0, prefix.length() - 1) + '0');
+    descendants.clear();
+  }
+
+  private static boolean coversFile(LocatedBlocks located) {
+    List<LocatedBlock> list = located.getLocatedBlocks();
+    if (list.isEmpty()) {
+      return located.getFileLength() == 0;
+    }
+    LocatedBlock last = list.get(list.size() - 1);
+    return list.get(0).getStartOffset() == 0 &&
+        last.getStartOffset() + last.getBlockSize() ==
+            located.getFileLength();
+  }
+
+  // the input stream changes the list of the returned locations
+  private static LocatedBlocks copy(LocatedBlocks located,
+      List<LocatedBlock> list) {
+    return new LocatedBlocks(located.getFileLength(),
+        located.isUnderConstruction(), new ArrayList<LocatedBlock>(list),
+        located.getLastLocatedBlock(), located.isLastBlockComplete());
+  }
+}
@@ -207,6 +207,7 @@ public class DFSClient implements java.io.Closeable {
   private final String authority;
   final SocketCache socketCache;
   final Conf dfsClientConf;
+  final ClientMetadataCache metadataCache; // null if not enabled
   private Random r = new Random();
   private SocketAddress[] localInterfaceAddrs;
   private DataEncryptionKey encryptionKey;
@@ -412,6 +413,10 @@ public DFSClient(URI nameNodeUri, Configuration conf,
     // Copy only the required DFSClient configuration
     this.dfsClientConf = new Conf(conf);
     this.conf = conf;
+    this.metadataCache = conf.getBoolean(
+        DFSConfigKeys.DFS_CLIENT_METADATA_CACHE_ENABLED_KEY,
+        DFSConfigKeys.DFS_CLIENT_METADATA_CACHE_ENABLED_DEFAULT) ?
+        new ClientMetadataCache(conf) : null;
     this.stats = stats;
     this.socketFactory = NetUtils.getSocketFactory(conf, ClientProtocol.class);
     this.dtpReplaceDatanodeOnFailure = ReplaceDatanodeOnFailure.get(conf);
@@ -598,6 +603,7 @@ void endFileLease(final String src) throws IOException {
    * client's filesBeingWritten map.
    */
   void putFileBeingWritten(final String src, final DFSOutputStream out) {
+    invalidateCachedMetadata(src);
     synchronized (filesBeingWritten) {
       filesBeingWritten.put(src, out);
       // update the last lease renewal time only when there was no
@@ -619,6 +625,22 @@ void removeFileBeingWritten(final String src) {
         lastLeaseRenewal = 0;
       }
     }
+    invalidateCachedMetadata(src);
+  }
+
+  private boolean isFileBeingWritten(final String src) {
+    synchronized (filesBeingWritten) {
+      return filesBeingWritten.containsKey(src);
+    }
+  }
+
+  /**
+   * Drop the cached metadata of a path changed by this client.
+   */
+  void invalidateCachedMetadata(final String src) {
+    if (metadataCache != null) {
+      metadataCache.invalidate(src);
+    }
   }
 
   /**
@@ -1071,6 +1093,25 @@ public Object doAction(ClientProtocol namenode)
     return (LocatedBlocks) doClientActionWithRetry(handler, "getLocatedBlocks");
   }
 
+  /**
+   * Get the block locations from the metadata cache if it is enabled and
+   * the file is closed, otherwise from a namenode.
+   */
+  LocatedBlocks getCachedLocatedBlocks(final String src, final long start,
+      final long length) throws IOException {
+    if (metadataCache == null) {
+      return getLocatedBlocks(src, start, length);
+    }
+    LocatedBlocks blocks = metadataCache.getLocatedBlocks(src, start, length);
+    if (blocks == null) {
+      blocks = getLocatedBlocks(src, start, length);
+      if (!isFileBeingWritten(src)) {
+        metadataCache.putLocatedBlocks(src, start, length, blocks);
+      }
+    }
+    return blocks;
+  }
+
   /**
    * @see ClientProtocol#getBlockLocations(String, long, long)
    */
@@ -1100,6 +1141,31 @@ public Object doAction(ClientProtocol namenode)
         "getMissingLocatedBlocks");
   }
 
+  /**
+   * Get the locations of the blocks in the same range of many files in one
+   * call, the entry of a file that does not exist is null.
+   *
+   * @see ClientProtocol#getBatchedBlockLocations(String[], long, long)
+   */
+  public LocatedBlocks[] getBatchedLocatedBlocks(final String[] srcs,
+      final long start, final long length) throws IOException {
+    checkOpen();
+    try {
+      ClientActionHandler handler = new ClientActionHandler() {
+        @Override
+        public Object doAction(ClientProtocol namenode)
+            throws RemoteException, IOException {
+          return namenode.getBatchedBlockLocations(srcs, start, length);
+        }
+      };
+      return (LocatedBlocks[]) doClientActionWithRetry(handler,
+          "getBatchedLocatedBlocks");
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException(AccessControlException.class,
+          UnresolvedPathException.class);
+    }
+  }
+
   static LocatedBlocks callGetMissingBlockLocations(ClientProtocol namenode,
       String filePath) throws IOException {
     try {
@@ -1186,7 +1252,7 @@ public Object doAction(ClientProtocol namenode)
    */
   public BlockLocation[] getBlockLocations(String src, long start, long length)
       throws IOException, UnresolvedLinkException {
-    LocatedBlocks blocks = getLocatedBlocks(src, start, length);
+    LocatedBlocks blocks = getCachedLocatedBlocks(src, start, length);
     BlockLocation[] locations = DFSUtil.locatedBlocks2Locations(blocks);
     HdfsBlockLocation[] hdfsLocations = new HdfsBlockLocation[locations.length];
     for (int i = 0; i < locations.length; i++) {
@@ -1559,6 +1625,7 @@ public Object doAction(ClientProtocol namenode)
         }
       };
       doClientActionWithRetry(handler, "createSymlink");
+      invalidateCachedMetadata(link);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileAlreadyExistsException.class, FileNotFoundException.class,
@@ -1639,6 +1706,7 @@ public HdfsDataOutputStream append(final String src, final int buffersize,
   private DFSOutputStream append(String src, int buffersize,
       Progressable progress) throws IOException {
     checkOpen();
+    invalidateCachedMetadata(src); // the length must be up to date
     HdfsFileStatus stat = getFileInfo(src);
     if (stat == null) { // No file found
       throw new FileNotFoundException(
@@ -1668,7 +1736,10 @@ public Object doAction(ClientProtocol namenode)
           return namenode.setReplication(src, replication);
         }
       };
-      return (Boolean) doClientActionWithRetry(handler, "setReplication");
+      boolean result =
+          (Boolean) doClientActionWithRetry(handler, "setReplication");
+      invalidateCachedMetadata(src);
+      return result;
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileNotFoundException.class, SafeModeException.class,
@@ -1688,6 +1759,7 @@ public Object doAction(ClientProtocol namenode)
         }
       };
       doClientActionWithRetry(handler, "setMetaEnabled");
+      invalidateCachedMetadata(src);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileNotFoundException.class, SafeModeException.class,
@@ -1712,7 +1784,10 @@ public Object doAction(ClientProtocol namenode)
           return namenode.rename(src, dst);
         }
       };
-      return (Boolean) doClientActionWithRetry(handler, "rename");
+      boolean result = (Boolean) doClientActionWithRetry(handler, "rename");
+      invalidateCachedMetadata(src);
+      invalidateCachedMetadata(dst);
+      return result;
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           NSQuotaExceededException.class, DSQuotaExceededException.class,
@@ -1736,6 +1811,10 @@ public Object doAction(ClientProtocol namenode)
         }
       };
       doClientActionWithRetry(handler, "concat");
+      invalidateCachedMetadata(trg);
+      for (String src : srcs) {
+        invalidateCachedMetadata(src);
+      }
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           UnresolvedPathException.class);
@@ -1760,6 +1839,8 @@ public Object doAction(ClientProtocol namenode)
         }
       };
       doClientActionWithRetry(handler, "rename");
+      invalidateCachedMetadata(src);
+      invalidateCachedMetadata(dst);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           DSQuotaExceededException.class, FileAlreadyExistsException.class,
@@ -1783,7 +1864,9 @@ public Object doAction(ClientProtocol namenode)
         return namenode.delete(src, true);
       }
     };
-    return (Boolean) doClientActionWithRetry(handler, "delete");
+    boolean result = (Boolean) doClientActionWithRetry(handler, "delete");
+    invalidateCachedMetadata(src);
+    return result;
   }
 
   /**
@@ -1804,7 +1887,9 @@ public Object doAction(ClientProtocol namenode)
           return namenode.delete(src, recursive);
         }
       };
-      return (Boolean) doClientActionWithRetry(handler, "delete");
+      boolean result = (Boolean) doClientActionWithRetry(handler, "delete");
+      invalidateCachedMetadata(src);
+      return result;
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileNotFoundException.class, SafeModeException.class,
@@ -1867,6 +1952,12 @@ public Object doAction(ClientProtocol namenode)
    */
   public HdfsFileStatus getFileInfo(final String src) throws IOException {
     checkOpen();
+    if (metadataCache != null) {
+      HdfsFileStatus status = metadataCache.getFileStatus(src);
+      if (status != null) {
+        return status;
+      }
+    }
     try {
       ClientActionHandler handler = new ClientActionHandler() {
         @Override
@@ -1875,13 +1966,51 @@ public Object doAction(ClientProtocol namenode)
           return namenode.getFileInfo(src);
         }
       };
-      return (HdfsFileStatus) doClientActionWithRetry(handler, "getFileInfo");
+      HdfsFileStatus status =
+          (HdfsFileStatus) doClientActionWithRetry(handler, "getFileInfo");
+      if (metadataCache != null && !isFileBeingWritten(src)) {
+        metadataCache.putFileStatus(src, status);
+      }
+      return status;
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileNotFoundException.class, UnresolvedPathException.class);
     }
   }
 
+  /**
+   * Get the file info of many files or directories in one call, the entry of
+   * a path that does not exist is null.
+   *
+   * @see ClientProtocol#getFileInfos(String[])
+   */
+  public HdfsFileStatus[] getFileInfos(final String[] srcs)
+      throws IOException {
+    checkOpen();
+    try {
+      ClientActionHandler handler = new ClientActionHandler() {
+        @Override
+        public Object doAction(ClientProtocol namenode)
+            throws RemoteException, IOException {
+          return namenode.getFileInfos(srcs);
+        }
+      };
+      HdfsFileStatus[] statuses =
+          (HdfsFileStatus[]) doClientActionWithRetry(handler, "getFileInfos");
+      if (metadataCache != null) {
+        for (int i = 0; i < srcs.length; i++) {
+          if (!isFileBeingWritten(srcs[i])) {
+            metadataCache.putFileStatus(srcs[i], statuses[i]);
+          }
+        }
+      }
+      return statuses;
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException(AccessControlException.class,
+          UnresolvedPathException.class);
+    }
+  }
+
   /**
    * Get the file info for a specific file or directory. If src
    * refers to a symlink then the FileStatus of the link is returned.
@@ -2270,6 +2399,7 @@ public Object doAction(ClientProtocol namenode)
         }
       };
       doClientActionWithRetry(handler, "setPermission");
+      invalidateCachedMetadata(src);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileNotFoundException.class, SafeModeException.class,
@@ -2301,6 +2431,7 @@ public Object doAction(ClientProtocol namenode)
         }
       };
       doClientActionWithRetry(handler, "setOwner");
+      invalidateCachedMetadata(src);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileNotFoundException.class, SafeModeException.class,
@@ -2540,7 +2671,10 @@ public Object doAction(ClientProtocol namenode)
           return namenode.mkdirs(src, finalPermission, createParent);
         }
       };
-      return (Boolean) doClientActionWithRetry(handler, "primitiveMkdir");
+      boolean result =
+          (Boolean) doClientActionWithRetry(handler, "primitiveMkdir");
+      invalidateCachedMetadata(src);
+      return result;
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           InvalidPathException.class, FileAlreadyExistsException.class,
@@ -2627,6 +2761,7 @@ public Object doAction(ClientProtocol namenode)
         }
       };
       doClientActionWithRetry(handler, "setTimes");
+      invalidateCachedMetadata(src);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           FileNotFoundException.class, UnresolvedPathException.class);
@@ -2808,9 +2943,21 @@ private Object doClientActionWithRetry(ClientActionHandler handler,
         LOG.debug(thisFnID + ") " + callerID + " sending RPC to " +
             handle.getNamenode() + " tries left (" + (MAX_RPC_RETRIES - i) +
             ")");
-        Object obj = handler.doAction(handle.getRPCHandle());
-        //no exception
-        return obj;
+        handle.callStarted();
+        long startTime = System.nanoTime();
+        boolean succeeded = false;
+        try {
+          Object result = handler.doAction(handle.getRPCHandle());
+          succeeded = true;
+          return result;
+        } finally {
+          // only the latency of successful calls is a sample of the load
+          if (succeeded) {
+            handle.callFinished(System.nanoTime() - startTime);
+          } else {
+            handle.callFailed();
+          }
+        }
       } catch (IOException e) {
         exception = e;
         if (ExceptionCheck.isLocalConnectException(e)) {
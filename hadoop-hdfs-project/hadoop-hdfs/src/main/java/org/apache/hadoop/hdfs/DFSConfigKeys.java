@@ -62,6 +62,37 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.quota.update.limit";
   public static final int DFS_NAMENODE_QUOTA_UPDATE_LIMIT_DEFAULT = 100000;
 
+  public static final String DFS_NAMENODE_QUOTA_UPDATE_THREADS_KEY =
+      "dfs.namenode.quota.update.threads";
+  public static final int DFS_NAMENODE_QUOTA_UPDATE_THREADS_DEFAULT = 1;
+
+  // 0 renews every lease in its own transaction
+  public static final String DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_KEY =
+      "dfs.namenode.lease.renewal.flush-interval";
+  public static final long DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_DEFAULT =
+      0;
+
+  public static final String DFS_NAMENODE_LEASE_RENEWAL_FLUSH_BATCH_SIZE_KEY =
+      "dfs.namenode.lease.renewal.flush-batch-size";
+  public static final int DFS_NAMENODE_LEASE_RENEWAL_FLUSH_BATCH_SIZE_DEFAULT =
+      500;
+
+  public static final String DFS_NAMENODE_LEASE_RECOVERY_THREADS_KEY =
+      "dfs.namenode.lease.recovery.threads";
+  public static final int DFS_NAMENODE_LEASE_RECOVERY_THREADS_DEFAULT = 8;
+
+  // 0 does not limit the rate of lease recoveries
+  public static final String DFS_NAMENODE_LEASE_RECOVERY_MAX_PER_SECOND_KEY =
+      "dfs.namenode.lease.recovery.max-per-second";
+  public static final int DFS_NAMENODE_LEASE_RECOVERY_MAX_PER_SECOND_DEFAULT =
+      500;
+
+  // recover expired leases on all NameNodes, partitioned by holder
+  public static final String DFS_NAMENODE_LEASE_RECOVERY_DISTRIBUTED_KEY =
+      "dfs.namenode.lease.recovery.distributed";
+  public static final boolean DFS_NAMENODE_LEASE_RECOVERY_DISTRIBUTED_DEFAULT =
+      false;
+
   public static final String DFS_NAMENODE_QUOTA_UPDATE_ID_BATCH_SIZE =
       "dfs.namenode.quota.update.id.batchsize";
   public static final int DFS_NAMENODE_QUOTA_UPDATE_ID_BATCH_SIZ_DEFAULT =
@@ -95,11 +126,45 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int DFS_NAMENODE_IDSMONITOR_CHECK_INTERVAL_IN_MS_DEFAULT =
       1000;
 
+  public static final String DFS_NAMENODE_IDS_MAX_BATCH_SIZE_MULTIPLIER =
+      "dfs.namenode.ids.max-batch-size-multiplier";
+  public static final int DFS_NAMENODE_IDS_MAX_BATCH_SIZE_MULTIPLIER_DEFAULT =
+      16;
+
+  public static final String DFS_NAMENODE_IDS_STALL_TIMEOUT_IN_MS =
+      "dfs.namenode.ids.stall-timeout";
+  public static final long DFS_NAMENODE_IDS_STALL_TIMEOUT_IN_MS_DEFAULT = 5000;
+
+  // transactions taking longer than this many ms are logged, 0 disables it
+  public static final String DFS_NAMENODE_SLOW_TRANSACTION_THRESHOLD_KEY =
+      "dfs.namenode.transaction.slow-log.threshold";
+  public static final long DFS_NAMENODE_SLOW_TRANSACTION_THRESHOLD_DEFAULT =
+      1000;
+
+  // minimum time in ms between two slow transaction log entries
+  public static final String DFS_NAMENODE_SLOW_TRANSACTION_LOG_INTERVAL_KEY =
+      "dfs.namenode.transaction.slow-log.interval";
+  public static final long DFS_NAMENODE_SLOW_TRANSACTION_LOG_INTERVAL_DEFAULT =
+      10000;
+
+  // the acquisition time of each lock class is recorded for one in this many
+  // transactions of a handler thread, 0 disables it
+  public static final String DFS_NAMENODE_LOCK_METRICS_SAMPLING_KEY =
+      "dfs.namenode.transaction.lock-metrics.sampling";
+  public static final int DFS_NAMENODE_LOCK_METRICS_SAMPLING_DEFAULT = 16;
+
   public static final String DFS_NAMENODE_PROCESS_REPORT_BATCH_SIZE =
       "dfs.namenode.processReport.batchsize";
   public static final int DFS_NAMENODE_PROCESS_REPORT_BATCH_SIZE_DEFAULT =
       5000;
   
+  //diff full block reports in sorted block id ranges of processReport.batchsize
+  //reported blocks and apply the changes of each range as soon as it is diffed
+  public static final String DFS_NAMENODE_PROCESS_REPORT_STREAMING =
+      "dfs.namenode.processReport.streaming";
+  public static final boolean DFS_NAMENODE_PROCESS_REPORT_STREAMING_DEFAULT =
+      false;
+  
   public static final String DFS_NAMENODE_PROCESS_MISREPLICATED_BATCH_SIZE =
       "dfs.namenode.misreplicated.batchsize";
   public static final int
@@ -141,7 +206,16 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_NAMENODE_SELECTOR_POLICY_KEY =
       "dfs.namenode.selector-policy";
   public static final String DFS_NAMENODE_SELECTOR_POLICY_DEFAULT =
-      "RANDOM_STICKY";     //RANDOM ROUND_ROBIN RANDOM_STICKY
+      "RANDOM_STICKY";     //RANDOM ROUND_ROBIN RANDOM_STICKY LEAST_LOADED
+  // LEAST_LOADED skips a namenode whose average latency is this many times
+  // the lowest one for the penalty time, 0 disables it
+  public static final String DFS_NAMENODE_SELECTOR_SLOW_FACTOR_KEY =
+      "dfs.namenode.selector.slow-factor";
+  public static final float DFS_NAMENODE_SELECTOR_SLOW_FACTOR_DEFAULT = 3;
+  public static final String DFS_NAMENODE_SELECTOR_SLOW_PENALTY_KEY =
+      "dfs.namenode.selector.slow-penalty-ms";
+  public static final long DFS_NAMENODE_SELECTOR_SLOW_PENALTY_DEFAULT =
+      10 * 1000;
   
   public static final String DFS_BLOCK_POOL_ID_KEY = "dfs.block.pool.id";
   public static final String DFS_BLOCK_POOL_ID_DEFAULT = "HOP_BLOCK_POOL_123";
@@ -162,6 +236,19 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dsf.client.refresh.namenode.list";
   public static final int DFS_CLIENT_REFRESH_NAMENODE_LIST_IN_MS_DEFAULT =
       60 * 1000; //time in milliseconds.
+
+  // cache file statuses and block locations of closed files in the client
+  public static final String DFS_CLIENT_METADATA_CACHE_ENABLED_KEY =
+      "dfs.client.metadata-cache.enabled";
+  public static final boolean DFS_CLIENT_METADATA_CACHE_ENABLED_DEFAULT =
+      false;
+  public static final String DFS_CLIENT_METADATA_CACHE_TTL_KEY =
+      "dfs.client.metadata-cache.ttl-ms";
+  public static final long DFS_CLIENT_METADATA_CACHE_TTL_DEFAULT = 5000;
+  public static final String DFS_CLIENT_METADATA_CACHE_MAX_ENTRIES_KEY =
+      "dfs.client.metadata-cache.max-entries";
+  public static final int DFS_CLIENT_METADATA_CACHE_MAX_ENTRIES_DEFAULT =
+      10000;
   
   public static final String DFS_SET_PARTITION_KEY_ENABLED =
       "dfs.ndb.setpartitionkey.enabled";
@@ -195,13 +282,34 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_RESOLVING_CACHE_TYPE = "dfs.resolvingcache" +
       ".type";
 
-  //INode, Path, InMemory, Optimal
+  //INode, Path, InMemory, OffHeap, Optimal
   public static final String DFS_RESOLVING_CACHE_TYPE_DEFAULT = "InMemory";
 
   public static final String DFS_INMEMORY_CACHE_MAX_SIZE = "dfs" +
       ".resolvingcache.inmemory.maxsize";
   public static final int DFS_INMEMORY_CACHE_MAX_SIZE_DEFAULT = 100000;
 
+  public static final String DFS_OFFHEAP_CACHE_MAX_SIZE = "dfs" +
+      ".resolvingcache.offheap.maxsize";
+  public static final int DFS_OFFHEAP_CACHE_MAX_SIZE_DEFAULT = 1000000;
+
+  public static final String DFS_RESOLVING_CACHE_INVALIDATION_ENABLED = "dfs" +
+      ".resolvingcache.invalidation.enabled";
+  public static final boolean DFS_RESOLVING_CACHE_INVALIDATION_ENABLED_DEFAULT =
+      false;
+
+  public static final String DFS_HOT_INODES_ENABLED = "dfs" +
+      ".resolvingcache.hot-inodes.enabled";
+  public static final boolean DFS_HOT_INODES_ENABLED_DEFAULT = false;
+
+  // comma separated directories kept in memory in addition to the root
+  public static final String DFS_HOT_INODES_PATHS = "dfs" +
+      ".resolvingcache.hot-inodes.paths";
+
+  public static final String DFS_HOT_INODES_LEASE = "dfs" +
+      ".resolvingcache.hot-inodes.lease";
+  public static final long DFS_HOT_INODES_LEASE_DEFAULT = 1000;
+
   public static final String DFS_LEGACY_DELETE_ENABLE_KEY =
       "dfs.namenode.legacy-delete.enable";
   public static final boolean DFS_LEGACY_DELETE_ENABLE_DEFAULT = false;
@@ -225,6 +333,18 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.subtree-executor-limit";
   public static final int DFS_SUBTREE_EXECUTOR_LIMIT_DEFAULT = 80;
 
+  //number of sibling inodes removed per transaction during a subtree delete.
+  //a value of 1 deletes the inodes one transaction at a time
+  public static final String DFS_SUBTREE_DELETE_BATCH_SIZE_KEY =
+      "dfs.namenode.subtree-delete.batch-size";
+  public static final int DFS_SUBTREE_DELETE_BATCH_SIZE_DEFAULT = 100;
+
+  //max number of paths of a batched getFileInfos or getBatchedBlockLocations
+  //call resolved in one transaction
+  public static final String DFS_NAMENODE_BATCHED_PATHS_PER_TX_KEY =
+      "dfs.namenode.batched-metadata.paths-per-transaction";
+  public static final int DFS_NAMENODE_BATCHED_PATHS_PER_TX_DEFAULT = 100;
+
   public static final String ERASURE_CODING_CODECS_KEY =
       "dfs.erasure_coding.codecs.json";
   public static final String ERASURE_CODING_ENABLED_KEY =
@@ -461,6 +581,19 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   
   public static final String DFS_LIST_LIMIT = "dfs.ls.limit";
   public static final int DFS_LIST_LIMIT_DEFAULT = 1000;
+  // read only the children of the requested page when listing a directory
+  public static final String DFS_NAMENODE_LISTING_PAGED_KEY =
+      "dfs.namenode.listing.paged";
+  public static final boolean DFS_NAMENODE_LISTING_PAGED_DEFAULT = false;
+  // child names of large directories kept between the pages of a listing
+  public static final String DFS_NAMENODE_LISTING_NAMES_CACHE_MAX_NAMES_KEY =
+      "dfs.namenode.listing.names-cache.max-names";
+  public static final int DFS_NAMENODE_LISTING_NAMES_CACHE_MAX_NAMES_DEFAULT =
+      1000000;
+  public static final String DFS_NAMENODE_LISTING_NAMES_CACHE_TTL_KEY =
+      "dfs.namenode.listing.names-cache.ttl";
+  public static final long DFS_NAMENODE_LISTING_NAMES_CACHE_TTL_DEFAULT =
+      60000;
   public static final String DFS_DATANODE_FAILED_VOLUMES_TOLERATED_KEY =
       "dfs.datanode.failed.volumes.tolerated";
   public static final int DFS_DATANODE_FAILED_VOLUMES_TOLERATED_DEFAULT = 0;
@@ -696,6 +829,17 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_BLOCKREPORT_INITIAL_DELAY_KEY =
       "dfs.blockreport.initialDelay";
   public static final int DFS_BLOCKREPORT_INITIAL_DELAY_DEFAULT = 0;
+  //send full block reports to the namenode with the least pending block
+  //report work, as advertised in the heartbeat responses
+  public static final String DFS_BLOCKREPORT_LOAD_BALANCING_ENABLED_KEY =
+      "dfs.blockreport.load-balancing.enabled";
+  public static final boolean DFS_BLOCKREPORT_LOAD_BALANCING_ENABLED_DEFAULT =
+      false;
+  //a namenode processing this many full block reports does not get more;
+  //when all namenodes are that busy the datanode backs off
+  public static final String DFS_BLOCKREPORT_MAX_PENDING_PER_NAMENODE_KEY =
+      "dfs.blockreport.max-pending-per-namenode";
+  public static final int DFS_BLOCKREPORT_MAX_PENDING_PER_NAMENODE_DEFAULT = 4;
   public static final String DFS_BLOCK_INVALIDATE_LIMIT_KEY =
       "dfs.block.invalidate.limit";
   public static final int DFS_BLOCK_INVALIDATE_LIMIT_DEFAULT = 1000;
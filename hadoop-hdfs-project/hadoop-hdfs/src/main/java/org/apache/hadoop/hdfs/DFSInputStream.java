@@ -156,7 +156,16 @@ private void waitFor(int waitTime) throws IOException {
   }
 
   private long fetchLocatedBlocksAndGetLastBlockLength() throws IOException {
-    LocatedBlocks newInfo = dfsClient.getLocatedBlocks(src, 0, prefetchSize);
+    LocatedBlocks newInfo;
+    if (locatedBlocks == null) {
+      newInfo = dfsClient.getCachedLocatedBlocks(src, 0, prefetchSize);
+    } else {
+      // refetching after a failure, the cached locations may be stale
+      if (dfsClient.metadataCache != null) {
+        dfsClient.metadataCache.invalidateLocatedBlocks(src);
+      }
+      newInfo = dfsClient.getLocatedBlocks(src, 0, prefetchSize);
+    }
     if (DFSClient.LOG.isDebugEnabled()) {
       DFSClient.LOG.debug("newInfo = " + newInfo);
     }
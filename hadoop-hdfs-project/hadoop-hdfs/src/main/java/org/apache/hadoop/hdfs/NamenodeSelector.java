@@ -25,6 +25,7 @@
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
 import org.apache.hadoop.ipc.RPC;
+import org.apache.hadoop.util.Time;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -34,6 +35,7 @@
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class keep track of all namenodes in the cluster. At the start, It
@@ -45,14 +47,18 @@ public class NamenodeSelector extends Thread {
 
   /**
    * Policy for selection next namenode to be used by the client. Current
-   * supported policies are ROUND_ROBIN and RANDOM. RANDOM is the default
-   * policy used if no policy set in the configuation file.
+   * supported policies are ROUND_ROBIN, RANDOM, RANDOM_STICKY and
+   * LEAST_LOADED. RANDOM_STICKY is the default policy used if no policy set
+   * in the configuation file. LEAST_LOADED picks the namenode with the
+   * lowest average latency of successful calls times outstanding calls of
+   * this client.
    */
   enum NNSelectionPolicy {
 
     RANDOM("RANDOM"),
     RANDOM_STICKY("RANDOM_STICKY"),
-    ROUND_ROBIN("ROUND_ROBIN");
+    ROUND_ROBIN("ROUND_ROBIN"),
+    LEAST_LOADED("LEAST_LOADED");
     private String description = null;
 
     private NNSelectionPolicy(String arg) {
@@ -67,9 +73,19 @@ public String toString() {
   
   public static class NamenodeHandle {
 
+    // weight of the latest call in the average latency
+    private static final double LATENCY_EWMA_WEIGHT = 0.2;
+
     final private ClientProtocol namenodeRPCHandle;
     final private ActiveNode namenode;
 
+    // load of the namenode as seen by this client
+    private final AtomicInteger outstandingCalls = new AtomicInteger();
+    private volatile double avgLatency = -1; // nanos, -1 if unknown
+    private volatile long slowUntil = 0;
+    // sent a single call at a time until a call succeeded after a penalty
+    private volatile boolean probing = false;
+
     public NamenodeHandle(ClientProtocol proto, ActiveNode an) {
       this.namenode = an;
       this.namenodeRPCHandle = proto;
@@ -83,6 +99,69 @@ public ActiveNode getNamenode() {
       return this.namenode;
     }
 
+    public void callStarted() {
+      outstandingCalls.incrementAndGet();
+    }
+
+    /**
+     * A call succeeded, its latency is a sample of the load of the namenode.
+     */
+    public void callFinished(long latencyNanos) {
+      outstandingCalls.decrementAndGet();
+      synchronized (this) {
+        avgLatency = avgLatency < 0 ? latencyNanos :
+            LATENCY_EWMA_WEIGHT * latencyNanos +
+                (1 - LATENCY_EWMA_WEIGHT) * avgLatency;
+        probing = false;
+      }
+    }
+
+    /**
+     * A call failed, its latency says nothing about the load of the namenode.
+     */
+    public void callFailed() {
+      outstandingCalls.decrementAndGet();
+    }
+
+    public int getOutstandingCalls() {
+      return outstandingCalls.get();
+    }
+
+    public double getAverageLatency() {
+      return avgLatency;
+    }
+
+    /**
+     * @param unknownLatency
+     *     the latency assumed for a namenode without samples
+     */
+    double getLoad(double unknownLatency) {
+      double latency = avgLatency < 0 ? unknownLatency : avgLatency;
+      return latency * (outstandingCalls.get() + 1);
+    }
+
+    boolean isSlow(long now) {
+      return now < slowUntil;
+    }
+
+    /**
+     * @return true if the namenode is probed after a penalty and the probe
+     * did not return yet
+     */
+    boolean isProbeOutstanding() {
+      return probing && outstandingCalls.get() > 0;
+    }
+
+    /**
+     * Skip the namenode until the given time. Its average latency is
+     * forgotten and it is probed with a single call afterwards.
+     */
+    synchronized void markSlow(long until) {
+      slowUntil = until;
+      avgLatency = -1;
+      probing = true;
+    }
+
     @Override
     public String toString() {
       return "[RPC handle connected to " + namenode.getInetSocketAddress() +
@@ -113,6 +192,8 @@ public boolean equals(Object obj) {
   private static Log LOG = LogFactory.getLog(NamenodeSelector.class);
   private final URI defaultUri;
   private final NamenodeSelector.NNSelectionPolicy policy;
+  private final float slowFactor; // only used by LEAST_LOADED
+  private final long slowPenalty;
   private NamenodeSelector.NamenodeHandle stickyHandle = null; //only used if
   // RANDOM_STICKY policy is used
   protected final Configuration conf;
@@ -134,6 +215,22 @@ public boolean equals(Object obj) {
     this.conf = conf;
     this.policy = NamenodeSelector.NNSelectionPolicy.ROUND_ROBIN;
     this.namenodeListUpdateTimePeriod = -1;
+    this.slowFactor = 0;
+    this.slowPenalty = 0;
+  }
+
+  //only for testing
+  NamenodeSelector(Configuration conf,
+      List<NamenodeSelector.NamenodeHandle> namenodes,
+      NamenodeSelector.NNSelectionPolicy policy, float slowFactor,
+      long slowPenalty) {
+    this.defaultUri = null;
+    this.nnList.addAll(namenodes);
+    this.conf = conf;
+    this.policy = policy;
+    this.namenodeListUpdateTimePeriod = -1;
+    this.slowFactor = slowFactor;
+    this.slowPenalty = slowPenalty;
   }
 
   public NamenodeSelector(Configuration conf, URI defaultUri) throws IOException {
@@ -155,10 +252,19 @@ public NamenodeSelector(Configuration conf, URI defaultUri) throws IOException {
       policy = NamenodeSelector.NNSelectionPolicy.ROUND_ROBIN;
     }else if (policyName.equals(NamenodeSelector.NNSelectionPolicy.RANDOM_STICKY.toString())) {
       policy = NamenodeSelector.NNSelectionPolicy.RANDOM_STICKY;
+    } else if (policyName.equals(
+        NamenodeSelector.NNSelectionPolicy.LEAST_LOADED.toString())) {
+      policy = NamenodeSelector.NNSelectionPolicy.LEAST_LOADED;
     } else {
       policy = NamenodeSelector.NNSelectionPolicy.RANDOM_STICKY;
     }
     LOG.debug("Client's namenode selection policy is " + policy);
+    slowFactor = conf.getFloat(
+        DFSConfigKeys.DFS_NAMENODE_SELECTOR_SLOW_FACTOR_KEY,
+        DFSConfigKeys.DFS_NAMENODE_SELECTOR_SLOW_FACTOR_DEFAULT);
+    slowPenalty = conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_SELECTOR_SLOW_PENALTY_KEY,
+        DFSConfigKeys.DFS_NAMENODE_SELECTOR_SLOW_PENALTY_DEFAULT);
 
     //get the list of Namenodes
     createNamenodeClientsFromConfiguration();
@@ -297,6 +403,8 @@ private synchronized NamenodeSelector.NamenodeHandle getNextNNBasedOnPolicy() {
         stickyHandle = getRandomNNInternal();
         return stickyHandle;
       }
+    } else if (policy == NamenodeSelector.NNSelectionPolicy.LEAST_LOADED) {
+      return getLeastLoadedNNInternal();
     } else {
       throw new UnsupportedOperationException(
           "Namenode selection policy is not supported. Selected policy is " +
@@ -316,6 +424,57 @@ private NamenodeSelector.NamenodeHandle getRandomNNInternal(){
     return null;
   }
 
+  // synchronize by the calling method
+  private NamenodeSelector.NamenodeHandle getLeastLoadedNNInternal() {
+    long now = Time.monotonicNow();
+    double minLatency = Double.MAX_VALUE;
+    for (NamenodeSelector.NamenodeHandle handle : nnList) {
+      if (handle.getAverageLatency() >= 0 &&
+          !blackListedNamenodes.contains(handle) && !handle.isSlow(now)) {
+        minLatency = Math.min(minLatency, handle.getAverageLatency());
+      }
+    }
+
+    // a namenode without samples is assumed to be as fast as the fastest
+    // one, without any samples at all the outstanding calls decide
+    double unknownLatency = minLatency == Double.MAX_VALUE ? 1 : minLatency;
+    NamenodeSelector.NamenodeHandle best = null;
+    double bestLoad = 0;
+    int ties = 0;
+    for (NamenodeSelector.NamenodeHandle handle : nnList) {
+      if (blackListedNamenodes.contains(handle) ||
+          handle.isProbeOutstanding()) {
+        continue;
+      }
+      if (slowFactor > 0) {
+        if (handle.isSlow(now)) {
+          continue;
+        }
+        if (minLatency != Double.MAX_VALUE &&
+            handle.getAverageLatency() > slowFactor * minLatency) {
+          LOG.debug("Namenode " + handle + " is slow, skipping it for " +
+              slowPenalty + " ms");
+          handle.markSlow(now + slowPenalty);
+          continue;
+        }
+      }
+      double load = handle.getLoad(unknownLatency);
+      if (best == null || load < bestLoad) {
+        best = handle;
+        bestLoad = load;
+        ties = 1;
+      } else if (load == bestLoad && rand.nextInt(++ties) == 0) {
+        best = handle;
+      }
+    }
+
+    if (best == null) {
+      // all namenodes are slow
+      return getRandomNNInternal();
+    }
+    return best;
+  }
+
   String printNamenodes() {
     String nns = "Client is connected to namenodes: ";
     for (NamenodeSelector.NamenodeHandle namenode : nnList) {
@@ -367,4 +367,60 @@ public Object[] getBlocksAndIdsAndStates(int startIndex, int endIndex) {
     }
     return new Object[]{blksIds, blks, blkStates};
   }
+
+  /**
+   * Same as {@link #getBlocksAndIdsAndStates(int, int)} for the blocks at
+   * indexes[startIndex] to indexes[endIndex - 1].
+   */
+  public Object[] getBlocksAndIdsAndStates(int[] indexes, int startIndex,
+      int endIndex) {
+    int size = endIndex - startIndex;
+    Block[] blks = new Block[size];
+    long[] blksIds = new long[size];
+    ReplicaState[] blkStates = new ReplicaState[size];
+    for (int i = 0; i < size; i++) {
+      int index = indexes[startIndex + i];
+      Block blk = new Block();
+      blk.setNoPersistance(blockId(index), blockLength(index),
+          blockGenerationStamp(index));
+      blks[i] = blk;
+      blksIds[i] = blk.getBlockId();
+      blkStates[i] = blockReplicaState(index);
+    }
+    return new Object[]{blksIds, blks, blkStates};
+  }
+
+  /**
+   * @return the indexes of the blocks of this report ordered by block id
+   */
+  public int[] getBlockIndexesSortedById() {
+    int numOfBlocks = getNumberOfBlocks();
+    int[] indexes = new int[numOfBlocks];
+    for (int i = 0; i < numOfBlocks; i++) {
+      indexes[i] = i;
+    }
+    // bottom up merge sort, the report is not copied into boxed pairs
+    int[] buffer = new int[numOfBlocks];
+    for (int width = 1; width < numOfBlocks; width <<= 1) {
+      for (int left = 0; left < numOfBlocks; left += width << 1) {
+        int mid = Math.min(left + width, numOfBlocks);
+        int right = Math.min(left + (width << 1), numOfBlocks);
+        int i = left, j = mid, k = left;
+        while (i < mid && j < right) {
+          buffer[k++] = blockId(indexes[j]) < blockId(indexes[i]) ?
+              indexes[j++] : indexes[i++];
+        }
+        while (i < mid) {
+          buffer[k++] = indexes[i++];
+        }
+        while (j < right) {
+          buffer[k++] = indexes[j++];
+        }
+      }
+      int[] tmp = indexes;
+      indexes = buffer;
+      buffer = tmp;
+    }
+    return indexes;
+  }
 }
@@ -128,6 +128,31 @@ public LocatedBlocks getBlockLocations(String src, long offset, long length)
       throws AccessControlException, FileNotFoundException,
       UnresolvedLinkException, IOException;
 
+  /**
+   * Get locations of the blocks of many files within the same range. Unlike
+   * {@link #getBlockLocations(String, long, long)} the access times of the
+   * files are not updated.
+   *
+   * @param srcs
+   *     file names
+   * @param offset
+   *     range start offset
+   * @param length
+   *     range length
+   * @return the locations of the blocks of every file, in the order of
+   * <code>srcs</code>, null for the files that do not exist
+   * @throws AccessControlException
+   *     If access is denied
+   * @throws UnresolvedLinkException
+   *     If one of the paths contains a symlink
+   * @throws IOException
+   *     If an I/O error occurred
+   */
+  @Idempotent
+  public LocatedBlocks[] getBatchedBlockLocations(String[] srcs, long offset,
+      long length) throws AccessControlException, UnresolvedLinkException,
+      IOException;
+
   /**
    * Get the collection of missing or corrupted blocks for the given
    * erasure-coded file. This might not necessarily be up-to-date as it depends
@@ -986,6 +1011,24 @@ public HdfsFileStatus getFileInfo(String src)
       throws AccessControlException, FileNotFoundException,
       UnresolvedLinkException, IOException;
 
+  /**
+   * Get the file info of many files or directories at once.
+   *
+   * @param srcs
+   *     The string representations of the paths
+   * @return the file infos in the order of <code>srcs</code>, null for the
+   * paths that do not exist
+   * @throws AccessControlException
+   *     permission denied
+   * @throws UnresolvedLinkException
+   *     if one of the paths contains a symlink
+   * @throws IOException
+   *     If an I/O error occurred
+   */
+  @Idempotent
+  public HdfsFileStatus[] getFileInfos(String[] srcs)
+      throws AccessControlException, UnresolvedLinkException, IOException;
+
   /**
    * Get the file info for a specific file or directory. If the path
    * refers to a symlink then the FileStatus of the symlink is returned.
@@ -58,6 +58,8 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetAdditionalDatanodeResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBatchedBlockLocationsRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBatchedBlockLocationsResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsResponseProto.Builder;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetContentSummaryRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetContentSummaryResponseProto;
@@ -67,6 +69,8 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetDatanodeReportResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfosRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfosResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileLinkInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileLinkInfoResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFsStatsResponseProto;
@@ -253,6 +257,29 @@ public GetBlockLocationsResponseProto getBlockLocations(
     }
   }
 
+  @Override
+  public GetBatchedBlockLocationsResponseProto getBatchedBlockLocations(
+      RpcController controller, GetBatchedBlockLocationsRequestProto req)
+      throws ServiceException {
+    try {
+      LocatedBlocks[] locations = server.getBatchedBlockLocations(
+          req.getSrcsList().toArray(new String[req.getSrcsCount()]),
+          req.getOffset(), req.getLength());
+      GetBatchedBlockLocationsResponseProto.Builder builder =
+          GetBatchedBlockLocationsResponseProto.newBuilder();
+      for (int i = 0; i < locations.length; i++) {
+        if (locations[i] == null) {
+          builder.addMissing(i);
+        } else {
+          builder.addLocations(PBHelper.convert(locations[i]));
+        }
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public ClientNamenodeProtocolProtos.GetMissingBlockLocationsResponseProto getMissingBlockLocations(
       RpcController controller,
@@ -682,6 +709,27 @@ public GetFileInfoResponseProto getFileInfo(RpcController controller,
     }
   }
 
+  @Override
+  public GetFileInfosResponseProto getFileInfos(RpcController controller,
+      GetFileInfosRequestProto req) throws ServiceException {
+    try {
+      HdfsFileStatus[] result = server.getFileInfos(
+          req.getSrcsList().toArray(new String[req.getSrcsCount()]));
+      GetFileInfosResponseProto.Builder builder =
+          GetFileInfosResponseProto.newBuilder();
+      for (int i = 0; i < result.length; i++) {
+        if (result[i] == null) {
+          builder.addMissing(i);
+        } else {
+          builder.addFs(PBHelper.convert(result[i]));
+        }
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public GetFileLinkInfoResponseProto getFileLinkInfo(RpcController controller,
       GetFileLinkInfoRequestProto req) throws ServiceException {
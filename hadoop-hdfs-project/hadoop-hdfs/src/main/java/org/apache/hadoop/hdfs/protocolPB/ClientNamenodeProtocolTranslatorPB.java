@@ -65,12 +65,16 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetAdditionalDatanodeRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBatchedBlockLocationsRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBatchedBlockLocationsResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetContentSummaryRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetDataEncryptionKeyRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetDataEncryptionKeyResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetDatanodeReportRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfoResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfosRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileInfosResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileLinkInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFileLinkInfoResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetFsStatusRequestProto;
@@ -173,6 +177,39 @@ public LocatedBlocks getBlockLocations(String src, long offset, long length)
     }
   }
 
+  @Override
+  public LocatedBlocks[] getBatchedBlockLocations(String[] srcs, long offset,
+      long length) throws AccessControlException, UnresolvedLinkException,
+      IOException {
+    GetBatchedBlockLocationsRequestProto req =
+        GetBatchedBlockLocationsRequestProto.newBuilder()
+            .addAllSrcs(Arrays.asList(srcs)).setOffset(offset)
+            .setLength(length).build();
+    try {
+      GetBatchedBlockLocationsResponseProto resp =
+          rpcProxy.getBatchedBlockLocations(null, req);
+      boolean[] missing = toMissing(srcs.length, resp.getMissingList());
+      LocatedBlocks[] result = new LocatedBlocks[srcs.length];
+      int next = 0;
+      for (int i = 0; i < srcs.length; i++) {
+        if (!missing[i]) {
+          result[i] = PBHelper.convert(resp.getLocations(next++));
+        }
+      }
+      return result;
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
+  private static boolean[] toMissing(int count, List<Integer> indexes) {
+    boolean[] missing = new boolean[count];
+    for (int index : indexes) {
+      missing[index] = true;
+    }
+    return missing;
+  }
+
   @Override
   public LocatedBlocks getMissingBlockLocations(String filePath)
       throws AccessControlException, FileNotFoundException,
@@ -653,6 +690,27 @@ public HdfsFileStatus getFileInfo(String src)
     }
   }
 
+  @Override
+  public HdfsFileStatus[] getFileInfos(String[] srcs)
+      throws AccessControlException, UnresolvedLinkException, IOException {
+    GetFileInfosRequestProto req = GetFileInfosRequestProto.newBuilder()
+        .addAllSrcs(Arrays.asList(srcs)).build();
+    try {
+      GetFileInfosResponseProto res = rpcProxy.getFileInfos(null, req);
+      boolean[] missing = toMissing(srcs.length, res.getMissingList());
+      HdfsFileStatus[] result = new HdfsFileStatus[srcs.length];
+      int next = 0;
+      for (int i = 0; i < srcs.length; i++) {
+        if (!missing[i]) {
+          result[i] = PBHelper.convert(res.getFs(next++));
+        }
+      }
+      return result;
+    } catch (ServiceException e) {
+      throw ProtobufHelper.getRemoteException(e);
+    }
+  }
+
   @Override
   public HdfsFileStatus getFileLinkInfo(String src)
       throws AccessControlException, UnresolvedLinkException, IOException {
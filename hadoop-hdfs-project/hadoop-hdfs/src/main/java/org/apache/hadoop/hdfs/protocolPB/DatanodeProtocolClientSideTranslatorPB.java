@@ -184,7 +184,8 @@ public HeartbeatResponse sendHeartbeat(DatanodeRegistration registration,
       cmds[index] = PBHelper.convert(p);
       index++;
     }
-    return new HeartbeatResponse(cmds);
+    return new HeartbeatResponse(cmds, resp.getPendingBlockReports(),
+        resp.getPendingBlockReportBlocks());
   }
 
   @Override
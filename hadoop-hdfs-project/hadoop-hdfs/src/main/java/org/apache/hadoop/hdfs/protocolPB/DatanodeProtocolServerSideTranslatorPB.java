@@ -129,6 +129,8 @@ public HeartbeatResponseProto sendHeartbeat(RpcController controller,
         }
       }
     }
+    builder.setPendingBlockReports(response.getPendingBlockReports());
+    builder.setPendingBlockReportBlocks(response.getPendingBlockReportBlocks());
     return builder.build();
   }
 
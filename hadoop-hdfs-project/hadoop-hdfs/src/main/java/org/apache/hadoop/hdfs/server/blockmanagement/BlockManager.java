@@ -20,8 +20,6 @@
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
-import com.google.common.primitives.Ints;
-import com.google.common.primitives.Longs;
 import io.hops.common.INodeUtil;
 import io.hops.exception.StorageException;
 import io.hops.exception.TransactionContextException;
@@ -78,6 +76,9 @@
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.KeyUpdateCommand;
 import org.apache.hadoop.hdfs.server.protocol.ReceivedDeletedBlockInfo;
+import org.apache.hadoop.hdfs.util.LongHashSet;
+import org.apache.hadoop.hdfs.util.LongIntHashMap;
+import org.apache.hadoop.hdfs.util.LongLongHashMap;
 import org.apache.hadoop.net.Node;
 import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.Time;
@@ -85,6 +86,7 @@
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -95,10 +97,12 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static io.hops.transaction.lock.LockFactory.BLK;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -133,6 +137,8 @@ public class BlockManager {
   private volatile long scheduledReplicationBlocksCount = 0L;
   private AtomicLong excessBlocksCount = new AtomicLong(0L);
   private AtomicLong postponedMisreplicatedBlocksCount = new AtomicLong(0L);
+  private final AtomicInteger pendingBlockReports = new AtomicInteger(0);
+  private final AtomicLong pendingBlockReportBlocks = new AtomicLong(0L);
   
   /**
    * Used by metrics
@@ -183,6 +189,21 @@ public long getPostponedMisreplicatedBlocksCount() {
     return postponedMisreplicatedBlocksCount.get();
   }
 
+  /**
+   * Number of full block reports being processed, advertised to the
+   * datanodes in the heartbeat responses
+   */
+  public int getPendingBlockReports() {
+    return pendingBlockReports.get();
+  }
+
+  /**
+   * Number of blocks in the full block reports being processed
+   */
+  public long getPendingBlockReportBlocks() {
+    return pendingBlockReportBlocks.get();
+  }
+
   /**
    * replicationRecheckInterval is how often namenode checks for new replication
    * work
@@ -284,6 +305,10 @@ public long getPostponedMisreplicatedBlocksCount() {
    * Number of blocks to process at one batch
    */
   private final int processReportBatchSize;
+  /**
+   * Diff and apply full block reports range by range
+   */
+  private final boolean processReportStreaming;
   /**
    * Number of files to process at one batch
    */
@@ -365,6 +390,9 @@ public BlockManager(final Namesystem namesystem, final FSClusterStats stats,
     this.processReportBatchSize =
         conf.getInt(DFSConfigKeys.DFS_NAMENODE_PROCESS_REPORT_BATCH_SIZE,
             DFSConfigKeys.DFS_NAMENODE_PROCESS_REPORT_BATCH_SIZE_DEFAULT);
+    this.processReportStreaming =
+        conf.getBoolean(DFSConfigKeys.DFS_NAMENODE_PROCESS_REPORT_STREAMING,
+            DFSConfigKeys.DFS_NAMENODE_PROCESS_REPORT_STREAMING_DEFAULT);
     
     this.processMisReplicatedBatchSize =
         conf.getInt(DFSConfigKeys.DFS_NAMENODE_PROCESS_MISREPLICATED_BATCH_SIZE,
@@ -1721,12 +1749,20 @@ public void processReport(final DatanodeID nodeID, final String poolId,
       return;
     }
 
-    if (node.numBlocks() == 0) {
-      // The first block report can be processed a lot more efficiently than
-      // ordinary block reports.  This shortens restart times.
-      processFirstBlockReport(node, newReport);
-    } else {
-      processReport(node, newReport);
+    final int numOfReportedBlks = newReport.getNumberOfBlocks();
+    pendingBlockReports.incrementAndGet();
+    pendingBlockReportBlocks.addAndGet(numOfReportedBlks);
+    try {
+      if (node.numBlocks() == 0) {
+        // The first block report can be processed a lot more efficiently than
+        // ordinary block reports.  This shortens restart times.
+        processFirstBlockReport(node, newReport);
+      } else {
+        processReport(node, newReport);
+      }
+    } finally {
+      pendingBlockReports.decrementAndGet();
+      pendingBlockReportBlocks.addAndGet(-numOfReportedBlks);
     }
 
     // Now that we have an up-to-date block report, we know that any
@@ -1832,9 +1868,25 @@ private void processReport(final DatanodeDescriptor node,
     
     final boolean firstBlockReport =
         namesystem.isInStartupSafeMode() && node.isFirstBlockReport();
+    if (processReportStreaming) {
+      reportDiffInRanges(node, report, firstBlockReport);
+      return;
+    }
     reportDiff(node, report, toAdd, toRemove, toInvalidate, toCorrupt, toUC,
         firstBlockReport);
+    applyReportDiff(node, toAdd, toRemove, toInvalidate, toCorrupt, toUC,
+        firstBlockReport);
+  }
 
+  /**
+   * Process the queues filled by the diff of a block report.
+   */
+  private void applyReportDiff(final DatanodeDescriptor node,
+      final Collection<BlockInfo> toAdd, final Collection<Long> toRemove,
+      final Collection<Block> toInvalidate,
+      final Collection<BlockToMarkCorrupt> toCorrupt,
+      final Collection<StatefulBlockInfo> toUC, final boolean firstBlockReport)
+      throws IOException {
     // Process the blocks on each queue
     for (StatefulBlockInfo b : toUC) {
       if (firstBlockReport) {
@@ -1977,11 +2029,14 @@ private void reportDiff(final DatanodeDescriptor dn,
     if (newReport == null) {
       return;
     }  
-    final Map<Long,Integer> blkAndInodeIdMap = dn.getAllMachineReplicas();
-    final Set<Long> allMachineBlocks = new HashSet<Long>(blkAndInodeIdMap.keySet());
-    final Map<Long,Long> invalidatedReplicas = dn.getAllMachineInvalidatedReplicasWithGenStamp();
+    // the maps are only read by the sub tasks, the sets are shared and
+    // guarded by their own monitors
+    final LongIntHashMap blkAndInodeIdMap = dn.getAllMachineReplicas();
+    final LongHashSet allMachineBlocks = new LongHashSet(blkAndInodeIdMap);
+    final LongLongHashMap invalidatedReplicas =
+        dn.getAllMachineInvalidatedReplicasWithGenStamp();
     
-    final Set<Long> safeBlocks = new HashSet<Long>(allMachineBlocks);
+    final LongHashSet safeBlocks = new LongHashSet(blkAndInodeIdMap);
     
     try {
       final int numOfReportedBlks = newReport.getNumberOfBlocks();
@@ -2007,23 +2062,28 @@ public Void call() throws Exception {
                 public void acquireLock(TransactionLocks locks) throws IOException {
                   LockFactory lf = LockFactory.getInstance();
                   long[] partOfreportedBlks = (long[]) getParams()[0];
-                  List<Long> resovedBlkIds = new ArrayList<Long>();
-                  List<Integer> inodeIds = new ArrayList<Integer>();
-                  List<Long> unResovedBlkIds = new ArrayList<Long>();
+                  long[] resovedBlkIds = new long[partOfreportedBlks.length];
+                  int[] inodeIds = new int[partOfreportedBlks.length];
+                  long[] unResovedBlkIds = new long[partOfreportedBlks.length];
+                  int numResolved = 0;
+                  int numUnResolved = 0;
                   
                   for(int i =0 ;i < partOfreportedBlks.length; i++){
-                    Integer inodeId = blkAndInodeIdMap.get(partOfreportedBlks[i]);
-                    if(inodeId  != null){
-                      resovedBlkIds.add(partOfreportedBlks[i]);
-                      inodeIds.add(inodeId);
+                    int inodeId = blkAndInodeIdMap.get(partOfreportedBlks[i],
+                        INode.NON_EXISTING_ID);
+                    if(inodeId != INode.NON_EXISTING_ID){
+                      resovedBlkIds[numResolved] = partOfreportedBlks[i];
+                      inodeIds[numResolved++] = inodeId;
                     }else{
-                      unResovedBlkIds.add(partOfreportedBlks[i]);
+                      unResovedBlkIds[numUnResolved++] = partOfreportedBlks[i];
                     }
                   }
                   
-                  locks.add(lf.getBlockReportingLocks(Longs.toArray(resovedBlkIds),
-                          Ints.toArray(inodeIds),
-                          Longs.toArray(unResovedBlkIds), dn.getSId()));
+                  locks.add(lf.getBlockReportingLocks(
+                          Arrays.copyOf(resovedBlkIds, numResolved),
+                          Arrays.copyOf(inodeIds, numResolved),
+                          Arrays.copyOf(unResovedBlkIds, numUnResolved),
+                          dn.getSId()));
                   
                 }
 
@@ -2035,12 +2095,19 @@ public Object performTask() throws IOException {
                   for (int index = 0; index < blks.length; index++) {
                     Block iblk = blks[index];
                     ReplicaState iState = blksStates[index];
+                    boolean replicaAlreadyExists;
+                    synchronized (allMachineBlocks) {
+                      replicaAlreadyExists =
+                          allMachineBlocks.contains(iblk.getBlockId());
+                    }
                     BlockInfo storedBlock =
                             processReportedBlockOptimizedForBlkRepts(dn, iblk, iState, toAdd, toInvalidate,
                             toCorrupt, toUC, safeBlocks, firstBlockReport,
-                            allMachineBlocks.contains(iblk.getBlockId()), invalidatedReplicas);
+                            replicaAlreadyExists, invalidatedReplicas);
                     if (storedBlock != null) {
-                      allMachineBlocks.remove(storedBlock.getBlockId());
+                      synchronized (allMachineBlocks) {
+                        allMachineBlocks.remove(storedBlock.getBlockId());
+                      }
                     }
                   }
                   return null;
@@ -2062,16 +2129,219 @@ public Object performTask() throws IOException {
       }
 
 
-      toRemove.addAll(allMachineBlocks);
+      for (long blockId : allMachineBlocks.toArray()) {
+        toRemove.add(blockId);
+        safeBlocks.remove(blockId);
+      }
       if (namesystem.isInStartupSafeMode()) {
-        safeBlocks.removeAll(toRemove);
-        namesystem.adjustSafeModeBlocks(safeBlocks);
+        // the safe blocks data access takes boxed ids
+        long[] safeBlockIds = safeBlocks.toArray();
+        Set<Long> safeBlocksSet = new HashSet<Long>(safeBlockIds.length);
+        for (long blockId : safeBlockIds) {
+          safeBlocksSet.add(blockId);
+        }
+        namesystem.adjustSafeModeBlocks(safeBlocksSet);
       }
     } catch (Exception ex) {
       throw new IOException(ex);
     }
   }
 
+  /**
+   * Diff a full block report against the replicas stored for the datanode in
+   * sorted block id ranges. Every range holds processReportBatchSize reported
+   * blocks and the stored replicas with ids between its first block and the
+   * first block of the next range. The ranges are diffed in parallel and the
+   * changes of a range are applied as soon as its diff is done, so the
+   * NameNode only keeps the queues of the ranges in progress.
+   * <p/>
+   * The data access layer has no block id range query on replicas, the
+   * stored replicas are read once into sorted primitive arrays and every
+   * range works on its slice of them.
+   */
+  private void reportDiffInRanges(final DatanodeDescriptor dn,
+      final BlockListAsLongs newReport, final boolean firstBlockReport)
+      throws IOException {
+    if (newReport == null) {
+      return;
+    }
+    final StoredReplicas storedReplicas = dn.getSortedMachineReplicas();
+    final LongLongHashMap invalidatedReplicas =
+        dn.getAllMachineInvalidatedReplicasWithGenStamp();
+    final int[] sortedIndexes = newReport.getBlockIndexesSortedById();
+    final boolean inStartupSafeMode = namesystem.isInStartupSafeMode();
+    final LongHashSet safeBlocks = new LongHashSet(
+        inStartupSafeMode ? storedReplicas.size() : 0);
+
+    final int numOfReportedBlks = sortedIndexes.length;
+    final int numOfRanges = Math.max(1,
+        (numOfReportedBlks + processReportBatchSize - 1) /
+            processReportBatchSize);
+    long[] rangeStarts = new long[numOfRanges - 1];
+    for (int range = 1; range < numOfRanges; range++) {
+      rangeStarts[range - 1] = newReport
+          .getBlockId(sortedIndexes[range * processReportBatchSize]);
+    }
+    final int[] storedEnds = storedReplicas.rangeEnds(rangeStarts);
+
+    List<Callable<Object>> rangeTasks =
+        new ArrayList<Callable<Object>>(numOfRanges);
+    for (int range = 0; range < numOfRanges; range++) {
+      final int reportedStart = range * processReportBatchSize;
+      final int reportedEnd =
+          Math.min(reportedStart + processReportBatchSize, numOfReportedBlks);
+      final int storedStart = range == 0 ? 0 : storedEnds[range - 1];
+      final int storedEnd = storedEnds[range];
+
+      rangeTasks.add(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          Object[] blksData = newReport
+              .getBlocksAndIdsAndStates(sortedIndexes, reportedStart,
+                  reportedEnd);
+          processReportRange(dn, blksData, storedReplicas, storedStart,
+              storedEnd, invalidatedReplicas,
+              inStartupSafeMode ? safeBlocks : null, firstBlockReport);
+          return null;
+        }
+      });
+    }
+
+    try {
+      for (Future<Object> result : ((FSNamesystem) namesystem)
+          .getExecutorService().invokeAll(rangeTasks)) {
+        result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+
+    if (inStartupSafeMode) {
+      // the safe blocks data access takes boxed ids
+      long[] safeBlockIds = safeBlocks.toArray();
+      Set<Long> safeBlocksSet = new HashSet<Long>(safeBlockIds.length);
+      for (long blockId : safeBlockIds) {
+        safeBlocksSet.add(blockId);
+      }
+      namesystem.adjustSafeModeBlocks(safeBlocksSet);
+    }
+  }
+
+  /**
+   * Diff the reported blocks of a range, sorted by block id, against the
+   * stored replicas storedStart to storedEnd - 1 and apply the changes.
+   */
+  private void processReportRange(final DatanodeDescriptor dn,
+      final Object[] blksData, final StoredReplicas stored,
+      final int storedStart, final int storedEnd,
+      final LongLongHashMap invalidatedReplicas, final LongHashSet safeBlocks,
+      final boolean firstBlockReport) throws IOException {
+    final long[] reportedBlks = (long[]) blksData[0];
+    // merge the sorted reported and stored ids, storedIndex[i] is the index
+    // of the stored replica of the ith reported block or -1
+    final int[] storedIndex = new int[reportedBlks.length];
+    long[] resolvedBlkIds = new long[reportedBlks.length];
+    int[] inodeIds = new int[reportedBlks.length];
+    long[] unResolvedBlkIds = new long[reportedBlks.length];
+    int numResolved = 0;
+    int numUnResolved = 0;
+    int j = storedStart;
+    for (int i = 0; i < reportedBlks.length; i++) {
+      while (j < storedEnd && stored.getBlockId(j) < reportedBlks[i]) {
+        j++;
+      }
+      if (j < storedEnd && stored.getBlockId(j) == reportedBlks[i]) {
+        storedIndex[i] = j;
+        resolvedBlkIds[numResolved] = reportedBlks[i];
+        inodeIds[numResolved++] = stored.getInodeId(j);
+      } else {
+        storedIndex[i] = -1;
+        unResolvedBlkIds[numUnResolved++] = reportedBlks[i];
+      }
+    }
+    final long[] rangeResolvedBlkIds = Arrays.copyOf(resolvedBlkIds,
+        numResolved);
+    final int[] rangeInodeIds = Arrays.copyOf(inodeIds, numResolved);
+    final long[] rangeUnResolvedBlkIds = Arrays.copyOf(unResolvedBlkIds,
+        numUnResolved);
+
+    final Collection<BlockInfo> toAdd = new HashSet<BlockInfo>();
+    final Collection<Block> toInvalidate = new HashSet<Block>();
+    final Collection<BlockToMarkCorrupt> toCorrupt =
+        new HashSet<BlockToMarkCorrupt>();
+    final Collection<StatefulBlockInfo> toUC = new HashSet<StatefulBlockInfo>();
+    final LongHashSet rangeSafeBlocks = new LongHashSet(storedEnd - storedStart);
+    final boolean[] keptReplicas = new boolean[storedEnd - storedStart];
+
+    if (reportedBlks.length == 0) {
+      // nothing to diff, all the stored replicas of the range are removed
+      for (int k = storedStart; k < storedEnd; k++) {
+        rangeSafeBlocks.add(stored.getBlockId(k));
+      }
+    } else {
+      new HopsTransactionalRequestHandler(firstBlockReport ?
+          HDFSOperationType.PROCESS_FIRST_BLOCK_REPORT :
+          HDFSOperationType.PROCESS_REPORT) {
+        @Override
+        public void acquireLock(TransactionLocks locks) throws IOException {
+          LockFactory lf = LockFactory.getInstance();
+          locks.add(lf.getBlockReportingLocks(rangeResolvedBlkIds,
+              rangeInodeIds, rangeUnResolvedBlkIds, dn.getSId()));
+        }
+
+        @Override
+        public Object performTask() throws IOException {
+          // the transaction might be retried
+          toAdd.clear();
+          toInvalidate.clear();
+          toCorrupt.clear();
+          toUC.clear();
+          Arrays.fill(keptReplicas, false);
+          rangeSafeBlocks.clear();
+          for (int k = storedStart; k < storedEnd; k++) {
+            rangeSafeBlocks.add(stored.getBlockId(k));
+          }
+
+          Block[] blks = (Block[]) blksData[1];
+          ReplicaState[] blksStates = (ReplicaState[]) blksData[2];
+          for (int index = 0; index < blks.length; index++) {
+            BlockInfo storedBlock =
+                processReportedBlockOptimizedForBlkRepts(dn, blks[index],
+                    blksStates[index], toAdd, toInvalidate, toCorrupt, toUC,
+                    rangeSafeBlocks, firstBlockReport, storedIndex[index] != -1,
+                    invalidatedReplicas);
+            if (storedBlock != null && storedIndex[index] != -1) {
+              keptReplicas[storedIndex[index] - storedStart] = true;
+            }
+          }
+          return null;
+        }
+      }.handle(null);
+    }
+
+    Collection<Long> toRemove = new ArrayList<Long>();
+    for (int k = storedStart; k < storedEnd; k++) {
+      if (!keptReplicas[k - storedStart]) {
+        toRemove.add(stored.getBlockId(k));
+        rangeSafeBlocks.remove(stored.getBlockId(k));
+      }
+    }
+    applyReportDiff(dn, toAdd, toRemove, toInvalidate, toCorrupt, toUC,
+        firstBlockReport);
+
+    if (safeBlocks != null) {
+      long[] rangeSafeBlockIds = rangeSafeBlocks.toArray();
+      synchronized (safeBlocks) {
+        for (long blockId : rangeSafeBlockIds) {
+          safeBlocks.add(blockId);
+        }
+      }
+    }
+  }
+
   /**
    * Process a block replica reported by the data-node.
    * No side effects except adding to the passed-in Collections.
@@ -2185,9 +2455,9 @@ private BlockInfo processReportedBlockOptimizedForBlkRepts(final DatanodeDescrip
       final Block block, final ReplicaState reportedState,
       final Collection<BlockInfo> toAdd, final Collection<Block> toInvalidate,
       final Collection<BlockToMarkCorrupt> toCorrupt,
-      final Collection<StatefulBlockInfo> toUC, final Set<Long> safeBlocks,
-      final boolean firstBlockReport, final Boolean replicaAlreadyExists,
-      final Map<Long,Long> allMachineInvalidatedBlocks)
+      final Collection<StatefulBlockInfo> toUC, final LongHashSet safeBlocks,
+      final boolean firstBlockReport, final boolean replicaAlreadyExists,
+      final LongLongHashMap allMachineInvalidatedBlocks)
       throws IOException {
     
     if (LOG.isDebugEnabled()) {
@@ -2203,7 +2473,7 @@ private BlockInfo processReportedBlockOptimizedForBlkRepts(final DatanodeDescrip
       blockLog.info("BLOCK* processReport: " + block + " on " + dn + " size " +
           block.getNumBytes() + " does not belong to any file");
       toInvalidate.add(new Block(block));
-      safeBlocks.remove(block.getBlockId());
+      removeSafeBlock(safeBlocks, block.getBlockId());
       return null;
     }
     BlockUCState ucState = storedBlock.getBlockUCState();
@@ -2215,8 +2485,9 @@ private BlockInfo processReportedBlockOptimizedForBlkRepts(final DatanodeDescrip
 
     if (!firstBlockReport) {
       // Ignore replicas already scheduled to be removed from the DN
-      if (allMachineInvalidatedBlocks.containsKey(block.getBlockId()) && 
-             allMachineInvalidatedBlocks.get(block.getBlockId()) == block.getGenerationStamp() ) {
+      if (allMachineInvalidatedBlocks.containsKey(block.getBlockId()) &&
+          allMachineInvalidatedBlocks.get(block.getBlockId(), -1) ==
+              block.getGenerationStamp()) {
        /*  TODO: following assertion is incorrect, see HDFS-2668
         assert storedBlock.findDatanode(dn) < 0 : "Block " + block
         + " in recentInvalidatesSet should not appear in DN " + dn; */
@@ -2228,7 +2499,7 @@ private BlockInfo processReportedBlockOptimizedForBlkRepts(final DatanodeDescrip
         checkReplicaCorrupt(block, reportedState, storedBlock, ucState, dn);
     if (c != null) {
       toCorrupt.add(c);
-      safeBlocks.remove(block.getBlockId());
+      removeSafeBlock(safeBlocks, block.getBlockId());
       return storedBlock;
     }
     
@@ -2236,22 +2507,27 @@ private BlockInfo processReportedBlockOptimizedForBlkRepts(final DatanodeDescrip
     if (isBlockUnderConstruction(storedBlock, ucState, reportedState)) {
       toUC.add(new StatefulBlockInfo((BlockInfoUnderConstruction) storedBlock,
           reportedState));
-      safeBlocks.remove(block.getBlockId());
+      removeSafeBlock(safeBlocks, block.getBlockId());
       return storedBlock;
     }
     
     //add replica if appropriate
     if (reportedState == ReplicaState.FINALIZED) {
-      if((replicaAlreadyExists == null && storedBlock.hasReplicaIn(dn)) ||
-          (replicaAlreadyExists != null && replicaAlreadyExists)){
+      if (replicaAlreadyExists) {
         return storedBlock;
       }
 
       toAdd.add(storedBlock);
-      safeBlocks.remove(block.getBlockId());
+      removeSafeBlock(safeBlocks, block.getBlockId());
     }
     return storedBlock;
   }
+
+  private static void removeSafeBlock(LongHashSet safeBlocks, long blockId) {
+    synchronized (safeBlocks) {
+      safeBlocks.remove(blockId);
+    }
+  }
     
   /**
    * The next two methods test the various cases under which we must conclude
@@ -32,6 +32,8 @@
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.util.LightWeightHashSet;
+import org.apache.hadoop.hdfs.util.LongIntHashMap;
+import org.apache.hadoop.hdfs.util.LongLongHashMap;
 import org.apache.hadoop.util.Time;
 
 import java.io.IOException;
@@ -360,30 +362,61 @@ public Object performTask() throws StorageException, IOException {
     return (List<BlockInfo>) findBlocksHandler.handle();
   }
   
-  public Map<Long,Integer> getAllMachineReplicas() throws IOException {
+  /**
+   * @return the ids of the blocks that have a replica on this datanode,
+   * mapped to the ids of their inodes
+   */
+  public LongIntHashMap getAllMachineReplicas() throws IOException {
     LightWeightRequestHandler findBlocksHandler = new LightWeightRequestHandler(
         HDFSOperationType.GET_ALL_MACHINE_BLOCKS_IDS) {
       @Override
       public Object performTask() throws StorageException, IOException {
         ReplicaDataAccess da = (ReplicaDataAccess) HdfsStorageFactory
             .getDataAccess(ReplicaDataAccess.class);
-        return da.findBlockAndInodeIdsByStorageId(getSId());
+        // the boxed map returned by the data access layer is short lived,
+        // only the primitive copy outlives this call
+        return new LongIntHashMap(
+            (Map<Long, Integer>) da.findBlockAndInodeIdsByStorageId(getSId()));
       }
     };
-    return (Map<Long,Integer>)findBlocksHandler.handle();
+    return (LongIntHashMap) findBlocksHandler.handle();
   }
-  
-    public Map<Long,Long> getAllMachineInvalidatedReplicasWithGenStamp() throws IOException {
+
+  /**
+   * @return the replicas on this datanode sorted by block id
+   */
+  StoredReplicas getSortedMachineReplicas() throws IOException {
+    LightWeightRequestHandler findBlocksHandler = new LightWeightRequestHandler(
+        HDFSOperationType.GET_ALL_MACHINE_BLOCKS_IDS) {
+      @Override
+      public Object performTask() throws StorageException, IOException {
+        ReplicaDataAccess da = (ReplicaDataAccess) HdfsStorageFactory
+            .getDataAccess(ReplicaDataAccess.class);
+        return StoredReplicas.of(
+            (Map<Long, Integer>) da.findBlockAndInodeIdsByStorageId(getSId()));
+      }
+    };
+    return (StoredReplicas) findBlocksHandler.handle();
+  }
+
+  /**
+   * @return the ids of the blocks that have a replica on this datanode
+   * scheduled for invalidation, mapped to the generation stamps of the
+   * replicas
+   */
+  public LongLongHashMap getAllMachineInvalidatedReplicasWithGenStamp()
+      throws IOException {
     LightWeightRequestHandler findBlocksHandler = new LightWeightRequestHandler(
         HDFSOperationType.GET_ALL_MACHINE_BLOCKS_IDS) {
       @Override
       public Object performTask() throws StorageException, IOException {
         InvalidateBlockDataAccess da = (InvalidateBlockDataAccess) HdfsStorageFactory
             .getDataAccess(InvalidateBlockDataAccess.class);
-        return da.findInvalidatedBlockByStorageIdUsingMySQLServer(getSId());
+        return new LongLongHashMap((Map<Long, Long>) da
+            .findInvalidatedBlockByStorageIdUsingMySQLServer(getSId()));
       }
     };
-    return (Map<Long,Long>)findBlocksHandler.handle();
+    return (LongLongHashMap) findBlocksHandler.handle();
   }
   
   /**
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The replicas stored for a datanode as two parallel arrays, the block ids
+ * in ascending order and the ids of their inodes. A full block report diffed
+ * in ranges reads the replicas of a block id range as a slice of the arrays.
+ * <p/>
+ * This class is immutable once built.
+ */
+class StoredReplicas {
+  private final long[] blockIds;
+  private final int[] inodeIds;
+
+  StoredReplicas(long[] sortedBlockIds, int[] inodeIds) {
+    assert sortedBlockIds.length == inodeIds.length;
+    this.blockIds = sortedBlockIds;
+    this.inodeIds = inodeIds;
+  }
+
+  /**
+   * Copy the block and inode ids of a map from the data access layer, the map
+   * can be dropped as soon as this returns.
+   */
+  static StoredReplicas of(Map<Long, Integer> blkAndInodeIds) {
+    long[] blockIds = new long[blkAndInodeIds.size()];
+    int i = 0;
+    for (Long blockId : blkAndInodeIds.keySet()) {
+      blockIds[i++] = blockId;
+    }
+    Arrays.sort(blockIds);
+    int[] inodeIds = new int[blockIds.length];
+    for (i = 0; i < blockIds.length; i++) {
+      inodeIds[i] = blkAndInodeIds.get(blockIds[i]);
+    }
+    return new StoredReplicas(blockIds, inodeIds);
+  }
+
+  int size() {
+    return blockIds.length;
+  }
+
+  long getBlockId(int index) {
+    return blockIds[index];
+  }
+
+  int getInodeId(int index) {
+    return inodeIds[index];
+  }
+
+  /**
+   * @return the index of the first replica at or after from with a block id
+   * not less than blockId, size() if there is none
+   */
+  int indexOf(int from, long blockId) {
+    int low = from;
+    int high = blockIds.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (blockIds[mid] < blockId) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Split the replicas into the ranges of a sorted block report. Range i
+   * starts at the block id rangeStarts[i - 1] and ends before rangeStarts[i],
+   * the first range has no lower bound and the last range has no upper bound.
+   *
+   * @param rangeStarts
+   *     the first reported block id of every range but the first, ascending
+   * @return the end index of the replicas of every range, rangeStarts.length
+   * + 1 entries
+   */
+  int[] rangeEnds(long[] rangeStarts) {
+    int[] ends = new int[rangeStarts.length + 1];
+    int start = 0;
+    for (int range = 0; range < rangeStarts.length; range++) {
+      start = indexOf(start, rangeStarts[range]);
+      ends[range] = start;
+    }
+    ends[rangeStarts.length] = blockIds.length;
+    return ends;
+  }
+}
@@ -118,6 +118,7 @@ class BPOfferService implements Runnable {
   private volatile long lastBlockReport = 0;
   private boolean resetBlockReportTime = true;
   private BPServiceActor blkReportHander = null;
+  private volatile long blockReportBackoffUntil = 0;
   private List<ActiveNode> nnList = new CopyOnWriteArrayList<ActiveNode>();
   private List<InetSocketAddress> blackListNN =
       new CopyOnWriteArrayList<InetSocketAddress>();
@@ -765,6 +766,9 @@ DatanodeCommand blockReport() throws IOException {
     DatanodeCommand cmd = null;
     long startTime = now();
     if (startTime - lastBlockReport > dnConf.blockReportInterval) {
+      if (startTime < blockReportBackoffUntil) {
+        return null;
+      }
 
       // Flush any block information that precedes the block report. Otherwise
       // we have a chance that we will miss the delHint information
@@ -772,6 +776,14 @@ DatanodeCommand blockReport() throws IOException {
       // a FINALIZED one.
       reportReceivedDeletedBlocks();
 
+      // pick the namenode before creating the report, it is not worth
+      // creating a report that no one is ready to handle
+      BPServiceActor handler = selectBlockReportHandler(startTime);
+      if (handler == null) {
+        return null; //no one is ready to handle the request, return now without changing the values of lastBlockReport. it will be retried in next cycle
+      }
+      blkReportHander = handler;
+
       // Create block report
       long brCreateStartTime = now();
       BlockListAsLongs bReport =
@@ -783,17 +795,6 @@ DatanodeCommand blockReport() throws IOException {
           new DatanodeStorage(bpRegistration.getStorageID()),
           bReport.getBlockListAsLongs())};
 
-      ActiveNode an = nextNNForBlkReport();
-      if (an != null) {
-        blkReportHander = getAnActor(an.getInetSocketAddress());
-        if (blkReportHander == null || !blkReportHander.isInitialized()) {
-          return null; //no one is ready to handle the request, return now without changing the values of lastBlockReport. it will be retried in next cycle
-        }
-      } else {
-        LOG.warn("Unable to send block report");
-        return null;
-      }
-
       cmd =
           blkReportHander.blockReport(bpRegistration, getBlockPoolId(), report);
 
@@ -1047,6 +1048,88 @@ private BPServiceActor nextNNForNonBlkReportRPC() {
     return null;
   }
 
+  /**
+   * Pick the namenode for the next full block report. With block report load
+   * balancing the namenodes are chosen from the load they advertise in their
+   * heartbeat responses: two random namenodes that are not saturated are
+   * compared and the less loaded one is used, so that datanodes seeing the
+   * same loads do not all pick the same namenode. When all namenodes are
+   * saturated the datanode backs off for a randomized heartbeat interval.
+   * Without load information the leader picks the namenode.
+   *
+   * @return null if no namenode should get the report now
+   */
+  private BPServiceActor selectBlockReportHandler(long now) {
+    if (dnConf.blockReportLoadBalancing) {
+      List<BPServiceActor> withLoad = new ArrayList<BPServiceActor>();
+      for (BPServiceActor actor : bpServices) {
+        if (actor.isInitialized() && actor.hasRecentBlockReportLoad(now)) {
+          withLoad.add(actor);
+        }
+      }
+
+      if (!withLoad.isEmpty()) {
+        BPServiceActor actor = selectByBlockReportLoad(withLoad,
+            dnConf.maxPendingBlockReportsPerNameNode);
+        if (actor == null) {
+          long backoff = dnConf.heartBeatInterval + DFSUtil.getRandom()
+              .nextInt((int) Math.max(1, dnConf.heartBeatInterval));
+          blockReportBackoffUntil = now + backoff;
+          LOG.info("All " + withLoad.size() + " namenodes are busy with " +
+              "block reports, backing off for " + backoff + " msec");
+        }
+        return actor;
+      }
+    }
+
+    ActiveNode an = nextNNForBlkReport();
+    if (an == null) {
+      LOG.warn("Unable to send block report");
+      return null;
+    }
+    BPServiceActor actor = getAnActor(an.getInetSocketAddress());
+    if (actor == null || !actor.isInitialized()) {
+      return null;
+    }
+    return actor;
+  }
+
+  /**
+   * @return the less loaded of two random namenodes that process fewer than
+   * maxPending block reports, null if all of them are saturated
+   */
+  @VisibleForTesting
+  static BPServiceActor selectByBlockReportLoad(List<BPServiceActor> actors,
+      int maxPending) {
+    List<BPServiceActor> available = new ArrayList<BPServiceActor>();
+    for (BPServiceActor actor : actors) {
+      if (actor.getNNPendingBlockReports() < maxPending) {
+        available.add(actor);
+      }
+    }
+    return available.isEmpty() ? null : lessLoaded(available);
+  }
+
+  @VisibleForTesting
+  static BPServiceActor lessLoaded(List<BPServiceActor> actors) {
+    if (actors.size() == 1) {
+      return actors.get(0);
+    }
+    int first = DFSUtil.getRandom().nextInt(actors.size());
+    int second = DFSUtil.getRandom().nextInt(actors.size() - 1);
+    if (second >= first) {
+      second++;
+    }
+    BPServiceActor a = actors.get(first);
+    BPServiceActor b = actors.get(second);
+    long aBlocks = a.getNNPendingBlockReportBlocks();
+    long bBlocks = b.getNNPendingBlockReportBlocks();
+    if (aBlocks != bBlocks) {
+      return aBlocks < bBlocks ? a : b;
+    }
+    return a.getNNPendingBlockReports() <= b.getNNPendingBlockReports() ? a : b;
+  }
+
   private ActiveNode nextNNForBlkReport() {
     if (nnList == null || nnList.isEmpty()) {
       return null;
@@ -73,6 +73,10 @@ class BPServiceActor implements Runnable {
   private volatile long lastHeartbeat = 0;
   private volatile boolean initialized = false;
   private volatile boolean shouldServiceRun = true;
+  // block report load of the namenode from its last heartbeat response
+  private volatile int nnPendingBlockReports = 0;
+  private volatile long nnPendingBlockReportBlocks = 0;
+  private volatile long lastBlockReportLoadUpdate = 0;
   private final DataNode dn;
   private final DNConf dnConf;
 
@@ -101,6 +105,31 @@ boolean isAlive() {
     return shouldServiceRun && bpThread.isAlive();
   }
 
+  /**
+   * @return true if the namenode advertised its block report load in one of
+   * the last two heartbeat intervals
+   */
+  boolean hasRecentBlockReportLoad(long now) {
+    return lastBlockReportLoadUpdate > 0 &&
+        now - lastBlockReportLoadUpdate <= 2 * dnConf.heartBeatInterval;
+  }
+
+  @VisibleForTesting
+  void setBlockReportLoad(int pendingBlockReports,
+      long pendingBlockReportBlocks, long now) {
+    nnPendingBlockReports = pendingBlockReports;
+    nnPendingBlockReportBlocks = pendingBlockReportBlocks;
+    lastBlockReportLoadUpdate = now;
+  }
+
+  int getNNPendingBlockReports() {
+    return nnPendingBlockReports;
+  }
+
+  long getNNPendingBlockReportBlocks() {
+    return nnPendingBlockReportBlocks;
+  }
+
   @Override
   public String toString() {
     return bpos.toString() + " service to " + nnAddr;
@@ -335,6 +364,8 @@ private void offerService() throws Exception {
             HeartbeatResponse resp = sendHeartBeat();
             assert resp != null;
             dn.getMetrics().addHeartbeat(now() - startTime);
+            setBlockReportLoad(resp.getPendingBlockReports(),
+                resp.getPendingBlockReportBlocks(), now());
 
             long startProcessCommands = now();
             if (!processCommand(resp.getCommands())) {
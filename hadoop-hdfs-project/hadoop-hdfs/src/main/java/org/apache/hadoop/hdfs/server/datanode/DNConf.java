@@ -63,6 +63,8 @@ class DNConf {
   final long blockReportInterval;
   final long deleteReportInterval;
   final long initialBlockReportDelay;
+  final boolean blockReportLoadBalancing;
+  final int maxPendingBlockReportsPerNameNode;
   final int writePacketSize;
   
   final String minimumNameNodeVersion;
@@ -112,6 +114,13 @@ public DNConf(Configuration conf) {
           " Setting initial delay to 0 msec:");
     }
     initialBlockReportDelay = initBRDelay;
+
+    blockReportLoadBalancing = conf.getBoolean(
+        DFSConfigKeys.DFS_BLOCKREPORT_LOAD_BALANCING_ENABLED_KEY,
+        DFSConfigKeys.DFS_BLOCKREPORT_LOAD_BALANCING_ENABLED_DEFAULT);
+    maxPendingBlockReportsPerNameNode = conf.getInt(
+        DFSConfigKeys.DFS_BLOCKREPORT_MAX_PENDING_PER_NAMENODE_KEY,
+        DFSConfigKeys.DFS_BLOCKREPORT_MAX_PENDING_PER_NAMENODE_DEFAULT);
     
     heartBeatInterval = conf.getLong(DFS_HEARTBEAT_INTERVAL_KEY,
         DFS_HEARTBEAT_INTERVAL_DEFAULT) * 1000L;
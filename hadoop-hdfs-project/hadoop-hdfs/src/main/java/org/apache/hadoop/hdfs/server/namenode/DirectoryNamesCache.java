@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import org.apache.hadoop.util.Time;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the sorted child names of large directories between the pages of a
+ * listing so that only the children of a page have to be read from the
+ * database. Adding, removing or renaming a child increases the
+ * modification time of the directory, see
+ * {@link INodeDirectory#setModificationTime}, an entry is therefore only
+ * returned while the directory has the modification time it had when the
+ * names were read. Setting the times of a directory drops its entry on this
+ * NameNode; a directory whose times another NameNode set back to the cached
+ * modification time after its children changed is listed from a stale
+ * entry until the entry expires after the ttl. The least recently used
+ * entries are evicted once the cache holds more than the configured number
+ * of names.
+ */
+public class DirectoryNamesCache {
+
+  private static class Entry {
+    private final long modificationTime;
+    private final long creationTime;
+    private final byte[][] names;
+
+    private Entry(long modificationTime, long creationTime, byte[][] names) {
+      this.modificationTime = modificationTime;
+      this.creationTime = creationTime;
+      this.names = names;
+    }
+  }
+
+  private final int maxNames;
+  private final long ttl;
+  private final LinkedHashMap<Integer, Entry> entries =
+      new LinkedHashMap<Integer, Entry>(16, 0.75f, true);
+  private long cachedNames = 0;
+
+  public DirectoryNamesCache(int maxNames, long ttl) {
+    this.maxNames = maxNames;
+    this.ttl = ttl;
+  }
+
+  /**
+   * @return the sorted child names of the directory or null if they are not
+   * cached for this modification time of the directory
+   */
+  public synchronized byte[][] get(int dirId, long modificationTime) {
+    Entry entry = entries.get(dirId);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.modificationTime != modificationTime ||
+        Time.now() - entry.creationTime > ttl) {
+      remove(dirId);
+      return null;
+    }
+    return entry.names;
+  }
+
+  public synchronized void put(int dirId, long modificationTime,
+      byte[][] names) {
+    if (names.length > maxNames) {
+      return;
+    }
+    long now = Time.now();
+    remove(dirId);
+    Iterator<Map.Entry<Integer, Entry>> iterator =
+        entries.entrySet().iterator();
+    while (cachedNames + names.length > maxNames && iterator.hasNext()) {
+      cachedNames -= iterator.next().getValue().names.length;
+      iterator.remove();
+    }
+    entries.put(dirId, new Entry(modificationTime, now, names));
+    cachedNames += names.length;
+  }
+
+  /**
+   * Drop the entry of a directory whose modification time was set.
+   */
+  public synchronized void invalidate(int dirId) {
+    remove(dirId);
+  }
+
+  private void remove(int dirId) {
+    Entry entry = entries.remove(dirId);
+    if (entry != null) {
+      cachedNames -= entry.names.length;
+    }
+  }
+}
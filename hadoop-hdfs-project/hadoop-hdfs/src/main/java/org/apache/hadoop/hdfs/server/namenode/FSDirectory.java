@@ -97,6 +97,8 @@ public class FSDirectory implements Closeable {
   private final int maxComponentLength;
   private final int maxDirItems;
   private final int lsLimit;  // max list limit
+  private final boolean pagedListing;
+  private final DirectoryNamesCache namesCache;
 
 
   private boolean quotaEnabled;
@@ -122,6 +124,14 @@ public class FSDirectory implements Closeable {
         DFSConfigKeys.DFS_LIST_LIMIT_DEFAULT);
     this.lsLimit = configuredLimit > 0 ? configuredLimit :
         DFSConfigKeys.DFS_LIST_LIMIT_DEFAULT;
+    this.pagedListing =
+        conf.getBoolean(DFSConfigKeys.DFS_NAMENODE_LISTING_PAGED_KEY,
+            DFSConfigKeys.DFS_NAMENODE_LISTING_PAGED_DEFAULT);
+    this.namesCache = new DirectoryNamesCache(conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_LISTING_NAMES_CACHE_MAX_NAMES_KEY,
+        DFSConfigKeys.DFS_NAMENODE_LISTING_NAMES_CACHE_MAX_NAMES_DEFAULT),
+        conf.getLong(DFSConfigKeys.DFS_NAMENODE_LISTING_NAMES_CACHE_TTL_KEY,
+            DFSConfigKeys.DFS_NAMENODE_LISTING_NAMES_CACHE_TTL_DEFAULT));
     
     // filesystem limits
     this.maxComponentLength =
@@ -1401,6 +1411,54 @@ DirectoryListing getListing(String src, byte[] startAfter,
         totalNumChildren - startChild - numOfListing);
   }
 
+  /**
+   * Get a partial listing of the indicated directory from the children of
+   * the page read by the listing lock
+   *
+   * @param src
+   *     the directory name
+   * @param page
+   *     the children of the page sorted by name
+   * @param remaining
+   *     the number of children following the page
+   * @param needLocation
+   *     if block locations are returned
+   * @return a partial listing
+   */
+  DirectoryListing getListing(String src, List<INode> page, int remaining,
+      boolean needLocation)
+      throws UnresolvedLinkException, IOException, StorageException {
+    String srcs = normalizePath(src);
+    INode targetNode = getRootDir().getNode(srcs, true);
+    if (targetNode == null) {
+      return null;
+    }
+
+    if (!targetNode.isDirectory()) {
+      return new DirectoryListing(new HdfsFileStatus[]{
+          createFileStatus(HdfsFileStatus.EMPTY_NAME, targetNode,
+              needLocation)}, 0);
+    }
+    HdfsFileStatus listing[] = new HdfsFileStatus[page.size()];
+    for (int i = 0; i < listing.length; i++) {
+      INode cur = page.get(i);
+      listing[i] = createFileStatus(cur.name, cur, needLocation);
+    }
+    return new DirectoryListing(listing, remaining);
+  }
+
+  boolean isPagedListing() {
+    return pagedListing;
+  }
+
+  int getLsLimit() {
+    return lsLimit;
+  }
+
+  DirectoryNamesCache getNamesCache() {
+    return namesCache;
+  }
+
   /**
    * Get the file info for a specific file.
    *
@@ -2516,6 +2574,10 @@ private boolean unprotectedSetTimes(String src, INode inode, long mtime,
       AccessControlException {
     boolean status = false;
     if (mtime != -1) {
+      if (inode.isDirectory()) {
+        // the mtime might be set back to the one of a cached listing
+        namesCache.invalidate(inode.getId());
+      }
       inode.setModificationTimeForce(mtime);
       status = true;
     }
@@ -53,6 +53,7 @@
 import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import io.hops.transaction.handler.LightWeightRequestHandler;
 import io.hops.transaction.lock.LockFactory;
+import io.hops.transaction.lock.PagedListingINodeLock;
 import io.hops.transaction.lock.TransactionLockTypes.INodeLockType;
 import io.hops.transaction.lock.TransactionLockTypes.INodeResolveType;
 import io.hops.transaction.lock.TransactionLockTypes.LockType;
@@ -231,6 +232,8 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_PERSIST_BLOCKS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_REPLICATION_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_REPLICATION_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_SUBTREE_DELETE_BATCH_SIZE_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_SUBTREE_DELETE_BATCH_SIZE_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_SUBTREE_EXECUTOR_LIMIT_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_SUBTREE_EXECUTOR_LIMIT_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_SUPPORT_APPEND_DEFAULT;
@@ -389,12 +392,16 @@ private void logAuditEvent(boolean succeeded, UserGroupInformation ugi,
   private NameNode nameNode;
   private final Configuration conf;
   private final QuotaUpdateManager quotaUpdateManager;
+
+  private final LeaseRenewalAggregator leaseRenewalAggregator;
   private final boolean legacyDeleteEnabled;
   private final boolean legacyRenameEnabled;
   private final boolean legacyContentSummaryEnabled;
   private final boolean legacySetQuotaEnabled;
 
   private final ExecutorService subtreeOperationsExecutor;
+  private final int subtreeDeleteBatchSize;
+  private final int batchedPathsPerTransaction;
   private final boolean erasureCodingEnabled;
   private final ErasureCodingManager erasureCodingManager;
 
@@ -412,6 +419,11 @@ LeaseManager getLeaseManager() {
     return leaseManager;
   }
 
+  @VisibleForTesting
+  LeaseRenewalAggregator getLeaseRenewalAggregator() {
+    return leaseRenewalAggregator;
+  }
+
   /**
    * Instantiates an FSNamesystem loaded from the image and edits
    * directories specified in the passed Configuration.
@@ -483,6 +495,11 @@ public static FSNamesystem loadFromDisk(Configuration conf, NameNode namenode)
       blockManager.setBlockPoolId(blockPoolId);
       hopSpecificInitialization(conf);
       this.quotaUpdateManager = new QuotaUpdateManager(this, conf);
+      this.leaseRenewalAggregator = new LeaseRenewalAggregator(this, conf);
+      if (leaseRenewalAggregator.isEnabled()) {
+        leaseManager.setRenewalAggregator(leaseRenewalAggregator);
+      }
+      leaseManager.setRecoveryConfiguration(conf);
       legacyDeleteEnabled = conf.getBoolean(DFS_LEGACY_DELETE_ENABLE_KEY,
           DFS_LEGACY_DELETE_ENABLE_DEFAULT);
       legacyRenameEnabled = conf.getBoolean(DFS_LEGACY_RENAME_ENABLE_KEY,
@@ -495,7 +512,11 @@ public static FSNamesystem loadFromDisk(Configuration conf, NameNode namenode)
       subtreeOperationsExecutor = Executors.newFixedThreadPool(
           conf.getInt(DFS_SUBTREE_EXECUTOR_LIMIT_KEY,
               DFS_SUBTREE_EXECUTOR_LIMIT_DEFAULT));
-
+      subtreeDeleteBatchSize = conf.getInt(DFS_SUBTREE_DELETE_BATCH_SIZE_KEY,
+          DFS_SUBTREE_DELETE_BATCH_SIZE_DEFAULT);
+      batchedPathsPerTransaction = Math.max(1,
+          conf.getInt(DFSConfigKeys.DFS_NAMENODE_BATCHED_PATHS_PER_TX_KEY,
+              DFSConfigKeys.DFS_NAMENODE_BATCHED_PATHS_PER_TX_DEFAULT));
       
       LOG.info("fsOwner             = " + fsOwner);
       LOG.info("supergroup          = " + supergroup);
@@ -641,6 +662,7 @@ void startCommonServices(Configuration conf) throws IOException {
     if (dir.isQuotaEnabled()) {
       quotaUpdateManager.activate();
     }
+    leaseRenewalAggregator.activate();
     
     registerMXBean();
     DefaultMetricsSystem.instance().register(this);
@@ -657,6 +679,9 @@ void stopCommonServices() {
     if (quotaUpdateManager != null) {
       quotaUpdateManager.close();
     }
+    if (leaseRenewalAggregator != null) {
+      leaseRenewalAggregator.close();
+    }
   }
   
   /**
@@ -1045,25 +1070,76 @@ public Object performTask() throws StorageException, IOException {
             LocatedBlocks blocks =
                 getBlockLocationsInternal(src, offset, length, true, true,
                     true);
-            if (blocks != null) {
-              blockManager.getDatanodeManager()
-                  .sortLocatedBlocks(clientMachine, blocks.getLocatedBlocks());
-
-              LocatedBlock lastBlock = blocks.getLastLocatedBlock();
-              if (lastBlock != null) {
-                ArrayList<LocatedBlock> lastBlockList =
-                    new ArrayList<LocatedBlock>();
-                lastBlockList.add(lastBlock);
-                blockManager.getDatanodeManager()
-                    .sortLocatedBlocks(clientMachine, lastBlockList);
-              }
-            }
+            sortLocatedBlocks(clientMachine, blocks);
             return blocks;
           }
         };
     return (LocatedBlocks) getBlockLocationsHandler.handle(this);
   }
 
+  private void sortLocatedBlocks(String clientMachine, LocatedBlocks blocks) {
+    if (blocks != null) {
+      blockManager.getDatanodeManager()
+          .sortLocatedBlocks(clientMachine, blocks.getLocatedBlocks());
+
+      LocatedBlock lastBlock = blocks.getLastLocatedBlock();
+      if (lastBlock != null) {
+        ArrayList<LocatedBlock> lastBlockList = new ArrayList<LocatedBlock>();
+        lastBlockList.add(lastBlock);
+        blockManager.getDatanodeManager()
+            .sortLocatedBlocks(clientMachine, lastBlockList);
+      }
+    }
+  }
+
+  /**
+   * Get block locations within the same range of many files, null for the
+   * files that do not exist. The files are locked in transactions of up to
+   * batchedPathsPerTransaction files, their access times are not updated.
+   *
+   * @see ClientProtocol#getBatchedBlockLocations(String[], long, long)
+   */
+  LocatedBlocks[] getBatchedBlockLocations(final String clientMachine,
+      final String[] srcs, final long offset, final long length)
+      throws IOException {
+    LocatedBlocks[] result = new LocatedBlocks[srcs.length];
+    for (int i = 0; i < srcs.length; i += batchedPathsPerTransaction) {
+      final String[] batch = Arrays.copyOfRange(srcs, i,
+          Math.min(srcs.length, i + batchedPathsPerTransaction));
+      HopsTransactionalRequestHandler getBlockLocationsHandler =
+          new HopsTransactionalRequestHandler(
+              HDFSOperationType.GET_BATCHED_BLOCK_LOCATIONS) {
+            @Override
+            public void acquireLock(TransactionLocks locks)
+                throws IOException {
+              LockFactory lf = getInstance();
+              locks.add(lf.getINodeLock(nameNode, INodeLockType.READ,
+                  INodeResolveType.PATH, batch)).add(lf.getBlockLock())
+                  .add(lf.getBlockRelated(BLK.RE, BLK.ER, BLK.CR, BLK.UC));
+            }
+
+            @Override
+            public Object performTask() throws IOException {
+              LocatedBlocks[] batchBlocks = new LocatedBlocks[batch.length];
+              for (int j = 0; j < batch.length; j++) {
+                try {
+                  batchBlocks[j] = getBlockLocationsInternal(batch[j], offset,
+                      length, false, true, true);
+                } catch (FileNotFoundException e) {
+                  continue;
+                }
+                sortLocatedBlocks(clientMachine, batchBlocks[j]);
+              }
+              return batchBlocks;
+            }
+          };
+      LocatedBlocks[] batchBlocks =
+          (LocatedBlocks[]) getBlockLocationsHandler.handle(this);
+      System.arraycopy(batchBlocks, 0, result, i, batchBlocks.length);
+    }
+    return result;
+  }
+
   /**
    * Get block locations within the specified range.
    *
@@ -2951,6 +3027,63 @@ public Object performTask() throws IOException {
     return (HdfsFileStatus) getFileInfoHandler.handle(this);
   }
 
+  /**
+   * Get the file info of many paths, null for the paths that do not exist.
+   * The paths are resolved read committed in transactions of up to
+   * batchedPathsPerTransaction paths, so that the ancestors shared by the
+   * paths of a transaction are read once with batched reads.
+   *
+   * @see ClientProtocol#getFileInfos(String[])
+   */
+  HdfsFileStatus[] getFileInfos(final String[] srcs,
+      final boolean resolveLink) throws IOException {
+    for (String src : srcs) {
+      if (!DFSUtil.isValidName(src)) {
+        throw new InvalidPathException("Invalid file name: " + src);
+      }
+    }
+    HdfsFileStatus[] result = new HdfsFileStatus[srcs.length];
+    for (int i = 0; i < srcs.length; i += batchedPathsPerTransaction) {
+      final String[] batch = Arrays.copyOfRange(srcs, i,
+          Math.min(srcs.length, i + batchedPathsPerTransaction));
+      HopsTransactionalRequestHandler getFileInfosHandler =
+          new HopsTransactionalRequestHandler(
+              HDFSOperationType.GET_FILE_INFOS) {
+            @Override
+            public void acquireLock(TransactionLocks locks)
+                throws IOException {
+              LockFactory lf = getInstance();
+              locks.add(lf.getINodeLock(true/*skip quota*/, nameNode,
+                  INodeLockType.READ_COMMITTED, INodeResolveType.PATH,
+                  resolveLink, batch));
+            }
+
+            @Override
+            public Object performTask() throws IOException {
+              HdfsFileStatus[] stats = new HdfsFileStatus[batch.length];
+              FSPermissionChecker pc = getPermissionChecker();
+              for (int j = 0; j < batch.length; j++) {
+                try {
+                  if (isPermissionEnabled) {
+                    checkTraverse(pc, batch[j]);
+                  }
+                  stats[j] = dir.getFileInfo(batch[j], resolveLink);
+                } catch (AccessControlException e) {
+                  logAuditEvent(false, "getfileinfo", batch[j]);
+                  throw e;
+                }
+                logAuditEvent(true, "getfileinfo", batch[j]);
+              }
+              return stats;
+            }
+          };
+      HdfsFileStatus[] stats =
+          (HdfsFileStatus[]) getFileInfosHandler.handle(this);
+      System.arraycopy(stats, 0, result, i, stats.length);
+    }
+    return result;
+  }
+
   /**
    * Create all the necessary directories
    */
@@ -3475,6 +3608,15 @@ public Object performTask() throws IOException {
    * Renew the lease(s) held by the given client
    */
   void renewLease(final String holder) throws IOException {
+    if (leaseRenewalAggregator.isEnabled()) {
+      if (isInSafeMode()) {
+        throw new SafeModeException("Cannot renew lease for " + holder,
+            safeMode);
+      }
+      if (leaseRenewalAggregator.renew(holder)) {
+        return;
+      }
+    }
     new HopsTransactionalRequestHandler(HDFSOperationType.RENEW_LEASE) {
       @Override
       public void acquireLock(TransactionLocks locks) throws IOException {
@@ -3514,14 +3656,24 @@ public Object performTask() throws IOException {
   DirectoryListing getListing(final String src, final byte[] startAfter,
       final boolean needLocation)
       throws AccessControlException, UnresolvedLinkException, IOException {
+    final boolean pagedListing = dir.isPagedListing();
     HopsTransactionalRequestHandler getListingHandler =
         new HopsTransactionalRequestHandler(HDFSOperationType.GET_LISTING,
             src) {
+          private PagedListingINodeLock listingLock;
+
           @Override
           public void acquireLock(TransactionLocks locks) throws IOException {
             LockFactory lf = LockFactory.getInstance();
-            locks.add(lf.getINodeLock(true/*skip INodeAttr*/, nameNode, INodeLockType.READ,
-                INodeResolveType.PATH_AND_IMMEDIATE_CHILDREN, src));
+            if (pagedListing) {
+              listingLock = lf.getPagedListingINodeLock(nameNode, src,
+                  startAfter, dir.getLsLimit(), dir.getNamesCache());
+              locks.add(listingLock);
+            } else {
+              locks.add(lf.getINodeLock(true/*skip INodeAttr*/, nameNode,
+                  INodeLockType.READ,
+                  INodeResolveType.PATH_AND_IMMEDIATE_CHILDREN, src));
+            }
             if(needLocation){
                 locks
                 .add(lf.getBlockLock())
@@ -3532,7 +3684,8 @@ public void acquireLock(TransactionLocks locks) throws IOException {
           @Override
           public Object performTask() throws IOException {
             try {
-              return getListingInt(src, startAfter, needLocation);
+              return getListingInt(src, startAfter, needLocation,
+                  listingLock);
             } catch (AccessControlException e) {
               logAuditEvent(false, "listStatus", src);
               throw e;
@@ -3543,7 +3696,7 @@ public Object performTask() throws IOException {
   }
 
   private DirectoryListing getListingInt(String src, byte[] startAfter,
-      boolean needLocation)
+      boolean needLocation, PagedListingINodeLock listingLock)
       throws AccessControlException, UnresolvedLinkException, IOException,
       StorageException {
     DirectoryListing dl;
@@ -3556,7 +3709,12 @@ private DirectoryListing getListingInt(String src, byte[] startAfter,
       }
     }
     logAuditEvent(true, "listStatus", src);
-    dl = dir.getListing(src, startAfter, needLocation);
+    if (listingLock == null) {
+      dl = dir.getListing(src, startAfter, needLocation);
+    } else {
+      dl = dir.getListing(src, listingLock.getPage(),
+          listingLock.getRemaining(), needLocation);
+    }
     return dl;
   }
 
@@ -3623,7 +3781,8 @@ HeartbeatResponse handleHeartbeat(DatanodeRegistration nodeReg, long capacity,
     DatanodeCommand[] cmds = blockManager.getDatanodeManager()
         .handleHeartbeat(nodeReg, blockPoolId, capacity, dfsUsed, remaining,
             blockPoolUsed, xceiverCount, maxTransfer, failedVolumes);
-    return new HeartbeatResponse(cmds);
+    return new HeartbeatResponse(cmds, blockManager.getPendingBlockReports(),
+        blockManager.getPendingBlockReportBlocks());
   }
 
   /**
@@ -6546,6 +6705,126 @@ private boolean multiTransactionalDeleteInternal(final String path,
 
   private boolean deleteTreeLevel(final String subtreeRootPath,
       final AbstractFileTree.FileTree fileTree, int level) {
+    long startTime = now();
+    int count = fileTree.getInodesByLevel(level).size();
+    boolean result;
+    // The subtree root is deleted on its own as its parent is not part of
+    // the tree.
+    if (subtreeDeleteBatchSize > 1 && !erasureCodingEnabled &&
+        level > AbstractFileTree.FileTree.ROOT_LEVEL) {
+      result = deleteTreeLevelInBatches(fileTree, level);
+    } else {
+      result = deleteTreeLevelIndividually(subtreeRootPath, fileTree, level);
+    }
+    if (LOG.isDebugEnabled()) {
+      long duration = Math.max(now() - startTime, 1);
+      LOG.debug("Deleted level " + level + " of " + subtreeRootPath + ": " +
+          count + " inodes in " + duration + " ms (" +
+          (count * 1000L / duration) + " inodes/s)");
+    }
+    return result;
+  }
+
+  /**
+   * Delete all the inodes of a tree level. The children of a directory are
+   * removed together in transactions of up to subtreeDeleteBatchSize inodes,
+   * locking the inodes and their blocks with batched reads instead of
+   * resolving the path of each inode.
+   */
+  private boolean deleteTreeLevelInBatches(
+      final AbstractFileTree.FileTree fileTree, int level) {
+    ArrayList<Future> barrier = new ArrayList<Future>();
+
+    for (final ProjectedINode parent : fileTree.getInodesByLevel(level - 1)) {
+      List<ProjectedINode> children =
+          new ArrayList<ProjectedINode>(fileTree.getChildren(parent.getId()));
+      for (int i = 0; i < children.size(); i += subtreeDeleteBatchSize) {
+        final List<ProjectedINode> batch = children.subList(i,
+            Math.min(i + subtreeDeleteBatchSize, children.size()));
+        Future f = subtreeOperationsExecutor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            return deleteSiblingsBatch(parent, batch);
+          }
+        });
+        barrier.add(f);
+      }
+    }
+    return waitForDeletes(barrier);
+  }
+
+  private boolean deleteSiblingsBatch(final ProjectedINode parent,
+      final List<ProjectedINode> children) throws IOException {
+    final List<INodeIdentifier> inodeIdentifiers =
+        new ArrayList<INodeIdentifier>(children.size() + 1);
+    inodeIdentifiers.add(toINodeIdentifier(parent));
+    for (ProjectedINode child : children) {
+      inodeIdentifiers.add(toINodeIdentifier(child));
+    }
+
+    HopsTransactionalRequestHandler deleteHandler =
+        new HopsTransactionalRequestHandler(
+            HDFSOperationType.SUBTREE_DELETE_BATCH) {
+          @Override
+          public void acquireLock(TransactionLocks locks) throws IOException {
+            LockFactory lf = LockFactory.getInstance();
+            locks.add(lf.getBatchedINodesLock(INodeLockType.WRITE,
+                inodeIdentifiers))
+                .add(lf.getLeaseLock(LockType.WRITE))
+                .add(lf.getLeasePathLock(LockType.WRITE))
+                .add(lf.getSqlBatchedBlocksLock()).add(
+                lf.getSqlBatchedBlocksRelated(BLK.RE, BLK.CR, BLK.UC, BLK.UR,
+                    BLK.PE, BLK.IV));
+            if (dir.isQuotaEnabled()) {
+              locks.add(lf.getQuotaUpdateLock());
+            }
+          }
+
+          @Override
+          public Object performTask() throws IOException {
+            INode parentINode =
+                EntityManager.find(INode.Finder.ByINodeId, parent.getId());
+            if (parentINode == null) {
+              LOG.error("INode disappeared during deletion");
+              return false;
+            }
+            boolean deletedAll = true;
+            INode[] pathComponents = new INode[]{parentINode, null};
+            for (ProjectedINode child : children) {
+              INode inode =
+                  EntityManager.find(INode.Finder.ByINodeId, child.getId());
+              if (inode == null) {
+                LOG.error("INode disappeared during deletion");
+                deletedAll = false;
+                continue;
+              }
+              pathComponents[1] = inode;
+              dir.removeChildNonRecursively(pathComponents, 1);
+              NameNode.getNameNodeMetrics().incrFilesDeleted(1);
+
+              if (inode instanceof INodeFile) {
+                INodeFile file = (INodeFile) inode;
+                ArrayList<Block> collectedBlocks = new ArrayList<Block>();
+                file.collectSubtreeBlocksAndClear(collectedBlocks);
+                removeBlocks(collectedBlocks); // Incremental deletion of blocks
+              }
+            }
+            parentINode.setModificationTime(now());
+            return deletedAll;
+          }
+        };
+    return (Boolean) deleteHandler.handle(this);
+  }
+
+  private static INodeIdentifier toINodeIdentifier(ProjectedINode inode) {
+    INodeIdentifier inodeIdentifier = new INodeIdentifier(inode.getId());
+    inodeIdentifier.setName(inode.getName());
+    inodeIdentifier.setPid(inode.getParentId());
+    return inodeIdentifier;
+  }
+
+  private boolean deleteTreeLevelIndividually(final String subtreeRootPath,
+      final AbstractFileTree.FileTree fileTree, int level) {
     ArrayList<Future> barrier = new ArrayList<Future>();
 
     for (final ProjectedINode inode : fileTree.getInodesByLevel(level)) {
@@ -6610,7 +6889,10 @@ public Object performTask() throws IOException {
       });
       barrier.add(f);
     }
+    return waitForDeletes(barrier);
+  }
 
+  private boolean waitForDeletes(List<Future> barrier) {
     boolean result = true;
     for (Future f : barrier) {
       try {
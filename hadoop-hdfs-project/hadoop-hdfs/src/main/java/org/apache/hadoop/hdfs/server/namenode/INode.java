@@ -66,7 +66,8 @@ public static enum Finder implements FinderType<INode> {
     ByParentId,
     ByNameAndParentId,
     ByNamesAndParentIdsCheckLocal,
-    ByNamesAndParentIds;
+    ByNamesAndParentIds,
+    ByCachedCopy;
 
     @Override
     public Class getType() {
@@ -86,6 +87,8 @@ public Annotation getAnnotated() {
           return Annotation.Batched;
         case ByNamesAndParentIdsCheckLocal:
           return Annotation.Batched;
+        case ByCachedCopy:
+          return Annotation.PrimaryKey;
         default:
           throw new IllegalStateException();
       }
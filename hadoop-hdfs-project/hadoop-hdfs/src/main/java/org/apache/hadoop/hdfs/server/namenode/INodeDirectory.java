@@ -103,6 +103,19 @@ public void setMetaEnabled(boolean metaEnabled) {
     this.metaEnabled = metaEnabled;
   }
 
+  /**
+   * Set the modification time after a child was added, removed or renamed.
+   * The modification time of a directory always increases, also within the
+   * same millisecond or when the clock of this NameNode is behind the one of
+   * the NameNode that changed the children last, so that every change of
+   * the children changes it. {@link DirectoryNamesCache} relies on this.
+   */
+  @Override
+  public void setModificationTime(long modtime)
+      throws StorageException, TransactionContextException {
+    super.setModificationTime(Math.max(modtime, getModificationTime() + 1));
+  }
+
   INode removeChild(INode node)
       throws StorageException, TransactionContextException {
     INode existingInode = getChildINode(node.getLocalNameBytes());
@@ -22,6 +22,7 @@
 import io.hops.common.INodeUtil;
 import io.hops.exception.StorageException;
 import io.hops.exception.TransactionContextException;
+import io.hops.leader_election.node.ActiveNode;
 import io.hops.metadata.HdfsStorageFactory;
 import io.hops.metadata.hdfs.dal.LeaseDataAccess;
 import io.hops.metadata.hdfs.dal.LeasePathDataAccess;
@@ -38,21 +39,33 @@
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
 import org.apache.hadoop.util.Daemon;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.hops.transaction.lock.LockFactory.BLK;
 import static io.hops.transaction.lock.LockFactory.getInstance;
@@ -93,10 +106,36 @@ public class LeaseManager {
   private Daemon lmthread;
   private volatile boolean shouldRunMonitor;
 
+  private LeaseRenewalAggregator renewalAggregator;
+
+  private int recoveryThreads =
+      DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_THREADS_DEFAULT;
+  private int recoveryMaxPerSecond =
+      DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_MAX_PER_SECOND_DEFAULT;
+  private boolean distributedRecovery =
+      DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_DISTRIBUTED_DEFAULT;
+  private volatile ExecutorService recoveryExecutor;
+
   LeaseManager(FSNamesystem fsnamesystem) {
     this.fsnamesystem = fsnamesystem;
   }
 
+  void setRecoveryConfiguration(Configuration conf) {
+    recoveryThreads = Math.max(1,
+        conf.getInt(DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_THREADS_KEY,
+            DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_THREADS_DEFAULT));
+    recoveryMaxPerSecond = Math.max(0, conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_MAX_PER_SECOND_KEY,
+        DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_MAX_PER_SECOND_DEFAULT));
+    distributedRecovery = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_DISTRIBUTED_KEY,
+        DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_DISTRIBUTED_DEFAULT);
+  }
+
+  void setRenewalAggregator(LeaseRenewalAggregator renewalAggregator) {
+    this.renewalAggregator = renewalAggregator;
+  }
+
   Lease getLease(String holder)
       throws StorageException, TransactionContextException {
     return EntityManager.find(Lease.Finder.ByHolder, holder, Lease.getHolderId(holder));
@@ -433,12 +472,24 @@ public void setLeasePeriod(long softLimit, long hardLimit) {
    * ***************************************************
    * Monitor checks for leases that have expired,
    * and disposes of them.
+   * The expired holders are recovered in parallel by the recovery executor,
+   * each in its own transaction, at most max-per-second holders per second.
+   * With distributed recovery every NameNode runs the monitor and recovers
+   * the holders whose hash maps to its position among the active NameNodes.
+   * A holder recovered twice while the membership changes is harmless as
+   * checkLeases re-checks the expiry under the lease lock.
    * ****************************************************
    */
   //HOP: FIXME: needSync logic added for bug fix HDFS-4186
   class Monitor implements Runnable {
     final String name = getClass().getSimpleName();
 
+    // holders submitted to the executor and not recovered yet
+    private final Set<String> recovering =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final RecoveryThrottle throttle =
+        new RecoveryThrottle(recoveryMaxPerSecond);
+
     /**
      * Check leases periodically.
      */
@@ -446,17 +497,14 @@ class Monitor implements Runnable {
     public void run() {
       for (; shouldRunMonitor && fsnamesystem.isRunning(); ) {
         try {
-          if (fsnamesystem.isLeader()) {
+          if (fsnamesystem.isLeader() || distributedRecovery) {
             try {
               if (!fsnamesystem.isInSafeMode()) {
                 SortedSet<Lease> sortedLeases =
                     (SortedSet<Lease>) findExpiredLeaseHandler
                         .handle(fsnamesystem);
                 if (sortedLeases != null) {
-                  for (Lease expiredLease : sortedLeases) {
-                    expiredLeaseHandler.setParams(expiredLease.getHolder())
-                        .handle(fsnamesystem);
-                  }
+                  recoverExpiredLeases(sortedLeases);
                 }
               }
             } catch (IOException ex) {
@@ -477,53 +525,151 @@ public void run() {
             HDFSOperationType.PREPARE_LEASE_MANAGER_MONITOR) {
           @Override
           public Object performTask() throws StorageException, IOException {
-            long expiredTime = now() - hardLimit;
+            long expiredTime = now() - hardLimit - getRenewalGracePeriod();
             LeaseDataAccess da = (LeaseDataAccess) HdfsStorageFactory
                 .getDataAccess(LeaseDataAccess.class);
             return new TreeSet<Lease>(da.findByTimeLimit(expiredTime));
           }
         };
 
-    HopsTransactionalRequestHandler expiredLeaseHandler =
-        new HopsTransactionalRequestHandler(
-            HDFSOperationType.LEASE_MANAGER_MONITOR) {
-          private Set<String> leasePaths = null;
-
+    /**
+     * Recover the given leases that belong to this NameNode and wait until
+     * they are done.
+     */
+    private void recoverExpiredLeases(Collection<Lease> expiredLeases)
+        throws InterruptedException {
+      ExecutorService executor = recoveryExecutor;
+      List<String> holders = getOwnHolders(expiredLeases);
+      if (executor == null || holders.isEmpty()) {
+        return;
+      }
+      final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+      final AtomicInteger failures = new AtomicInteger();
+      long startTime = now();
+      List<Future<?>> futures = new ArrayList<Future<?>>(holders.size());
+      for (final String holder : holders) {
+        if (!recovering.add(holder)) {
+          continue;
+        }
+        long delay = throttle.reserve(System.nanoTime());
+        if (delay > 0) {
+          TimeUnit.NANOSECONDS.sleep(delay);
+        }
+        if (metrics != null) {
+          metrics.incrLeaseRecoveriesPending();
+        }
+        Runnable recovery = new Runnable() {
           @Override
-          public void setUp() throws StorageException {
-            String holder = (String) getParams()[0];
-            leasePaths = INodeUtil.findPathsByLeaseHolder(holder);
-            if(leasePaths!=null){
-              LOG.debug("Total Paths "+leasePaths.size()+" Paths: "+Arrays.toString(leasePaths.toArray()));
+          public void run() {
+            boolean recovered = false;
+            try {
+              newExpiredLeaseHandler().setParams(holder).handle(fsnamesystem);
+              recovered = true;
+            } catch (IOException e) {
+              LOG.error("Failed to recover the lease of " + holder, e);
+            } finally {
+              recovering.remove(holder);
+              if (!recovered) {
+                failures.incrementAndGet();
+              }
+              if (metrics != null) {
+                if (recovered) {
+                  metrics.incrLeaseRecoveries();
+                } else {
+                  metrics.incrLeaseRecoveryFailures();
+                }
+              }
             }
-            
           }
+        };
+        try {
+          futures.add(executor.submit(recovery));
+        } catch (RejectedExecutionException e) {
+          // the monitor is stopping
+          recovering.remove(holder);
+          if (metrics != null) {
+            metrics.incrLeaseRecoveryFailures();
+          }
+          break;
+        }
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          LOG.error("Lease recovery failed", e.getCause());
+        }
+      }
+      LOG.info("Recovered " + (futures.size() - failures.get()) + " of " +
+          holders.size() + " expired leases in " + (now() - startTime) +
+          " ms, " + failures.get() + " failed");
+    }
 
-          @Override
-          public void acquireLock(TransactionLocks locks) throws IOException {
-            String holder = (String) getParams()[0];
-            LockFactory lf = getInstance();
-            
-            locks.add(
-                lf.getINodeLock(fsnamesystem.getNameNode(), INodeLockType.WRITE,
-                    INodeResolveType.PATH,
-                    leasePaths.toArray(new String[leasePaths.size()])))
-                .add(lf.getNameNodeLeaseLock(LockType.WRITE))
-                .add(lf.getLeaseLock(LockType.WRITE, holder))
-                .add(lf.getLeasePathLock(LockType.WRITE, leasePaths.size()))
-                .add(lf.getBlockLock()).add(
-                lf.getBlockRelated(BLK.RE, BLK.CR, BLK.ER, BLK.UC, BLK.UR));
+    /**
+     * @return the holders of the leases this NameNode recovers
+     */
+    private List<String> getOwnHolders(Collection<Lease> expiredLeases) {
+      if (!distributedRecovery) {
+        return getPartitionHolders(expiredLeases, 1, 0);
+      }
+      List<ActiveNode> namenodes =
+          fsnamesystem.getNameNode().getActiveNameNodes().getActiveNodes();
+      int partition = getRecoveryPartition(fsnamesystem.getNameNode().getId(),
+          namenodes);
+      if (partition < 0) {
+        // not in the list yet, the leader recovers everything
+        if (!fsnamesystem.isLeader()) {
+          return new ArrayList<String>();
+        }
+        return getPartitionHolders(expiredLeases, 1, 0);
+      }
+      return getPartitionHolders(expiredLeases, namenodes.size(), partition);
+    }
+
+    private HopsTransactionalRequestHandler newExpiredLeaseHandler() {
+      return new HopsTransactionalRequestHandler(
+          HDFSOperationType.LEASE_MANAGER_MONITOR) {
+        private Set<String> leasePaths = null;
+
+        @Override
+        public void setUp() throws StorageException {
+          String holder = (String) getParams()[0];
+          leasePaths = INodeUtil.findPathsByLeaseHolder(holder);
+          if(leasePaths!=null){
+            LOG.debug("Total Paths "+leasePaths.size()+" Paths: "+Arrays.toString(leasePaths.toArray()));
           }
+            
+        }
 
-          @Override
-          public Object performTask() throws StorageException, IOException {
-            String holder = (String) getParams()[0];
-            if (holder != null) {
-              checkLeases(holder);
-            }
-            return null;
+        @Override
+        public void acquireLock(TransactionLocks locks) throws IOException {
+          String holder = (String) getParams()[0];
+          LockFactory lf = getInstance();
+          // no NameNode lease lock, it would serialize the parallel
+          // recoveries on its row. The NameNode lease is only read when a
+          // block recovery reassigns a file to it, and renewing it writes
+          // the row, which orders the reassignment against the removal of
+          // its last path
+          locks.add(
+              lf.getINodeLock(fsnamesystem.getNameNode(), INodeLockType.WRITE,
+                  INodeResolveType.PATH,
+                  leasePaths.toArray(new String[leasePaths.size()])))
+              .add(lf.getLeaseLock(LockType.WRITE, holder))
+              .add(lf.getLeasePathLock(LockType.WRITE, leasePaths.size()))
+              .add(lf.getBlockLock()).add(
+              lf.getBlockRelated(BLK.RE, BLK.CR, BLK.ER, BLK.UC, BLK.UR));
+        }
+
+        @Override
+        public Object performTask() throws StorageException, IOException {
+          String holder = (String) getParams()[0];
+          if (holder != null) {
+            checkLeases(holder);
           }
-        };
+          return null;
+        }
+      };
+    }
   }
 
   /**
@@ -592,9 +738,82 @@ private boolean checkLeases(String holder)
     return needSync;
   }
 
+  /**
+   * @return the position of the NameNode among the active NameNodes ordered
+   * by id, or -1 if it is not active
+   */
+  @VisibleForTesting
+  static int getRecoveryPartition(long id, List<ActiveNode> namenodes) {
+    int partition = 0;
+    boolean active = false;
+    for (ActiveNode namenode : namenodes) {
+      if (namenode.getId() < id) {
+        partition++;
+      } else if (namenode.getId() == id) {
+        active = true;
+      }
+    }
+    return active ? partition : -1;
+  }
+
+  /**
+   * @return the holders of the leases whose hash maps to the partition
+   */
+  @VisibleForTesting
+  static List<String> getPartitionHolders(Collection<Lease> leases,
+      int partitions, int partition) {
+    List<String> holders = new ArrayList<String>(leases.size());
+    for (Lease lease : leases) {
+      String holder = lease.getHolder();
+      if ((holder.hashCode() & Integer.MAX_VALUE) % partitions == partition) {
+        holders.add(holder);
+      }
+    }
+    return holders;
+  }
+
+  /**
+   * Spaces the lease recoveries to at most max-per-second per second,
+   * 0 disables the throttle.
+   */
+  @VisibleForTesting
+  static class RecoveryThrottle {
+    private final long interval;
+    private boolean started;
+    private long nextRecovery;
+
+    RecoveryThrottle(int maxPerSecond) {
+      interval =
+          maxPerSecond == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / maxPerSecond;
+    }
+
+    /**
+     * Reserve the next recovery slot.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the nanoseconds to wait before the recovery may start
+     */
+    long reserve(long now) {
+      if (interval == 0) {
+        return 0;
+      }
+      long delay = started ? Math.max(0, nextRecovery - now) : 0;
+      nextRecovery = now + delay + interval;
+      started = true;
+      return delay;
+    }
+  }
+
+  @VisibleForTesting
+  ExecutorService getRecoveryExecutor() {
+    return recoveryExecutor;
+  }
+
   void startMonitor() {
     Preconditions.checkState(lmthread == null, "Lease Monitor already running");
     shouldRunMonitor = true;
+    recoveryExecutor = Executors.newFixedThreadPool(recoveryThreads,
+        new Daemon.DaemonFactory());
     lmthread = new Daemon(new Monitor());
     lmthread.start();
   }
@@ -610,6 +829,17 @@ void stopMonitor() {
       }
       lmthread = null;
     }
+    if (recoveryExecutor != null) {
+      recoveryExecutor.shutdownNow();
+      try {
+        if (!recoveryExecutor.awaitTermination(3000, TimeUnit.MILLISECONDS)) {
+          LOG.warn("Lease recoveries still running after the monitor stopped");
+        }
+      } catch (InterruptedException ie) {
+        LOG.warn("Encountered exception ", ie);
+      }
+      recoveryExecutor = null;
+    }
   }
 
   /**
@@ -623,10 +853,31 @@ void triggerMonitorCheckNow() {
   }
   
   private boolean expiredHardLimit(Lease lease) {
-    return now() - lease.getLastUpdate() > hardLimit;
+    return now() - getLastRenewal(lease) > hardLimit + getRenewalGracePeriod();
   }
 
   public boolean expiredSoftLimit(Lease lease) {
-    return now() - lease.getLastUpdate() > softLimit;
+    return now() - getLastRenewal(lease) > softLimit + getRenewalGracePeriod();
+  }
+
+  /**
+   * @return the last update of the lease including the renewal received by
+   * this NameNode that is not flushed yet
+   */
+  private long getLastRenewal(Lease lease) {
+    if (renewalAggregator == null) {
+      return lease.getLastUpdate();
+    }
+    return Math.max(lease.getLastUpdate(),
+        renewalAggregator.getPendingRenewal(lease.getHolder()));
+  }
+
+  /**
+   * Renewals received by other NameNodes are in the database within the
+   * grace period, a lease expires only once it has passed.
+   */
+  private long getRenewalGracePeriod() {
+    return renewalAggregator == null ? 0 :
+        renewalAggregator.getGracePeriod();
   }
 }
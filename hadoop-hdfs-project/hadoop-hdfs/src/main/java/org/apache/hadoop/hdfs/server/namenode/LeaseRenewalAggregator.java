@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import io.hops.metadata.HdfsStorageFactory;
+import io.hops.metadata.hdfs.dal.LeaseDataAccess;
+import io.hops.transaction.handler.HDFSOperationType;
+import io.hops.transaction.handler.LightWeightRequestHandler;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.util.Daemon;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.hadoop.util.Time.now;
+
+/**
+ * Keeps the lease renewals of the clients in memory and writes them to the
+ * database in batches. A client renews its lease every few seconds and the
+ * renewal changes nothing but the last update time of the lease, so only the
+ * latest renewal of every holder is kept. The flusher updates up to
+ * flush-batch-size leases per transaction, holders are sorted to keep the
+ * row locks of concurrent flushes in the same order. LeaseManager adds a
+ * grace period of twice the flush interval to its expiry checks so that a
+ * lease renewed on another NameNode is not recovered before the renewal is
+ * flushed. A renewal is only aggregated while the last successful flush
+ * started within the grace period, when the flusher is behind the renewals
+ * are written by their own transactions until it catches up.
+ * <p/>
+ * The data access layer has no read of many leases by primary key, a flush
+ * reads the leases of a batch one by one in its transaction.
+ */
+public class LeaseRenewalAggregator {
+
+  static final Log LOG = LogFactory.getLog(LeaseRenewalAggregator.class);
+
+  private final FSNamesystem namesystem;
+
+  private final long flushInterval;
+  private final int flushBatchSize;
+
+  private final ConcurrentHashMap<String, Long> pendingRenewals =
+      new ConcurrentHashMap<String, Long>();
+
+  private final Daemon flushThread = new Daemon(new RenewalFlusher());
+  private volatile boolean running;
+  // start time of the last flush that wrote all the pending renewals
+  private volatile long lastFlush = 0;
+
+  public LeaseRenewalAggregator(FSNamesystem namesystem, Configuration conf) {
+    this.namesystem = namesystem;
+    flushInterval = Math.max(0, conf.getLong(
+        DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_KEY,
+        DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_DEFAULT));
+    flushBatchSize = Math.max(1, conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_FLUSH_BATCH_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_FLUSH_BATCH_SIZE_DEFAULT));
+  }
+
+  public boolean isEnabled() {
+    return flushInterval > 0;
+  }
+
+  /**
+   * @return the time a lease may be renewed without being in the database
+   */
+  public long getGracePeriod() {
+    return 2 * flushInterval;
+  }
+
+  public void activate() {
+    if (!isEnabled()) {
+      return;
+    }
+    LOG.debug("LeaseRenewalAggregator is running");
+    lastFlush = now();
+    running = true;
+    flushThread.start();
+  }
+
+  public void close() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    flushThread.interrupt();
+    try {
+      flushThread.join(3000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      flush();
+    } catch (IOException e) {
+      LOG.warn("Failed to flush " + pendingRenewals.size() +
+          " lease renewals", e);
+    }
+  }
+
+  /**
+   * Record a renewal of the lease of the given holder.
+   *
+   * @return false if the flusher is behind and the renewal has to be written
+   * by the caller
+   */
+  public boolean renew(String holder) {
+    long now = now();
+    if (!running || now - lastFlush > getGracePeriod()) {
+      return false;
+    }
+    pendingRenewals.put(holder, now);
+    return true;
+  }
+
+  /**
+   * @return the time of the renewal of the holder that is not in the
+   * database yet or 0 if there is none
+   */
+  public long getPendingRenewal(String holder) {
+    Long renewal = pendingRenewals.get(holder);
+    return renewal == null ? 0 : renewal;
+  }
+
+  /**
+   * Write all pending renewals to the database.
+   */
+  void flush() throws IOException {
+    long startTime = now();
+    if (pendingRenewals.isEmpty()) {
+      lastFlush = startTime;
+      return;
+    }
+    List<String> holders = new ArrayList<String>(pendingRenewals.keySet());
+    Collections.sort(holders);
+    for (int i = 0; i < holders.size(); i += flushBatchSize) {
+      List<String> batchHolders =
+          holders.subList(i, Math.min(i + flushBatchSize, holders.size()));
+      Map<String, Long> batch = new HashMap<String, Long>();
+      for (String holder : batchHolders) {
+        Long renewal = pendingRenewals.get(holder);
+        if (renewal != null) {
+          batch.put(holder, renewal);
+        }
+      }
+      flushBatch(batchHolders, batch);
+      // keep the renewals that were received during the flush
+      for (Map.Entry<String, Long> renewal : batch.entrySet()) {
+        pendingRenewals.remove(renewal.getKey(), renewal.getValue());
+      }
+    }
+    lastFlush = startTime;
+  }
+
+  private void flushBatch(final List<String> holders,
+      final Map<String, Long> renewals) throws IOException {
+    new LightWeightRequestHandler(HDFSOperationType.FLUSH_LEASE_RENEWALS) {
+      @Override
+      public Object performTask() throws IOException {
+        LeaseDataAccess<Lease> da = (LeaseDataAccess) HdfsStorageFactory
+            .getDataAccess(LeaseDataAccess.class);
+        HdfsStorageFactory.getConnector().writeLock();
+        List<Lease> modified = new ArrayList<Lease>(renewals.size());
+        for (String holder : holders) {
+          Long renewal = renewals.get(holder);
+          if (renewal == null) {
+            continue;
+          }
+          Lease lease = da.findByPKey(holder, Lease.getHolderId(holder));
+          // skip leases released or renewed by a later operation
+          if (lease != null && lease.getLastUpdate() < renewal) {
+            lease.setLastUpdate(renewal);
+            modified.add(lease);
+          }
+        }
+        HdfsStorageFactory.getConnector().readCommitted();
+        da.prepare(Collections.<Lease>emptyList(),
+            Collections.<Lease>emptyList(), modified);
+        return null;
+      }
+    }.handle(namesystem);
+  }
+
+  private class RenewalFlusher implements Runnable {
+    @Override
+    public void run() {
+      while (running && namesystem.isRunning()) {
+        long startTime = now();
+        try {
+          flush();
+        } catch (IOException e) {
+          LOG.warn("Failed to flush " + pendingRenewals.size() +
+              " lease renewals", e);
+        }
+        long sleep = flushInterval - (now() - startTime);
+        if (sleep > 0) {
+          try {
+            Thread.sleep(sleep);
+          } catch (InterruptedException e) {
+            if (!running) {
+              break;
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -31,6 +31,8 @@
 import io.hops.metadata.hdfs.dal.PendingBlockDataAccess;
 import io.hops.metadata.hdfs.dal.SafeBlocksDataAccess;
 import io.hops.metadata.hdfs.dal.UnderReplicatedBlockDataAccess;
+import io.hops.resolvingcache.ResolvingCacheInvalidator;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.HadoopIllegalArgumentException;
@@ -230,6 +232,7 @@ public long getProtocolVersion(String protocol, long clientVersion)
 
   protected LeaderElection leaderElection;
 
+  private ResolvingCacheInvalidator resolvingCacheInvalidator;
 
   /**
    * Format a new filesystem. Destroys any filesystem that may already exist
@@ -427,6 +430,7 @@ protected void initialize(Configuration conf) throws IOException {
 
 
     NameNode.initMetrics(conf, this.getRole());
+    HopsTransactionalRequestHandler.setConfiguration(conf);
     loadNamesystem(conf);
 
     rpcServer = createRpcServer(conf);
@@ -481,6 +485,12 @@ private void startCommonServices(Configuration conf) throws IOException {
 
     startLeaderElectionService();
 
+    if (conf.getBoolean(DFSConfigKeys.DFS_RESOLVING_CACHE_INVALIDATION_ENABLED,
+        DFSConfigKeys.DFS_RESOLVING_CACHE_INVALIDATION_ENABLED_DEFAULT)) {
+      resolvingCacheInvalidator = new ResolvingCacheInvalidator(this);
+      resolvingCacheInvalidator.start();
+    }
+
     namesystem.startCommonServices(conf);
 
     rpcServer.start();
@@ -506,6 +516,9 @@ private void stopCommonServices() {
     if (rpcServer != null) {
       rpcServer.stop();
     }
+    if (resolvingCacheInvalidator != null) {
+      resolvingCacheInvalidator.stop();
+    }
     if (leaderElection != null && leaderElection.isRunning()) {
       leaderElection.stopElectionThread();
     }
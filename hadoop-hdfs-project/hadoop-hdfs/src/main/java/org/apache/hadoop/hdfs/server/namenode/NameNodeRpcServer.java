@@ -355,6 +355,14 @@ public LocatedBlocks getBlockLocations(String src, long offset, long length)
         .getBlockLocations(getClientMachine(), src, offset, length);
   }
   
+  @Override // ClientProtocol
+  public LocatedBlocks[] getBatchedBlockLocations(String[] srcs, long offset,
+      long length) throws IOException {
+    metrics.incrGetBlockLocations();
+    return namesystem
+        .getBatchedBlockLocations(getClientMachine(), srcs, offset, length);
+  }
+
   @Override // ClientProtocol
   public FsServerDefaults getServerDefaults() throws IOException {
     return namesystem.getServerDefaults();
@@ -661,6 +669,12 @@ public HdfsFileStatus getFileInfo(String src) throws IOException {
     return namesystem.getFileInfo(src, true);
   }
 
+  @Override // ClientProtocol
+  public HdfsFileStatus[] getFileInfos(String[] srcs) throws IOException {
+    metrics.incrFileInfoOps();
+    return namesystem.getFileInfos(srcs, true);
+  }
+
   @Override // ClientProtocol
   public HdfsFileStatus getFileLinkInfo(String src) throws IOException {
     metrics.incrFileInfoOps();
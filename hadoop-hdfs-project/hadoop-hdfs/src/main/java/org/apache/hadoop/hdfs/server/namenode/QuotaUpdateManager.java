@@ -30,6 +30,7 @@
 import io.hops.transaction.lock.SubtreeLockHelper;
 import io.hops.transaction.lock.TransactionLockTypes;
 import io.hops.transaction.lock.TransactionLocks;
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -42,15 +43,27 @@
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.apache.hadoop.util.ExitUtil.terminate;
 
 /**
  * Daemon that is asynchronously updating the quota counts of directories.
  * Each operation that affects the quota adds a log entry to our database.
- * This daemon periodically reads a batch of these updates, combines them if
- * possible and applies them.
+ * This daemon periodically reads a batch of these updates, combines the
+ * updates of each directory, whatever transaction added them, and applies
+ * them. Applying the updates of a directory adds one update for its parent,
+ * the parent updates of a round are combined again and applied in the next
+ * round, so a batch is propagated up to the root before the next one is
+ * read. The directories of a round are different inodes and are applied in
+ * parallel, a directory shared by several of them is only applied in a later
+ * round, after all of them. As long as a full batch is read the next one is
+ * processed without waiting for the update interval.
  */
 public class QuotaUpdateManager {
 
@@ -60,6 +73,9 @@ public class QuotaUpdateManager {
 
   private final int updateInterval;
   private final int updateLimit;
+  private final int updateThreads;
+
+  private ExecutorService updateExecutor;
 
   private final Daemon updateThread = new Daemon(new QuotaUpdateMonitor());
 
@@ -73,6 +89,13 @@ public QuotaUpdateManager(FSNamesystem namesystem, Configuration conf) {
             DFSConfigKeys.DFS_NAMENODE_QUOTA_UPDATE_INTERVAL_DEFAULT);
     updateLimit = conf.getInt(DFSConfigKeys.DFS_NAMENODE_QUOTA_UPDATE_LIMIT_KEY,
         DFSConfigKeys.DFS_NAMENODE_QUOTA_UPDATE_LIMIT_DEFAULT);
+    updateThreads = Math.max(1,
+        conf.getInt(DFSConfigKeys.DFS_NAMENODE_QUOTA_UPDATE_THREADS_KEY,
+            DFSConfigKeys.DFS_NAMENODE_QUOTA_UPDATE_THREADS_DEFAULT));
+    if (updateThreads > 1) {
+      updateExecutor = Executors.newFixedThreadPool(updateThreads,
+          new Daemon.DaemonFactory());
+    }
   }
 
   public void activate() {
@@ -81,6 +104,9 @@ public void activate() {
   }
 
   public void close() {
+    if (updateExecutor != null) {
+      updateExecutor.shutdownNow();
+    }
     if (updateThread != null) {
       updateThread.interrupt();
       try {
@@ -121,12 +147,15 @@ public void run() {
                 iterator.notify();
               }
             }
-            processNextUpdateBatch();
+            if (processNextUpdateBatch()) {
+              // there is a backlog, keep on applying it
+              continue;
+            }
           }
           long sleepDuration =
               updateInterval - (System.currentTimeMillis() - startTime);
           if (sleepDuration > 0) {
-            Thread.sleep(updateInterval);
+            Thread.sleep(sleepDuration);
           }
         } catch (InterruptedException ie) {
           LOG.warn("QuotaUpdateMonitor thread received InterruptedException.",
@@ -174,7 +203,11 @@ public Object performTask() throws IOException {
     applyBatchedUpdate(quotaUpdates);
   }
 
-  private void processNextUpdateBatch() throws IOException {
+  /**
+   * @return true if a full batch was read and more updates might be waiting
+   */
+  private boolean processNextUpdateBatch()
+      throws IOException, InterruptedException {
     LightWeightRequestHandler findHandler =
         new LightWeightRequestHandler(HDFSOperationType.GET_NEXT_QUOTA_BATCH) {
           @Override
@@ -187,31 +220,119 @@ public Object performTask() throws IOException {
         };
 
     List<QuotaUpdate> quotaUpdates = (List<QuotaUpdate>) findHandler.handle();
+    applyUpdates(quotaUpdates);
+    return quotaUpdates.size() >= updateLimit;
+  }
+
+  /**
+   * Apply the updates and the parent updates they add round by round up to
+   * the root.
+   */
+  @VisibleForTesting
+  void applyUpdates(List<QuotaUpdate> quotaUpdates)
+      throws IOException, InterruptedException {
+    List<List<QuotaUpdate>> batches = combineByINode(quotaUpdates);
+    while (!batches.isEmpty()) {
+      batches = combineByINode(applyBatchedUpdates(batches));
+    }
+  }
+
+  /**
+   * @return the updates grouped by inode, in ascending inode id order
+   */
+  @VisibleForTesting
+  List<List<QuotaUpdate>> combineByINode(List<QuotaUpdate> quotaUpdates) {
     Collections.sort(quotaUpdates, quotaUpdateComparator);
 
+    List<List<QuotaUpdate>> batches = new ArrayList<List<QuotaUpdate>>();
     ArrayList<QuotaUpdate> batch = new ArrayList<QuotaUpdate>();
     for (QuotaUpdate update : quotaUpdates) {
       if (batch.size() == 0 ||
           batch.get(0).getInodeId() == update.getInodeId()) {
         batch.add(update);
       } else {
-        applyBatchedUpdate(batch);
+        batches.add(batch);
         batch = new ArrayList<QuotaUpdate>();
         batch.add(update);
       }
     }
 
     if (batch.size() != 0) {
-      applyBatchedUpdate(batch);
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+  /**
+   * Apply the combined updates of different inodes. Each of them only locks
+   * its own inode and adds a new update for its parent, so they can be
+   * applied concurrently.
+   *
+   * @return the parent updates added
+   */
+  private List<QuotaUpdate> applyBatchedUpdates(List<List<QuotaUpdate>> batches)
+      throws IOException, InterruptedException {
+    List<QuotaUpdate> parentUpdates = new ArrayList<QuotaUpdate>();
+    if (updateExecutor == null || batches.size() <= 1) {
+      for (List<QuotaUpdate> batch : batches) {
+        QuotaUpdate parentUpdate = applyBatchedUpdate(batch);
+        if (parentUpdate != null) {
+          parentUpdates.add(parentUpdate);
+        }
+      }
+      return parentUpdates;
+    }
+
+    List<Future<QuotaUpdate>> futures = new ArrayList<Future<QuotaUpdate>>();
+    for (final List<QuotaUpdate> batch : batches) {
+      futures.add(updateExecutor.submit(new Callable<QuotaUpdate>() {
+        @Override
+        public QuotaUpdate call() throws IOException {
+          return applyBatchedUpdate(batch);
+        }
+      }));
     }
+
+    IOException failure = null;
+    for (Future<QuotaUpdate> future : futures) {
+      try {
+        QuotaUpdate parentUpdate = future.get();
+        if (parentUpdate != null) {
+          parentUpdates.add(parentUpdate);
+        }
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          if (failure == null) {
+            failure = (IOException) cause;
+          }
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else {
+          throw new IOException(cause);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return parentUpdates;
   }
 
-  private void applyBatchedUpdate(final List<QuotaUpdate> updates)
+  /**
+   * Apply the updates of one inode in a transaction.
+   *
+   * @return the update added for the parent of the inode, null if there is
+   * none
+   */
+  @VisibleForTesting
+  QuotaUpdate applyBatchedUpdate(final List<QuotaUpdate> updates)
       throws IOException {
     if (updates.size() == 0) {
-      return;
+      return null;
     }
-    new HopsTransactionalRequestHandler(HDFSOperationType.APPLY_QUOTA_UPDATE) {
+    return (QuotaUpdate) new HopsTransactionalRequestHandler(
+        HDFSOperationType.APPLY_QUOTA_UPDATE) {
       INodeIdentifier iNodeIdentifier;
 
       @Override
@@ -279,6 +400,7 @@ public Object performTask() throws IOException {
                   diskspaceDelta);
           EntityManager.add(parentUpdate);
           LOG.debug("adding parent update " + parentUpdate);
+          return parentUpdate;
         }
         return null;
       }
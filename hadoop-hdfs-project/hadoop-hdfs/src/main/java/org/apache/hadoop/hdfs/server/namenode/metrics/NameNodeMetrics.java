@@ -31,6 +31,9 @@
 import org.apache.hadoop.metrics2.lib.MutableRate;
 import org.apache.hadoop.metrics2.source.JvmMetrics;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import static org.apache.hadoop.metrics2.impl.MsInfo.ProcessName;
 import static org.apache.hadoop.metrics2.impl.MsInfo.SessionId;
 
@@ -87,8 +90,26 @@ public class NameNodeMetrics {
   @Metric("Time loading FS Image at startup")
   MutableGaugeInt fsImageLoadTime;
 
+  @Metric("Expired leases recovered by this NameNode")
+  MutableCounterLong leaseRecoveries;
+  @Metric("Expired leases whose recovery failed")
+  MutableCounterLong leaseRecoveryFailures;
+  @Metric("Expired leases waiting for recovery")
+  MutableGaugeInt leaseRecoveriesPending;
+
+  @Metric("Transactions retried after a failed attempt")
+  MutableCounterLong transactionRetries;
+  // per operation type and per lock class, created on first use
+  private final int[] intervals;
+  private final ConcurrentMap<String, MutableRate> transactionRates =
+      new ConcurrentHashMap<String, MutableRate>();
+  private final ConcurrentMap<String, MutableQuantiles[]>
+      transactionQuantiles =
+      new ConcurrentHashMap<String, MutableQuantiles[]>();
+
   NameNodeMetrics(String processName, String sessionId, int[] intervals) {
     registry.tag(ProcessName, processName).tag(SessionId, sessionId);
+    this.intervals = intervals;
     
     final int len = intervals.length;
     syncsQuantiles = new MutableQuantiles[len];
@@ -206,4 +227,98 @@ public void addBlockReport(long latency) {
   public void setSafeModeTime(long elapsed) {
     safeModeTime.set((int) elapsed);
   }
+
+  public void incrLeaseRecoveriesPending() {
+    leaseRecoveriesPending.incr();
+  }
+
+  public void incrLeaseRecoveries() {
+    leaseRecoveriesPending.decr();
+    leaseRecoveries.incr();
+  }
+
+  public void incrLeaseRecoveryFailures() {
+    leaseRecoveriesPending.decr();
+    leaseRecoveryFailures.incr();
+  }
+
+  /**
+   * Record a transaction of the given operation type.
+   *
+   * @param latency
+   *     time from the first attempt to the end of the last one in microseconds
+   * @param setUpLatency
+   *     time spent in the setUp of all attempts in microseconds
+   * @param lockLatency
+   *     time spent acquiring the locks of all attempts, with the reads done
+   *     by the locks, in microseconds
+   * @param taskLatency
+   *     time spent in the task of all attempts in microseconds
+   * @param commitLatency
+   *     time spent in the successful commit in microseconds
+   * @param attempts
+   *     number of times the transaction was run
+   */
+  public void addTransaction(String opType, long latency, long setUpLatency,
+      long lockLatency, long taskLatency, long commitLatency, int attempts) {
+    getTransactionRate("Tx" + opType, "Latency of " + opType +
+        " transactions in microseconds").add(latency);
+    getTransactionRate("TxSetUp" + opType, "SetUp time of " + opType +
+        " transactions in microseconds").add(setUpLatency);
+    getTransactionRate("TxLocks" + opType, "Lock acquisition time of " +
+        opType + " transactions in microseconds").add(lockLatency);
+    getTransactionRate("TxTask" + opType, "Task time of " + opType +
+        " transactions in microseconds").add(taskLatency);
+    getTransactionRate("TxCommit" + opType, "Commit time of " + opType +
+        " transactions in microseconds").add(commitLatency);
+    for (MutableQuantiles q : getTransactionQuantiles("Tx" + opType,
+        "Latency of " + opType + " transactions in microseconds")) {
+      q.add(latency);
+    }
+    if (attempts > 1) {
+      transactionRetries.incr(attempts - 1);
+    }
+  }
+
+  /**
+   * Record the time it took to acquire a lock of the given class in
+   * microseconds.
+   */
+  public void addLockAcquisition(String lockClass, long latency) {
+    getTransactionRate("Lock" + lockClass, "Acquisition time of " +
+        lockClass + " in microseconds").add(latency);
+  }
+
+  private MutableRate getTransactionRate(String name, String desc) {
+    MutableRate rate = transactionRates.get(name);
+    if (rate == null) {
+      synchronized (registry) {
+        rate = transactionRates.get(name);
+        if (rate == null) {
+          rate = registry.newRate(name, desc, false);
+          transactionRates.put(name, rate);
+        }
+      }
+    }
+    return rate;
+  }
+
+  private MutableQuantiles[] getTransactionQuantiles(String name,
+      String desc) {
+    MutableQuantiles[] quantiles = transactionQuantiles.get(name);
+    if (quantiles == null) {
+      synchronized (registry) {
+        quantiles = transactionQuantiles.get(name);
+        if (quantiles == null) {
+          quantiles = new MutableQuantiles[intervals.length];
+          for (int i = 0; i < intervals.length; i++) {
+            quantiles[i] = registry.newQuantiles(name + intervals[i] + "s",
+                desc, "ops", "latency", intervals[i]);
+          }
+          transactionQuantiles.put(name, quantiles);
+        }
+      }
+    }
+    return quantiles;
+  }
 }
@@ -30,12 +30,36 @@
    */
   private DatanodeCommand[] commands;
 
+  /**
+   * Number of full block reports the namenode is processing
+   */
+  private int pendingBlockReports;
+
+  /**
+   * Number of blocks in the full block reports the namenode is processing
+   */
+  private long pendingBlockReportBlocks;
   
   public HeartbeatResponse(DatanodeCommand[] cmds) {
+    this(cmds, 0, 0);
+  }
+
+  public HeartbeatResponse(DatanodeCommand[] cmds, int pendingBlockReports,
+      long pendingBlockReportBlocks) {
     commands = cmds;
+    this.pendingBlockReports = pendingBlockReports;
+    this.pendingBlockReportBlocks = pendingBlockReportBlocks;
   }
   
   public DatanodeCommand[] getCommands() {
     return commands;
   }
+
+  public int getPendingBlockReports() {
+    return pendingBlockReports;
+  }
+
+  public long getPendingBlockReportBlocks() {
+    return pendingBlockReportBlocks;
+  }
 }
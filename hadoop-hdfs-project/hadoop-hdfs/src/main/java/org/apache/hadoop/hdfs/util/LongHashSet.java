@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+/**
+ * A set of primitive longs backed by an open addressing hash table, see
+ * {@link LongHashTable}.
+ * <p/>
+ * This class is not thread safe.
+ */
+public class LongHashSet extends LongHashTable {
+
+  public LongHashSet(int expectedSize) {
+    super(expectedSize);
+  }
+
+  /**
+   * Create a set of the keys of the given table.
+   */
+  public LongHashSet(LongHashTable table) {
+    super(table);
+  }
+
+  public boolean contains(long key) {
+    return containsKey(key);
+  }
+
+  /**
+   * @return true if the set did not contain the key
+   */
+  public boolean add(long key) {
+    int sizeBefore = size();
+    insert(key);
+    return size() > sizeBefore;
+  }
+
+  /**
+   * @return true if the set contained the key
+   */
+  public boolean remove(long key) {
+    return delete(key);
+  }
+
+  public long[] toArray() {
+    return keys();
+  }
+
+  @Override
+  protected void moveValue(int from, int to) {
+  }
+
+  @Override
+  protected void rehashValues(int[] newIndexes, int length) {
+  }
+}
@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import java.util.Arrays;
+
+/**
+ * The keys of an open addressing hash table of primitive longs, shared by
+ * {@link LongHashSet}, {@link LongIntHashMap} and {@link LongLongHashMap}.
+ * Collisions are resolved with linear probing and removals use backward
+ * shift deletion, so no tombstones are needed. A zero in the key array marks
+ * a free slot; the key zero itself is kept in the extra slot at index
+ * {@link #capacity()}. Subclasses keep their values in arrays of length
+ * capacity() + 1 indexed like the keys.
+ * <p/>
+ * This class is not thread safe.
+ */
+public abstract class LongHashTable {
+  private static final float LOAD_FACTOR = 0.75f;
+  private static final int MINIMUM_CAPACITY = 16;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+  private static final long FREE = 0L;
+
+  private long[] keys;
+  private int capacity;
+  private int mask;
+  private int threshold;
+  private int size;
+  private boolean containsFreeKey;
+
+  protected LongHashTable(int expectedSize) {
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * Create a table holding the same keys as the given table.
+   */
+  protected LongHashTable(LongHashTable other) {
+    this.keys = other.keys.clone();
+    this.capacity = other.capacity;
+    this.mask = other.mask;
+    this.threshold = other.threshold;
+    this.size = other.size;
+    this.containsFreeKey = other.containsFreeKey;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(long key) {
+    return indexOf(key) >= 0;
+  }
+
+  public void clear() {
+    Arrays.fill(keys, FREE);
+    size = 0;
+    containsFreeKey = false;
+  }
+
+  /**
+   * @return the keys of this table in no particular order
+   */
+  public long[] keys() {
+    long[] result = new long[size];
+    int j = 0;
+    for (int i = 0; i < capacity; i++) {
+      if (keys[i] != FREE) {
+        result[j++] = keys[i];
+      }
+    }
+    if (containsFreeKey) {
+      result[j] = FREE;
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of slots in the table, not counting the slot of the
+   * key zero
+   */
+  protected final int capacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the index of the key or -1 if the key is not in the table
+   */
+  protected final int indexOf(long key) {
+    if (key == FREE) {
+      return containsFreeKey ? capacity : -1;
+    }
+    int i = hash(key) & mask;
+    long k;
+    while ((k = keys[i]) != FREE) {
+      if (k == key) {
+        return i;
+      }
+      i = (i + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Add the key to the table if it is not there yet.
+   *
+   * @return the index of the key
+   */
+  protected final int insert(long key) {
+    if (key == FREE) {
+      if (!containsFreeKey) {
+        containsFreeKey = true;
+        size++;
+      }
+      return capacity;
+    }
+    int i = hash(key) & mask;
+    long k;
+    while ((k = keys[i]) != FREE) {
+      if (k == key) {
+        return i;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    if (++size > threshold) {
+      rehash(capacity << 1);
+      return indexOf(key);
+    }
+    return i;
+  }
+
+  /**
+   * Remove the key from the table.
+   *
+   * @return true if the key was in the table
+   */
+  protected final boolean delete(long key) {
+    if (key == FREE) {
+      if (containsFreeKey) {
+        containsFreeKey = false;
+        size--;
+        return true;
+      }
+      return false;
+    }
+    int hole = indexOf(key);
+    if (hole < 0) {
+      return false;
+    }
+    int next = (hole + 1) & mask;
+    long k;
+    while ((k = keys[next]) != FREE) {
+      int home = hash(k) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        keys[hole] = k;
+        moveValue(next, hole);
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[hole] = FREE;
+    size--;
+    return true;
+  }
+
+  /**
+   * Move the value stored at index from to index to.
+   */
+  protected abstract void moveValue(int from, int to);
+
+  /**
+   * Reallocate the values for a table of the given length. The value at
+   * index i moves to index newIndexes[i], indexes mapped to -1 are free.
+   */
+  protected abstract void rehashValues(int[] newIndexes, int length);
+
+  private void allocate(int newCapacity) {
+    capacity = newCapacity;
+    mask = newCapacity - 1;
+    threshold = (int) (newCapacity * LOAD_FACTOR);
+    keys = new long[newCapacity + 1];
+  }
+
+  private void rehash(int newCapacity) {
+    if (newCapacity > MAXIMUM_CAPACITY || newCapacity <= 0) {
+      throw new IllegalStateException(
+          "Too many keys for a LongHashTable: " + size);
+    }
+    long[] oldKeys = keys;
+    int oldCapacity = capacity;
+    allocate(newCapacity);
+
+    int[] newIndexes = new int[oldCapacity + 1];
+    for (int i = 0; i < oldCapacity; i++) {
+      long k = oldKeys[i];
+      if (k == FREE) {
+        newIndexes[i] = -1;
+        continue;
+      }
+      int j = hash(k) & mask;
+      while (keys[j] != FREE) {
+        j = (j + 1) & mask;
+      }
+      keys[j] = k;
+      newIndexes[i] = j;
+    }
+    newIndexes[oldCapacity] = containsFreeKey ? capacity : -1;
+    rehashValues(newIndexes, capacity + 1);
+  }
+
+  private static int capacityFor(int expectedSize) {
+    long minCapacity = Math.max(MINIMUM_CAPACITY,
+        (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1);
+    if (minCapacity > MAXIMUM_CAPACITY) {
+      throw new IllegalArgumentException(
+          "Too many keys for a LongHashTable: " + expectedSize);
+    }
+    return (int) Long.highestOneBit(minCapacity - 1) << 1;
+  }
+
+  private static int hash(long key) {
+    long h = key * 0x9e3779b97f4a7c15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
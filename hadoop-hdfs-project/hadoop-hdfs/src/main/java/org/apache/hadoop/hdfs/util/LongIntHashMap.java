@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import java.util.Map;
+
+/**
+ * A map from primitive longs to primitive ints backed by an open addressing
+ * hash table, see {@link LongHashTable}.
+ * <p/>
+ * This class is not thread safe.
+ */
+public class LongIntHashMap extends LongHashTable {
+  private int[] values;
+
+  public LongIntHashMap(int expectedSize) {
+    super(expectedSize);
+    values = new int[capacity() + 1];
+  }
+
+  /**
+   * Create a map holding the entries of the given map, null keys and values
+   * are not supported.
+   */
+  public LongIntHashMap(Map<Long, Integer> map) {
+    this(map.size());
+    for (Map.Entry<Long, Integer> entry : map.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * @return the value of the key or defaultValue if the key is not in the map
+   */
+  public int get(long key, int defaultValue) {
+    int index = indexOf(key);
+    return index < 0 ? defaultValue : values[index];
+  }
+
+  public void put(long key, int value) {
+    // insert may rehash and replace the values array
+    int index = insert(key);
+    values[index] = value;
+  }
+
+  /**
+   * @return true if the map contained the key
+   */
+  public boolean remove(long key) {
+    return delete(key);
+  }
+
+  @Override
+  protected void moveValue(int from, int to) {
+    values[to] = values[from];
+  }
+
+  @Override
+  protected void rehashValues(int[] newIndexes, int length) {
+    int[] oldValues = values;
+    values = new int[length];
+    for (int i = 0; i < newIndexes.length; i++) {
+      if (newIndexes[i] >= 0) {
+        values[newIndexes[i]] = oldValues[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.common;
+
+import org.apache.hadoop.util.Time;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestIDsGenerator {
+
+  private static final int BATCH_SIZE = 10;
+  private static final long CHECK_INTERVAL = 100;
+
+  /**
+   * Reserves the ids from a counter in memory instead of the database.
+   */
+  private static class MemoryIDsGenerator extends IDsGenerator {
+    private long next = 0;
+
+    MemoryIDsGenerator(int maxBatchSizeMultiplier, long stallTimeout) {
+      super(BATCH_SIZE, 0.5f, maxBatchSizeMultiplier, CHECK_INTERVAL,
+          stallTimeout);
+    }
+
+    @Override
+    synchronized CountersQueue.Counter incrementCounter(int inc) {
+      CountersQueue.Counter counter = new CountersQueue.Counter(next,
+          next + inc);
+      next += inc;
+      return counter;
+    }
+  }
+
+  private final IDsMonitor monitor = IDsMonitor.getInstance();
+
+  @Before
+  public void clearRefillRequest() throws InterruptedException {
+    monitor.awaitRefillRequest(0);
+  }
+
+  @Test
+  public void testRefillRequestedBelowLowWatermark() throws Exception {
+    MemoryIDsGenerator generator = new MemoryIDsGenerator(16, 1000);
+    assertTrue(generator.getMoreIdsIfNeeded());
+    // the low watermark is half a batch
+    for (int i = 0; i < BATCH_SIZE / 2; i++) {
+      assertEquals(i, generator.getUniqueID());
+    }
+    assertFalse(monitor.awaitRefillRequest(0));
+    assertEquals(BATCH_SIZE / 2, generator.getUniqueID());
+    assertTrue(monitor.awaitRefillRequest(0));
+
+    assertTrue(generator.getMoreIdsIfNeeded());
+    assertEquals(0, generator.getStalls());
+    assertEquals(2, generator.getRefills());
+  }
+
+  @Test(timeout = 60000)
+  public void testStalledRequestWokenByRefill() throws Exception {
+    final MemoryIDsGenerator generator = new MemoryIDsGenerator(16, 30000);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Long> stalled = executor.submit(new Callable<Long>() {
+        @Override
+        public Long call() {
+          return generator.getUniqueID();
+        }
+      });
+      // the stalled request wakes the monitor long before its next check
+      assertTrue(monitor.awaitRefillRequest(30000));
+      assertFalse(stalled.isDone());
+      assertEquals(1, generator.getStalls());
+
+      long start = Time.monotonicNow();
+      assertTrue(generator.getMoreIdsIfNeeded());
+      assertEquals(0L, (long) stalled.get(10, TimeUnit.SECONDS));
+      assertTrue(Time.monotonicNow() - start < 10000);
+      assertEquals(1, generator.getUniqueID());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testStallTimeout() throws Exception {
+    MemoryIDsGenerator generator = new MemoryIDsGenerator(16, 200);
+    long start = Time.monotonicNow();
+    try {
+      generator.getUniqueID();
+      fail("no ids were reserved");
+    } catch (CountersQueue.EmptyCountersQueueException e) {
+      assertTrue(Time.monotonicNow() - start >= 200);
+    }
+    assertEquals(1, generator.getStalls());
+    assertTrue(monitor.awaitRefillRequest(0));
+
+    // the generator recovers with the next refill
+    assertTrue(generator.getMoreIdsIfNeeded());
+    assertEquals(0, generator.getUniqueID());
+  }
+
+  /**
+   * Consume ids at time now, reserving batches without adapting to the rate
+   * when the queue runs dry.
+   */
+  private static void consume(IDsGenerator generator, long now, int ids)
+      throws IOException {
+    for (int i = 0; i < ids; i++) {
+      if (!generator.getCQ().has(1)) {
+        generator.getMoreIdsIfNeeded(now);
+      }
+      generator.getUniqueID();
+    }
+  }
+
+  @Test
+  public void testBatchFollowsConsumptionRate() throws Exception {
+    MemoryIDsGenerator generator = new MemoryIDsGenerator(16, 1000);
+    long now = Time.monotonicNow();
+    generator.getMoreIdsIfNeeded(now);
+    assertEquals(BATCH_SIZE, generator.getBatchSize());
+
+    // 5 ids per ms, the batch grows up to 16 times the configured size
+    int previous = generator.getBatchSize();
+    for (int check = 0; check < 5; check++) {
+      consume(generator, now, 500);
+      now += CHECK_INTERVAL;
+      generator.getMoreIdsIfNeeded(now);
+      assertTrue(generator.getBatchSize() >= previous);
+      previous = generator.getBatchSize();
+    }
+    assertEquals(16 * BATCH_SIZE, generator.getBatchSize());
+    assertEquals(0, generator.getStalls());
+
+    // once the operations stop, it shrinks back to the configured size
+    for (int check = 0; check < 20; check++) {
+      now += CHECK_INTERVAL;
+      generator.getMoreIdsIfNeeded(now);
+      assertTrue(generator.getBatchSize() <= previous);
+      previous = generator.getBatchSize();
+    }
+    assertEquals(BATCH_SIZE, generator.getBatchSize());
+  }
+
+  @Test
+  public void testNoAdaptationWithMultiplierOne() throws Exception {
+    MemoryIDsGenerator generator = new MemoryIDsGenerator(1, 1000);
+    long now = Time.monotonicNow();
+    generator.getMoreIdsIfNeeded(now);
+    for (int check = 0; check < 5; check++) {
+      consume(generator, now, 500);
+      now += CHECK_INTERVAL;
+      generator.getMoreIdsIfNeeded(now);
+      assertEquals(BATCH_SIZE, generator.getBatchSize());
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.resolvingcache;
+
+import io.hops.metadata.HdfsStorageFactory;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.apache.hadoop.util.Time;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestHotINodeCache {
+
+  private static final long LEASE = 500;
+  private static final int USER_ID = 2;
+
+  private HotINodeCache cache;
+  private INodeDirectory user;
+
+  @Before
+  public void setUp() throws Exception {
+    // the copies are stored as rows of the data access layer
+    HdfsStorageFactory.setConfiguration(new HdfsConfiguration());
+    Set<String> hotPaths = new HashSet<String>();
+    hotPaths.add("/");
+    hotPaths.add("/user");
+    cache = new HotINodeCache(true, LEASE, hotPaths);
+    user = newUser("hops", FsPermission.getDefault());
+  }
+
+  private static INodeDirectory newUser(String owner, FsPermission permission) {
+    INodeDirectory user = new INodeDirectory("user",
+        new PermissionStatus(owner, "hops", permission));
+    user.setIdNoPersistance(USER_ID);
+    user.setParentIdNoPersistance(INodeDirectory.ROOT_ID);
+    return user;
+  }
+
+  private INode getUser() throws Exception {
+    return cache.get("/user", INodeDirectory.ROOT_ID, "user");
+  }
+
+  @Test
+  public void testCachedForTheLease() throws Exception {
+    assertFalse(cache.isHot("/tmp"));
+    cache.put("/tmp", user, cache.getGeneration());
+    assertNull(getUser());
+
+    cache.put("/user", user, cache.getGeneration());
+    INode copy = getUser();
+    assertNotNull(copy);
+    assertEquals(user.getId(), copy.getId());
+    // every transaction gets its own copy
+    assertTrue(copy != getUser());
+    // the copy is only served for the inode it was read as
+    assertNull(cache.get("/user", INodeDirectory.ROOT_ID, "other"));
+    assertNull(cache.get("/user", USER_ID, "user"));
+
+    Thread.sleep(LEASE);
+    assertNull(getUser());
+  }
+
+  @Test
+  public void testOnlyResolutionChangesInvalidate() throws Exception {
+    cache.put("/user", user, cache.getGeneration());
+    assertTrue(cache.isHotINode(USER_ID));
+    assertFalse(cache.isHotINode(USER_ID + 1));
+
+    // a create or delete in the directory only updates its times
+    INodeDirectory touched = newUser("hops", FsPermission.getDefault());
+    touched.setModificationTimeNoPersistance(user.getModificationTime() + 1);
+    touched.setAccessTimeNoPersistance(user.getAccessTime() + 1);
+    assertFalse(cache.changesResolution(touched));
+
+    assertTrue(cache.changesResolution(
+        newUser("other", FsPermission.getDefault())));
+    assertTrue(cache.changesResolution(
+        newUser("hops", new FsPermission((short) 0700))));
+    INodeDirectory locked = newUser("hops", FsPermission.getDefault());
+    locked.lockSubtree(1);
+    assertTrue(cache.changesResolution(locked));
+    INodeDirectory renamed = newUser("hops", FsPermission.getDefault());
+    renamed.setLocalNameNoPersistance("renamed");
+    assertTrue(cache.changesResolution(renamed));
+
+    // the inodes of no hot path are never invalidated
+    INodeDirectory other = newUser("other", FsPermission.getDefault());
+    other.setIdNoPersistance(USER_ID + 1);
+    assertFalse(cache.changesResolution(other));
+    long generation = cache.getGeneration();
+    cache.invalidate(USER_ID + 1);
+    assertEquals(generation, cache.getGeneration());
+    assertNotNull(getUser());
+  }
+
+  @Test
+  public void testHotINodeResolvedWithoutCaching() throws Exception {
+    // locked for writing, the inode is not cached but known as hot
+    cache.resolved("/user", user);
+    assertNull(getUser());
+    assertFalse(cache.isCached(USER_ID));
+    assertTrue(cache.isHotINode(USER_ID));
+    // without a cached version every change may affect the resolution
+    assertTrue(cache.changesResolution(user));
+  }
+
+  @Test
+  public void testLocalInvalidation() throws Exception {
+    cache.put("/user", user, cache.getGeneration());
+    cache.invalidate(USER_ID);
+    assertNull(getUser());
+
+    // read again by another transaction before the invalidating one finished
+    cache.put("/user", user, cache.getGeneration());
+    long start = Time.monotonicNow();
+    cache.invalidateAfterTransaction();
+    assertNull(getUser());
+    // the handler does not wait for the lease
+    assertTrue(Time.monotonicNow() - start < LEASE);
+
+    cache.put("/user", user, cache.getGeneration());
+    assertNotNull(getUser());
+  }
+
+  @Test
+  public void testRemoteInvalidation() throws Exception {
+    cache.put("/user", user, cache.getGeneration());
+    long generation = cache.getGeneration();
+    cache.invalidateRemote(INodeDirectory.ROOT_ID, "other");
+    assertEquals(generation, cache.getGeneration());
+    assertNotNull(getUser());
+
+    cache.invalidateRemote(INodeDirectory.ROOT_ID, "user");
+    assertNull(getUser());
+    assertTrue(cache.getGeneration() > generation);
+  }
+
+  @Test
+  public void testInvalidationWhileReading() throws Exception {
+    cache.put("/user", user, cache.getGeneration());
+    long readGeneration = cache.getGeneration();
+    // invalidated by another NameNode while the row was read
+    cache.invalidateRemote(INodeDirectory.ROOT_ID, "user");
+    cache.put("/user", user, readGeneration);
+    assertNull(getUser());
+
+    readGeneration = cache.getGeneration();
+    cache.invalidate(USER_ID);
+    cache.put("/user", user, readGeneration);
+    assertNull(getUser());
+    cache.invalidateAfterTransaction();
+
+    // the invalidation of another inode does not prevent caching
+    readGeneration = cache.getGeneration();
+    INodeDirectory root = new INodeDirectory("", new PermissionStatus("hops",
+        "hops", FsPermission.getDefault()));
+    root.setIdNoPersistance(INodeDirectory.ROOT_ID);
+    cache.resolved("/", root);
+    cache.invalidate(INodeDirectory.ROOT_ID);
+    cache.put("/user", user, readGeneration);
+    assertNotNull(getUser());
+  }
+}
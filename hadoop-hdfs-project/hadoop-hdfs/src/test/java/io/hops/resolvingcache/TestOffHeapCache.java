@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.resolvingcache;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.INode;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestOffHeapCache {
+
+  private OffHeapCache createCache(int maxSize) throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt(DFSConfigKeys.DFS_OFFHEAP_CACHE_MAX_SIZE, maxSize);
+    conf.setBoolean(DFSConfigKeys.DFS_RESOLVING_CACHE_ENABLED, false);
+    OffHeapCache cache = new OffHeapCache();
+    cache.setConfiguration(conf);
+    cache.startInternal();
+    return cache;
+  }
+
+  private void putPath(OffHeapCache cache, String[] names, int[] ids) {
+    int parentId = INodeDirectory.ROOT_PARENT_ID;
+    for (int i = 0; i < names.length; i++) {
+      cache.put(parentId, names[i], ids[i]);
+      parentId = ids[i];
+    }
+  }
+
+  @Test
+  public void testResolvePath() throws Exception {
+    OffHeapCache cache = createCache(1000);
+    putPath(cache, new String[]{INodeDirectory.ROOT_NAME, "user", "hops",
+        "file"}, new int[]{INodeDirectory.ROOT_ID, 2, 3, 4});
+
+    assertArrayEquals(new int[]{1, 2, 3, 4},
+        cache.getInternal("/user/hops/file"));
+    assertArrayEquals(new int[]{1, 2, 3}, cache.getInternal("/user/hops/"));
+    assertArrayEquals(new int[]{1, 2, 3},
+        cache.getInternal("/user/hops/other"));
+    // only the root was found
+    assertNull(cache.getInternal("/tmp/hops"));
+    assertNull(cache.getInternal("/"));
+  }
+
+  @Test
+  public void testDelete() throws Exception {
+    OffHeapCache cache = createCache(1000);
+    putPath(cache, new String[]{INodeDirectory.ROOT_NAME, "a", "b", "c"},
+        new int[]{INodeDirectory.ROOT_ID, 10, 11, 12});
+
+    cache.deleteInternal("/a/b");
+    assertArrayEquals(new int[]{1, 10}, cache.getInternal("/a/b/c"));
+    assertEquals(INode.NON_EXISTING_ID, cache.get(10, "b", 0, 1));
+    assertEquals(12, cache.get(11, "c", 0, 1));
+
+    cache.remove(11, "c");
+    assertEquals(INode.NON_EXISTING_ID, cache.get(11, "c", 0, 1));
+
+    cache.flushInternal();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testUpdate() throws Exception {
+    OffHeapCache cache = createCache(1000);
+    cache.put(5, "file", 6);
+    cache.put(5, "file", 7);
+    assertEquals(1, cache.size());
+    assertEquals(7, cache.get(5, "file", 0, 4));
+  }
+
+  @Test
+  public void testEvictionBoundsSize() throws Exception {
+    int maxSize = 64 * 100;
+    OffHeapCache cache = createCache(maxSize);
+    for (int i = 1; i <= maxSize * 10; i++) {
+      cache.put(i, "child", i + 1);
+      assertTrue(cache.size() <= maxSize);
+    }
+    // all the entries still in the cache map to the right inode
+    int hits = 0;
+    for (int i = 1; i <= maxSize * 10; i++) {
+      int inodeId = cache.get(i, "child", 0, 5);
+      if (inodeId != INode.NON_EXISTING_ID) {
+        assertEquals(i + 1, inodeId);
+        hits++;
+      }
+    }
+    assertEquals(cache.size(), hits);
+  }
+}
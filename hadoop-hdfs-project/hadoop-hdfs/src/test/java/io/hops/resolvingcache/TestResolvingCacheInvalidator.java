@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.resolvingcache;
+
+import io.hops.leader_election.node.ActiveNode;
+import io.hops.leader_election.node.ActiveNodePBImpl;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestResolvingCacheInvalidator {
+
+  private static final String LOCALHOST = "127.0.0.1";
+
+  private final List<ActiveNode> activeNameNodes = new ArrayList<ActiveNode>();
+  private ResolvingCacheInvalidator sender;
+  private ResolvingCacheInvalidator peer;
+  private final BlockingQueue<String> receivedByPeer =
+      new LinkedBlockingQueue<String>();
+
+  private class TestInvalidator extends ResolvingCacheInvalidator {
+    private final BlockingQueue<String> received;
+
+    TestInvalidator(long namenodeId, BlockingQueue<String> received) {
+      super(null, namenodeId, 0);
+      this.received = received;
+    }
+
+    @Override
+    void received(int parentId, String name) {
+      received.add(parentId + "/" + name);
+    }
+
+    @Override
+    List<ActiveNode> getActiveNameNodes() {
+      return activeNameNodes;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(DFSConfigKeys.DFS_RESOLVING_CACHE_TYPE, "inmemory");
+    Cache.getInstance(conf);
+    // both NameNodes run on this host, each on its own port
+    sender = new TestInvalidator(1, new LinkedBlockingQueue<String>());
+    peer = new TestInvalidator(2, receivedByPeer);
+    sender.start();
+    peer.start();
+    activeNameNodes.add(
+        new ActiveNodePBImpl(1, "", LOCALHOST, sender.getPort(), ""));
+    activeNameNodes.add(
+        new ActiveNodePBImpl(2, "", LOCALHOST, peer.getPort(), ""));
+  }
+
+  @After
+  public void tearDown() {
+    sender.stop();
+    peer.stop();
+  }
+
+  @Test(timeout = 30000)
+  public void testSentAfterCommit() throws Exception {
+    ResolvingCacheInvalidator.invalidate(10, "rolledback");
+    ResolvingCacheInvalidator.afterTransaction(false);
+    ResolvingCacheInvalidator.invalidate(11, "a");
+    ResolvingCacheInvalidator.invalidate(11, "b");
+    // not sent while the transaction is not committed
+    assertNull(receivedByPeer.poll(500, TimeUnit.MILLISECONDS));
+
+    ResolvingCacheInvalidator.afterTransaction(true);
+    assertEquals("11/a", receivedByPeer.poll(10, TimeUnit.SECONDS));
+    assertEquals("11/b", receivedByPeer.poll(10, TimeUnit.SECONDS));
+    // the keys of the rolled back transaction are never sent
+    assertNull(receivedByPeer.poll(500, TimeUnit.MILLISECONDS));
+  }
+
+  @Test(timeout = 30000)
+  public void testUnknownSenderIgnored() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(1);
+    out.writeInt(12);
+    byte[] name = DFSUtil.string2Bytes("c");
+    out.writeShort(name.length);
+    out.write(name);
+    out.flush();
+    byte[] payload = bytes.toByteArray();
+
+    // same address as the active NameNodes, but not one of their ports
+    DatagramSocket other = new DatagramSocket();
+    try {
+      other.send(new DatagramPacket(payload, payload.length,
+          new InetSocketAddress(LOCALHOST, peer.getPort())));
+      assertNull(receivedByPeer.poll(1, TimeUnit.SECONDS));
+    } finally {
+      other.close();
+    }
+
+    ResolvingCacheInvalidator.invalidate(12, "d");
+    ResolvingCacheInvalidator.afterTransaction(true);
+    assertEquals("12/d", receivedByPeer.poll(10, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.lock;
+
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TestHdfsTransactionalLockAcquirer {
+
+  private static final long SLEEP = 5;
+
+  private static class SleepingLock extends BaseTestLock {
+    @Override
+    protected void acquire(TransactionLocks locks) throws IOException {
+      try {
+        Thread.sleep(SLEEP);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+    }
+  }
+
+  private static HdfsTransactionalLockAcquirer acquire() throws IOException {
+    HdfsTransactionalLockAcquirer acquirer =
+        new HdfsTransactionalLockAcquirer();
+    acquirer.getLocks().add(new SleepingLock());
+    acquirer.acquire();
+    return acquirer;
+  }
+
+  @After
+  public void tearDown() {
+    HdfsTransactionalLockAcquirer.setSamplingRate(
+        DFSConfigKeys.DFS_NAMENODE_LOCK_METRICS_SAMPLING_DEFAULT);
+  }
+
+  @Test
+  public void testAcquisitionTime() throws IOException {
+    HdfsTransactionalLockAcquirer acquirer = acquire();
+    assertTrue(acquirer.getAcquisitionTime() >= SLEEP * 1000);
+    assertTrue(acquirer.describeAcquisition().startsWith("SleepingLock="));
+  }
+
+  @Test
+  public void testAcquisitionFromTransactionBegin() throws Exception {
+    HdfsTransactionalLockAcquirer acquirer =
+        new HdfsTransactionalLockAcquirer();
+    assertFalse(acquirer.isAcquired());
+    Thread.sleep(SLEEP);
+    acquirer.getLocks().add(new SleepingLock());
+    long beforeAcquire = System.nanoTime();
+    acquirer.acquire();
+    assertTrue(acquirer.isAcquired());
+    assertTrue(acquirer.getAcquisitionEnd() >= beforeAcquire + SLEEP * 1000000);
+    // the time before the acquisition is spent in the lock phase too
+    assertTrue(acquirer.getAcquisitionTime() >= 2 * SLEEP * 1000);
+  }
+
+  @Test
+  public void testFailedAcquisition() throws Exception {
+    HdfsTransactionalLockAcquirer acquirer =
+        new HdfsTransactionalLockAcquirer();
+    acquirer.getLocks().add(new BaseTestLock() {
+      @Override
+      protected void acquire(TransactionLocks locks) throws IOException {
+        throw new IOException("lock failed");
+      }
+    });
+    try {
+      acquirer.acquire();
+      fail("the lock failed");
+    } catch (IOException e) {
+      assertFalse(acquirer.isAcquired());
+    }
+  }
+
+  @Test
+  public void testLockClassesSampled() throws IOException {
+    NameNodeMetrics metrics = mock(NameNodeMetrics.class);
+    HdfsTransactionalLockAcquirer.setSamplingRate(4);
+    int recorded = 0;
+    for (int i = 0; i < 8; i++) {
+      if (acquire().recordAcquisitionTimes(metrics)) {
+        recorded++;
+      }
+    }
+    // one in four transactions of this thread
+    assertEquals(2, recorded);
+    verify(metrics, times(2)).addLockAcquisition(eq("SleepingLock"),
+        anyLong());
+
+    metrics = mock(NameNodeMetrics.class);
+    HdfsTransactionalLockAcquirer.setSamplingRate(0);
+    for (int i = 0; i < 8; i++) {
+      assertFalse(acquire().recordAcquisitionTimes(metrics));
+    }
+    verify(metrics, never()).addLockAcquisition(anyString(), anyLong());
+  }
+}
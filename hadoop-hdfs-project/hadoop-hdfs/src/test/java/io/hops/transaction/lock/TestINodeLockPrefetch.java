@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.transaction.lock;
+
+import io.hops.resolvingcache.Cache;
+import io.hops.transaction.handler.HDFSOperationType;
+import io.hops.transaction.handler.HopsTransactionalRequestHandler;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestINodeLockPrefetch {
+
+  private MiniDFSCluster cluster;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+    cluster.waitActive();
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  /**
+   * @return the number of batched reads the lock of the paths prefetched
+   */
+  private int prefetchReads(final String... paths) throws IOException {
+    final NameNode nameNode = cluster.getNameNode();
+    final INodeLock lock = (INodeLock) LockFactory.getInstance()
+        .getINodeLock(nameNode,
+            TransactionLockTypes.INodeLockType.READ_COMMITTED,
+            TransactionLockTypes.INodeResolveType.PATH, paths);
+    new HopsTransactionalRequestHandler(HDFSOperationType.TEST) {
+      @Override
+      public void acquireLock(TransactionLocks locks) throws IOException {
+        locks.add(lock);
+      }
+
+      @Override
+      public Object performTask() throws IOException {
+        return null;
+      }
+    }.handle();
+    return lock.getPrefetchReads();
+  }
+
+  @Test
+  public void testPrefetchesOnlyResolvingCacheMisses() throws IOException {
+    FileSystem fs = cluster.getFileSystem();
+    assertTrue(fs.mkdirs(new Path("/a/b/c")));
+    assertTrue(fs.mkdirs(new Path("/x/y")));
+
+    Cache.getInstance().flush();
+    // one read per depth: the root, a and x, b and y, c
+    assertEquals(4, prefetchReads("/a/b/c", "/x/y"));
+
+    // both paths are resolved by primary key from the resolving cache
+    assertEquals(0, prefetchReads("/a/b/c", "/x/y"));
+
+    // only the component missing in the cache is prefetched
+    int[] inodeIds = Cache.getInstance().get("/a/b/c");
+    assertEquals(4, inodeIds.length);
+    Cache.getInstance().delete(inodeIds[2], "c");
+    assertEquals(1, prefetchReads("/a/b/c", "/x/y"));
+    assertEquals(0, prefetchReads("/a/b/c", "/x/y"));
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TestClientMetadataCache {
+
+  private static HdfsFileStatus status(boolean isDir) {
+    return new HdfsFileStatus(0, isDir, 3, 1024, 0, 0,
+        FsPermission.getDefault(), "user", "group", null, new byte[0]);
+  }
+
+  private static LocatedBlocks blocks(int numBlocks, long blockSize,
+      boolean underConstruction) {
+    List<LocatedBlock> list = new ArrayList<LocatedBlock>();
+    for (int i = 0; i < numBlocks; i++) {
+      list.add(new LocatedBlock(new ExtendedBlock("pool", i, blockSize, 1),
+          new DatanodeInfo[0], i * blockSize));
+    }
+    return new LocatedBlocks(numBlocks * blockSize, underConstruction, list,
+        list.get(numBlocks - 1), true);
+  }
+
+  @Test
+  public void testInvalidateDropsDescendantsAndParent() {
+    ClientMetadataCache cache = new ClientMetadataCache(new Configuration());
+    cache.putFileStatus("/a", status(true));
+    cache.putFileStatus("/a/b", status(true));
+    cache.putFileStatus("/a/b/c", status(false));
+    cache.putFileStatus("/a/bc", status(false));
+
+    cache.invalidate("/a/b");
+    assertNull(cache.getFileStatus("/a"));
+    assertNull(cache.getFileStatus("/a/b"));
+    assertNull(cache.getFileStatus("/a/b/c"));
+    assertNotNull(cache.getFileStatus("/a/bc"));
+  }
+
+  @Test
+  public void testEntriesExpire() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong(DFSConfigKeys.DFS_CLIENT_METADATA_CACHE_TTL_KEY, 10);
+    ClientMetadataCache cache = new ClientMetadataCache(conf);
+    cache.putFileStatus("/f", status(false));
+    Thread.sleep(20);
+    assertNull(cache.getFileStatus("/f"));
+  }
+
+  @Test
+  public void testLocatedBlocksOfWholeFile() {
+    ClientMetadataCache cache = new ClientMetadataCache(new Configuration());
+    cache.putLocatedBlocks("/f", 0, Long.MAX_VALUE, blocks(4, 100, false));
+    LocatedBlocks range = cache.getLocatedBlocks("/f", 150, 100);
+    assertEquals(2, range.locatedBlockCount());
+    assertEquals(100, range.get(0).getStartOffset());
+
+    // files being written are not cached
+    cache.putLocatedBlocks("/g", 0, Long.MAX_VALUE, blocks(1, 100, true));
+    assertNull(cache.getLocatedBlocks("/g", 0, Long.MAX_VALUE));
+  }
+}
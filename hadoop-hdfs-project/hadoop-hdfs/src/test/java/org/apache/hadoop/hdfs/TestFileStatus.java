@@ -27,8 +27,10 @@
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
 import org.apache.hadoop.hdfs.web.HftpFileSystem;
@@ -46,6 +48,7 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -75,6 +78,8 @@ public class TestFileStatus {
   public void testSetUp() throws Exception {
     conf = new HdfsConfiguration();
     conf.setInt(DFSConfigKeys.DFS_LIST_LIMIT, 2);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_BATCHED_PATHS_PER_TX_KEY, 3);
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_LISTING_PAGED_KEY, true);
     cluster = new MiniDFSCluster.Builder(conf).build();
     fs = cluster.getFileSystem();
     fc = FileContext.getFileContext(cluster.getURI(0), conf);
@@ -131,6 +136,89 @@ public void testGetFileInfo() throws IOException {
     }
   }
 
+  /**
+   * Test that the batched getFileInfo and getBlockLocations calls return the
+   * entry of each path at the index of the path, whatever the order of the
+   * paths, across the transactions of a call.
+   */
+  @Test
+  public void testBatchedCallsKeepPathOrder() throws IOException {
+    Path dir = new Path("/batch");
+    writeFile(fs, new Path(dir, "a"), 1, 100, blockSize);
+    writeFile(fs, new Path(dir, "b"), 1, 200, blockSize);
+    writeFile(fs, new Path(dir, "c"), 1, 300, blockSize);
+    // Unsorted, with duplicates and missing paths
+    String[] srcs = new String[]{"/batch/c", "/batch/missing", "/batch/a",
+        "/batch/c", "/batch/b", "/nosuchdir/a", "/batch/a"};
+    long[] lengths = new long[]{300, -1, 100, 300, 200, -1, 100};
+
+    HdfsFileStatus[] stats = dfsClient.getFileInfos(srcs);
+    assertEquals(srcs.length, stats.length);
+    for (int i = 0; i < srcs.length; i++) {
+      if (lengths[i] < 0) {
+        assertNull(srcs[i] + " should not exist", stats[i]);
+      } else {
+        assertEquals("Wrong status for " + srcs[i], lengths[i],
+            stats[i].getLen());
+      }
+    }
+
+    LocatedBlocks[] blocks =
+        dfsClient.getBatchedLocatedBlocks(srcs, 0, Long.MAX_VALUE);
+    assertEquals(srcs.length, blocks.length);
+    for (int i = 0; i < srcs.length; i++) {
+      if (lengths[i] < 0) {
+        assertNull(srcs[i] + " should not exist", blocks[i]);
+      } else {
+        assertEquals("Wrong blocks for " + srcs[i], lengths[i],
+            blocks[i].getFileLength());
+      }
+    }
+  }
+
+  private static DirectoryListing listPaged(String src, String startAfter,
+      int remaining, String... names) throws IOException {
+    DirectoryListing page = dfsClient.listPaths(src,
+        startAfter == null ? HdfsFileStatus.EMPTY_NAME :
+            DFSUtil.string2Bytes(startAfter));
+    HdfsFileStatus[] stats = page.getPartialListing();
+    assertEquals(names.length, stats.length);
+    for (int i = 0; i < names.length; i++) {
+      assertEquals(names[i], stats[i].getLocalName());
+    }
+    assertEquals(remaining, page.getRemainingEntries());
+    return page;
+  }
+
+  @Test
+  public void testPagedListing() throws IOException {
+    Path dir = new Path("/paged");
+    for (String name : new String[]{"a", "b", "c", "d", "e"}) {
+      assertTrue(fs.mkdirs(new Path(dir, name)));
+    }
+    // the list limit is 2
+    listPaged("/paged", null, 3, "a", "b");
+
+    // children created and deleted between the pages
+    assertTrue(fs.delete(new Path(dir, "d"), true));
+    assertTrue(fs.mkdirs(new Path(dir, "bb")));
+    assertTrue(fs.mkdirs(new Path(dir, "f")));
+    listPaged("/paged", "b", 2, "bb", "c");
+    listPaged("/paged", "c", 0, "e", "f");
+
+    // a startAfter that was deleted meanwhile
+    assertTrue(fs.delete(new Path(dir, "c"), true));
+    listPaged("/paged", "c", 0, "e", "f");
+    listPaged("/paged", "bb", 0, "e", "f");
+
+    // the modification time set back to the one of the cached names
+    long mtime = fs.getFileStatus(dir).getModificationTime();
+    listPaged("/paged", null, 3, "a", "b");
+    assertTrue(fs.mkdirs(new Path(dir, "aa")));
+    fs.setTimes(dir, mtime, -1);
+    listPaged("/paged", null, 4, "a", "aa");
+    listPaged("/paged", "f", 0);
+  }
 
   /**
    * Test the FileStatus obtained calling getFileStatus on a file
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import io.hops.leader_election.node.ActiveNodePBImpl;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class TestNamenodeSelector {
+
+  private static final long MS = 1000000L;
+
+  private static NamenodeSelector.NamenodeHandle handle(int id) {
+    return new NamenodeSelector.NamenodeHandle(mock(ClientProtocol.class),
+        new ActiveNodePBImpl(id, "nn" + id, "127.0.0.1", 9000 + id,
+            "0.0.0.0:50070"));
+  }
+
+  private static NamenodeSelector leastLoaded(float slowFactor,
+      long slowPenalty, NamenodeSelector.NamenodeHandle... namenodes) {
+    return new NamenodeSelector(new HdfsConfiguration(),
+        Arrays.asList(namenodes),
+        NamenodeSelector.NNSelectionPolicy.LEAST_LOADED, slowFactor,
+        slowPenalty);
+  }
+
+  @Test
+  public void testOutstandingCallsWithoutSamples() throws IOException {
+    NamenodeSelector.NamenodeHandle nn1 = handle(1);
+    NamenodeSelector.NamenodeHandle nn2 = handle(2);
+    NamenodeSelector selector = leastLoaded(0, 0, nn1, nn2);
+
+    nn1.callStarted();
+    nn1.callStarted();
+    nn2.callStarted();
+    assertSame(nn2, selector.getNextNamenode());
+    nn2.callStarted();
+    nn2.callStarted();
+    assertSame(nn1, selector.getNextNamenode());
+
+    // a namenode without samples is as fast as the fastest one
+    nn1.callFinished(10 * MS);
+    nn1.callFinished(10 * MS);
+    assertSame(nn1, selector.getNextNamenode());
+  }
+
+  @Test
+  public void testFailedCallsAreNoSamples() throws IOException {
+    NamenodeSelector.NamenodeHandle nn1 = handle(1);
+    NamenodeSelector.NamenodeHandle nn2 = handle(2);
+    NamenodeSelector selector = leastLoaded(0, 0, nn1, nn2);
+
+    nn1.callStarted();
+    nn1.callFinished(10 * MS);
+    nn2.callStarted();
+    nn2.callFinished(20 * MS);
+    // a namenode failing fast does not look lightly loaded
+    for (int i = 0; i < 10; i++) {
+      nn2.callStarted();
+      nn2.callFailed();
+    }
+    assertEquals(0, nn2.getOutstandingCalls());
+    assertEquals(20 * MS, nn2.getAverageLatency(), 0);
+    assertSame(nn1, selector.getNextNamenode());
+  }
+
+  @Test
+  public void testSingleProbeAfterPenalty() throws Exception {
+    NamenodeSelector.NamenodeHandle nn1 = handle(1);
+    NamenodeSelector.NamenodeHandle nn2 = handle(2);
+    NamenodeSelector selector = leastLoaded(2, 200, nn1, nn2);
+
+    nn1.callStarted();
+    nn1.callFinished(10 * MS);
+    nn2.callStarted();
+    nn2.callFinished(100 * MS);
+    // nn2 is slow and skipped for the penalty
+    assertSame(nn1, selector.getNextNamenode());
+    nn1.callStarted();
+    assertSame(nn1, selector.getNextNamenode());
+
+    Thread.sleep(300);
+    // nn1 is busy, nn2 gets a single probe
+    assertSame(nn2, selector.getNextNamenode());
+    nn2.callStarted();
+    for (int i = 0; i < 5; i++) {
+      assertSame(nn1, selector.getNextNamenode());
+    }
+
+    // the probe came back fast, nn2 is used again
+    nn2.callFinished(5 * MS);
+    assertSame(nn2, selector.getNextNamenode());
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestStoredReplicas {
+
+  private static StoredReplicas replicas(long... blockIds) {
+    Map<Long, Integer> map = new HashMap<Long, Integer>();
+    for (long blockId : blockIds) {
+      // the inode of a block is recognizable from its id
+      map.put(blockId, (int) blockId * 10);
+    }
+    return StoredReplicas.of(map);
+  }
+
+  @Test
+  public void testSortedWithInodeIds() {
+    StoredReplicas stored = replicas(30, 10, 50, 20, 40);
+    assertEquals(5, stored.size());
+    for (int i = 0; i < stored.size(); i++) {
+      assertEquals((i + 1) * 10, stored.getBlockId(i));
+      assertEquals((i + 1) * 100, stored.getInodeId(i));
+    }
+  }
+
+  @Test
+  public void testIndexOf() {
+    StoredReplicas stored = replicas(10, 20, 30);
+    assertEquals(0, stored.indexOf(0, 5));
+    assertEquals(0, stored.indexOf(0, 10));
+    assertEquals(1, stored.indexOf(0, 11));
+    assertEquals(2, stored.indexOf(1, 30));
+    assertEquals(3, stored.indexOf(0, 31));
+    // the search never goes back before from
+    assertEquals(2, stored.indexOf(2, 10));
+  }
+
+  @Test
+  public void testRangeBoundaries() {
+    StoredReplicas stored = replicas(5, 10, 15, 20, 25, 30, 35);
+    // a replica with the first id of a range belongs to that range, the
+    // replicas before the first reported block to the first range and the
+    // ones after the last reported block to the last range
+    assertArrayEquals(new int[]{1, 3, 7},
+        stored.rangeEnds(new long[]{10, 20}));
+    // replicas between two reported ranges go to the lower one
+    assertArrayEquals(new int[]{2, 4, 7},
+        stored.rangeEnds(new long[]{12, 22}));
+    // a range can have no stored replica at all
+    assertArrayEquals(new int[]{3, 3, 7},
+        stored.rangeEnds(new long[]{16, 17}));
+    assertArrayEquals(new int[]{0, 7},
+        stored.rangeEnds(new long[]{1}));
+    assertArrayEquals(new int[]{7, 7},
+        stored.rangeEnds(new long[]{100}));
+    assertArrayEquals(new int[]{7}, stored.rangeEnds(new long[0]));
+  }
+
+  @Test
+  public void testNoStoredReplicas() {
+    StoredReplicas stored = replicas();
+    assertEquals(0, stored.size());
+    assertArrayEquals(new int[]{0, 0, 0},
+        stored.rangeEnds(new long[]{10, 20}));
+  }
+
+  @Test
+  public void testEveryReplicaInOneRange() {
+    StoredReplicas stored = replicas(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+    long[] rangeStarts = {3, 4, 8, 13};
+    int[] ends = stored.rangeEnds(rangeStarts);
+    int covered = 0;
+    for (int range = 0; range < ends.length; range++) {
+      int start = range == 0 ? 0 : ends[range - 1];
+      for (int i = start; i < ends[range]; i++) {
+        if (range > 0) {
+          assertTrue(stored.getBlockId(i) >= rangeStarts[range - 1]);
+        }
+        if (range < rangeStarts.length) {
+          assertTrue(stored.getBlockId(i) < rangeStarts[range]);
+        }
+        covered++;
+      }
+    }
+    assertEquals(stored.size(), covered);
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockManagerTestUtil;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
+import org.apache.hadoop.hdfs.server.protocol.StorageBlockReport;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Full block reports diffed in block id ranges must leave the NameNode in the
+ * same state as a report diffed at once. The ranges are three blocks wide so
+ * the added, removed and corrupt replicas fall on range boundaries.
+ */
+public class TestBlockReportInRanges {
+  private static final int BLOCK_SIZE = 1024;
+  private static final int NUM_FILES = 2;
+  private static final int BLOCKS_PER_FILE = 10;
+  private static final int BATCH_SIZE = 3;
+
+  /**
+   * Report the blocks of the datanode twice, first without the blocks at
+   * positions 0, 3 and 6 in block id order, then with those blocks back,
+   * without the block at position 10, with a wrong generation stamp for the
+   * block at position 8 and with two blocks unknown to the NameNode below
+   * and above all the stored ids.
+   *
+   * @return the NameNode counters after the first and after the second
+   * report
+   */
+  private long[][] reportWithChanges(boolean inRanges) throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCK_SIZE);
+    conf.setInt(DFSConfigKeys.DFS_BYTES_PER_CHECKSUM_KEY, BLOCK_SIZE / 2);
+    // only the reports of the test
+    conf.setLong(DFSConfigKeys.DFS_BLOCKREPORT_INTERVAL_MSEC_KEY,
+        60 * 60 * 1000L);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_PROCESS_REPORT_BATCH_SIZE,
+        BATCH_SIZE);
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_PROCESS_REPORT_STREAMING,
+        inRanges);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      List<Block> blocks = new ArrayList<Block>();
+      for (int i = 0; i < NUM_FILES; i++) {
+        Path file = new Path("/file" + i);
+        long size = BLOCKS_PER_FILE * BLOCK_SIZE;
+        DFSTestUtil
+            .createFile(cluster.getFileSystem(), file, size, (short) 1, i);
+        for (LocatedBlock lb : cluster.getNameNodeRpc()
+            .getBlockLocations(file.toString(), 0, size).getLocatedBlocks()) {
+          blocks.add(new Block(lb.getBlock().getLocalBlock()));
+        }
+      }
+      // blocks compare by id
+      Collections.sort(blocks);
+      FSNamesystem namesystem = cluster.getNamesystem();
+      assertEquals(NUM_FILES * BLOCKS_PER_FILE, blocks.size());
+      assertEquals(0, namesystem.getMissingBlocksCount());
+
+      List<Block> firstReport = new ArrayList<Block>(blocks);
+      firstReport.removeAll(
+          Arrays.asList(blocks.get(0), blocks.get(3), blocks.get(6)));
+      report(cluster, firstReport);
+      long[] afterFirst = counters(namesystem);
+
+      List<Block> secondReport = new ArrayList<Block>(blocks);
+      secondReport.remove(blocks.get(10));
+      Block corrupt = secondReport.get(secondReport.indexOf(blocks.get(8)));
+      corrupt.setGenerationStampNoPersistance(
+          corrupt.getGenerationStamp() + 1);
+      secondReport.add(0, new Block(1, BLOCK_SIZE, 1));
+      secondReport.add(new Block(
+          blocks.get(blocks.size() - 1).getBlockId() + 1000, BLOCK_SIZE, 1));
+      report(cluster, secondReport);
+      long[] afterSecond = counters(namesystem);
+      return new long[][]{afterFirst, afterSecond};
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  private static void report(MiniDFSCluster cluster, List<Block> blocks)
+      throws IOException {
+    DataNode dn = cluster.getDataNodes().get(0);
+    String poolId = cluster.getNamesystem().getBlockPoolId();
+    DatanodeRegistration dnR = dn.getDNRegistrationForBP(poolId);
+    StorageBlockReport[] report =
+        {new StorageBlockReport(new DatanodeStorage(dnR.getStorageID()),
+            new BlockListAsLongs(blocks, null).getBlockListAsLongs())};
+    cluster.getNameNodeRpc().blockReport(dnR, poolId, report);
+  }
+
+  private static long[] counters(FSNamesystem namesystem) throws IOException {
+    BlockManagerTestUtil.updateState(namesystem.getBlockManager());
+    return new long[]{namesystem.getMissingBlocksCount(),
+        namesystem.getUnderReplicatedBlocks(),
+        namesystem.getCorruptReplicaBlocks(),
+        namesystem.getPendingDeletionBlocks()};
+  }
+
+  @Test
+  public void testRangesMatchWholeReport() throws IOException {
+    long[][] inRanges = reportWithChanges(true);
+    long[][] whole = reportWithChanges(false);
+
+    // the three dropped replicas are removed
+    assertEquals(3, inRanges[0][0]);
+    assertEquals(3, inRanges[0][1]);
+    // the dropped replicas are added back, the block missing from the second
+    // report and the corrupt one have no live replica, the two unknown blocks
+    // are invalidated
+    assertEquals(2, inRanges[1][0]);
+    assertEquals(1, inRanges[1][2]);
+    assertEquals(2, inRanges[1][3]);
+
+    assertArrayEquals(whole[0], inRanges[0]);
+    assertArrayEquals(whole[1], inRanges[1]);
+  }
+}
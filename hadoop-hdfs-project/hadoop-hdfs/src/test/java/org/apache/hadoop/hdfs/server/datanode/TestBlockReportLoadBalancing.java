@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import static org.apache.hadoop.util.Time.now;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class TestBlockReportLoadBalancing {
+
+  private static final long HEARTBEAT_INTERVAL = 3000;
+
+  private static BPServiceActor actor(int pendingReports, long pendingBlocks) {
+    DataNode dn = mock(DataNode.class);
+    doReturn(new DNConf(new HdfsConfiguration())).when(dn).getDnConf();
+    BPOfferService bpos = mock(BPOfferService.class);
+    doReturn(dn).when(bpos).getDataNode();
+    BPServiceActor actor =
+        new BPServiceActor(new InetSocketAddress("127.0.0.1", 0), bpos);
+    actor.setBlockReportLoad(pendingReports, pendingBlocks, now());
+    return actor;
+  }
+
+  @Test
+  public void testLessLoaded() {
+    BPServiceActor busy = actor(1, 1000);
+    BPServiceActor idle = actor(1, 10);
+    for (int i = 0; i < 20; i++) {
+      assertSame(idle, BPOfferService.lessLoaded(Arrays.asList(busy, idle)));
+    }
+
+    // equal blocks, the fewer reports win
+    BPServiceActor fewerReports = actor(0, 1000);
+    for (int i = 0; i < 20; i++) {
+      assertSame(fewerReports,
+          BPOfferService.lessLoaded(Arrays.asList(busy, fewerReports)));
+    }
+
+    // the most loaded of three namenodes loses every comparison
+    for (int i = 0; i < 50; i++) {
+      assertNotSame(busy, BPOfferService
+          .lessLoaded(Arrays.asList(busy, idle, fewerReports)));
+    }
+  }
+
+  @Test
+  public void testSaturatedNamenodesSkipped() {
+    BPServiceActor saturated = actor(2, 0);
+    BPServiceActor available = actor(1, 1000);
+    for (int i = 0; i < 20; i++) {
+      assertSame(available, BPOfferService.selectByBlockReportLoad(
+          Arrays.asList(saturated, available), 2));
+    }
+    assertNull(BPOfferService.selectByBlockReportLoad(
+        Arrays.asList(saturated, actor(3, 0)), 2));
+  }
+
+  @Test
+  public void testBlockReportLoadExpires() {
+    BPServiceActor actor = actor(0, 0);
+    long now = now();
+    actor.setBlockReportLoad(1, 100, now);
+    assertTrue(actor.hasRecentBlockReportLoad(now));
+    assertTrue(actor.hasRecentBlockReportLoad(now + 2 * HEARTBEAT_INTERVAL));
+    assertFalse(
+        actor.hasRecentBlockReportLoad(now + 2 * HEARTBEAT_INTERVAL + 1));
+  }
+
+  @Test
+  public void testHeartbeatCarriesBlockReportLoad() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_BLOCKREPORT_LOAD_BALANCING_ENABLED_KEY,
+        true);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      DataNode dn = cluster.getDataNodes().get(0);
+      BPServiceActor actor = dn.getAllBpOs()[0].getBPServiceActors().get(0);
+      // wait until the namenode is done with the first block report
+      long deadline = now() + 30000;
+      do {
+        DataNodeTestUtils.triggerHeartbeat(dn);
+        assertTrue(actor.hasRecentBlockReportLoad(now()));
+      } while (actor.getNNPendingBlockReports() > 0 && now() < deadline);
+      assertEquals(0, actor.getNNPendingBlockReports());
+      assertEquals(0, actor.getNNPendingBlockReportBlocks());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestDirectoryNamesCache {
+
+  private static byte[][] names(int count) {
+    byte[][] names = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      names[i] = ("file" + i).getBytes();
+    }
+    return names;
+  }
+
+  @Test
+  public void testModificationTimeInvalidates() {
+    DirectoryNamesCache cache = new DirectoryNamesCache(100, 60000);
+    byte[][] names = names(10);
+    cache.put(1, 5, names);
+    assertSame(names, cache.get(1, 5));
+    assertNull(cache.get(1, 6));
+    // the entry was dropped when it was found stale
+    assertNull(cache.get(1, 5));
+  }
+
+  @Test
+  public void testInvalidate() {
+    DirectoryNamesCache cache = new DirectoryNamesCache(100, 60000);
+    cache.put(1, 5, names(10));
+    cache.put(2, 5, names(10));
+    cache.invalidate(1);
+    assertNull(cache.get(1, 5));
+    assertNotNull(cache.get(2, 5));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    DirectoryNamesCache cache = new DirectoryNamesCache(25, 60000);
+    cache.put(1, 5, names(10));
+    cache.put(2, 5, names(10));
+    assertNotNull(cache.get(1, 5));
+    cache.put(3, 5, names(10));
+    assertNotNull(cache.get(1, 5));
+    assertNull(cache.get(2, 5));
+    assertNotNull(cache.get(3, 5));
+
+    // too large to be cached at all
+    cache.put(4, 5, names(26));
+    assertNull(cache.get(4, 5));
+  }
+
+  @Test
+  public void testExpires() throws InterruptedException {
+    DirectoryNamesCache cache = new DirectoryNamesCache(100, 10);
+    cache.put(1, 5, names(10));
+    Thread.sleep(50);
+    assertNull(cache.get(1, 5));
+  }
+}
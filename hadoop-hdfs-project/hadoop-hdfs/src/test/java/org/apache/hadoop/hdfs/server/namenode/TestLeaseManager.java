@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import io.hops.leader_election.node.ActiveNode;
+import io.hops.leader_election.node.ActiveNodePBImpl;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSClientAdapter;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.hadoop.util.Time.now;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestLeaseManager {
+
+  private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private static ActiveNode namenode(long id) {
+    return new ActiveNodePBImpl(id, "nn" + id, "127.0.0.1", 9000, "");
+  }
+
+  @Test
+  public void testRecoveryPartition() {
+    List<ActiveNode> namenodes =
+        Arrays.asList(namenode(7), namenode(3), namenode(12));
+    assertEquals(0, LeaseManager.getRecoveryPartition(3, namenodes));
+    assertEquals(1, LeaseManager.getRecoveryPartition(7, namenodes));
+    assertEquals(2, LeaseManager.getRecoveryPartition(12, namenodes));
+    // a namenode not in the list yet recovers nothing by itself
+    assertEquals(-1, LeaseManager.getRecoveryPartition(5, namenodes));
+  }
+
+  @Test
+  public void testEveryHolderInOnePartition() {
+    List<Lease> leases = new ArrayList<Lease>();
+    for (int i = 0; i < 100; i++) {
+      String holder = "DFSClient_" + i;
+      leases.add(new Lease(holder, Lease.getHolderId(holder), 0));
+    }
+    Set<String> recovered = new HashSet<String>();
+    for (int partition = 0; partition < 3; partition++) {
+      List<String> holders =
+          LeaseManager.getPartitionHolders(leases, 3, partition);
+      assertFalse(holders.isEmpty());
+      for (String holder : holders) {
+        assertTrue(holder + " in two partitions", recovered.add(holder));
+      }
+    }
+    assertEquals(leases.size(), recovered.size());
+    assertEquals(leases.size(),
+        LeaseManager.getPartitionHolders(leases, 1, 0).size());
+  }
+
+  @Test
+  public void testRecoveryThrottle() {
+    LeaseManager.RecoveryThrottle throttle =
+        new LeaseManager.RecoveryThrottle(10);
+    // nanoTime may be negative, the first recovery never waits
+    long start = -5000 * MS;
+    assertEquals(0, throttle.reserve(start));
+    assertEquals(100 * MS, throttle.reserve(start));
+    assertEquals(200 * MS, throttle.reserve(start));
+    assertEquals(150 * MS, throttle.reserve(start + 150 * MS));
+    // an idle throttle does not build up a burst
+    assertEquals(0, throttle.reserve(start + 10000 * MS));
+    assertEquals(100 * MS, throttle.reserve(start + 10000 * MS));
+
+    LeaseManager.RecoveryThrottle unlimited =
+        new LeaseManager.RecoveryThrottle(0);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(0, unlimited.reserve(start));
+    }
+  }
+
+  @Test
+  public void testParallelRecoveries() throws Exception {
+    final int holders = 6;
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_LEASE_RECOVERY_THREADS_KEY, 4);
+    conf.setInt(DFSConfigKeys.DFS_HEARTBEAT_INTERVAL_KEY, 1);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      for (int i = 0; i < holders; i++) {
+        // every file has its own client, so its own lease holder
+        DistributedFileSystem dfs = (DistributedFileSystem) FileSystem
+            .newInstance(cluster.getURI(), conf);
+        FSDataOutputStream out =
+            dfs.create(new Path("/file" + i), (short) 1);
+        out.write(new byte[1024]);
+        // the last block is under construction and needs a block recovery
+        // that reassigns the file to the NameNode lease
+        out.hflush();
+        DFSClientAdapter.stopLeaseRenewer(dfs);
+      }
+      LeaseManager lm = NameNodeAdapter.getLeaseManager(cluster.getNamesystem());
+      assertEquals(holders, lm.countLease());
+
+      cluster.setLeasePeriod(1000, 1000);
+      long deadline = now() + 60000;
+      while (lm.countLease() > 0 && now() < deadline) {
+        Thread.sleep(500);
+      }
+      assertEquals(0, lm.countLease());
+      for (int i = 0; i < holders; i++) {
+        assertEquals(1024,
+            cluster.getFileSystem().getFileStatus(new Path("/file" + i))
+                .getLen());
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testStopMonitorShutsDownExecutor() throws Exception {
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(new HdfsConfiguration()).numDataNodes(0)
+            .build();
+    try {
+      cluster.waitActive();
+      LeaseManager lm = NameNodeAdapter.getLeaseManager(cluster.getNamesystem());
+      ExecutorService executor = lm.getRecoveryExecutor();
+      assertNotNull(executor);
+
+      lm.stopMonitor();
+      assertNull(lm.getRecoveryExecutor());
+      assertTrue(executor.isShutdown());
+      assertTrue(executor.isTerminated());
+
+      // a restarted monitor gets a new executor
+      lm.startMonitor();
+      assertNotNull(lm.getRecoveryExecutor());
+      assertFalse(lm.getRecoveryExecutor().isShutdown());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+}
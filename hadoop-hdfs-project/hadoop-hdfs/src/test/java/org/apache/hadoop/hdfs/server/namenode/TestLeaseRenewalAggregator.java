@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSClientAdapter;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.util.Time;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestLeaseRenewalAggregator {
+
+  private static final long FLUSH_INTERVAL = 500;
+
+  private Configuration conf;
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+  private final String file = "/testLeaseRenewalAggregator";
+
+  @Before
+  public void setUp() throws Exception {
+    conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_LEASE_RENEWAL_FLUSH_INTERVAL_KEY,
+        FLUSH_INTERVAL);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  private String openFile() throws Exception {
+    FSDataOutputStream out = fs.create(new Path(file));
+    out.write(1);
+    out.hflush();
+    // the test renews the lease itself
+    DFSClientAdapter.stopLeaseRenewer(fs);
+    String holder =
+        NameNodeAdapter.getLeaseHolderForPath(cluster.getNameNode(), file);
+    assertNotNull(holder);
+    return holder;
+  }
+
+  @Test(timeout = 60000)
+  public void testRenewalIsFlushed() throws Exception {
+    String holder = openFile();
+    FSNamesystem namesystem = cluster.getNamesystem();
+    LeaseRenewalAggregator aggregator =
+        namesystem.getLeaseRenewalAggregator();
+    assertTrue(aggregator.isEnabled());
+    long lastUpdate =
+        NameNodeAdapter.getLeaseRenewalTime(cluster.getNameNode(), file);
+
+    Thread.sleep(10);
+    namesystem.renewLease(holder);
+    assertTrue(aggregator.getPendingRenewal(holder) > lastUpdate);
+
+    aggregator.flush();
+    assertEquals(0, aggregator.getPendingRenewal(holder));
+    assertTrue(NameNodeAdapter.getLeaseRenewalTime(cluster.getNameNode(),
+        file) > lastUpdate);
+  }
+
+  @Test(timeout = 60000)
+  public void testRenewalsWrittenWhileNotFlushing() throws Exception {
+    String holder = openFile();
+    LeaseRenewalAggregator aggregator =
+        new LeaseRenewalAggregator(cluster.getNamesystem(), conf);
+    // a flusher that is not running is behind
+    assertFalse(aggregator.renew(holder));
+    assertEquals(0, aggregator.getPendingRenewal(holder));
+
+    aggregator.activate();
+    try {
+      assertTrue(aggregator.renew(holder));
+    } finally {
+      aggregator.close();
+    }
+    assertFalse(aggregator.renew(holder));
+  }
+
+  @Test(timeout = 120000)
+  public void testLeaseExpiresOnceNotRenewed() throws Exception {
+    String holder = openFile();
+    FSNamesystem namesystem = cluster.getNamesystem();
+    long hardLimit = 2000;
+    cluster.setLeasePeriod(1000, hardLimit);
+
+    // aggregated renewals keep the lease past its hard limit
+    long end = Time.now() + 2 * hardLimit;
+    while (Time.now() < end) {
+      namesystem.renewLease(holder);
+      Thread.sleep(200);
+    }
+    assertEquals(holder,
+        NameNodeAdapter.getLeaseHolderForPath(cluster.getNameNode(), file));
+
+    // the lease is recovered once the last renewal and the grace period
+    // are past the hard limit
+    long start = Time.now();
+    while (NameNodeAdapter.getLeaseHolderForPath(cluster.getNameNode(), file)
+        != null) {
+      assertTrue("The lease was not recovered",
+          Time.now() - start < hardLimit + 2 * FLUSH_INTERVAL + 30000);
+      Thread.sleep(500);
+    }
+    assertTrue(Time.now() - start >= hardLimit - 200);
+    assertNull(
+        NameNodeAdapter.getLeaseHolderForPath(cluster.getNameNode(), file));
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import io.hops.metadata.hdfs.entity.QuotaUpdate;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestQuotaUpdateManager {
+  private static final int ROOT = INodeDirectory.ROOT_ID;
+  private static final int A = ROOT + 1;
+  private static final int X = ROOT + 2;
+  private static final int Y = ROOT + 3;
+  private static final int B = ROOT + 4;
+  private static final int Z = ROOT + 5;
+
+  /**
+   * Applies the updates to an in memory tree, /a/x, /a/y and /b/z, instead
+   * of the database.
+   */
+  private static class TreeQuotaUpdateManager extends QuotaUpdateManager {
+    private final Map<Integer, Integer> parents = new HashMap<Integer, Integer>();
+    private final AtomicInteger nextId = new AtomicInteger(1000);
+    private final AtomicInteger clock = new AtomicInteger();
+    // inode id -> {namespace delta, diskspace delta, start, end} per apply
+    final Map<Integer, List<long[]>> applied =
+        new HashMap<Integer, List<long[]>>();
+
+    TreeQuotaUpdateManager(int threads) {
+      super(null, conf(threads));
+      parents.put(A, ROOT);
+      parents.put(X, A);
+      parents.put(Y, A);
+      parents.put(B, ROOT);
+      parents.put(Z, B);
+    }
+
+    private static Configuration conf(int threads) {
+      Configuration conf = new Configuration();
+      conf.setInt(DFSConfigKeys.DFS_NAMENODE_QUOTA_UPDATE_THREADS_KEY,
+          threads);
+      return conf;
+    }
+
+    void onApply(int inodeId) throws InterruptedException {
+    }
+
+    @Override
+    QuotaUpdate applyBatchedUpdate(List<QuotaUpdate> updates) {
+      int inodeId = updates.get(0).getInodeId();
+      long start = clock.incrementAndGet();
+      try {
+        onApply(inodeId);
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      long namespaceDelta = 0;
+      long diskspaceDelta = 0;
+      for (QuotaUpdate update : updates) {
+        assertEquals(inodeId, update.getInodeId());
+        namespaceDelta += update.getNamespaceDelta();
+        diskspaceDelta += update.getDiskspaceDelta();
+      }
+      synchronized (applied) {
+        List<long[]> applies = applied.get(inodeId);
+        if (applies == null) {
+          applies = new ArrayList<long[]>();
+          applied.put(inodeId, applies);
+        }
+        applies.add(new long[]{namespaceDelta, diskspaceDelta, start,
+            clock.incrementAndGet()});
+      }
+      if (inodeId == ROOT) {
+        return null;
+      }
+      return new QuotaUpdate(nextId.incrementAndGet(), parents.get(inodeId),
+          namespaceDelta, diskspaceDelta);
+    }
+
+    long[] appliedOnce(int inodeId) {
+      List<long[]> applies = applied.get(inodeId);
+      assertEquals("applies of " + inodeId, 1, applies.size());
+      return applies.get(0);
+    }
+  }
+
+  private TreeQuotaUpdateManager manager;
+
+  @After
+  public void tearDown() {
+    if (manager != null) {
+      manager.close();
+    }
+  }
+
+  // the updates added by different transactions for the same inodes
+  private static List<QuotaUpdate> updates() {
+    return new ArrayList<QuotaUpdate>(Arrays.asList(
+        new QuotaUpdate(1, X, 1, 100),
+        new QuotaUpdate(2, Z, 1, 300),
+        new QuotaUpdate(3, X, 1, 100),
+        new QuotaUpdate(4, Y, 1, 200),
+        new QuotaUpdate(5, X, -1, -100)));
+  }
+
+  @Test
+  public void testCombineByINode() {
+    manager = new TreeQuotaUpdateManager(1);
+    List<List<QuotaUpdate>> batches = manager.combineByINode(updates());
+    assertEquals(3, batches.size());
+    assertEquals(3, batches.get(0).size());
+    assertEquals(1, batches.get(1).size());
+    assertEquals(1, batches.get(2).size());
+    for (List<QuotaUpdate> batch : batches) {
+      for (QuotaUpdate update : batch) {
+        assertEquals(batch.get(0).getInodeId(), update.getInodeId());
+      }
+    }
+    assertEquals(X, batches.get(0).get(0).getInodeId());
+    assertEquals(Y, batches.get(1).get(0).getInodeId());
+    assertEquals(Z, batches.get(2).get(0).getInodeId());
+  }
+
+  @Test
+  public void testUpdatesCombinedUpToTheRoot() throws Exception {
+    manager = new TreeQuotaUpdateManager(4);
+    manager.applyUpdates(updates());
+
+    // the three updates of x are applied together
+    assertEquals(1, manager.appliedOnce(X)[0]);
+    assertEquals(100, manager.appliedOnce(X)[1]);
+    assertEquals(1, manager.appliedOnce(Y)[0]);
+    assertEquals(1, manager.appliedOnce(Z)[0]);
+    // the parent updates of x and y are applied together on a
+    assertEquals(2, manager.appliedOnce(A)[0]);
+    assertEquals(300, manager.appliedOnce(A)[1]);
+    assertEquals(1, manager.appliedOnce(B)[0]);
+    // and those of a and b on the root
+    assertEquals(3, manager.appliedOnce(ROOT)[0]);
+    assertEquals(600, manager.appliedOnce(ROOT)[1]);
+  }
+
+  @Test
+  public void testSharedAncestorAfterChildren() throws Exception {
+    manager = new TreeQuotaUpdateManager(4);
+    manager.applyUpdates(updates());
+
+    long aStart = manager.appliedOnce(A)[2];
+    assertTrue(aStart > manager.appliedOnce(X)[3]);
+    assertTrue(aStart > manager.appliedOnce(Y)[3]);
+    long rootStart = manager.appliedOnce(ROOT)[2];
+    assertTrue(rootStart > manager.appliedOnce(A)[3]);
+    assertTrue(rootStart > manager.appliedOnce(B)[3]);
+  }
+
+  @Test(timeout = 60000)
+  public void testDifferentINodesInParallel() throws Exception {
+    final CountDownLatch started = new CountDownLatch(3);
+    final AtomicInteger timedOut = new AtomicInteger();
+    manager = new TreeQuotaUpdateManager(4) {
+      @Override
+      void onApply(int inodeId) throws InterruptedException {
+        if (inodeId == X || inodeId == Y || inodeId == Z) {
+          // every leaf waits for the other two
+          started.countDown();
+          if (!started.await(10, TimeUnit.SECONDS)) {
+            timedOut.incrementAndGet();
+          }
+        }
+      }
+    };
+    manager.applyUpdates(updates());
+    assertEquals(0, timedOut.get());
+    assertEquals(3, manager.appliedOnce(ROOT)[0]);
+  }
+
+  @Test
+  public void testSingleThreadKeepsTheOrder() throws Exception {
+    manager = new TreeQuotaUpdateManager(1);
+    manager.applyUpdates(updates());
+    assertTrue(manager.appliedOnce(A)[2] > manager.appliedOnce(Y)[3]);
+    assertTrue(manager.appliedOnce(ROOT)[2] > manager.appliedOnce(B)[3]);
+    assertEquals(3, manager.appliedOnce(ROOT)[0]);
+  }
+}
@@ -27,21 +27,33 @@
 import io.hops.transaction.lock.SubtreeLockedException;
 import junit.framework.TestCase;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.Options;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.MiniDFSNNTopology;
 import org.apache.hadoop.hdfs.TestFileCreation;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeTestUtils;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
+
+import static org.apache.hadoop.util.Time.now;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
@@ -801,6 +813,98 @@ public void testSubtreeMove() throws IOException {
       
       
 
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  @Test
+  public void testDeleteWideDirectory() throws Exception {
+    final int files = 50;
+    final int batchSize = 10;
+    final String failingFile = "file7";
+    MiniDFSCluster cluster = null;
+    try {
+      Configuration conf = new HdfsConfiguration();
+      conf.setInt(DFSConfigKeys.DFS_CLIENT_RETRIES_ON_FAILURE_KEY, 0);
+      conf.setInt(DFSConfigKeys.DFS_SUBTREE_DELETE_BATCH_SIZE_KEY, batchSize);
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      FSNamesystem namesystem = cluster.getNamesystem();
+      DataNode dn = cluster.getDataNodes().get(0);
+
+      Path quotaDir = new Path("/quota");
+      Path wideDir = new Path(quotaDir, "wide");
+      assertTrue(fs.mkdirs(wideDir));
+      // the quota directory, the wide directory and its files
+      fs.setQuota(quotaDir, files + 2, Long.MAX_VALUE);
+      for (int i = 0; i < files; i++) {
+        DFSTestUtil.createFile(fs, new Path(wideDir, "file" + i), 1024,
+            (short) 1, i);
+      }
+      assertEquals(files, namesystem.getBlocksTotal());
+      // keep the invalidated blocks pending on the namenode
+      DataNodeTestUtils.setHeartbeatsDisabledForTests(dn, true);
+
+      // the batch with the failing file is rolled back, the others go through
+      FSDirectory dir = namesystem.dir;
+      FSDirectory failingDir = spy(dir);
+      doAnswer(new Answer<INode>() {
+        @Override
+        public INode answer(InvocationOnMock invocation) throws Throwable {
+          INode[] pathComponents = (INode[]) invocation.getArguments()[0];
+          int pos = (Integer) invocation.getArguments()[1];
+          if (failingFile.equals(pathComponents[pos].getLocalName())) {
+            throw new IOException("Injected failure");
+          }
+          return (INode) invocation.callRealMethod();
+        }
+      }).when(failingDir).removeChildNonRecursively(any(INode[].class),
+          anyInt());
+      namesystem.dir = failingDir;
+      try {
+        assertFalse(fs.delete(wideDir, true));
+      } finally {
+        namesystem.dir = dir;
+      }
+      assertFalse("Not All subtree locks were removed after operation ",
+          subTreeLocksExists());
+      assertTrue(fs.exists(new Path(wideDir, failingFile)));
+      int remaining = fs.listStatus(wideDir).length;
+      assertTrue(remaining > 0 && remaining <= batchSize);
+      assertEquals(remaining, namesystem.getBlocksTotal());
+      assertEquals(files - remaining, namesystem.getPendingDeletionBlocks());
+
+      // the retry deletes what the failed batch left behind
+      assertTrue(fs.delete(wideDir, true));
+      assertFalse(fs.exists(wideDir));
+      assertEquals(0, namesystem.getBlocksTotal());
+      assertEquals(files, namesystem.getPendingDeletionBlocks());
+
+      DataNodeTestUtils.setHeartbeatsDisabledForTests(dn, false);
+      long deadline = now() + 30000;
+      while (namesystem.getPendingDeletionBlocks() > 0 && now() < deadline) {
+        DataNodeTestUtils.triggerHeartbeat(dn);
+        Thread.sleep(100);
+      }
+      assertEquals(0, namesystem.getPendingDeletionBlocks());
+
+      ContentSummary c = fs.getContentSummary(quotaDir);
+      assertEquals(0, c.getFileCount());
+      assertEquals(1, c.getDirectoryCount());
+      assertEquals(0, c.getSpaceConsumed());
+
+      // HOP - Wait for quota updates to be applied, the released namespace
+      // is available again
+      Thread.sleep(5000);
+      assertTrue(fs.mkdirs(wideDir));
+      for (int i = 0; i < files; i++) {
+        DFSTestUtil.createFile(fs, new Path(wideDir, "file" + i), 1024,
+            (short) 1, i);
+      }
     } finally {
       if (cluster != null) {
         cluster.shutdown();
@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import org.apache.hadoop.util.Time;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLongHashTable {
+
+  private static final int NUM = 10000;
+  private Random rand;
+
+  @Before
+  public void setUp() {
+    rand = new Random(Time.now());
+  }
+
+  private long nextKey() {
+    // a small key space gives collisions, removals of absent keys and zero
+    return rand.nextInt(NUM) - NUM / 2;
+  }
+
+  @Test
+  public void testSetMatchesHashSet() {
+    LongHashSet set = new LongHashSet(0);
+    Set<Long> expected = new HashSet<Long>();
+    for (int i = 0; i < NUM * 10; i++) {
+      long key = nextKey();
+      if (rand.nextInt(3) == 0) {
+        assertEquals(expected.remove(key), set.remove(key));
+      } else {
+        assertEquals(expected.add(key), set.add(key));
+      }
+      assertEquals(expected.size(), set.size());
+    }
+    for (long key = -NUM / 2; key < NUM / 2; key++) {
+      assertEquals(expected.contains(key), set.contains(key));
+    }
+
+    long[] keys = set.toArray();
+    assertEquals(expected.size(), keys.length);
+    for (long key : keys) {
+      assertTrue(expected.contains(key));
+    }
+  }
+
+  @Test
+  public void testCopyIsIndependent() {
+    LongIntHashMap map = new LongIntHashMap(NUM);
+    for (int i = 0; i < NUM; i++) {
+      map.put(i, i + 1);
+    }
+    LongHashSet first = new LongHashSet(map);
+    LongHashSet second = new LongHashSet(first);
+    assertEquals(NUM, first.size());
+    assertTrue(first.remove(0));
+    assertTrue(first.remove(NUM - 1));
+    assertFalse(first.contains(0));
+    assertTrue(second.contains(0));
+    assertTrue(second.contains(NUM - 1));
+    assertEquals(NUM - 2, first.size());
+    assertEquals(NUM, second.size());
+    assertEquals(NUM, map.size());
+  }
+
+  @Test
+  public void testIntMapMatchesHashMap() {
+    Map<Long, Integer> expected = new HashMap<Long, Integer>();
+    LongIntHashMap map = new LongIntHashMap(1);
+    for (int i = 0; i < NUM * 10; i++) {
+      long key = nextKey();
+      if (rand.nextInt(3) == 0) {
+        assertEquals(expected.remove(key) != null, map.remove(key));
+      } else {
+        int value = rand.nextInt();
+        expected.put(key, value);
+        map.put(key, value);
+      }
+      assertEquals(expected.size(), map.size());
+    }
+    for (long key = -NUM / 2; key < NUM / 2; key++) {
+      Integer value = expected.get(key);
+      assertEquals(value != null, map.containsKey(key));
+      if (value != null) {
+        assertEquals(value.intValue(), map.get(key, 0));
+      }
+    }
+    assertEquals(map.size(), new LongIntHashMap(expected).size());
+  }
+
+  @Test
+  public void testLongMapFromBoxedMap() {
+    Map<Long, Long> expected = new HashMap<Long, Long>();
+    for (int i = 0; i < NUM; i++) {
+      expected.put(rand.nextLong(), rand.nextLong());
+    }
+    expected.put(0L, 42L);
+    LongLongHashMap map = new LongLongHashMap(expected);
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+      assertEquals(entry.getValue().longValue(),
+          map.get(entry.getKey(), entry.getValue() + 1));
+    }
+    assertEquals(-1, map.get(Long.MIN_VALUE + 1, -1));
+
+    long[] keys = map.keys();
+    Arrays.sort(keys);
+    assertEquals(expected.size(), keys.length);
+    assertTrue(Arrays.binarySearch(keys, 0L) >= 0);
+  }
+}
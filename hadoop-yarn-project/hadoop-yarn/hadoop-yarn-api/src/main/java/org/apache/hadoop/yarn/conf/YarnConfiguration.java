@@ -1313,6 +1313,36 @@ public class YarnConfiguration extends Configuration {
   public static String HOPS_PENDING_EVENTS_BATCH =
       HOPS_RM_PREFIX + "pending-events.batch";
   public static int DEFAULT_HOPS_PENDING_EVENTS_BATCH = 0;
+  public static final String HOPS_PENDING_EVENTS_LOCAL_HANDOFF =
+      HOPS_RM_PREFIX + "pending-events.local-handoff.enable";
+  public static final boolean DEFAULT_HOPS_PENDING_EVENTS_LOCAL_HANDOFF = false;
+
+  //Group commit of TransactionStates
+  public static final String HOPS_GROUP_COMMIT_ENABLED =
+      HOPS_RM_PREFIX + "group-commit.enable";
+  public static final boolean DEFAULT_HOPS_GROUP_COMMIT_ENABLED = false;
+  public static final String HOPS_GROUP_COMMIT_MAX_BATCH_SIZE =
+      HOPS_RM_PREFIX + "group-commit.max-batch-size";
+  public static final int DEFAULT_HOPS_GROUP_COMMIT_MAX_BATCH_SIZE = 64;
+  public static final String HOPS_GROUP_COMMIT_MAX_DELAY =
+      HOPS_RM_PREFIX + "group-commit.max-delay";
+  public static final long DEFAULT_HOPS_GROUP_COMMIT_MAX_DELAY = 2;
+
+  //Batched persistence of the received RPCs
+  public static final String HOPS_RPC_LOG_BATCHING_ENABLED =
+      HOPS_RM_PREFIX + "rpc-log.batching.enable";
+  public static final boolean DEFAULT_HOPS_RPC_LOG_BATCHING_ENABLED = false;
+  public static final String HOPS_RPC_LOG_MAX_BATCH_SIZE =
+      HOPS_RM_PREFIX + "rpc-log.max-batch-size";
+  public static final int DEFAULT_HOPS_RPC_LOG_MAX_BATCH_SIZE = 128;
+  public static final String HOPS_RPC_LOG_FLUSHERS =
+      HOPS_RM_PREFIX + "rpc-log.flushers";
+  public static final int DEFAULT_HOPS_RPC_LOG_FLUSHERS = 2;
+
+  //Number of threads loading the RM state tables from NDB on recovery
+  public static final String HOPS_RECOVERY_LOAD_THREADS =
+      HOPS_RM_PREFIX + "recovery.load-threads";
+  public static final int DEFAULT_HOPS_RECOVERY_LOAD_THREADS = 8;
 
   static {
 
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.ha.common;
+
+import io.hops.metadata.yarn.entity.PendingEvent;
+
+import java.util.List;
+
+/**
+ * In-process channel for the PendingEvents of the ResourceTrackerService to
+ * the scheduler when both run in the same ResourceManager. While a subscriber
+ * is registered, TransactionStates persist their new PendingEvents with status
+ * pending, so that the periodic retrieval of new events does not return them,
+ * and hand them to the subscriber once they are committed. Pending events that
+ * were handed off but not processed are retrieved from NDB when the scheduler
+ * starts.
+ */
+public class PendingEventHandoff {
+
+  public interface Subscriber {
+
+    /**
+     * Called with PendingEvents once the transaction persisting them is
+     * committed. Must not block.
+     *
+     * @param pendingEvents
+     */
+    void deliver(List<PendingEvent> pendingEvents);
+  }
+
+  private static volatile Subscriber subscriber = null;
+
+  /**
+   * Replaces the current subscriber, if any.
+   *
+   * @param newSubscriber
+   */
+  public static synchronized void subscribe(Subscriber newSubscriber) {
+    subscriber = newSubscriber;
+  }
+
+  public static synchronized void unsubscribe(Subscriber oldSubscriber) {
+    if (subscriber == oldSubscriber) {
+      subscriber = null;
+    }
+  }
+
+  static Subscriber getSubscriber() {
+    return subscriber;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.ha.common;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.metrics2.MetricsSystem;
+import org.apache.hadoop.metrics2.annotation.Metric;
+import org.apache.hadoop.metrics2.annotation.Metrics;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.metrics2.lib.MutableStat;
+
+/**
+ * Metrics of the group commits of {@link TransactionStateCommitter}.
+ */
+@InterfaceAudience.Private
+@Metrics(context = "yarn")
+public class TransactionStateCommitMetrics {
+
+  @Metric(value = "TransactionStates per group commit", sampleName = "Commits",
+      valueName = "TransactionStates")
+  MutableStat commitBatchSize;
+  @Metric("Latency of the group commit transactions")
+  MutableRate commitLatency;
+  @Metric("Time completed TransactionStates wait for their group commit")
+  MutableRate commitWaitTime;
+  @Metric("# of failed group commits")
+  MutableCounterLong failedCommits;
+  @Metric("# of completed TransactionStates waiting for a group commit")
+  MutableGaugeInt pendingTransactionStates;
+
+  private static TransactionStateCommitMetrics INSTANCE = null;
+
+  public static synchronized TransactionStateCommitMetrics getMetrics() {
+    if (INSTANCE == null) {
+      INSTANCE = new TransactionStateCommitMetrics();
+      MetricsSystem ms = DefaultMetricsSystem.instance();
+      if (ms != null) {
+        ms.register("TransactionStateCommitMetrics",
+            "Metrics of the TransactionState group commits", INSTANCE);
+      }
+    }
+    return INSTANCE;
+  }
+
+  void addCommit(int batchSize, long latency) {
+    commitBatchSize.add(batchSize);
+    commitLatency.add(latency);
+  }
+
+  void addWaitTime(long waitTime) {
+    commitWaitTime.add(waitTime);
+  }
+
+  void incrFailedCommits() {
+    failedCommits.incr();
+  }
+
+  void setPendingTransactionStates(int pending) {
+    pendingTransactionStates.set(pending);
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.ha.common;
+
+import io.hops.metadata.util.RMUtilities;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.util.Time;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the TransactionStates of completed RPCs in group commits. A single
+ * committer thread takes the completed TransactionStates in the order they
+ * completed and persists up to max-batch-size of them in one transaction. A
+ * TransactionState waits at most max-delay milliseconds for others to join its
+ * batch. Row updates that a later TransactionState of the batch writes again
+ * are only written once.
+ * <p/>
+ * When the committer is not running, every TransactionState is committed on
+ * its own transaction.
+ */
+public class TransactionStateCommitter implements Runnable {
+
+  private static final Log LOG =
+      LogFactory.getLog(TransactionStateCommitter.class);
+
+  private static volatile TransactionStateCommitter committer = null;
+
+  private final BlockingQueue<PendingCommit> queue =
+      new LinkedBlockingQueue<PendingCommit>();
+  private final int maxBatchSize;
+  private final long maxDelay;
+  private final TransactionStateCommitMetrics metrics;
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  /**
+   * The rows written by the TransactionStates of a batch that follow the one
+   * being prepared.
+   */
+  static class BatchWrites {
+
+    final Set<String> rmNodes = new HashSet<String>();
+    final Set<String> rmContainers = new HashSet<String>();
+    boolean clusterResource = false;
+    boolean usedResource = false;
+  }
+
+  private static class PendingCommit {
+
+    private final TransactionStateImpl ts;
+    private final long submitTime;
+
+    PendingCommit(TransactionStateImpl ts) {
+      this.ts = ts;
+      this.submitTime = Time.monotonicNow();
+    }
+  }
+
+  private TransactionStateCommitter(int maxBatchSize, long maxDelay) {
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelay = maxDelay;
+    this.metrics = TransactionStateCommitMetrics.getMetrics();
+    this.thread = new Thread(this, "TransactionStateCommitter");
+    this.thread.setDaemon(true);
+  }
+
+  /**
+   * Starts the committer if group commit is enabled in the configuration.
+   *
+   * @param conf
+   */
+  public static synchronized void start(Configuration conf) {
+    if (committer != null || !conf
+        .getBoolean(YarnConfiguration.HOPS_GROUP_COMMIT_ENABLED,
+            YarnConfiguration.DEFAULT_HOPS_GROUP_COMMIT_ENABLED)) {
+      return;
+    }
+    int maxBatchSize =
+        conf.getInt(YarnConfiguration.HOPS_GROUP_COMMIT_MAX_BATCH_SIZE,
+            YarnConfiguration.DEFAULT_HOPS_GROUP_COMMIT_MAX_BATCH_SIZE);
+    long maxDelay = conf.getLong(YarnConfiguration.HOPS_GROUP_COMMIT_MAX_DELAY,
+        YarnConfiguration.DEFAULT_HOPS_GROUP_COMMIT_MAX_DELAY);
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException(
+          YarnConfiguration.HOPS_GROUP_COMMIT_MAX_BATCH_SIZE +
+              " must be positive, was " + maxBatchSize);
+    }
+    LOG.info("HOP :: Starting TransactionState group commit, max batch size=" +
+        maxBatchSize + ", max delay=" + maxDelay + "ms");
+    committer = new TransactionStateCommitter(maxBatchSize, maxDelay);
+    committer.thread.start();
+  }
+
+  /**
+   * Stops the committer after it has persisted the TransactionStates already
+   * submitted to it.
+   */
+  public static synchronized void stop() throws InterruptedException {
+    TransactionStateCommitter toStop = committer;
+    if (toStop == null) {
+      return;
+    }
+    committer = null;
+    toStop.running = false;
+    toStop.thread.interrupt();
+    toStop.thread.join();
+    //Commit what was submitted while the committer was stopping
+    List<PendingCommit> rest = new ArrayList<PendingCommit>();
+    toStop.queue.drainTo(rest);
+    if (!rest.isEmpty()) {
+      toStop.commit(rest);
+    }
+  }
+
+  /**
+   * Hands a completed TransactionState to the committer.
+   *
+   * @param ts
+   * @return false if the committer is not running and the caller must commit
+   * the TransactionState itself
+   */
+  static boolean submit(TransactionStateImpl ts) {
+    TransactionStateCommitter current = committer;
+    if (current == null || !current.running) {
+      return false;
+    }
+    current.queue.add(new PendingCommit(ts));
+    return true;
+  }
+
+  @Override
+  public void run() {
+    List<PendingCommit> batch = new ArrayList<PendingCommit>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        fillBatch(batch);
+      } catch (InterruptedException ex) {
+        //stop() interrupts the committer, commit what is left in the queue
+        queue.drainTo(batch, maxBatchSize - batch.size());
+      }
+      if (!batch.isEmpty()) {
+        commit(batch);
+        batch.clear();
+      }
+    }
+    LOG.info("HOP :: TransactionState group commit stopped");
+  }
+
+  private void fillBatch(List<PendingCommit> batch)
+      throws InterruptedException {
+    PendingCommit first = queue.take();
+    batch.add(first);
+    long deadline = first.submitTime + maxDelay;
+    while (batch.size() < maxBatchSize) {
+      if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+        continue;
+      }
+      long remaining = deadline - Time.monotonicNow();
+      if (remaining <= 0) {
+        break;
+      }
+      PendingCommit next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+    }
+  }
+
+  private void commit(List<PendingCommit> batch) {
+    metrics.setPendingTransactionStates(queue.size());
+    List<TransactionStateImpl> tss =
+        new ArrayList<TransactionStateImpl>(batch.size());
+    long start = Time.monotonicNow();
+    for (PendingCommit pending : batch) {
+      metrics.addWaitTime(start - pending.submitTime);
+      tss.add(pending.ts);
+    }
+    dropOverwrittenUpdates(tss);
+    try {
+      RMUtilities.finishRPCBatch(tss);
+      metrics.addCommit(tss.size(), Time.monotonicNow() - start);
+      LOG.debug("HOP :: group commit of " + tss.size() + " rpcs");
+    } catch (IOException ex) {
+      //Retry one by one so that a single failing TransactionState does not
+      //fail the others of its batch. A later TransactionState of the batch
+      //may fail on its own, so each one commits its full updates again
+      metrics.incrFailedCommits();
+      LOG.warn("HOP :: Error in group commit of " + tss.size() +
+          " rpcs, committing them one by one", ex);
+      for (TransactionStateImpl ts : tss) {
+        ts.restoreOverwrittenUpdates();
+      }
+      for (TransactionStateImpl ts : tss) {
+        RMUtilities.finishRPC(ts, ts.getId());
+      }
+    }
+  }
+
+  static void dropOverwrittenUpdates(List<TransactionStateImpl> tss) {
+    BatchWrites laterWrites = new BatchWrites();
+    for (int i = tss.size() - 1; i >= 0; i--) {
+      tss.get(i).dropOverwrittenUpdates(laterWrites);
+    }
+  }
+}
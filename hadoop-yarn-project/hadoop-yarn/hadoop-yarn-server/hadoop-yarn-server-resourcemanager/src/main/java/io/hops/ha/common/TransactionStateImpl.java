@@ -19,6 +19,7 @@
 import io.hops.exception.StorageException;
 import io.hops.metadata.util.RMStorageFactory;
 import io.hops.metadata.util.RMUtilities;
+import io.hops.metadata.yarn.TablesDef;
 import io.hops.metadata.yarn.dal.ContainerIdToCleanDataAccess;
 import io.hops.metadata.yarn.dal.ContainerStatusDataAccess;
 import io.hops.metadata.yarn.dal.FiCaSchedulerNodeDataAccess;
@@ -66,6 +67,7 @@
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -109,6 +111,15 @@ public class TransactionStateImpl extends TransactionState {
       new ArrayList<ApplicationAttemptId>();
   private final HashMap<String, RMContainerImpl> rmContainersToUpdate =
       new HashMap<String, RMContainerImpl>();
+  //Updates dropped from a group commit, see dropOverwrittenUpdates
+  private org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode
+      droppedRMNodeToUpdate;
+  private final Map<String, RMContainerImpl> droppedRMContainersToUpdate =
+      new HashMap<String, RMContainerImpl>();
+  private org.apache.hadoop.yarn.api.records.Resource
+      droppedClusterResourceToUpdate;
+  private org.apache.hadoop.yarn.api.records.Resource
+      droppedUsedResourceToUpdate;
   
   //PersistedEvent to persist for distributed RT
   private final List<PendingEvent> persistedEventsToAdd =
@@ -116,6 +127,10 @@ public class TransactionStateImpl extends TransactionState {
   private RMNodeImpl rmNode = null;
   private final List<PendingEvent> persistedEventsToRemove =
       new ArrayList<PendingEvent>();
+  //New events handed off in-process once committed, see PendingEventHandoff
+  private PendingEventHandoff.Subscriber pendingEventsSubscriber = null;
+  private final List<PendingEvent> pendingEventsToHandOff =
+      new ArrayList<PendingEvent>();
 
   //for debug and evaluation
   String rpcType = null;
@@ -136,7 +151,86 @@ public TransactionStateImpl(int rcpID, TransactionType type, String rpcType,
   
   @Override
   void commit() throws IOException {
-    GlobalThreadPool.getExecutorService().execute(new RPCFinisher(this));
+    if (!TransactionStateCommitter.submit(this)) {
+      GlobalThreadPool.getExecutorService().execute(new RPCFinisher(this));
+    }
+  }
+
+  /**
+   * Drops the row updates of this transaction state that a later transaction
+   * state of the same commit batch writes again, then records the rows this
+   * state writes. Only whole-row updates whose values are read from the live
+   * objects at persist time are dropped, so the later write persists the same
+   * or newer values. The dropped updates are kept until
+   * {@link #restoreOverwrittenUpdates()}, for when the batch has to be
+   * committed one transaction state at a time.
+   *
+   * @param laterWrites
+   *     the rows written by the later transaction states of the batch
+   */
+  void dropOverwrittenUpdates(TransactionStateCommitter.BatchWrites laterWrites) {
+    if (rmNodeToUpdate != null) {
+      if (!laterWrites.rmNodes.add(rmNodeToUpdate.getNodeID().toString())) {
+        droppedRMNodeToUpdate = rmNodeToUpdate;
+        rmNodeToUpdate = null;
+      }
+    }
+    Iterator<Map.Entry<String, RMContainerImpl>> it =
+        rmContainersToUpdate.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, RMContainerImpl> entry = it.next();
+      if (!laterWrites.rmContainers.add(entry.getKey())) {
+        droppedRMContainersToUpdate.put(entry.getKey(), entry.getValue());
+        it.remove();
+      }
+    }
+    if (clusterResourceToUpdate != null) {
+      if (laterWrites.clusterResource) {
+        droppedClusterResourceToUpdate = clusterResourceToUpdate;
+        clusterResourceToUpdate = null;
+      }
+      laterWrites.clusterResource = true;
+    }
+    if (usedResourceToUpdate != null) {
+      if (laterWrites.usedResource) {
+        droppedUsedResourceToUpdate = usedResourceToUpdate;
+        usedResourceToUpdate = null;
+      }
+      laterWrites.usedResource = true;
+    }
+  }
+
+  /**
+   * Puts back the updates dropped by
+   * {@link #dropOverwrittenUpdates(TransactionStateCommitter.BatchWrites)}.
+   */
+  void restoreOverwrittenUpdates() {
+    if (droppedRMNodeToUpdate != null) {
+      rmNodeToUpdate = droppedRMNodeToUpdate;
+      droppedRMNodeToUpdate = null;
+    }
+    rmContainersToUpdate.putAll(droppedRMContainersToUpdate);
+    droppedRMContainersToUpdate.clear();
+    if (droppedClusterResourceToUpdate != null) {
+      clusterResourceToUpdate = droppedClusterResourceToUpdate;
+      droppedClusterResourceToUpdate = null;
+    }
+    if (droppedUsedResourceToUpdate != null) {
+      usedResourceToUpdate = droppedUsedResourceToUpdate;
+      droppedUsedResourceToUpdate = null;
+    }
+  }
+
+  org.apache.hadoop.yarn.api.records.Resource getClusterResourceToUpdate() {
+    return clusterResourceToUpdate;
+  }
+
+  org.apache.hadoop.yarn.api.records.Resource getUsedResourceToUpdate() {
+    return usedResourceToUpdate;
+  }
+
+  Set<String> getRMContainersToUpdate() {
+    return rmContainersToUpdate.keySet();
   }
 
   public FairSchedulerNodeInfo getFairschedulerNodeInfo() {
@@ -609,9 +703,24 @@ public void persistFiCaSchedulerNodeToAdd(ResourceDataAccess resourceDA,
 
   public void addPendingEventToAdd(String rmnodeId, byte type, byte status) {
     LOG.debug("HOP :: updatePendingEventToAdd");
+    boolean handOff = false;
+    if (status == TablesDef.PendingEventTableDef.NEW) {
+      if (pendingEventsSubscriber == null) {
+        pendingEventsSubscriber = PendingEventHandoff.getSubscriber();
+      }
+      if (pendingEventsSubscriber != null) {
+        //The subscriber gets this event in-process, keep the periodic
+        //retrieval of new events from returning it as well
+        status = TablesDef.PendingEventTableDef.PENDING;
+        handOff = true;
+      }
+    }
     PendingEvent pendingEvent = new PendingEvent(rmnodeId, type, status,
         pendingEventId.getAndIncrement());
     this.persistedEventsToAdd.add(pendingEvent);
+    if (handOff) {
+      this.pendingEventsToHandOff.add(pendingEvent);
+    }
     LOG.debug("HOP :: updatePendingEventToAdd, pendingEvent:" + pendingEvent);
   }
 
@@ -653,6 +762,17 @@ public void persistPendingEvents(PendingEventDataAccess persistedEventsDA)
         .prepare(this.persistedEventsToAdd, this.persistedEventsToRemove);
   }
 
+  /**
+   * Hands the new PendingEvents to the in-process subscriber, if there was one
+   * when they were added. Must only be called once the transaction persisting
+   * them is committed.
+   */
+  public void handOffPendingEvents() {
+    if (!pendingEventsToHandOff.isEmpty()) {
+      pendingEventsSubscriber.deliver(pendingEventsToHandOff);
+    }
+  }
+
   private class RPCFinisher implements Runnable {
 
     private final TransactionStateImpl ts;
@@ -743,7 +743,18 @@ public static void persistAppMasterRPC(final int rpcID, final RPC.Type type,
   
   public static void persistAppMasterRPC(final int rpcID, final RPC.Type type,
       final byte[] rpc, final String userId) throws IOException {
-    LightWeightRequestHandler setAppMasterRPCHandler =
+    RPCLogWriter.append(new RPC(rpcID, type, rpc, userId));
+  }
+
+  /**
+   * Persists a batch of RPCs in a single transaction.
+   *
+   * @param rpcs
+   * @throws IOException
+   */
+  public static void persistAppMasterRPCs(final List<RPC> rpcs)
+      throws IOException {
+    LightWeightRequestHandler setAppMasterRPCsHandler =
         new LightWeightRequestHandler(YARNOperationType.TEST) {
           @Override
           public Object performTask() throws StorageException {
@@ -751,17 +762,16 @@ public Object performTask() throws StorageException {
             connector.writeLock();
             RPCDataAccess DA = (RPCDataAccess) RMStorageFactory
                 .getDataAccess(RPCDataAccess.class);
-            RPC hop = new RPC(rpcID, type, rpc, userId);
-
-            DA.add(hop);
-            LOG.debug("HOP :: persistAppMasterRPC() - persistRPC");
-
+            for (RPC hop : rpcs) {
+              DA.add(hop);
+            }
             connector.commit();
-            LOG.debug("HOP :: persistAppMasterRPC() - persistRPC");
+            LOG.debug("HOP :: persistAppMasterRPCs() - persisted " +
+                rpcs.size() + " rpcs");
             return null;
           }
         };
-    setAppMasterRPCHandler.handle();
+    setAppMasterRPCsHandler.handle();
   }
 
   public static void removeAppMasterRPC(final int rpcID) throws IOException {
@@ -2125,82 +2135,14 @@ public Object performTask() throws IOException {
             connector.writeLock();
             LOG.debug("HOP :: finishRPC() - handler for rpc: " + rpcID);
 
-            RPCDataAccess DA = (RPCDataAccess) RMStorageFactory
-                .getDataAccess(RPCDataAccess.class);
-            RMNodeDataAccess rmnodeDA = (RMNodeDataAccess) RMStorageFactory
-                .getDataAccess(RMNodeDataAccess.class);
-            ResourceDataAccess resourceDA =
-                (ResourceDataAccess) YarnAPIStorageFactory
-                    .getDataAccess(ResourceDataAccess.class);
-            NodeDataAccess nodeDA = (NodeDataAccess) YarnAPIStorageFactory
-                .getDataAccess(NodeDataAccess.class);
-            RMContextInactiveNodesDataAccess rmctxInactiveNodesDA =
-                (RMContextInactiveNodesDataAccess) RMStorageFactory
-                    .getDataAccess(RMContextInactiveNodesDataAccess.class);
-            FiCaSchedulerNodeDataAccess ficaNodeDA =
-                (FiCaSchedulerNodeDataAccess) RMStorageFactory
-                    .getDataAccess(FiCaSchedulerNodeDataAccess.class);
-            NodeHBResponseDataAccess hbDA =
-                (NodeHBResponseDataAccess) YarnAPIStorageFactory
-                    .getDataAccess(NodeHBResponseDataAccess.class);
-            ContainerStatusDataAccess csDA =
-                (ContainerStatusDataAccess) YarnAPIStorageFactory
-                    .getDataAccess(ContainerStatusDataAccess.class);
-            ContainerIdToCleanDataAccess cidToCleanDA =
-                (ContainerIdToCleanDataAccess) YarnAPIStorageFactory
-                    .getDataAccess(ContainerIdToCleanDataAccess.class);
-            JustLaunchedContainersDataAccess justLaunchedContainersDA =
-                (JustLaunchedContainersDataAccess) YarnAPIStorageFactory
-                    .getDataAccess(JustLaunchedContainersDataAccess.class);
-            UpdatedContainerInfoDataAccess updatedContainerInfoDA =
-                (UpdatedContainerInfoDataAccess) RMStorageFactory
-                    .getDataAccess(UpdatedContainerInfoDataAccess.class);
-            FinishedApplicationsDataAccess faDA =
-                (FinishedApplicationsDataAccess) RMStorageFactory
-                    .getDataAccess(FinishedApplicationsDataAccess.class);
-            RMContainerDataAccess rmcontainerDA =
-                (RMContainerDataAccess) RMStorageFactory
-                    .getDataAccess(RMContainerDataAccess.class);
-            LaunchedContainersDataAccess launchedContainersDA =
-                (LaunchedContainersDataAccess) RMStorageFactory
-                    .getDataAccess(LaunchedContainersDataAccess.class);
-            QueueMetricsDataAccess QMDA =
-                (QueueMetricsDataAccess) RMStorageFactory
-                    .getDataAccess(QueueMetricsDataAccess.class);
-
-            FSSchedulerNodeDataAccess FSSNodeDA =
-                (FSSchedulerNodeDataAccess) RMStorageFactory
-                    .getDataAccess(FSSchedulerNodeDataAccess.class);
-            PendingEventDataAccess persistedEventDA =
-                (PendingEventDataAccess) RMStorageFactory
-                    .getDataAccess(PendingEventDataAccess.class);
-            NextHeartbeatDataAccess nextHeartbeatDA =
-                (NextHeartbeatDataAccess) RMStorageFactory
-                    .getDataAccess(NextHeartbeatDataAccess.class);
-
-            if (rpcID >= 0) {
-              RPC hop = new RPC(rpcID);
-              DA.remove(hop);
-            }
-            //TODO put all of this in ts.persist
-            ts.persistRMNodeToUpdate(rmnodeDA);
-            ts.persistRmcontextInfo(rmnodeDA, resourceDA, nodeDA,
-                rmctxInactiveNodesDA);
-
-            ts.persistRMNodeInfo(hbDA, cidToCleanDA, justLaunchedContainersDA,
-                updatedContainerInfoDA, faDA, csDA);
-            ts.persist();
-            ts.persistFicaSchedulerNodeInfo(resourceDA, ficaNodeDA,
-                rmcontainerDA, launchedContainersDA);
-            ts.persistFairSchedulerNodeInfo(FSSNodeDA);
-            ts.persistSchedulerApplicationInfo(QMDA);
-            ts.persistPendingEvents(persistedEventDA);
+            persistFinishedRPC(ts, rpcID);
 
             connector.commit();
 
             if (ts.getRMNode() != null) {
               ts.getRMNode().setPersisted(true);
             }
+            ts.handOffPendingEvents();
 
             LOG.debug("HOP :: finishRPC - FINISH:" + rpcID);
             return null;
@@ -2213,6 +2155,115 @@ public Object performTask() throws IOException {
     }
   }
 
+  /**
+   * Persists a batch of finished TransactionStates in a single transaction,
+   * in the order of the list.
+   *
+   * @param tss
+   * @throws IOException
+   */
+  public static void finishRPCBatch(final List<TransactionStateImpl> tss)
+      throws IOException {
+    LightWeightRequestHandler finishRPCBatchHandler =
+        new LightWeightRequestHandler(YARNOperationType.TEST) {
+          @Override
+          public Object performTask() throws IOException {
+            connector.beginTransaction();
+            connector.writeLock();
+            LOG.debug("HOP :: finishRPCBatch() - handler for " + tss.size() +
+                " rpcs");
+
+            for (TransactionStateImpl ts : tss) {
+              persistFinishedRPC(ts, ts.getId());
+            }
+
+            connector.commit();
+
+            for (TransactionStateImpl ts : tss) {
+              if (ts.getRMNode() != null) {
+                ts.getRMNode().setPersisted(true);
+              }
+              ts.handOffPendingEvents();
+            }
+            return null;
+          }
+        };
+    finishRPCBatchHandler.handle();
+  }
+
+  private static void persistFinishedRPC(TransactionStateImpl ts, int rpcID)
+      throws IOException {
+    RPCDataAccess DA = (RPCDataAccess) RMStorageFactory
+        .getDataAccess(RPCDataAccess.class);
+    RMNodeDataAccess rmnodeDA = (RMNodeDataAccess) RMStorageFactory
+        .getDataAccess(RMNodeDataAccess.class);
+    ResourceDataAccess resourceDA =
+        (ResourceDataAccess) YarnAPIStorageFactory
+            .getDataAccess(ResourceDataAccess.class);
+    NodeDataAccess nodeDA = (NodeDataAccess) YarnAPIStorageFactory
+        .getDataAccess(NodeDataAccess.class);
+    RMContextInactiveNodesDataAccess rmctxInactiveNodesDA =
+        (RMContextInactiveNodesDataAccess) RMStorageFactory
+            .getDataAccess(RMContextInactiveNodesDataAccess.class);
+    FiCaSchedulerNodeDataAccess ficaNodeDA =
+        (FiCaSchedulerNodeDataAccess) RMStorageFactory
+            .getDataAccess(FiCaSchedulerNodeDataAccess.class);
+    NodeHBResponseDataAccess hbDA =
+        (NodeHBResponseDataAccess) YarnAPIStorageFactory
+            .getDataAccess(NodeHBResponseDataAccess.class);
+    ContainerStatusDataAccess csDA =
+        (ContainerStatusDataAccess) YarnAPIStorageFactory
+            .getDataAccess(ContainerStatusDataAccess.class);
+    ContainerIdToCleanDataAccess cidToCleanDA =
+        (ContainerIdToCleanDataAccess) YarnAPIStorageFactory
+            .getDataAccess(ContainerIdToCleanDataAccess.class);
+    JustLaunchedContainersDataAccess justLaunchedContainersDA =
+        (JustLaunchedContainersDataAccess) YarnAPIStorageFactory
+            .getDataAccess(JustLaunchedContainersDataAccess.class);
+    UpdatedContainerInfoDataAccess updatedContainerInfoDA =
+        (UpdatedContainerInfoDataAccess) RMStorageFactory
+            .getDataAccess(UpdatedContainerInfoDataAccess.class);
+    FinishedApplicationsDataAccess faDA =
+        (FinishedApplicationsDataAccess) RMStorageFactory
+            .getDataAccess(FinishedApplicationsDataAccess.class);
+    RMContainerDataAccess rmcontainerDA =
+        (RMContainerDataAccess) RMStorageFactory
+            .getDataAccess(RMContainerDataAccess.class);
+    LaunchedContainersDataAccess launchedContainersDA =
+        (LaunchedContainersDataAccess) RMStorageFactory
+            .getDataAccess(LaunchedContainersDataAccess.class);
+    QueueMetricsDataAccess QMDA =
+        (QueueMetricsDataAccess) RMStorageFactory
+            .getDataAccess(QueueMetricsDataAccess.class);
+
+    FSSchedulerNodeDataAccess FSSNodeDA =
+        (FSSchedulerNodeDataAccess) RMStorageFactory
+            .getDataAccess(FSSchedulerNodeDataAccess.class);
+    PendingEventDataAccess persistedEventDA =
+        (PendingEventDataAccess) RMStorageFactory
+            .getDataAccess(PendingEventDataAccess.class);
+    NextHeartbeatDataAccess nextHeartbeatDA =
+        (NextHeartbeatDataAccess) RMStorageFactory
+            .getDataAccess(NextHeartbeatDataAccess.class);
+
+    if (rpcID >= 0) {
+      RPC hop = new RPC(rpcID);
+      DA.remove(hop);
+    }
+    //TODO put all of this in ts.persist
+    ts.persistRMNodeToUpdate(rmnodeDA);
+    ts.persistRmcontextInfo(rmnodeDA, resourceDA, nodeDA, rmctxInactiveNodesDA);
+
+    ts.persistRMNodeInfo(hbDA, cidToCleanDA, justLaunchedContainersDA,
+        updatedContainerInfoDA, faDA, csDA);
+    ts.persist();
+    ts.persistFicaSchedulerNodeInfo(resourceDA, ficaNodeDA, rmcontainerDA,
+        launchedContainersDA);
+    ts.persistFairSchedulerNodeInfo(FSSNodeDA);
+    ts.persistSchedulerApplicationInfo(QMDA);
+    ts.persistPendingEvents(persistedEventDA);
+  }
+
   //for testing (todo: move in test class)
   public static Resource getResource(final String id, final int type,
       final int parent) throws IOException {
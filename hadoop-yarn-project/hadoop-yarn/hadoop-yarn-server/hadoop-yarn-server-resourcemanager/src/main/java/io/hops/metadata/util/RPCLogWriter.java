@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.SettableFuture;
+import io.hops.metadata.yarn.entity.appmasterrpc.RPC;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Appends the RPCs received by the ResourceManager to the RPC table in
+ * batches. An RPC handler calling {@link #append} blocks until the batch
+ * holding its RPC is committed, so an RPC is only processed once it is
+ * durable, but the RPCs arriving while a batch is written share the next
+ * transaction instead of each committing its own. The processed RPCs are
+ * removed from the table by the transaction persisting their
+ * TransactionState.
+ * <p/>
+ * When the writer is not running, every RPC is persisted on its own
+ * transaction.
+ */
+public class RPCLogWriter {
+
+  private static final Log LOG = LogFactory.getLog(RPCLogWriter.class);
+
+  private static volatile RPCLogWriter writer = null;
+
+  private final BlockingQueue<PendingRPC> queue =
+      new LinkedBlockingQueue<PendingRPC>();
+  private final int maxBatchSize;
+  private final RPCStore store;
+  private final Thread[] flushers;
+  private volatile boolean running = true;
+
+  private static class PendingRPC {
+
+    private final RPC rpc;
+    private final SettableFuture<Void> durable = SettableFuture.create();
+
+    PendingRPC(RPC rpc) {
+      this.rpc = rpc;
+    }
+  }
+
+  /**
+   * Where the batches are written, the RPC table unless testing.
+   */
+  @VisibleForTesting
+  interface RPCStore {
+
+    void persist(List<RPC> rpcs) throws IOException;
+  }
+
+  private static final RPCStore RPC_TABLE = new RPCStore() {
+    @Override
+    public void persist(List<RPC> rpcs) throws IOException {
+      RMUtilities.persistAppMasterRPCs(rpcs);
+    }
+  };
+
+  private RPCLogWriter(int maxBatchSize, int numFlushers, RPCStore store) {
+    this.maxBatchSize = maxBatchSize;
+    this.store = store;
+    this.flushers = new Thread[numFlushers];
+    for (int i = 0; i < numFlushers; i++) {
+      flushers[i] = new Thread(new Flusher(), "RPCLogWriter flusher #" + i);
+      flushers[i].setDaemon(true);
+    }
+  }
+
+  /**
+   * Starts the writer if batched RPC persistence is enabled in the
+   * configuration.
+   *
+   * @param conf
+   */
+  public static synchronized void start(Configuration conf) {
+    if (writer != null || !conf
+        .getBoolean(YarnConfiguration.HOPS_RPC_LOG_BATCHING_ENABLED,
+            YarnConfiguration.DEFAULT_HOPS_RPC_LOG_BATCHING_ENABLED)) {
+      return;
+    }
+    int maxBatchSize =
+        conf.getInt(YarnConfiguration.HOPS_RPC_LOG_MAX_BATCH_SIZE,
+            YarnConfiguration.DEFAULT_HOPS_RPC_LOG_MAX_BATCH_SIZE);
+    int numFlushers = conf.getInt(YarnConfiguration.HOPS_RPC_LOG_FLUSHERS,
+        YarnConfiguration.DEFAULT_HOPS_RPC_LOG_FLUSHERS);
+    if (maxBatchSize < 1 || numFlushers < 1) {
+      throw new IllegalArgumentException(
+          YarnConfiguration.HOPS_RPC_LOG_MAX_BATCH_SIZE + " and " +
+              YarnConfiguration.HOPS_RPC_LOG_FLUSHERS +
+              " must be positive, were " + maxBatchSize + " and " +
+              numFlushers);
+    }
+    LOG.info("HOP :: Starting batched RPC persistence, max batch size=" +
+        maxBatchSize + ", flushers=" + numFlushers);
+    start(maxBatchSize, numFlushers, RPC_TABLE);
+  }
+
+  @VisibleForTesting
+  static synchronized void start(int maxBatchSize, int numFlushers,
+      RPCStore store) {
+    writer = new RPCLogWriter(maxBatchSize, numFlushers, store);
+    for (Thread flusher : writer.flushers) {
+      flusher.start();
+    }
+  }
+
+  /**
+   * Stops the writer after it has written the RPCs already appended to it.
+   */
+  public static synchronized void stop() throws InterruptedException {
+    RPCLogWriter toStop = writer;
+    if (toStop == null) {
+      return;
+    }
+    writer = null;
+    toStop.running = false;
+    for (Thread flusher : toStop.flushers) {
+      flusher.interrupt();
+    }
+    for (Thread flusher : toStop.flushers) {
+      flusher.join();
+    }
+    //Write what was appended while the writer was stopping
+    List<PendingRPC> rest = new ArrayList<PendingRPC>();
+    toStop.queue.drainTo(rest);
+    if (!rest.isEmpty()) {
+      toStop.flush(rest);
+    }
+  }
+
+  /**
+   * Persists an RPC and returns once it is durable.
+   *
+   * @param rpc
+   * @throws IOException
+   */
+  static void append(RPC rpc) throws IOException {
+    RPCLogWriter current = writer;
+    if (current == null) {
+      RPC_TABLE.persist(Collections.singletonList(rpc));
+      return;
+    }
+    if (!current.running) {
+      current.store.persist(Collections.singletonList(rpc));
+      return;
+    }
+    PendingRPC pending = new PendingRPC(rpc);
+    current.queue.add(pending);
+    //stop() may have drained the queue for the last time before the RPC was
+    //added. If the RPC is still queued once the writer stopped, nothing else
+    //will write it; otherwise a flusher or stop() took it and completes it
+    if (!current.running && current.queue.remove(pending)) {
+      current.flush(Collections.singletonList(pending));
+    }
+    try {
+      pending.durable.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while persisting an rpc");
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  private void flush(List<PendingRPC> batch) {
+    List<RPC> rpcs = new ArrayList<RPC>(batch.size());
+    for (PendingRPC pending : batch) {
+      rpcs.add(pending.rpc);
+    }
+    try {
+      store.persist(rpcs);
+      LOG.debug("HOP :: persisted a batch of " + rpcs.size() + " rpcs");
+      for (PendingRPC pending : batch) {
+        pending.durable.set(null);
+      }
+    } catch (Throwable t) {
+      LOG.error("HOP :: Error persisting a batch of " + rpcs.size() + " rpcs",
+          t);
+      for (PendingRPC pending : batch) {
+        pending.durable.setException(t);
+      }
+    }
+  }
+
+  private class Flusher implements Runnable {
+
+    @Override
+    public void run() {
+      List<PendingRPC> batch = new ArrayList<PendingRPC>(maxBatchSize);
+      while (running || !queue.isEmpty()) {
+        try {
+          //The RPCs appended while the previous batch was written make up
+          //the next one, there is no need to wait for more
+          batch.add(queue.take());
+          queue.drainTo(batch, maxBatchSize - 1);
+        } catch (InterruptedException ex) {
+          //stop() interrupts the flushers, write what is left in the queue
+          queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+        if (!batch.isEmpty()) {
+          flush(batch);
+          batch.clear();
+        }
+      }
+    }
+  }
+}
@@ -15,7 +15,9 @@
  */
 package org.apache.hadoop.yarn.server.resourcemanager;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.hops.common.GlobalThreadPool;
+import io.hops.ha.common.PendingEventHandoff;
 import io.hops.metadata.util.RMUtilities;
 import io.hops.metadata.yarn.TablesDef;
 import io.hops.metadata.yarn.entity.PendingEvent;
@@ -26,19 +28,26 @@
 import org.apache.hadoop.yarn.server.resourcemanager.rmnode.RMNode;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 
 /**
  * Periodically retrieves and processes pending events created by the
- * ResourceManagers.
+ * ResourceManagers. Between two retrievals, it processes the events that the
+ * ResourceTrackerService of this ResourceManager hands off in-process as soon
+ * as they are committed.
  * <p/>
  */
-public class PendingEventRetrievalBatch extends PendingEventRetrieval {
+public class PendingEventRetrievalBatch extends PendingEventRetrieval
+    implements PendingEventHandoff.Subscriber {
 
   private static final Log LOG =
       LogFactory.getLog(PendingEventRetrievalBatch.class);//recovered
@@ -50,6 +59,10 @@ public class PendingEventRetrievalBatch extends PendingEventRetrieval {
   private final ConcurrentLinkedQueue<String> pendingNMs =
       new ConcurrentLinkedQueue<String>();
   private final WriteLock writeLock;
+  //Events of the ResourceTrackerService of this RM, see PendingEventHandoff
+  private final boolean localHandoff;
+  private final LinkedBlockingQueue<PendingEvent> handedOffEvents =
+      new LinkedBlockingQueue<PendingEvent>();
 
   /**
    * @param rmContext
@@ -66,43 +79,33 @@ public PendingEventRetrievalBatch(RMContext rmContext, Configuration conf) {
         new HashMap<String, ConcurrentSkipListSet<PendingEvent>>();
     ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     this.writeLock = lock.writeLock();
+    this.localHandoff =
+        conf.getBoolean(YarnConfiguration.HOPS_PENDING_EVENTS_LOCAL_HANDOFF,
+            YarnConfiguration.DEFAULT_HOPS_PENDING_EVENTS_LOCAL_HANDOFF);
   }
 
   @Override
   public void run() {
+    try {
+      retrieve();
+    } finally {
+      PendingEventHandoff.unsubscribe(this);
+    }
+  }
+
+  private void retrieve() {
     while (active) {
       try {
         long startTime = System.currentTimeMillis();
         try {
           writeLock.lock();
-          //If scheduler just started, retrieve events with status pending 
-          if (firstRetrieval) {
-            pendingEvents.putAll(
-                RMUtilities.getPendingEvents(0, TablesDef.PendingEventTableDef.PENDING));
-            firstRetrieval = false;
-          }
-          //Retrieve all pending events, update their status
-          //to pending and create scheduler events.
-          pendingEvents.putAll(RMUtilities.getAndUpdatePendingEvents(
-              conf.getInt(YarnConfiguration.HOPS_PENDING_EVENTS_BATCH,
-                  YarnConfiguration.DEFAULT_HOPS_PENDING_EVENTS_BATCH),
-              TablesDef.PendingEventTableDef.NEW));
-          LOG.debug("HOP :: pending events are:" + pendingEvents.size() + ", " +
-              pendingEvents);
+          retrievePendingEvents();
           //Parse all events grouped by RMNode
-          for (String id : pendingEvents.keySet()) {
-            //If this RMNode has not been processed yet
-            if (!pendingNMs.contains(id)) {
-              pendingNMs.add(id);
-              GlobalThreadPool.getExecutorService().
-                  execute(new RMNodeWorker(id));
-            }
-          }
+          dispatchPendingNMs();
         } finally {
           writeLock.unlock();
         }
-        Thread.sleep(
-            Math.max(0, period - (System.currentTimeMillis() - startTime)));
+        waitForHandedOffEvents(startTime + period);
       } catch (IOException ex) {
         LOG.error("HOP :: Error while retrieving PendingEvents", ex);
       } catch (InterruptedException ex) {
@@ -111,10 +114,169 @@ public void run() {
     }
   }
 
+  /**
+   * Retrieves the new events and, the first time, the events left pending by
+   * a previous run. Must be called with the writeLock held.
+   *
+   * @throws IOException
+   */
+  @VisibleForTesting
+  void retrievePendingEvents() throws IOException {
+    //If scheduler just started, retrieve events with status pending
+    if (firstRetrieval) {
+      addPendingEvents(
+          RMUtilities.getPendingEvents(0, TablesDef.PendingEventTableDef.PENDING));
+      firstRetrieval = false;
+      //Events handed off from now on are persisted as pending, they
+      //must not be in the pending events retrieved above
+      if (localHandoff) {
+        PendingEventHandoff.subscribe(this);
+      }
+    }
+    //Retrieve all pending events, update their status
+    //to pending and create scheduler events.
+    addPendingEvents(RMUtilities.getAndUpdatePendingEvents(
+        conf.getInt(YarnConfiguration.HOPS_PENDING_EVENTS_BATCH,
+            YarnConfiguration.DEFAULT_HOPS_PENDING_EVENTS_BATCH),
+        TablesDef.PendingEventTableDef.NEW));
+    LOG.debug("HOP :: pending events are:" + pendingEvents.size() + ", " +
+        pendingEvents);
+  }
+
+  /**
+   * Dispatches the events handed off in-process until the next periodic
+   * retrieval is due.
+   *
+   * @param nextRetrieval
+   * @throws InterruptedException
+   */
+  private void waitForHandedOffEvents(long nextRetrieval)
+      throws InterruptedException {
+    long remaining;
+    while (active &&
+        (remaining = nextRetrieval - System.currentTimeMillis()) > 0) {
+      PendingEvent event =
+          handedOffEvents.poll(remaining, TimeUnit.MILLISECONDS);
+      if (event == null) {
+        return;
+      }
+      List<PendingEvent> events = new ArrayList<PendingEvent>();
+      events.add(event);
+      handedOffEvents.drainTo(events);
+      try {
+        writeLock.lock();
+        addPendingEvents(events);
+        dispatchPendingNMs();
+      } finally {
+        writeLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Adds retrieved events to the events not processed yet. Must be called
+   * with the writeLock held.
+   *
+   * @param retrieved
+   */
+  private void addPendingEvents(
+      Map<String, ConcurrentSkipListSet<PendingEvent>> retrieved) {
+    for (Map.Entry<String, ConcurrentSkipListSet<PendingEvent>> entry : retrieved
+        .entrySet()) {
+      getNodeEvents(entry.getKey()).addAll(entry.getValue());
+    }
+  }
+
+  /**
+   * Adds handed-off events to the events not processed yet. Must be called
+   * with the writeLock held.
+   *
+   * @param events
+   */
+  @VisibleForTesting
+  void addPendingEvents(List<PendingEvent> events) {
+    for (PendingEvent pendingEvent : events) {
+      getNodeEvents(pendingEvent.getRmnodeId()).add(pendingEvent);
+    }
+  }
+
+  @VisibleForTesting
+  ConcurrentSkipListSet<PendingEvent> getPendingEvents(String id) {
+    return pendingEvents.get(id);
+  }
+
+  private ConcurrentSkipListSet<PendingEvent> getNodeEvents(String id) {
+    ConcurrentSkipListSet<PendingEvent> nodeEvents = pendingEvents.get(id);
+    if (nodeEvents == null) {
+      nodeEvents = new ConcurrentSkipListSet<PendingEvent>();
+      pendingEvents.put(id, nodeEvents);
+    }
+    return nodeEvents;
+  }
+
+  private void dispatchPendingNMs() {
+    for (String id : pendingEvents.keySet()) {
+      //If this RMNode has not been processed yet
+      if (!pendingNMs.contains(id)) {
+        pendingNMs.add(id);
+        GlobalThreadPool.getExecutorService().
+            execute(new RMNodeWorker(id));
+      }
+    }
+  }
+
+  @Override
+  public void deliver(List<PendingEvent> events) {
+    handedOffEvents.addAll(events);
+  }
+
   public void setFirstRetrieval(boolean firstRetrieval) {
     this.firstRetrieval = firstRetrieval;
   }
 
+  /**
+   * @param id
+   * @return a copy of the events of the node not processed yet
+   */
+  @VisibleForTesting
+  List<PendingEvent> getEventsToTrigger(String id) {
+    try {
+      writeLock.lock();
+      ConcurrentSkipListSet<PendingEvent> nodeEvents = pendingEvents.get(id);
+      return nodeEvents == null ? new ArrayList<PendingEvent>() :
+          new ArrayList<PendingEvent>(nodeEvents);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Removes the events of the node an RMNodeWorker triggered. Events added
+   * since the worker took them are kept for its next round.
+   *
+   * @param id
+   * @param triggered
+   * @return true if the node has no events left and the worker is done
+   */
+  @VisibleForTesting
+  boolean removeTriggeredEvents(String id, List<PendingEvent> triggered) {
+    try {
+      writeLock.lock();
+      ConcurrentSkipListSet<PendingEvent> nodeEvents = pendingEvents.get(id);
+      if (nodeEvents != null) {
+        nodeEvents.removeAll(triggered);
+        if (!nodeEvents.isEmpty()) {
+          return false;
+        }
+        pendingEvents.remove(id);
+      }
+      pendingNMs.remove(id);
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
   public class RMNodeWorker implements Runnable {
 
     private final String id;
@@ -140,23 +302,15 @@ public void run() {
         updateRMContext(rmNode);
 
         //Parse and trigger events
-        while (pendingEvents.containsKey(id)) {
-          ConcurrentSkipListSet<PendingEvent> eventsToRemove = pendingEvents.
-              get(id);
+        boolean done = false;
+        while (!done) {
+          //Events keep being added to the set of the node while these are
+          //triggered, only the ones triggered here are removed
+          List<PendingEvent> eventsToRemove = getEventsToTrigger(id);
           for (PendingEvent pendingEvent : eventsToRemove) {
             triggerEvent(rmNode, pendingEvent);
           }
-          try {
-            writeLock.lock();
-            //Remove processed events
-            pendingEvents.get(id).removeAll(eventsToRemove);
-            if (pendingEvents.get(id).isEmpty()) {
-              pendingNMs.remove(id);
-              pendingEvents.remove(id);
-            }
-          } finally {
-            writeLock.unlock();
-          }
+          done = removeTriggeredEvents(id, eventsToRemove);
           LOG.debug("HOP :: RMNodeWorker:" + rmNode.getNodeID() + " - FINISH");
         }
       }
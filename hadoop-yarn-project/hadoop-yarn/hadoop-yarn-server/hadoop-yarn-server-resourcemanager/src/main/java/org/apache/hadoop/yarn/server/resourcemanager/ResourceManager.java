@@ -18,7 +18,9 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import io.hops.common.GlobalThreadPool;
+import io.hops.ha.common.TransactionStateCommitter;
 import io.hops.metadata.util.RMStorageFactory;
+import io.hops.metadata.util.RPCLogWriter;
 import io.hops.metadata.util.YarnAPIStorageFactory;
 import io.hops.metadata.yarn.entity.appmasterrpc.RPC;
 import org.apache.commons.logging.Log;
@@ -999,6 +1001,9 @@ protected void serviceStart() throws Exception {
       throw new YarnRuntimeException("Failed to login", ie);
     }
 
+    TransactionStateCommitter.start(conf);
+    RPCLogWriter.start(conf);
+
     if (this.rmContext.isHAEnabled()) {
       LOG.info("HA enabled");
       transitionToStandby(true);
@@ -1044,6 +1049,8 @@ protected void serviceStop() throws Exception {
     super.serviceStop();
     LOG.info("transition to standby serviceStop");
     transitionToStandby(false);
+    RPCLogWriter.stop();
+    TransactionStateCommitter.stop();
     rmContext.setHAServiceState(HAServiceState.STOPPING);
   }
 
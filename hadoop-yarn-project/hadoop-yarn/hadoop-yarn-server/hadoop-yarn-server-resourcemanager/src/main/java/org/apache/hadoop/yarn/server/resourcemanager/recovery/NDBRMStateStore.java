@@ -15,6 +15,8 @@
  */
 package org.apache.hadoop.yarn.server.resourcemanager.recovery;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.hops.metadata.util.RMUtilities;
 import io.hops.metadata.yarn.entity.AppSchedulingInfo;
 import io.hops.metadata.yarn.entity.ContainerId;
@@ -27,8 +29,10 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.DataInputByteBuffer;
 import org.apache.hadoop.security.Credentials;
+import org.apache.hadoop.util.Time;
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.exceptions.YarnRuntimeException;
 import org.apache.hadoop.yarn.proto.YarnServerCommonServiceProtos;
 import org.apache.hadoop.yarn.proto.YarnServerResourceManagerServiceProtos.ApplicationAttemptStateDataProto;
@@ -53,6 +57,11 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * MySQL Cluster implementation of the RMStateStore abstract class.
@@ -66,8 +75,20 @@ public class NDBRMStateStore extends RMStateStore {
       newInstance(1, 0);
   public static final Log LOG = LogFactory.getLog(NDBRMStateStore.class);
 
+  private final NDBRMStateStoreLoadMetrics metrics =
+      NDBRMStateStoreLoadMetrics.getMetrics();
+  private int loadThreads =
+      YarnConfiguration.DEFAULT_HOPS_RECOVERY_LOAD_THREADS;
+
   @Override
   protected void initInternal(Configuration conf) throws Exception {
+    loadThreads = conf.getInt(YarnConfiguration.HOPS_RECOVERY_LOAD_THREADS,
+        YarnConfiguration.DEFAULT_HOPS_RECOVERY_LOAD_THREADS);
+    if (loadThreads < 1) {
+      throw new IllegalArgumentException(
+          YarnConfiguration.HOPS_RECOVERY_LOAD_THREADS +
+              " must be positive, was " + loadThreads);
+    }
   }
 
   @Override
@@ -116,41 +137,255 @@ protected RMStateVersion getCurrentVersion() {
 
   @Override
   public RMState loadState() throws Exception {
-    RMState rmState = new RMState();
-    // recover DelegationTokenSecretManager
-    loadRMDTSecretManagerState(rmState);
-    // recover RM applications
-    loadRMAppState(rmState);
-    loadNMTokenSecretMamagerCurrentKey(rmState);
-    loadAllocateResponses(rmState);
-    loadRPCs(rmState);
-    loadAppSchedulingInfos(rmState);
-    loadSchedulerApplications(rmState);
-    loadFiCaSchedulerNodes(rmState);
-    loadLaunchedContainers(rmState);
-    loadNewlyAllocatedContainers(rmState);
-    loadLiveContainers(rmState);
-    loadResourceRequests(rmState);
-    loadBlackLists(rmState);
-    loadAllQueueMetrics(rmState);
-    loadNodeHeartBeatResponses(rmState);
-    loadContainersToClean(rmState);
-    loadFinishedApplications(rmState);
-    loadNodesResources(rmState);
-    loadAllContainers(rmState);
-    loadAllRMContainers(rmState);
-    loadAllRMContextActiveNodes(rmState);
-    loadAllRMNodes(rmState);
-    loadAllRMNodesNextHeartbeat(rmState);
-    loadAllNodes(rmState);
-    loadRMContextInactiveNodes(rmState);
-    loadAllUpdatedContainerInfos(rmState);
-    loadAllContainerStatus(rmState);
-    loadAllJustLaunchedContainers(rmState);
+    final RMState rmState = new RMState();
+    long start = Time.monotonicNow();
+    ExecutorService loaders = Executors.newFixedThreadPool(loadThreads,
+        new ThreadFactoryBuilder().setNameFormat("NDBRMStateStore loader #%d")
+            .setDaemon(true).build());
+    try {
+      //The attempts are read while the application states are read and
+      //decoded, loadRMAppState waits for them
+      allHopApplicationAttemptStates = loaders.submit(
+          new Callable<Map<String, List<io.hops.metadata.yarn.entity.rmstatestore.ApplicationAttemptState>>>() {
+            @Override
+            public Map<String, List<io.hops.metadata.yarn.entity.rmstatestore.ApplicationAttemptState>> call()
+                throws Exception {
+              long loadStart = Time.monotonicNow();
+              Map<String, List<io.hops.metadata.yarn.entity.rmstatestore.ApplicationAttemptState>>
+                  attempts = RMUtilities.getAllApplicationAttemptStates();
+              recordLoadTime("ApplicationAttemptStates", loadStart);
+              return attempts;
+            }
+          });
+      List<Future<Void>> loads = new ArrayList<Future<Void>>();
+      loads.add(loaders.submit(new TableLoader("RMDTSecretManagerState") {
+        @Override
+        void load() throws Exception {
+          loadRMDTSecretManagerState(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("RMAppState") {
+        @Override
+        void load() throws Exception {
+          loadRMAppState(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("NMTokenSecretMamagerCurrentKey") {
+        @Override
+        void load() throws Exception {
+          loadNMTokenSecretMamagerCurrentKey(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllocateResponses") {
+        @Override
+        void load() throws Exception {
+          loadAllocateResponses(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("RPCs") {
+        @Override
+        void load() throws Exception {
+          loadRPCs(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AppSchedulingInfos") {
+        @Override
+        void load() throws Exception {
+          loadAppSchedulingInfos(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("SchedulerApplications") {
+        @Override
+        void load() throws Exception {
+          loadSchedulerApplications(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("FiCaSchedulerNodes") {
+        @Override
+        void load() throws Exception {
+          loadFiCaSchedulerNodes(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("LaunchedContainers") {
+        @Override
+        void load() throws Exception {
+          loadLaunchedContainers(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("NewlyAllocatedContainers") {
+        @Override
+        void load() throws Exception {
+          loadNewlyAllocatedContainers(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("LiveContainers") {
+        @Override
+        void load() throws Exception {
+          loadLiveContainers(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("ResourceRequests") {
+        @Override
+        void load() throws Exception {
+          loadResourceRequests(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("BlackLists") {
+        @Override
+        void load() throws Exception {
+          loadBlackLists(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllQueueMetrics") {
+        @Override
+        void load() throws Exception {
+          loadAllQueueMetrics(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("NodeHeartBeatResponses") {
+        @Override
+        void load() throws Exception {
+          loadNodeHeartBeatResponses(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("ContainersToClean") {
+        @Override
+        void load() throws Exception {
+          loadContainersToClean(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("FinishedApplications") {
+        @Override
+        void load() throws Exception {
+          loadFinishedApplications(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("NodesResources") {
+        @Override
+        void load() throws Exception {
+          loadNodesResources(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllContainers") {
+        @Override
+        void load() throws Exception {
+          loadAllContainers(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllRMContainers") {
+        @Override
+        void load() throws Exception {
+          loadAllRMContainers(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllRMContextActiveNodes") {
+        @Override
+        void load() throws Exception {
+          loadAllRMContextActiveNodes(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllRMNodes") {
+        @Override
+        void load() throws Exception {
+          loadAllRMNodes(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllRMNodesNextHeartbeat") {
+        @Override
+        void load() throws Exception {
+          loadAllRMNodesNextHeartbeat(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllNodes") {
+        @Override
+        void load() throws Exception {
+          loadAllNodes(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("RMContextInactiveNodes") {
+        @Override
+        void load() throws Exception {
+          loadRMContextInactiveNodes(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllUpdatedContainerInfos") {
+        @Override
+        void load() throws Exception {
+          loadAllUpdatedContainerInfos(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllContainerStatus") {
+        @Override
+        void load() throws Exception {
+          loadAllContainerStatus(rmState);
+        }
+      }));
+      loads.add(loaders.submit(new TableLoader("AllJustLaunchedContainers") {
+        @Override
+        void load() throws Exception {
+          loadAllJustLaunchedContainers(rmState);
+        }
+      }));
+      for (Future<Void> load : loads) {
+        try {
+          load.get();
+        } catch (ExecutionException ex) {
+          if (ex.getCause() instanceof Exception) {
+            throw (Exception) ex.getCause();
+          }
+          throw ex;
+        }
+      }
+    } finally {
+      loaders.shutdownNow();
+      allHopApplicationAttemptStates = null;
+    }
+    long loadTime = Time.monotonicNow() - start;
+    metrics.setTotalLoadTime(loadTime);
+    LOG.info("HOP :: Loaded the RM state in " + loadTime + "ms with " +
+        loadThreads + " threads");
     return rmState;
   }
 
-  private synchronized void loadRMDTSecretManagerState(RMState rmState)
+  /**
+   * Loads one part of the RM state into the RMState. The loaders of
+   * loadState run concurrently, each must only set its own fields of the
+   * RMState.
+   */
+  private abstract class TableLoader implements Callable<Void> {
+
+    private final String table;
+
+    TableLoader(String table) {
+      this.table = table;
+    }
+
+    abstract void load() throws Exception;
+
+    @Override
+    public Void call() throws Exception {
+      long loadStart = Time.monotonicNow();
+      beforeLoad(table);
+      load();
+      recordLoadTime(table, loadStart);
+      return null;
+    }
+  }
+
+  /**
+   * Called by the loader of each table before it loads the table.
+   */
+  @VisibleForTesting
+  void beforeLoad(String table) throws Exception {
+  }
+
+  private void recordLoadTime(String table, long loadStart) {
+    long loadTime = Time.monotonicNow() - loadStart;
+    metrics.setLoadTime(table, loadTime);
+    LOG.debug("HOP :: Loaded " + table + " in " + loadTime + "ms");
+  }
+
+  private void loadRMDTSecretManagerState(RMState rmState)
       throws Exception {
     loadRMDelegationKeyState(rmState);
     loadRMSequentialNumberState(rmState);
@@ -257,7 +492,7 @@ protected synchronized void removeApplicationStateInternal(
    * @param rmState
    * @throws Exception
    */
-  private synchronized void loadRMAppState(RMState rmState) throws Exception {
+  private void loadRMAppState(RMState rmState) throws Exception {
     //Retrieve all applicationIds from NDB
     List<io.hops.metadata.yarn.entity.rmstatestore.ApplicationState> appStates =
         RMUtilities.getApplicationStates();
@@ -500,7 +735,7 @@ private void loadRMDelegationTokenState(RMState rmState) throws Exception {
     }
   }
 
-  private Map<String, List<io.hops.metadata.yarn.entity.rmstatestore.ApplicationAttemptState>>
+  private volatile Future<Map<String, List<io.hops.metadata.yarn.entity.rmstatestore.ApplicationAttemptState>>>
       allHopApplicationAttemptStates;
 
   /**
@@ -512,14 +747,10 @@ private void loadRMDelegationTokenState(RMState rmState) throws Exception {
    */
   private void loadApplicationAttemptState(ApplicationState appState,
       ApplicationId appId) throws Exception {
-    if (allHopApplicationAttemptStates == null) {
-      allHopApplicationAttemptStates = RMUtilities.
-          getAllApplicationAttemptStates();
-    }
     LOG.debug("loadApplicationAttemptState for app " + appState.getAppId() +
         " state " + appState.getState());
     List<io.hops.metadata.yarn.entity.rmstatestore.ApplicationAttemptState>
-        attempts = allHopApplicationAttemptStates.get(appId.toString());
+        attempts = allHopApplicationAttemptStates.get().get(appId.toString());
     if (attempts != null) {
       for (io.hops.metadata.yarn.entity.rmstatestore.ApplicationAttemptState attempt : attempts) {
         String attemptIDStr = attempt.getApplicationattemptid();
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.resourcemanager.recovery;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.metrics2.MetricsSystem;
+import org.apache.hadoop.metrics2.annotation.Metric;
+import org.apache.hadoop.metrics2.annotation.Metrics;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableGaugeLong;
+
+/**
+ * Time taken by {@link NDBRMStateStore#loadState()} to load the RM state, in
+ * total and per loaded table, in milliseconds.
+ */
+@InterfaceAudience.Private
+@Metrics(context = "yarn")
+public class NDBRMStateStoreLoadMetrics {
+
+  final MetricsRegistry registry =
+      new MetricsRegistry("NDBRMStateStoreLoadMetrics");
+
+  @Metric("Time to load the whole RM state")
+  MutableGaugeLong totalLoadTime;
+
+  private static NDBRMStateStoreLoadMetrics INSTANCE = null;
+
+  public static synchronized NDBRMStateStoreLoadMetrics getMetrics() {
+    if (INSTANCE == null) {
+      INSTANCE = new NDBRMStateStoreLoadMetrics();
+      MetricsSystem ms = DefaultMetricsSystem.instance();
+      if (ms != null) {
+        ms.register("NDBRMStateStoreLoadMetrics",
+            "Time to load the RM state from NDB", INSTANCE);
+      }
+    }
+    return INSTANCE;
+  }
+
+  void setTotalLoadTime(long time) {
+    totalLoadTime.set(time);
+  }
+
+  void setLoadTime(String table, long time) {
+    String name = table + "LoadTime";
+    synchronized (registry) {
+      MutableGaugeLong gauge = (MutableGaugeLong) registry.get(name);
+      if (gauge == null) {
+        gauge = registry.newGauge(name, "Time to load " + table, 0L);
+      }
+      gauge.set(time);
+    }
+  }
+
+  public long getTotalLoadTime() {
+    return totalLoadTime.value();
+  }
+
+  public long getLoadTime(String table) {
+    MutableGaugeLong gauge =
+        (MutableGaugeLong) registry.get(table + "LoadTime");
+    return gauge == null ? -1 : gauge.value();
+  }
+}
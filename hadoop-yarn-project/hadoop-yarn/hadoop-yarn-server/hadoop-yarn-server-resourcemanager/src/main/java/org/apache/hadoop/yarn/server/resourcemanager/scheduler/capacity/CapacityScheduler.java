@@ -20,6 +20,7 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import io.hops.ha.common.TransactionState;
+import io.hops.ha.common.TransactionStateImpl;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience.LimitedPrivate;
@@ -36,6 +37,7 @@
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.api.records.ContainerStatus;
 import org.apache.hadoop.yarn.api.records.NodeId;
+import org.apache.hadoop.yarn.api.records.Priority;
 import org.apache.hadoop.yarn.api.records.QueueACL;
 import org.apache.hadoop.yarn.api.records.QueueInfo;
 import org.apache.hadoop.yarn.api.records.QueueUserACLInfo;
@@ -89,6 +91,7 @@
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -96,6 +99,7 @@
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @LimitedPrivate("yarn")
 @Evolving
@@ -200,7 +204,8 @@ public Configuration getConf() {
   private boolean usePortForNodeName;
 
   private boolean scheduleAsynchronously;
-  private AsyncScheduleThread asyncSchedulerThread;
+  private final List<AsyncScheduleThread> asyncSchedulerThreads =
+      new ArrayList<AsyncScheduleThread>();
   
   /**
    * EXPERT
@@ -210,6 +215,28 @@ public Configuration getConf() {
       CapacitySchedulerConfiguration.SCHEDULE_ASYNCHRONOUSLY_PREFIX +
           ".scheduling-interval-ms";
   private static final long DEFAULT_ASYNC_SCHEDULER_INTERVAL = 5;
+  private static final String ASYNC_SCHEDULER_THREADS =
+      CapacitySchedulerConfiguration.SCHEDULE_ASYNCHRONOUSLY_PREFIX +
+          ".scheduling-threads";
+  private static final int DEFAULT_ASYNC_SCHEDULER_THREADS = 1;
+
+  /**
+   * EXPERT: instead of walking all the nodes, each asynchronous scheduling
+   * pass takes a batch of candidate nodes, scores them by the outstanding
+   * node and rack local requests they can satisfy and by their load, and
+   * allocates on them best scored first.
+   */
+  private boolean multiNodeScheduling;
+  private int multiNodeCandidates;
+  private final AtomicInteger candidatesStart = new AtomicInteger();
+  private static final String MULTI_NODE_SCHEDULING_ENABLE =
+      CapacitySchedulerConfiguration.SCHEDULE_ASYNCHRONOUSLY_PREFIX +
+          ".multi-node.enable";
+  private static final boolean DEFAULT_MULTI_NODE_SCHEDULING_ENABLE = false;
+  private static final String MULTI_NODE_CANDIDATES =
+      CapacitySchedulerConfiguration.SCHEDULE_ASYNCHRONOUSLY_PREFIX +
+          ".multi-node.candidates";
+  private static final int DEFAULT_MULTI_NODE_CANDIDATES = 64;
   
   public CapacityScheduler() {
   }
@@ -293,9 +320,19 @@ public synchronized void reinitialize(Configuration conf, RMContext rmContext)
       scheduleAsynchronously = this.conf.getScheduleAynschronously();
       asyncScheduleInterval = this.conf
           .getLong(ASYNC_SCHEDULER_INTERVAL, DEFAULT_ASYNC_SCHEDULER_INTERVAL);
+      multiNodeScheduling = this.conf.getBoolean(MULTI_NODE_SCHEDULING_ENABLE,
+          DEFAULT_MULTI_NODE_SCHEDULING_ENABLE);
+      multiNodeCandidates = this.conf
+          .getInt(MULTI_NODE_CANDIDATES, DEFAULT_MULTI_NODE_CANDIDATES);
       if (scheduleAsynchronously) {
-        asyncSchedulerThread = new AsyncScheduleThread(this);
-        asyncSchedulerThread.start();
+        int asyncSchedulerThreadCount = this.conf
+            .getInt(ASYNC_SCHEDULER_THREADS, DEFAULT_ASYNC_SCHEDULER_THREADS);
+        for (int i = 0; i < asyncSchedulerThreadCount; i++) {
+          AsyncScheduleThread asyncSchedulerThread =
+              new AsyncScheduleThread(this);
+          asyncSchedulerThreads.add(asyncSchedulerThread);
+          asyncSchedulerThread.start();
+        }
       }
       
       initialized = true;
@@ -304,7 +341,8 @@ public synchronized void reinitialize(Configuration conf, RMContext rmContext)
           "minimumAllocation=<" + getMinimumResourceCapability() + ">, " +
           "maximumAllocation=<" + getMaximumResourceCapability() + ">, " +
           "asynchronousScheduling=" + scheduleAsynchronously + ", " +
-          "asyncScheduleInterval=" + asyncScheduleInterval + "ms");
+          "asyncScheduleInterval=" + asyncScheduleInterval + "ms, " +
+          "multiNodeScheduling=" + multiNodeScheduling);
       
     } else {
       CapacitySchedulerConfiguration oldConf = this.conf;
@@ -351,6 +389,174 @@ static void schedule(CapacityScheduler cs,
     } catch (InterruptedException e) {
     }
   }
+
+  /**
+   * Schedule on a batch of candidate nodes, best scored first. The
+   * allocations of the pass are persisted together, with the transaction
+   * state committed at the end of the pass. A pass that changes no node is
+   * not committed, so that unsatisfiable requests do not cost an empty
+   * transaction per pass.
+   *
+   * @param cs
+   */
+  static void scheduleMultiNode(CapacityScheduler cs) {
+    List<FiCaSchedulerNode> candidates = cs.scoreCandidateNodes();
+    if (!candidates.isEmpty()) {
+      TransactionState transactionState =
+          new TransactionStateImpl(-1, TransactionState.TransactionType.RM);
+      boolean allocated = false;
+      try {
+        allocated = allocateOnCandidates(cs, candidates, transactionState);
+      } finally {
+        if (allocated) {
+          try {
+            transactionState.decCounter("CapacityScheduler multi-node pass");
+          } catch (IOException ex) {
+            LOG.error("HOP :: Error decreasing ts counter", ex);
+          }
+        }
+      }
+    }
+    try {
+      Thread.sleep(cs.getAsyncScheduleInterval());
+    } catch (InterruptedException e) {
+    }
+  }
+
+  /**
+   * Allocates on the candidate nodes in order.
+   *
+   * @return whether the containers or the reservation of any node changed
+   */
+  @VisibleForTesting
+  static boolean allocateOnCandidates(CapacityScheduler cs,
+      List<FiCaSchedulerNode> candidates, TransactionState transactionState) {
+    boolean allocated = false;
+    for (FiCaSchedulerNode node : candidates) {
+      synchronized (cs) {
+        // The node may have been removed since it was scored
+        if (cs.getNode(node.getNodeID()) != node) {
+          continue;
+        }
+        int numContainers = node.getNumContainers();
+        RMContainer reservedContainer = node.getReservedContainer();
+        try {
+          cs.allocateContainersToNode(node, transactionState);
+        } finally {
+          // Containers only complete under the scheduler lock, any change
+          // here comes from this pass
+          if (node.getNumContainers() != numContainers ||
+              node.getReservedContainer() != reservedContainer) {
+            allocated = true;
+          }
+        }
+      }
+    }
+    return allocated;
+  }
+
+  /**
+   * A candidate node of a multi-node scheduling pass, with the values it is
+   * ordered by taken when the pass started, as they keep changing while the
+   * candidates are sorted.
+   */
+  private static class ScoredNode {
+
+    private final FiCaSchedulerNode node;
+    private final int localityScore;
+    private final Resource availableResource;
+
+    ScoredNode(FiCaSchedulerNode node, int localityScore) {
+      this.node = node;
+      this.localityScore = localityScore;
+      this.availableResource = Resources.clone(node.getAvailableResource());
+    }
+  }
+
+  /**
+   * Returns the next batch of candidate nodes for a multi-node scheduling
+   * pass, ordered by the number of outstanding requests local to them (twice
+   * for node local requests, once for rack local ones) and then by available
+   * resource. Empty if no application is asking for containers.
+   */
+  @VisibleForTesting
+  List<FiCaSchedulerNode> scoreCandidateNodes() {
+    Map<String, Integer> localRequests = new HashMap<String, Integer>();
+    boolean pendingRequests = false;
+    for (SchedulerApplication application : applications.values()) {
+      FiCaSchedulerApp attempt =
+          (FiCaSchedulerApp) application.getCurrentAppAttempt();
+      if (attempt == null) {
+        continue;
+      }
+      synchronized (attempt) {
+        for (Priority priority : attempt.getPriorities()) {
+          Map<String, ResourceRequest> requests =
+              attempt.getResourceRequests(priority);
+          if (requests == null) {
+            continue;
+          }
+          for (ResourceRequest request : requests.values()) {
+            if (request.getNumContainers() <= 0) {
+              continue;
+            }
+            if (request.getResourceName().equals(ResourceRequest.ANY)) {
+              pendingRequests = true;
+            } else {
+              Integer containers = localRequests.get(request.getResourceName());
+              localRequests.put(request.getResourceName(),
+                  (containers == null ? 0 : containers) +
+                      request.getNumContainers());
+            }
+          }
+        }
+      }
+    }
+    if (!pendingRequests) {
+      return Collections.emptyList();
+    }
+
+    // Consecutive passes, possibly of different threads, take consecutive
+    // batches of nodes
+    List<FiCaSchedulerNode> allNodes =
+        new ArrayList<FiCaSchedulerNode>(nodes.values());
+    if (allNodes.isEmpty()) {
+      return Collections.emptyList();
+    }
+    int batchSize = Math.min(multiNodeCandidates, allNodes.size());
+    int start = (candidatesStart.getAndAdd(batchSize) & Integer.MAX_VALUE) %
+        allNodes.size();
+    List<ScoredNode> scoredNodes = new ArrayList<ScoredNode>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      FiCaSchedulerNode node = allNodes.get((start + i) % allNodes.size());
+      if (node.getReservedContainer() == null && Resources
+          .lessThan(calculator, clusterResource, node.getAvailableResource(),
+              minimumAllocation)) {
+        continue;
+      }
+      Integer nodeLocal = localRequests.get(node.getNodeName());
+      Integer rackLocal = localRequests.get(node.getRackName());
+      scoredNodes.add(new ScoredNode(node,
+          2 * (nodeLocal == null ? 0 : nodeLocal) +
+              (rackLocal == null ? 0 : rackLocal)));
+    }
+    Collections.sort(scoredNodes, new Comparator<ScoredNode>() {
+      @Override
+      public int compare(ScoredNode n1, ScoredNode n2) {
+        if (n1.localityScore != n2.localityScore) {
+          return n1.localityScore > n2.localityScore ? -1 : 1;
+        }
+        return calculator.compare(clusterResource, n2.availableResource,
+            n1.availableResource);
+      }
+    });
+    List<FiCaSchedulerNode> candidates =
+        new ArrayList<FiCaSchedulerNode>(scoredNodes.size());
+    for (ScoredNode scoredNode : scoredNodes) {
+      candidates.add(scoredNode.node);
+    }
+    return candidates;
+  }
   
   static class AsyncScheduleThread extends Thread {
 
@@ -370,6 +576,8 @@ public void run() {
             Thread.sleep(100);
           } catch (InterruptedException ie) {
           }
+        } else if (cs.multiNodeScheduling) {
+          scheduleMultiNode(cs);
         } else {
           schedule(cs, null);
         }
@@ -957,7 +1165,9 @@ private synchronized void addNode(RMNode nodeManager) {
         " clusterResource: " + clusterResource);
 
     if (scheduleAsynchronously && numNodeManagers == 1) {
-      asyncSchedulerThread.beginSchedule();
+      for (AsyncScheduleThread asyncSchedulerThread : asyncSchedulerThreads) {
+        asyncSchedulerThread.beginSchedule();
+      }
     }
   }
 
@@ -973,7 +1183,9 @@ private synchronized void removeNode(RMNode nodeInfo,
     --numNodeManagers;
 
     if (scheduleAsynchronously && numNodeManagers == 0) {
-      asyncSchedulerThread.suspendSchedule();
+      for (AsyncScheduleThread asyncSchedulerThread : asyncSchedulerThreads) {
+        asyncSchedulerThread.suspendSchedule();
+      }
     }
     
     // Remove running containers
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair;
+
+import io.hops.ha.common.TransactionState;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.classification.InterfaceAudience.Private;
+import org.apache.hadoop.classification.InterfaceStability.Unstable;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerAppUtils;
+import org.apache.hadoop.yarn.util.resource.Resources;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The order in which the queue hierarchy offers a node to the runnable
+ * applications, and the resources each queue may still be assigned, as of
+ * the time the snapshot was taken. Used by the allocation threads of
+ * concurrent scheduling, which offer nodes to the applications without
+ * holding the scheduler lock.
+ * <p/>
+ * Queue limits are checked against the snapshot, charged with the containers
+ * assigned through it. As with the queue hierarchy, a queue may go over its
+ * maximum resources by the containers being assigned when it reaches it, at
+ * most one per allocation thread.
+ */
+@Private
+@Unstable
+class FSQueueSnapshot {
+  private static final Log LOG = LogFactory.getLog(FSQueueSnapshot.class);
+
+  private final long creationTime;
+  private final List<AppSchedulable> appScheds =
+      new ArrayList<AppSchedulable>();
+  private final Map<AppSchedulable, FSLeafQueue> leafQueues =
+      new HashMap<AppSchedulable, FSLeafQueue>();
+  // maximum resources minus resource usage
+  private final Map<FSQueue, Resource> headroom =
+      new HashMap<FSQueue, Resource>();
+
+  /**
+   * Must be called holding the scheduler lock, so that the queue hierarchy
+   * does not change while it is walked.
+   */
+  FSQueueSnapshot(FSQueue rootQueue, long creationTime) {
+    this.creationTime = creationTime;
+    addQueue(rootQueue);
+  }
+
+  private Resource addQueue(FSQueue queue) {
+    Resource usage;
+    if (queue instanceof FSLeafQueue) {
+      FSLeafQueue leaf = (FSLeafQueue) queue;
+      List<AppSchedulable> apps =
+          new ArrayList<AppSchedulable>(leaf.getRunnableAppSchedulables());
+      sort(apps, queue);
+      for (AppSchedulable sched : apps) {
+        appScheds.add(sched);
+        leafQueues.put(sched, leaf);
+      }
+      usage = leaf.getResourceUsage();
+    } else {
+      List<FSQueue> children = new ArrayList<FSQueue>(queue.getChildQueues());
+      sort(children, queue);
+      usage = Resources.createResource(0);
+      for (FSQueue child : children) {
+        Resources.addTo(usage, addQueue(child));
+      }
+    }
+    headroom.put(queue, Resources.subtract(queue.getMaxShare(), usage));
+    return usage;
+  }
+
+  private static void sort(List<? extends Schedulable> schedulables,
+      FSQueue queue) {
+    try {
+      Collections.sort(schedulables, queue.getPolicy().getComparator());
+    } catch (IllegalArgumentException e) {
+      // The allocation threads change resource usages during the sort;
+      // Collections.sort leaves the list untouched when it fails
+      LOG.debug("Could not sort the children of " + queue.getName() +
+          ", keeping their previous order", e);
+    }
+  }
+
+  long getCreationTime() {
+    return creationTime;
+  }
+
+  /**
+   * Offers the node to the applications in snapshot order, as
+   * {@link FSParentQueue#assignContainer} would, and charges the container
+   * assigned, if any, to the queues of its application. Must be called
+   * holding the lock of the node.
+   *
+   * @return the resource assigned, {@link FairScheduler#CONTAINER_RESERVED}
+   * if a container was reserved, or none
+   */
+  Resource assignContainer(FSSchedulerNode node,
+      TransactionState transactionState) {
+    for (AppSchedulable sched : appScheds) {
+      FSLeafQueue leaf = leafQueues.get(sched);
+      // The application may have finished since the snapshot was taken
+      if (sched.getApp().isStopped() || !hasHeadroom(leaf) ||
+          SchedulerAppUtils.isBlacklisted(sched.getApp(), node, LOG)) {
+        continue;
+      }
+      Resource assigned = sched.assignContainer(node, transactionState);
+      if (!Resources.equals(assigned, Resources.none())) {
+        if (assigned != FairScheduler.CONTAINER_RESERVED) {
+          charge(leaf, assigned);
+        }
+        return assigned;
+      }
+    }
+    return Resources.none();
+  }
+
+  private synchronized boolean hasHeadroom(FSLeafQueue leaf) {
+    for (FSQueue queue = leaf; queue != null; queue = queue.getParent()) {
+      if (!Resources.fitsIn(Resources.none(), headroom.get(queue))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private synchronized void charge(FSLeafQueue leaf, Resource assigned) {
+    for (FSQueue queue = leaf; queue != null; queue = queue.getParent()) {
+      Resources.subtractFrom(headroom.get(queue), assigned);
+    }
+  }
+}
@@ -275,6 +275,11 @@ synchronized public RMContainer allocate(NodeType type, FSSchedulerNode node,
     if (getTotalRequiredResources(priority) <= 0) {
       return null;
     }
+    // With concurrent scheduling, nodes are offered to applications from a
+    // queue snapshot, the attempt may have been stopped since
+    if (isStopped) {
+      return null;
+    }
     
     // Create RMContainer
     RMContainer rmContainer =
@@ -19,6 +19,7 @@
 package org.apache.hadoop.yarn.server.resourcemanager.scheduler.fair;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.hops.ha.common.TransactionState;
 import io.hops.ha.common.TransactionStateImpl;
 import org.apache.commons.logging.Log;
@@ -80,6 +81,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeRemovedSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeUpdateSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.SchedulerEvent;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.SchedulerEventType;
 import org.apache.hadoop.yarn.server.resourcemanager.security.RMContainerTokenSecretManager;
 import org.apache.hadoop.yarn.util.Clock;
 import org.apache.hadoop.yarn.util.SystemClock;
@@ -100,6 +102,8 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A scheduler that schedules resources between a set of queues. The scheduler
@@ -131,7 +135,7 @@ public class FairScheduler extends AbstractYarnScheduler {
   private Resource maximumAllocation;
   private Resource incrAllocation;
   private QueueManager queueMgr;
-  private Clock clock;
+  private volatile Clock clock;
   private boolean usePortForNodeName;
 
   private static final Log LOG = LogFactory.getLog(FairScheduler.class);
@@ -181,6 +185,14 @@ public class FairScheduler extends AbstractYarnScheduler {
       // Continuous Scheduling enabled or not
   protected int continuousSchedulingSleepMs;
       // Sleep time for each pass in continuous scheduling
+  protected boolean concurrentSchedulingEnabled;
+      // Concurrent scheduling enabled or not
+  protected long concurrentSchedulingSnapshotMs;
+      // How long the allocation threads use a queue snapshot
+  private ExecutorService allocationThreads;
+  private final Set<NodeId> nodesWaitingAllocation =
+      Collections.newSetFromMap(new ConcurrentHashMap<NodeId, Boolean>());
+  private volatile FSQueueSnapshot queueSnapshot;
   private Comparator nodeAvailableResourceComparator =
       new NodeAvailableResourceComparator();
       // Node available resource comparator
@@ -607,7 +619,7 @@ public Resource getClusterCapacity() {
     return clusterCapacity;
   }
 
-  public synchronized Clock getClock() {
+  public Clock getClock() {
     return clock;
   }
 
@@ -814,13 +826,37 @@ private synchronized void removeApplicationAttempt(
   /**
    * Clean up a completed container.
    */
-  private synchronized void completedContainer(RMContainer rmContainer,
+  private void completedContainer(RMContainer rmContainer,
       ContainerStatus containerStatus, RMContainerEventType event,
       TransactionState transactionState) {
     if (rmContainer == null) {
       LOG.info("Null container completed...");
       return;
     }
+    if (!concurrentSchedulingEnabled) {
+      synchronized (this) {
+        completedContainerInternal(rmContainer, containerStatus, event,
+            transactionState);
+      }
+      return;
+    }
+    // Lock the node of the container instead of the scheduler. The node is
+    // locked before the application, as the allocation threads do.
+    FSSchedulerNode node = nodes.get(rmContainer.getContainer().getNodeId());
+    if (node == null) {
+      completedContainerInternal(rmContainer, containerStatus, event,
+          transactionState);
+      return;
+    }
+    synchronized (node) {
+      completedContainerInternal(rmContainer, containerStatus, event,
+          transactionState);
+    }
+  }
+
+  private void completedContainerInternal(RMContainer rmContainer,
+      ContainerStatus containerStatus, RMContainerEventType event,
+      TransactionState transactionState) {
 
     Container container = rmContainer.getContainer();
 
@@ -870,6 +906,15 @@ private synchronized void removeNode(RMNode rmNode,
     if (node == null) {
       return;
     }
+    // Hold the node until it is removed, so that allocation threads do not
+    // assign containers to it once its containers are released
+    synchronized (node) {
+      removeNode(rmNode, node, transactionState);
+    }
+  }
+
+  private void removeNode(RMNode rmNode, FSSchedulerNode node,
+      TransactionState transactionState) {
     Resources.subtractFrom(clusterCapacity, rmNode.getTotalCapability());
     updateRootQueueMetrics();
 
@@ -995,17 +1040,66 @@ private void containerLaunchedOnNode(ContainerId containerId,
   /**
    * Process a heartbeat update from a node.
    */
-  private synchronized void nodeUpdate(RMNode nm,
-      TransactionState transactionState) {
+  private void nodeUpdate(RMNode nm, TransactionState transactionState) {
     if (LOG.isDebugEnabled()) {
       LOG.debug("nodeUpdate: " + nm + " cluster capacity: " + clusterCapacity);
     }
     eventLog.log("HEARTBEAT", nm.getHostName());
     FSSchedulerNode node = nodes.get(nm.getNodeID());
 
-    // Update resource if any change
-    SchedulerUtils.updateResourceIfChanged(node, nm, clusterCapacity, LOG);
-    
+    if (!concurrentSchedulingEnabled) {
+      synchronized (this) {
+        // Update resource if any change
+        SchedulerUtils.updateResourceIfChanged(node, nm, clusterCapacity, LOG);
+
+        boolean completedContainers =
+            updateContainers(nm, node, transactionState);
+        if (continuousSchedulingEnabled) {
+          if (completedContainers) {
+            attemptScheduling(node, transactionState);
+          }
+        } else {
+          attemptScheduling(node, transactionState);
+        }
+      }
+      return;
+    }
+
+    // Changing the resource of the node changes the cluster capacity, which
+    // needs the scheduler lock. Check for a change first to avoid taking it
+    // on every heartbeat.
+    boolean resourceChanged;
+    synchronized (node) {
+      resourceChanged = !Resources
+          .subtract(nm.getTotalCapability(), node.getUsedResource())
+          .equals(node.getAvailableResource());
+    }
+    if (resourceChanged) {
+      synchronized (this) {
+        synchronized (node) {
+          SchedulerUtils
+              .updateResourceIfChanged(node, nm, clusterCapacity, LOG);
+        }
+      }
+    }
+
+    boolean completedContainers;
+    synchronized (node) {
+      completedContainers = updateContainers(nm, node, transactionState);
+    }
+    if (!continuousSchedulingEnabled || completedContainers) {
+      scheduleAllocation(node, transactionState);
+    }
+  }
+
+  /**
+   * Process the containers launched and completed on a node since its last
+   * heartbeat.
+   *
+   * @return whether any container completed
+   */
+  private boolean updateContainers(RMNode nm, FSSchedulerNode node,
+      TransactionState transactionState) {
     List<UpdatedContainerInfo> containerInfoList =
         nm.pullContainerUpdates(transactionState);
     List<ContainerStatus> newlyLaunchedContainers =
@@ -1030,14 +1124,71 @@ private synchronized void nodeUpdate(RMNode nm,
       completedContainer(getRMContainer(containerId), completedContainer,
           RMContainerEventType.FINISHED, transactionState);
     }
+    return !completedContainers.isEmpty();
+  }
 
-    if (continuousSchedulingEnabled) {
-      if (!completedContainers.isEmpty()) {
-        attemptScheduling(node, transactionState);
+  /**
+   * Hand a node to the allocation threads of concurrent scheduling, unless it
+   * is already waiting for one. The transaction state is kept open until the
+   * allocation attempt is done.
+   */
+  private void scheduleAllocation(final FSSchedulerNode node,
+      final TransactionState transactionState) {
+    if (!nodesWaitingAllocation.add(node.getNodeID())) {
+      return;
+    }
+    if (transactionState != null) {
+      transactionState.incCounter(SchedulerEventType.NODE_UPDATE);
+    }
+    allocationThreads.execute(new Runnable() {
+      @Override
+      public void run() {
+        nodesWaitingAllocation.remove(node.getNodeID());
+        try {
+          // Taking a snapshot needs the scheduler lock, which must not be
+          // requested while holding the node
+          FSQueueSnapshot snapshot = getQueueSnapshot();
+          synchronized (node) {
+            // The node may have been removed while waiting
+            if (nodes.get(node.getNodeID()) == node) {
+              attemptScheduling(node, snapshot, transactionState);
+            }
+          }
+        } catch (Throwable ex) {
+          LOG.warn("Error while attempting scheduling for node " + node +
+              ": " + ex.toString(), ex);
+        } finally {
+          if (transactionState != null) {
+            try {
+              transactionState.decCounter(SchedulerEventType.NODE_UPDATE);
+            } catch (IOException ex) {
+              LOG.error(ex, ex);
+            }
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the queue snapshot used by the allocation threads, taking a new
+   * one if it is older than the snapshot interval.
+   */
+  private FSQueueSnapshot getQueueSnapshot() {
+    long now = clock.getTime();
+    FSQueueSnapshot snapshot = queueSnapshot;
+    if (snapshot == null ||
+        now - snapshot.getCreationTime() >= concurrentSchedulingSnapshotMs) {
+      synchronized (this) {
+        snapshot = queueSnapshot;
+        if (snapshot == null ||
+            now - snapshot.getCreationTime() >= concurrentSchedulingSnapshotMs) {
+          snapshot = new FSQueueSnapshot(queueMgr.getRootQueue(), now);
+          queueSnapshot = snapshot;
+        }
       }
-    } else {
-      attemptScheduling(node, transactionState);
     }
+    return snapshot;
   }
 
   private void continuousScheduling(TransactionState transactionState) {
@@ -1048,7 +1199,13 @@ private void continuousScheduling(TransactionState transactionState) {
       // requires holding the scheduler lock, so that the space available on a
       // node doesn't change during the sort.
       synchronized (this) {
-        Collections.sort(nodeIdList, nodeAvailableResourceComparator);
+        try {
+          Collections.sort(nodeIdList, nodeAvailableResourceComparator);
+        } catch (IllegalArgumentException e) {
+          // With concurrent scheduling the allocation threads change the
+          // available resources during the sort, offer the nodes unsorted
+          LOG.debug("Could not sort the nodes by available resource", e);
+        }
       }
 
       // iterate all nodes
@@ -1058,7 +1215,11 @@ private void continuousScheduling(TransactionState transactionState) {
           try {
             if (Resources
                 .fitsIn(minimumAllocation, node.getAvailableResource())) {
-              attemptScheduling(node, transactionState);
+              if (concurrentSchedulingEnabled) {
+                scheduleAllocation(node, transactionState);
+              } else {
+                attemptScheduling(node, transactionState);
+              }
             }
           } catch (Throwable ex) {
             LOG.warn("Error while attempting scheduling for node " + node +
@@ -1091,6 +1252,17 @@ public int compare(NodeId n1, NodeId n2) {
   
   private synchronized void attemptScheduling(FSSchedulerNode node,
       TransactionState transactionState) {
+    attemptScheduling(node, null, transactionState);
+  }
+
+  /**
+   * Assign containers on a node. Without a snapshot the node is offered to
+   * the queue hierarchy, holding the scheduler lock. With a snapshot it is
+   * offered to the applications in the snapshot order, holding the lock of
+   * the node.
+   */
+  private void attemptScheduling(FSSchedulerNode node,
+      FSQueueSnapshot snapshot, TransactionState transactionState) {
     // Assign new containers...
     // 1. Check for reserved applications
     // 2. Schedule if there are no reservations
@@ -1122,9 +1294,11 @@ private synchronized void attemptScheduling(FSSchedulerNode node,
       int assignedContainers = 0;
       while (node.getReservedContainer() == null) {
         boolean assignedContainer = false;
+        Resource assigned = (snapshot == null) ?
+            queueMgr.getRootQueue().assignContainer(node, transactionState) :
+            snapshot.assignContainer(node, transactionState);
         if (Resources.greaterThan(RESOURCE_CALCULATOR, clusterCapacity,
-            queueMgr.getRootQueue().assignContainer(node, transactionState),
-            Resources.none())) {
+            assigned, Resources.none())) {
           assignedContainers++;
           assignedContainer = true;
         }
@@ -1310,6 +1484,9 @@ public synchronized void reinitialize(Configuration conf, RMContext rmContext)
       incrAllocation = this.conf.getIncrementAllocation();
       continuousSchedulingEnabled = this.conf.isContinuousSchedulingEnabled();
       continuousSchedulingSleepMs = this.conf.getContinuousSchedulingSleepMs();
+      concurrentSchedulingEnabled = this.conf.isConcurrentSchedulingEnabled();
+      concurrentSchedulingSnapshotMs =
+          this.conf.getConcurrentSchedulingSnapshotMs();
       nodeLocalityThreshold = this.conf.getLocalityThresholdNode();
       rackLocalityThreshold = this.conf.getLocalityThresholdRack();
       nodeLocalityDelayMs = this.conf.getLocalityDelayNodeMs();
@@ -1356,6 +1533,14 @@ public void run() {
         schedulingThread.setDaemon(true);
         schedulingThread.start();
       }
+
+      if (concurrentSchedulingEnabled) {
+        allocationThreads = Executors
+            .newFixedThreadPool(this.conf.getConcurrentSchedulingThreads(),
+                new ThreadFactoryBuilder()
+                    .setNameFormat("FairSchedulerAllocator #%d")
+                    .setDaemon(true).build());
+      }
       
       allocsLoader.init(conf);
       allocsLoader.setReloadListener(new AllocationReloadListener());
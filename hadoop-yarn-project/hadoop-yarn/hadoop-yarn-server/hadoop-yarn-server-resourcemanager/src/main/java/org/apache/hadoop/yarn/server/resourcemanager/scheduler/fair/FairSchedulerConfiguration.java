@@ -125,6 +125,29 @@ public class FairSchedulerConfiguration extends Configuration {
       CONF_PREFIX + "continuous-scheduling-sleep-ms";
   protected static final int DEFAULT_CONTINUOUS_SCHEDULING_SLEEP_MS = 5;
 
+  /**
+   * Process node heartbeats under per-node locks and allocate containers on
+   * a pool of threads, instead of under the scheduler lock.
+   */
+  protected static final String CONCURRENT_SCHEDULING_ENABLED =
+      CONF_PREFIX + "concurrent-scheduling-enabled";
+  protected static final boolean DEFAULT_CONCURRENT_SCHEDULING_ENABLED = false;
+
+  /**
+   * Number of allocation threads in concurrent scheduling.
+   */
+  protected static final String CONCURRENT_SCHEDULING_THREADS =
+      CONF_PREFIX + "concurrent-scheduling-threads";
+  protected static final int DEFAULT_CONCURRENT_SCHEDULING_THREADS = 4;
+
+  /**
+   * How long the allocation threads use a snapshot of the queue order before
+   * taking a new one (10ms in default)
+   */
+  protected static final String CONCURRENT_SCHEDULING_SNAPSHOT_MS =
+      CONF_PREFIX + "concurrent-scheduling-snapshot-ms";
+  protected static final int DEFAULT_CONCURRENT_SCHEDULING_SNAPSHOT_MS = 10;
+
   /**
    * Whether preemption is enabled.
    */
@@ -208,6 +231,21 @@ public int getContinuousSchedulingSleepMs() {
         DEFAULT_CONTINUOUS_SCHEDULING_SLEEP_MS);
   }
 
+  public boolean isConcurrentSchedulingEnabled() {
+    return getBoolean(CONCURRENT_SCHEDULING_ENABLED,
+        DEFAULT_CONCURRENT_SCHEDULING_ENABLED);
+  }
+
+  public int getConcurrentSchedulingThreads() {
+    return getInt(CONCURRENT_SCHEDULING_THREADS,
+        DEFAULT_CONCURRENT_SCHEDULING_THREADS);
+  }
+
+  public int getConcurrentSchedulingSnapshotMs() {
+    return getInt(CONCURRENT_SCHEDULING_SNAPSHOT_MS,
+        DEFAULT_CONCURRENT_SCHEDULING_SNAPSHOT_MS);
+  }
+
   public long getLocalityDelayNodeMs() {
     return getLong(LOCALITY_DELAY_NODE_MS, DEFAULT_LOCALITY_DELAY_NODE_MS);
   }
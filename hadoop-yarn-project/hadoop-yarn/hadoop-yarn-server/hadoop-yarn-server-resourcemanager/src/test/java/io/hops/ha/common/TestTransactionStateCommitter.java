@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.ha.common;
+
+import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
+import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.Container;
+import org.apache.hadoop.yarn.api.records.ContainerId;
+import org.apache.hadoop.yarn.api.records.Resource;
+import org.apache.hadoop.yarn.server.resourcemanager.rmcontainer.RMContainerImpl;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestTransactionStateCommitter {
+
+  private static final ApplicationAttemptId ATTEMPT_ID = ApplicationAttemptId
+      .newInstance(ApplicationId.newInstance(0, 1), 1);
+
+  private static RMContainerImpl newRMContainer(int id) {
+    Container container = mock(Container.class);
+    when(container.getId()).thenReturn(ContainerId.newInstance(ATTEMPT_ID, id));
+    RMContainerImpl rmContainer = mock(RMContainerImpl.class);
+    when(rmContainer.getContainer()).thenReturn(container);
+    return rmContainer;
+  }
+
+  private static TransactionStateImpl newTransactionState() {
+    return new TransactionStateImpl(-1, TransactionState.TransactionType.RM);
+  }
+
+  @Test
+  public void testDropOverwrittenUpdates() {
+    RMContainerImpl container1 = newRMContainer(1);
+    RMContainerImpl container2 = newRMContainer(2);
+    Resource first = Resource.newInstance(1024, 1);
+    Resource second = Resource.newInstance(2048, 2);
+
+    TransactionStateImpl ts1 = newTransactionState();
+    ts1.addRMContainerToUpdate(container1);
+    ts1.addRMContainerToUpdate(container2);
+    ts1.updateClusterResource(first);
+    ts1.updateUsedResource(first);
+    TransactionStateImpl ts2 = newTransactionState();
+    ts2.addRMContainerToUpdate(container2);
+    ts2.updateClusterResource(second);
+    List<TransactionStateImpl> tss = new ArrayList<TransactionStateImpl>();
+    tss.add(ts1);
+    tss.add(ts2);
+
+    TransactionStateCommitter.dropOverwrittenUpdates(tss);
+
+    // Only the rows the later state writes again are dropped from the earlier
+    assertEquals(1, ts1.getRMContainersToUpdate().size());
+    assertTrue(ts1.getRMContainersToUpdate().contains(
+        container1.getContainer().getId().toString()));
+    assertNull(ts1.getClusterResourceToUpdate());
+    assertEquals(first, ts1.getUsedResourceToUpdate());
+    assertEquals(1, ts2.getRMContainersToUpdate().size());
+    assertEquals(second, ts2.getClusterResourceToUpdate());
+
+    // The one by one fallback commits every update again
+    ts1.restoreOverwrittenUpdates();
+    ts2.restoreOverwrittenUpdates();
+    assertEquals(2, ts1.getRMContainersToUpdate().size());
+    assertEquals(first, ts1.getClusterResourceToUpdate());
+    assertEquals(first, ts1.getUsedResourceToUpdate());
+    assertEquals(1, ts2.getRMContainersToUpdate().size());
+    assertEquals(second, ts2.getClusterResourceToUpdate());
+
+    // Restoring is idempotent, and a new batch drops the same updates
+    ts1.restoreOverwrittenUpdates();
+    assertEquals(2, ts1.getRMContainersToUpdate().size());
+    TransactionStateCommitter.dropOverwrittenUpdates(tss);
+    assertEquals(1, ts1.getRMContainersToUpdate().size());
+    assertNull(ts1.getClusterResourceToUpdate());
+  }
+}
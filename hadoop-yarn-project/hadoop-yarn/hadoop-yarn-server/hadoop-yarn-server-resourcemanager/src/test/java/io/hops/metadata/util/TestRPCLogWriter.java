@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hops.metadata.util;
+
+import io.hops.metadata.yarn.entity.appmasterrpc.RPC;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestRPCLogWriter {
+
+  private final ExecutorService handlers = Executors.newCachedThreadPool();
+
+  /**
+   * Records the batches it is given. The first batch is held until
+   * {@link #release} is called, so that the RPCs appended meanwhile queue up.
+   */
+  private static class HoldingStore implements RPCLogWriter.RPCStore {
+
+    private final List<Integer> batchSizes =
+        Collections.synchronizedList(new ArrayList<Integer>());
+    private final CountDownLatch holding = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile IOException failure = null;
+
+    @Override
+    public void persist(List<RPC> rpcs) throws IOException {
+      holding.countDown();
+      // stop() interrupts the flushers, keep holding the batch
+      boolean interrupted = false;
+      while (true) {
+        try {
+          released.await();
+          break;
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      batchSizes.add(rpcs.size());
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+    void release() {
+      released.countDown();
+    }
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    RPCLogWriter.stop();
+    handlers.shutdownNow();
+  }
+
+  private Future<Void> append(final int rpcId) {
+    return handlers.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        RPCLogWriter.append(new RPC(rpcId));
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Appends an RPC that the store holds, then the given number of RPCs that
+   * queue up behind it.
+   */
+  private List<Future<Void>> appendBehindHeldBatch(HoldingStore store,
+      int queued) throws Exception {
+    List<Future<Void>> appends = new ArrayList<Future<Void>>();
+    appends.add(append(0));
+    assertTrue(store.holding.await(10, TimeUnit.SECONDS));
+    for (int i = 1; i <= queued; i++) {
+      appends.add(append(i));
+    }
+    // Give the handlers the time to queue their RPCs
+    Thread.sleep(500);
+    for (Future<Void> pending : appends) {
+      assertTrue(!pending.isDone());
+    }
+    return appends;
+  }
+
+  @Test(timeout = 30000)
+  public void testBatching() throws Exception {
+    HoldingStore store = new HoldingStore();
+    RPCLogWriter.start(100, 1, store);
+    List<Future<Void>> appends = appendBehindHeldBatch(store, 10);
+
+    store.release();
+    for (Future<Void> pending : appends) {
+      pending.get(10, TimeUnit.SECONDS);
+    }
+    // The RPCs appended while the first batch was written share one batch
+    assertEquals(2, store.batchSizes.size());
+    assertEquals(1, (int) store.batchSizes.get(0));
+    assertEquals(10, (int) store.batchSizes.get(1));
+  }
+
+  @Test(timeout = 30000)
+  public void testFailureFanOut() throws Exception {
+    HoldingStore store = new HoldingStore();
+    store.failure = new IOException("injected");
+    RPCLogWriter.start(100, 1, store);
+    List<Future<Void>> appends = appendBehindHeldBatch(store, 5);
+
+    store.release();
+    // Every RPC of a failed batch fails with the error of its batch
+    for (Future<Void> pending : appends) {
+      try {
+        pending.get(10, TimeUnit.SECONDS);
+        fail("The append of an rpc of a failed batch should fail");
+      } catch (ExecutionException ex) {
+        assertSame(store.failure, ex.getCause());
+      }
+    }
+    assertEquals(2, store.batchSizes.size());
+  }
+
+  @Test(timeout = 30000)
+  public void testStopWritesQueuedRPCs() throws Exception {
+    HoldingStore store = new HoldingStore();
+    RPCLogWriter.start(100, 2, store);
+    List<Future<Void>> appends = appendBehindHeldBatch(store, 5);
+
+    Future<?> stopping = handlers.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws InterruptedException {
+        RPCLogWriter.stop();
+        return null;
+      }
+    });
+    store.release();
+    stopping.get(10, TimeUnit.SECONDS);
+    // No RPC appended before the writer stopped is left waiting
+    for (Future<Void> pending : appends) {
+      pending.get(10, TimeUnit.SECONDS);
+    }
+    int written = 0;
+    for (int size : store.batchSizes) {
+      written += size;
+    }
+    assertEquals(appends.size(), written);
+  }
+}
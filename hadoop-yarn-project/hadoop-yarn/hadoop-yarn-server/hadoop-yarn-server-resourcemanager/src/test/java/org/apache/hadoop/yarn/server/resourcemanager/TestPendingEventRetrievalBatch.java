@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015 hops.io.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.resourcemanager;
+
+import io.hops.ha.common.PendingEventHandoff;
+import io.hops.ha.common.TransactionState;
+import io.hops.ha.common.TransactionStateImpl;
+import io.hops.metadata.util.RMStorageFactory;
+import io.hops.metadata.util.RMUtilities;
+import io.hops.metadata.util.YarnAPIStorageFactory;
+import io.hops.metadata.yarn.TablesDef;
+import io.hops.metadata.yarn.entity.PendingEvent;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.conf.YarnConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the in-process hand-off of PendingEvents to the
+ * PendingEventRetrievalBatch of the same ResourceManager.
+ */
+public class TestPendingEventRetrievalBatch {
+
+  private static final String NODE = "host1:1234";
+  private static final String OTHER_NODE = "host2:1234";
+
+  private Configuration conf;
+  private final List<RecordingSubscriber> subscribers =
+      new ArrayList<RecordingSubscriber>();
+
+  private static class RecordingSubscriber
+      implements PendingEventHandoff.Subscriber {
+    final List<PendingEvent> delivered = new ArrayList<PendingEvent>();
+
+    @Override
+    public synchronized void deliver(List<PendingEvent> pendingEvents) {
+      delivered.addAll(pendingEvents);
+    }
+  }
+
+  @Before
+  public void setup() throws Exception {
+    conf = new YarnConfiguration();
+    conf.setBoolean(YarnConfiguration.HOPS_PENDING_EVENTS_LOCAL_HANDOFF, true);
+    YarnAPIStorageFactory.setConfiguration(conf);
+    RMStorageFactory.setConfiguration(conf);
+    RMUtilities.InitializeDB();
+  }
+
+  @After
+  public void tearDown() {
+    for (RecordingSubscriber subscriber : subscribers) {
+      PendingEventHandoff.unsubscribe(subscriber);
+    }
+  }
+
+  private RecordingSubscriber subscribe() {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    subscribers.add(subscriber);
+    PendingEventHandoff.subscribe(subscriber);
+    return subscriber;
+  }
+
+  /**
+   * Adds a node event to a TransactionState and commits it.
+   */
+  private static void commitNodeEvent(String node, byte type) {
+    TransactionStateImpl ts =
+        new TransactionStateImpl(-1, TransactionState.TransactionType.RM);
+    ts.addPendingEventToAdd(node, type, TablesDef.PendingEventTableDef.NEW);
+    RMUtilities.finishRPC(ts, -1);
+  }
+
+  private static int count(Map<String, ConcurrentSkipListSet<PendingEvent>> events,
+      String node) {
+    return events.containsKey(node) ? events.get(node).size() : 0;
+  }
+
+  @Test
+  public void testHandedOffAsPendingOnlyAfterCommit() throws Exception {
+    RecordingSubscriber subscriber = subscribe();
+    TransactionStateImpl ts =
+        new TransactionStateImpl(-1, TransactionState.TransactionType.RM);
+    ts.addPendingEventToAdd(NODE, TablesDef.PendingEventTableDef.NODE_ADDED,
+        TablesDef.PendingEventTableDef.NEW);
+    assertTrue(subscriber.delivered.isEmpty());
+    assertEquals(0, count(RMUtilities
+        .getPendingEvents(0, TablesDef.PendingEventTableDef.PENDING), NODE));
+
+    RMUtilities.finishRPC(ts, -1);
+    assertEquals(1, subscriber.delivered.size());
+    assertEquals(NODE, subscriber.delivered.get(0).getRmnodeId());
+    // the event is persisted pending, not new
+    assertEquals(1, count(RMUtilities
+        .getPendingEvents(0, TablesDef.PendingEventTableDef.PENDING), NODE));
+    assertEquals(0, count(RMUtilities
+        .getPendingEvents(0, TablesDef.PendingEventTableDef.NEW), NODE));
+  }
+
+  @Test
+  public void testPeriodicScanDoesNotRedeliver() throws Exception {
+    commitNodeEvent(OTHER_NODE, TablesDef.PendingEventTableDef.NODE_ADDED);
+    RecordingSubscriber subscriber = subscribe();
+    commitNodeEvent(NODE, TablesDef.PendingEventTableDef.NODE_ADDED);
+    assertEquals(1, subscriber.delivered.size());
+
+    // only the event committed without a subscriber is new
+    Map<String, ConcurrentSkipListSet<PendingEvent>> scanned = RMUtilities
+        .getAndUpdatePendingEvents(0, TablesDef.PendingEventTableDef.NEW);
+    assertEquals(0, count(scanned, NODE));
+    assertEquals(1, count(scanned, OTHER_NODE));
+  }
+
+  @Test
+  public void testRestartRecoversHandedOffEvents() throws Exception {
+    // a ResourceManager hands off events and dies before processing them
+    RecordingSubscriber crashed = subscribe();
+    commitNodeEvent(NODE, TablesDef.PendingEventTableDef.NODE_ADDED);
+    commitNodeEvent(NODE, TablesDef.PendingEventTableDef.NODE_UPDATED);
+    assertEquals(2, crashed.delivered.size());
+    PendingEventHandoff.unsubscribe(crashed);
+
+    PendingEventRetrievalBatch retrieval =
+        new PendingEventRetrievalBatch(null, conf);
+    retrieval.retrievePendingEvents();
+    try {
+      assertEquals(2, retrieval.getPendingEvents(NODE).size());
+
+      // once subscribed, newly committed events go to the retrieval
+      // in-process and the next scan does not return them
+      commitNodeEvent(NODE, TablesDef.PendingEventTableDef.NODE_UPDATED);
+      retrieval.retrievePendingEvents();
+      assertEquals(2, retrieval.getPendingEvents(NODE).size());
+    } finally {
+      PendingEventHandoff.unsubscribe(retrieval);
+    }
+  }
+
+  @Test
+  public void testWorkerRemovesOnlyTriggeredEvents() throws Exception {
+    PendingEventRetrievalBatch retrieval =
+        new PendingEventRetrievalBatch(null, conf);
+    PendingEvent added = new PendingEvent(NODE,
+        TablesDef.PendingEventTableDef.NODE_ADDED,
+        TablesDef.PendingEventTableDef.PENDING, 1);
+    PendingEvent updated = new PendingEvent(NODE,
+        TablesDef.PendingEventTableDef.NODE_UPDATED,
+        TablesDef.PendingEventTableDef.PENDING, 2);
+    PendingEvent late = new PendingEvent(NODE,
+        TablesDef.PendingEventTableDef.NODE_UPDATED,
+        TablesDef.PendingEventTableDef.PENDING, 3);
+    retrieval.addPendingEvents(Arrays.asList(added, updated));
+
+    List<PendingEvent> triggered = retrieval.getEventsToTrigger(NODE);
+    assertEquals(2, triggered.size());
+    // an event arrives while the worker triggers the first two
+    retrieval.addPendingEvents(Arrays.asList(late));
+    assertFalse(retrieval.removeTriggeredEvents(NODE, triggered));
+    assertEquals(1, retrieval.getPendingEvents(NODE).size());
+    assertEquals(3, retrieval.getPendingEvents(NODE).first().getId());
+
+    // the worker takes it in its next round and is done
+    triggered = retrieval.getEventsToTrigger(NODE);
+    assertEquals(1, triggered.size());
+    assertTrue(retrieval.removeTriggeredEvents(NODE, triggered));
+    assertNull(retrieval.getPendingEvents(NODE));
+  }
+}
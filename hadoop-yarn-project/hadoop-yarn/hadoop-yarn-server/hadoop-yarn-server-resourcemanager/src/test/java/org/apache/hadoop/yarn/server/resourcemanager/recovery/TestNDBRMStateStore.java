@@ -28,6 +28,8 @@
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.security.token.delegation.DelegationKey;
 import org.apache.hadoop.yarn.api.records.ApplicationAccessType;
 import org.apache.hadoop.yarn.api.records.ApplicationAttemptId;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
@@ -46,6 +48,10 @@
 import org.apache.hadoop.yarn.api.records.URL;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.apache.hadoop.yarn.proto.YarnServerResourceManagerServiceProtos.RMStateVersionProto;
+import org.apache.hadoop.yarn.security.client.RMDelegationTokenIdentifier;
+import org.apache.hadoop.yarn.server.resourcemanager.recovery.RMStateStore.ApplicationAttemptState;
+import org.apache.hadoop.yarn.server.resourcemanager.recovery.RMStateStore.RMDTSecretManagerState;
+import org.apache.hadoop.yarn.server.resourcemanager.recovery.RMStateStore.RMState;
 import org.apache.hadoop.yarn.server.resourcemanager.recovery.records.RMStateVersion;
 import org.apache.hadoop.yarn.server.resourcemanager.recovery.records.impl.pb.ApplicationAttemptStateDataPBImpl;
 import org.apache.hadoop.yarn.server.resourcemanager.recovery.records.impl.pb.ApplicationStateDataPBImpl;
@@ -58,10 +64,10 @@
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
 /**
  * Test class for the NDBRMStateStore class.
  */
@@ -242,6 +248,195 @@ public void testAppStateAndSecurityStoreRetrieve()
         appAttemptArray.length);
   }
 
+  private NDBRMStateStore startStore(NDBRMStateStore store, int loadThreads) {
+    Configuration storeConf = new YarnConfiguration(conf);
+    storeConf.setInt(YarnConfiguration.HOPS_RECOVERY_LOAD_THREADS, loadThreads);
+    store.init(storeConf);
+    store.start();
+    return store;
+  }
+
+  /**
+   * Stores three applications with two attempts each, a delegation token and
+   * a delegation key.
+   */
+  private void storeState(NDBRMStateStore store) throws Exception {
+    TestDispatcher dispatcher = new TestDispatcher();
+    store.setRMDispatcher(dispatcher);
+    long time = System.currentTimeMillis();
+    for (int app = 1; app <= 3; app++) {
+      ApplicationId appId = ApplicationId.newInstance(time, app);
+      storeApp(store, appId, time, time + 1234);
+      for (int attempt = 1; attempt <= 2; attempt++) {
+        ApplicationAttemptId attemptId =
+            ApplicationAttemptId.newInstance(appId, attempt);
+        storeAttempt(store, attemptId,
+            ContainerId.newInstance(attemptId, 1).toString(), null, null,
+            dispatcher);
+      }
+    }
+    store.storeRMDelegationTokenAndSequenceNumber(
+        new RMDelegationTokenIdentifier(new Text("owner"), new Text("renewer"),
+            new Text("realuser")), time, 1111, null);
+    store.storeRMDTMasterKey(
+        new DelegationKey(1234, 4321, "keyBytes".getBytes()), null);
+  }
+
+  private static void assertSameKeys(String field, Map<?, ?> expected,
+      Map<?, ?> actual) {
+    Assert.assertEquals(field, expected == null ? null : expected.keySet(),
+        actual == null ? null : actual.keySet());
+  }
+
+  private static void assertSameSize(String field, Collection<?> expected,
+      Collection<?> actual) {
+    Assert.assertEquals(field, expected == null ? -1 : expected.size(),
+        actual == null ? -1 : actual.size());
+  }
+
+  private static void assertSameState(RMState expected, RMState actual) {
+    assertSameKeys("appState", expected.appState, actual.appState);
+    for (RMStateStore.ApplicationState app : expected.appState.values()) {
+      RMStateStore.ApplicationState loaded =
+          actual.appState.get(app.getAppId());
+      Assert.assertEquals(app.getSubmitTime(), loaded.getSubmitTime());
+      Assert.assertEquals(app.getStartTime(), loaded.getStartTime());
+      Assert.assertEquals(app.getUser(), loaded.getUser());
+      Assert.assertEquals(app.getState(), loaded.getState());
+      assertSameKeys("attempts", app.attempts, loaded.attempts);
+      for (ApplicationAttemptState attempt : app.attempts.values()) {
+        Assert.assertEquals(attempt.getMasterContainer(),
+            loaded.getAttempt(attempt.getAttemptId()).getMasterContainer());
+      }
+    }
+    RMDTSecretManagerState secretManagerState =
+        expected.getRMDTSecretManagerState();
+    RMDTSecretManagerState loadedSecretManagerState =
+        actual.getRMDTSecretManagerState();
+    Assert.assertEquals(secretManagerState.getTokenState(),
+        loadedSecretManagerState.getTokenState());
+    Assert.assertEquals(secretManagerState.getMasterKeyState(),
+        loadedSecretManagerState.getMasterKeyState());
+    Assert.assertEquals(secretManagerState.getDTSequenceNumber(),
+        loadedSecretManagerState.getDTSequenceNumber());
+    Assert.assertEquals(expected.nodeState, actual.nodeState);
+    Assert.assertEquals(expected.secretMamagerKeys, actual.secretMamagerKeys);
+
+    assertSameKeys("allocateResponses", expected.allocateResponses,
+        actual.allocateResponses);
+    assertSameSize("appMasterRPCs", expected.appMasterRPCs,
+        actual.appMasterRPCs);
+    assertSameKeys("appSchedulingInfos", expected.appSchedulingInfos,
+        actual.appSchedulingInfos);
+    assertSameKeys("schedulerApplications", expected.schedulerApplications,
+        actual.schedulerApplications);
+    assertSameSize("fiCaSchedulerNodes", expected.fiCaSchedulerNodes,
+        actual.fiCaSchedulerNodes);
+    assertSameKeys("launchedContainers", expected.launchedContainers,
+        actual.launchedContainers);
+    assertSameKeys("newlyAllocatedContainers",
+        expected.newlyAllocatedContainers, actual.newlyAllocatedContainers);
+    assertSameKeys("liveContainers", expected.liveContainers,
+        actual.liveContainers);
+    assertSameKeys("resourceRequests", expected.resourceRequests,
+        actual.resourceRequests);
+    assertSameKeys("blackLists", expected.blackLists, actual.blackLists);
+    assertSameSize("allQueueMetrics", expected.allQueueMetrics,
+        actual.allQueueMetrics);
+    assertSameKeys("nodeHeartBeatResponses", expected.nodeHeartBeatResponses,
+        actual.nodeHeartBeatResponses);
+    assertSameKeys("containersToClean", expected.containersToClean,
+        actual.containersToClean);
+    assertSameKeys("finishedApplications", expected.finishedApplications,
+        actual.finishedApplications);
+    assertSameKeys("nodesResources", expected.nodesResources,
+        actual.nodesResources);
+    assertSameKeys("allContainers", expected.allContainers,
+        actual.allContainers);
+    assertSameKeys("allRMContainers", expected.allRMContainers,
+        actual.allRMContainers);
+    assertSameSize("allRMContextActiveNodes", expected.allRMContextActiveNodes,
+        actual.allRMContextActiveNodes);
+    assertSameKeys("allRMNodes", expected.allRMNodes, actual.allRMNodes);
+    assertSameKeys("allNodes", expected.allNodes, actual.allNodes);
+    assertSameSize("rmContextInactiveNodes", expected.rmContextInactiveNodes,
+        actual.rmContextInactiveNodes);
+    assertSameKeys("allUpdatedContainerInfos",
+        expected.allUpdatedContainerInfos, actual.allUpdatedContainerInfos);
+    assertSameKeys("allContainerStatus", expected.allContainerStatus,
+        actual.allContainerStatus);
+    assertSameKeys("allJustLaunchedContainers",
+        expected.allJustLaunchedContainers, actual.allJustLaunchedContainers);
+    assertSameKeys("allRMNodeNextHeartbeats", expected.allRMNodeNextHeartbeats,
+        actual.allRMNodeNextHeartbeats);
+  }
+
+  @Test(timeout = 60000)
+  public void testConcurrentLoadMatchesSingleThreadLoad() throws Exception {
+    NDBRMStateStore store = startStore(new NDBRMStateStore(), 1);
+    NDBRMStateStore concurrentStore = startStore(new NDBRMStateStore(), 8);
+    try {
+      storeState(store);
+      RMState singleThreadState = store.loadState();
+      Assert.assertTrue(singleThreadState.getApplicationState().size() >= 3);
+      // the loaders finish in a different order every time
+      for (int i = 0; i < 3; i++) {
+        assertSameState(singleThreadState, concurrentStore.loadState());
+      }
+    } finally {
+      store.close();
+      concurrentStore.close();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testFailedLoaderFailsTheLoad() throws Exception {
+    final IOException failure = new IOException("injected failure");
+    for (int loadThreads : new int[]{1, 8}) {
+      NDBRMStateStore store = startStore(new NDBRMStateStore() {
+        @Override
+        void beforeLoad(String table) throws Exception {
+          if (table.equals("AllRMNodes")) {
+            throw failure;
+          }
+        }
+      }, loadThreads);
+      try {
+        store.loadState();
+        Assert.fail("the load of AllRMNodes failed with " + loadThreads +
+            " threads");
+      } catch (IOException e) {
+        Assert.assertSame(failure, e);
+      } finally {
+        store.close();
+      }
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testLoadTimesReported() throws Exception {
+    NDBRMStateStore store = startStore(new NDBRMStateStore() {
+      @Override
+      void beforeLoad(String table) throws Exception {
+        if (table.equals("RMAppState")) {
+          Thread.sleep(100);
+        }
+      }
+    }, 8);
+    try {
+      store.loadState();
+    } finally {
+      store.close();
+    }
+    NDBRMStateStoreLoadMetrics metrics =
+        NDBRMStateStoreLoadMetrics.getMetrics();
+    Assert.assertTrue(metrics.getLoadTime("RMAppState") >= 100);
+    Assert.assertTrue(metrics.getTotalLoadTime() >= 100);
+    for (String table : new String[]{"ApplicationAttemptStates",
+        "RMDTSecretManagerState", "AllRMNodes", "AllJustLaunchedContainers"}) {
+      Assert.assertTrue(table, metrics.getLoadTime(table) >= 0);
+    }
+  }
 
   /**
    * Find applicationState by its applicationId string representation.
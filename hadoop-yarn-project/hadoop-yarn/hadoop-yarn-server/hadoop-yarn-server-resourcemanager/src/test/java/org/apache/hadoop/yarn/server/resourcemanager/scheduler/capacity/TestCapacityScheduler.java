@@ -16,6 +16,8 @@
  */
 package org.apache.hadoop.yarn.server.resourcemanager.scheduler.capacity;
 
+import io.hops.ha.common.TransactionState;
+import io.hops.ha.common.TransactionStateImpl;
 import io.hops.metadata.util.RMStorageFactory;
 import io.hops.metadata.util.RMUtilities;
 import io.hops.metadata.util.YarnAPIStorageFactory;
@@ -49,6 +51,7 @@
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.SchedulerApplication;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.TestSchedulerUtils;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.common.fica.FiCaSchedulerApp;
+import org.apache.hadoop.yarn.server.resourcemanager.scheduler.common.fica.FiCaSchedulerNode;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.AppAddedSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.AppAttemptAddedSchedulerEvent;
 import org.apache.hadoop.yarn.server.resourcemanager.scheduler.event.NodeAddedSchedulerEvent;
@@ -64,6 +67,7 @@
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -679,4 +683,58 @@ public void testAsyncScheduling() throws Exception {
     }
   }
 
+  @Test
+  public void testMultiNodeCandidates() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setClass(YarnConfiguration.RM_SCHEDULER, CapacityScheduler.class,
+        ResourceScheduler.class);
+    MockRM rm = new MockRM(conf);
+    rm.start();
+    CapacityScheduler cs = (CapacityScheduler) rm.getResourceScheduler();
+
+    RMNode node1 = MockNodes
+        .newNodeInfo(0, MockNodes.newResource(4 * GB), 1, "192.168.1.1");
+    RMNode node2 = MockNodes
+        .newNodeInfo(0, MockNodes.newResource(8 * GB), 2, "192.168.1.2");
+    RMNode node3 = MockNodes
+        .newNodeInfo(0, MockNodes.newResource(4 * GB), 3, "192.168.1.3");
+    cs.handle(new NodeAddedSchedulerEvent(node1, null));
+    cs.handle(new NodeAddedSchedulerEvent(node2, null));
+    cs.handle(new NodeAddedSchedulerEvent(node3, null));
+
+    // Nothing to schedule
+    Assert.assertTrue(cs.scoreCandidateNodes().isEmpty());
+
+    ApplicationId appId = BuilderUtils.newApplicationId(100, 1);
+    ApplicationAttemptId appAttemptId =
+        BuilderUtils.newApplicationAttemptId(appId, 1);
+    cs.handle(new AppAddedSchedulerEvent(appId, "default", "user", null));
+    cs.handle(new AppAttemptAddedSchedulerEvent(appAttemptId, false, null));
+    Priority priority = Priority.newInstance(1);
+    Resource capability = Resources.createResource(GB, 1);
+    List<ResourceRequest> ask = new ArrayList<ResourceRequest>();
+    ask.add(ResourceRequest
+        .newInstance(priority, node3.getHostName(), capability, 1));
+    ask.add(ResourceRequest
+        .newInstance(priority, node3.getRackName(), capability, 1));
+    ask.add(ResourceRequest
+        .newInstance(priority, ResourceRequest.ANY, capability, 2));
+    cs.allocate(appAttemptId, ask, Collections.<ContainerId>emptyList(), null,
+        null, null);
+
+    // The node the application wants first, then the least loaded one
+    List<FiCaSchedulerNode> candidates = cs.scoreCandidateNodes();
+    Assert.assertEquals(3, candidates.size());
+    Assert.assertEquals(node3.getNodeID(), candidates.get(0).getNodeID());
+    Assert.assertEquals(node2.getNodeID(), candidates.get(1).getNodeID());
+    Assert.assertEquals(node1.getNodeID(), candidates.get(2).getNodeID());
+
+    // A pass reports whether it changed a node, only then is it committed
+    Assert.assertTrue(CapacityScheduler.allocateOnCandidates(cs, candidates,
+        new TransactionStateImpl(-1, TransactionState.TransactionType.RM)));
+    Assert.assertFalse(CapacityScheduler.allocateOnCandidates(cs, candidates,
+        new TransactionStateImpl(-1, TransactionState.TransactionType.RM)));
+    rm.stop();
+  }
+
 }
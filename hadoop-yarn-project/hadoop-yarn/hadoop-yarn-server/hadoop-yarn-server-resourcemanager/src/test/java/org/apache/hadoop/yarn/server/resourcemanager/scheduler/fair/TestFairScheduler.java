@@ -2583,7 +2583,52 @@ public void testContinuousScheduling() throws Exception {
     Assert.assertEquals(2, nodes.size());
   }
 
-  
+  @Test(timeout = 10000)
+  public void testConcurrentScheduling() throws Exception {
+    FairScheduler fs = new FairScheduler();
+    Configuration conf = createConfiguration();
+    conf.setBoolean(FairSchedulerConfiguration.CONCURRENT_SCHEDULING_ENABLED,
+        true);
+    conf.setInt(FairSchedulerConfiguration.CONCURRENT_SCHEDULING_SNAPSHOT_MS,
+        0);
+    fs.reinitialize(conf, resourceManager.getRMContext());
+
+    RMNode node1 = MockNodes
+        .newNodeInfo(1, Resources.createResource(4 * 1024, 4), 1, "127.0.0.1");
+    fs.handle(new NodeAddedSchedulerEvent(node1, null));
+    RMNode node2 = MockNodes
+        .newNodeInfo(1, Resources.createResource(4 * 1024, 4), 2, "127.0.0.2");
+    fs.handle(new NodeAddedSchedulerEvent(node2, null));
+
+    ApplicationAttemptId appAttemptId =
+        createAppAttemptId(this.APP_ID++, this.ATTEMPT_ID++);
+    fs.addApplication(appAttemptId.getApplicationId(), "queue1", "user1",
+        null);
+    fs.addApplicationAttempt(appAttemptId, false, null);
+    List<ResourceRequest> ask = new ArrayList<ResourceRequest>();
+    ask.add(createResourceRequest(1024, 1, ResourceRequest.ANY, 1, 4, true));
+    fs.allocate(appAttemptId, ask, new ArrayList<ContainerId>(), null, null,
+        new TransactionStateImpl(-1, TransactionState.TransactionType.RM));
+
+    // Allocation happens on the allocation threads, after the heartbeats are
+    // handled
+    fs.handle(new NodeUpdateSchedulerEvent(node1, null));
+    fs.handle(new NodeUpdateSchedulerEvent(node2, null));
+
+    FSSchedulerApp app = fs.getSchedulerApp(appAttemptId);
+    while (app.getLiveContainers().size() < 2) {
+      Thread.sleep(10);
+    }
+    // One container per heartbeat, as assignmultiple is off
+    Assert.assertEquals(2048, app.getCurrentConsumption().getMemory());
+    Set<NodeId> nodes = new HashSet<NodeId>();
+    for (RMContainer container : app.getLiveContainers()) {
+      nodes.add(container.getContainer().getNodeId());
+    }
+    Assert.assertEquals(2, nodes.size());
+  }
+
+
   @Test
   public void testDontAllowUndeclaredPools() throws Exception {
     conf.setBoolean(FairSchedulerConfiguration.ALLOW_UNDECLARED_POOLS, false);